@@ -7,13 +7,19 @@ import it.isw2.flaviosimonelli.model.Ticket;
 import it.isw2.flaviosimonelli.model.Version;
 import it.isw2.flaviosimonelli.model.method.Method;
 import it.isw2.flaviosimonelli.utils.CsvExporter;
+import it.isw2.flaviosimonelli.utils.MethodSink;
 import it.isw2.flaviosimonelli.utils.bean.GitBean;
 import it.isw2.flaviosimonelli.utils.bean.JiraBean;
+import it.isw2.flaviosimonelli.utils.bean.PipelineBean;
+import it.isw2.flaviosimonelli.utils.cache.SymbolTable;
 import it.isw2.flaviosimonelli.utils.exception.GitException;
 import it.isw2.flaviosimonelli.utils.exception.JiraException;
 
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -35,27 +41,37 @@ public class CreateCSVController {
      *
      * @param jiraBean Configuration for Jira access
      * @param gitBean Configuration for Git access
+     * @param pipelineBean Tuning options of the extraction pipeline
      * @return true if project creation and data processing succeeded
      */
-    public boolean createCSV(JiraBean jiraBean, GitBean gitBean) {
+    public boolean createCSV(JiraBean jiraBean, GitBean gitBean, PipelineBean pipelineBean) {
         ProjectFactory projectFactory = ProjectFactory.getInstance();
         try{
             // crea la nuova istanza del progetto scegliendo se clonare un repository remoto o utilizzare uno locale in base all'attributo RepositoryType di GitBean
             if (gitBean.getType() == RepositoryType.LOCAL) {
                 LOGGER.info("Using local repository at: " + gitBean.getPath());
-                projectFactory.createProject(jiraBean.getJiraId(), jiraBean.getApproachProportion(), gitBean.getBranch(), gitBean.getPath(), gitBean.getReleaseTagFormat());
+                projectFactory.createProject(jiraBean.getJiraId(), jiraBean.getApproachProportion(), gitBean.getBranch(), gitBean.getPath(), gitBean.getReleaseTagFormat(), pipelineBean);
             } else {
                 LOGGER.info("Cloning remote repository from: " + gitBean.getRemoteUrl());
-                projectFactory.createProject(jiraBean.getJiraId(), jiraBean.getApproachProportion(), gitBean.getRemoteUrl(), gitBean.getBranch(), gitBean.getPath(), gitBean.getReleaseTagFormat());
+                projectFactory.createProject(jiraBean.getJiraId(), jiraBean.getApproachProportion(), gitBean.getRemoteUrl(), gitBean.getBranch(), gitBean.getPath(), gitBean.getReleaseTagFormat(), pipelineBean);
             }
             // Ottieni il progetto creato
             Project project = projectFactory.getProject();
             // propotion
             proportion(project);
-            // Labeling
-            labeling(project);
-            // Export data to CSV files
-            exportProjectData(project);
+            if (pipelineBean.isStreaming()) {
+                // Estrazione, labeling ed export una release alla volta
+                streamProjectData(projectFactory, project);
+            } else {
+                // Labeling
+                labeling(project);
+                logHeapUsage(project);
+                // Export data to CSV files
+                exportProjectData(project);
+            }
+            LOGGER.info("Cache dei file analizzati: " + project.getMethodCache().getStatistics());
+            // Esecuzione completata: i checkpoint non servono più
+            projectFactory.clearCheckpoint();
             return true;
         } catch (GitException e) {
             LOGGER.log(Level.SEVERE, "Errore durante l'operazione Git: " + e.getOperation(), e);
@@ -63,59 +79,137 @@ public class CreateCSVController {
         } catch (JiraException e) {
             LOGGER.log(Level.SEVERE, e.toString());
             return false;
+        } catch (IOException | UncheckedIOException e) {
+            // Export incompleto: i checkpoint restano per riprendere l'esecuzione
+            LOGGER.log(Level.SEVERE, "Errore durante l'esportazione dei dati del progetto", e);
+            return false;
+        } finally {
+            // Chiude la sessione sul repository Git
+            projectFactory.deleteProject();
         }
     }
 
     private void labeling(Project project) {
-        List<Ticket> tickets = project.getTickets();
+        long start = System.nanoTime();
         List<Version> versions = project.getVersions();
+        BitSet[] buggySignatures = buggySignaturesByVersion(project);
+
+        // Marca i metodi cercando ogni firma buggy nell'indice dei metodi della versione
+        for (int versionIndex = 0; versionIndex < versions.size(); versionIndex++) {
+            markBuggyMethods(versions.get(versionIndex), buggySignatures[versionIndex], project.getSymbols());
+        }
+
+        LOGGER.info("Labeling completato per tutti i metodi buggy in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Calcola, per ogni versione, l'insieme degli id delle firme buggy di tutti i ticket che la coprono.
+     * Servono solo i ticket e le loro versioni, non i metodi delle versioni.
+     *
+     * @param project Il progetto con ticket e versioni iniettate già impostati
+     * @return Gli insiemi delle firme buggy, indicizzati per posizione della versione; null per le versioni senza firme buggy
+     */
+    private BitSet[] buggySignaturesByVersion(Project project) {
+        List<Ticket> tickets = project.getTickets();
+        BitSet[] buggySignatures = new BitSet[project.getVersions().size()];
 
         for (Ticket ticket : tickets) {
             Version injectedVersion = ticket.getInjectedVersion();
             Version fixVersion = ticket.getFixVersion();
-            List<String> buggyMethodSignatures = ticket.getNameMethodsBuggy();
+            int[] buggyMethodSignatures = ticket.getNameMethodsBuggy();
 
-            if (injectedVersion == null || fixVersion == null || buggyMethodSignatures == null || buggyMethodSignatures.isEmpty()) {
+            if (injectedVersion == null || fixVersion == null || buggyMethodSignatures == null || buggyMethodSignatures.length == 0) {
                 LOGGER.warning("Ticket " + ticket.getId() + " manca di informazioni necessarie per il labeling");
                 continue; // Salta ticket senza informazioni necessarie
             }
 
             // Ottieni gli indici delle versioni affected e fix
-            int injectedVersionIndex = getVersionIndex(versions, injectedVersion);
-            int fixVersionIndex = getVersionIndex(versions, fixVersion);
+            int injectedVersionIndex = injectedVersion.getOrdinal();
+            int fixVersionIndex = fixVersion.getOrdinal();
 
             if (injectedVersionIndex < 0 || fixVersionIndex < 0 || injectedVersionIndex > fixVersionIndex) {
                 LOGGER.warning("Ticket " + ticket.getId() + " ha versioni non valide o in ordine errato");
                 continue; // Salta se le versioni non sono valide o in ordine errato
             }
 
-            // Imposta il flag buggy per i metodi interessati in tutte le versioni da injected a fix (incluse)
+            // Le firme del ticket sono buggy in tutte le versioni da injected a fix (esclusa)
             for (int versionIndex = injectedVersionIndex; versionIndex < fixVersionIndex; versionIndex++) {
-                Version version = versions.get(versionIndex);
-                if (version.getMethods() == null) continue;
-
-                for (String methodSignature : buggyMethodSignatures) {
-                    // Trova e marca il metodo come buggy
-                    for (Method method : version.getMethods()) {
-                        if (method.getSignature().equals(methodSignature)) {
-                            method.setBuggy(true);
-                            LOGGER.fine("Metodo " + methodSignature + " marcato come buggy nella versione " + version.getName());
-                        }
-                    }
+                if (buggySignatures[versionIndex] == null) {
+                    buggySignatures[versionIndex] = new BitSet();
+                }
+                for (int signatureId : buggyMethodSignatures) {
+                    buggySignatures[versionIndex].set(signatureId);
                 }
             }
         }
-
-        LOGGER.info("Labeling completato per tutti i metodi buggy");
+        return buggySignatures;
     }
 
-    private int getVersionIndex(List<Version> versions, Version target) {
-        for (int i = 0; i < versions.size(); i++) {
-            if (versions.get(i).getName().equals(target.getName())) {
-                return i;
+    // Marca come buggy i metodi di una versione le cui firme sono nell'insieme, usando l'indice dei metodi della versione
+    private void markBuggyMethods(Version version, BitSet buggy, SymbolTable symbols) {
+        if (buggy == null || version.getMethods() == null) return;
+
+        List<Method> methods = version.getMethods();
+        for (int signatureId = buggy.nextSetBit(0); signatureId >= 0; signatureId = buggy.nextSetBit(signatureId + 1)) {
+            for (int row : version.getMethodIndex().rowsOf(signatureId)) {
+                methods.get(row).setBuggy(true);
+            }
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Metodo " + symbols.signatures().get(signatureId) + " marcato come buggy nella versione " + version.getName());
             }
         }
-        return -1; // Non trovata
+    }
+
+    /**
+     * Pipeline in streaming: i ticket e le versioni iniettate sono già risolti, quindi le firme buggy di ogni versione
+     * sono note prima dell'estrazione. Ogni release viene estratta, etichettata, scritta nel CSV dei metodi e rilasciata
+     * prima di passare alla successiva, così la memoria occupata dipende dalla release più grande e non dall'intero dataset.
+     *
+     * @param projectFactory La factory che estrae i metodi delle versioni
+     * @param project        Il progetto con versioni e ticket già inizializzati
+     * @throws IOException se uno dei file non può essere scritto
+     */
+    private void streamProjectData(ProjectFactory projectFactory, Project project) throws IOException {
+        String projectName = project.getName();
+        PipelineBean.OutputFormat format = project.getPipeline().getOutputFormat();
+        String methodsPath = RESULT_PATH + "methods_" + projectName + format.getExtension()
+                + project.getPipeline().getOutputCompression().getExtension();
+        BitSet[] buggySignatures = buggySignaturesByVersion(project);
+        SymbolTable symbols = project.getSymbols();
+
+        CsvExporter.writeTicketsToCsv(project.getTickets(), symbols,
+                RESULT_PATH + "tickets_" + projectName + ".csv");
+
+        CsvExporter.writeVersionsToCsv(project.getVersions(),
+                RESULT_PATH + "version_" + projectName + ".csv");
+
+        try (MethodSink sink = CsvExporter.openMethodsSink(project, methodsPath, format)) {
+            projectFactory.extractMethodsForVersions(project, version -> {
+                markBuggyMethods(version, buggySignatures[version.getOrdinal()], symbols);
+                try {
+                    sink.writeVersion(version, symbols);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                LOGGER.info("Versione " + version.getName() + ": " + version.getMethods().size() + " metodi scritti");
+                logHeapUsage(project);
+                // I metodi della versione non servono più: vengono rilasciati prima di estrarre la successiva
+                version.setMethods(null);
+            });
+            System.out.println("File dei metodi esportato con successo: " + methodsPath);
+        }
+    }
+
+    /**
+     * Registra la memoria heap occupata dopo il labeling, insieme alla dimensione della tabella dei simboli.
+     * Con la pipeline completa sono in memoria i metodi di tutte le versioni, in streaming solo quelli della release corrente.
+     */
+    private void logHeapUsage(Project project) {
+        Runtime runtime = Runtime.getRuntime();
+        long usedMegabytes = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+        SymbolTable symbols = project.getSymbols();
+        LOGGER.info("Heap occupato: " + usedMegabytes + " MB; simboli: " + symbols.signatures().size() + " firme, "
+                + symbols.classPaths().size() + " class path, " + symbols.versions().size() + " versioni");
     }
 
     /**
@@ -130,7 +224,7 @@ public class CreateCSVController {
     private void proportion(Project project) {
         List<Ticket> tickets = project.getTickets();
         List<Version> versions = project.getVersions();
-        int p = completeApproachPropotion(tickets, versions);
+        int p = completeApproachPropotion(tickets);
         LOGGER.info("Proporzione P calcolata: " + p);
         for (Ticket ticket : tickets) {
             Version fixVersion = ticket.getFixVersion();
@@ -139,8 +233,8 @@ public class CreateCSVController {
 
             if (affectedVersion == null && fixVersion != null && openVersion != null) {
                 // Calcola la versione iniettata usando la proporzione P
-                int fvIndex = versions.indexOf(fixVersion);
-                int ovIndex = versions.indexOf(openVersion);
+                int fvIndex = fixVersion.getOrdinal();
+                int ovIndex = openVersion.getOrdinal();
 
                 if (fvIndex >= 0 && ovIndex >= 0 && fvIndex > ovIndex) {
                     // Calcola l'indice della versione iniettata
@@ -160,7 +254,7 @@ public class CreateCSVController {
 
     }
 
-    private int completeApproachPropotion(List<Ticket> tickets, List<Version> versions) {
+    private int completeApproachPropotion(List<Ticket> tickets) {
         List<Double> pValues = new ArrayList<>();
         // Calcola i valori di P per ogni ticket
         for (Ticket ticket : tickets) {
@@ -172,9 +266,9 @@ public class CreateCSVController {
                 continue;
             }
 
-            int fvIndex = versions.indexOf(fixVersion);
-            int ovIndex = versions.indexOf(openVersion);
-            int ivIndex = versions.indexOf(affectedVersion);
+            int fvIndex = fixVersion.getOrdinal();
+            int ovIndex = openVersion.getOrdinal();
+            int ivIndex = affectedVersion.getOrdinal();
 
             if (fvIndex == ovIndex) continue; // evita divisione per zero
 
@@ -202,17 +296,20 @@ public class CreateCSVController {
      * Exports all project data to CSV files.
      *
      * @param project The project containing data to export
+     * @throws IOException if one of the files cannot be written
      */
-    private void exportProjectData(Project project) {
+    private void exportProjectData(Project project) throws IOException {
         String projectName = project.getName();
 
-        CsvExporter.writeTicketsToCsv(project.getTickets(),
+        CsvExporter.writeTicketsToCsv(project.getTickets(), project.getSymbols(),
                 RESULT_PATH + "tickets_" + projectName + ".csv");
 
         CsvExporter.writeVersionsToCsv(project.getVersions(),
                 RESULT_PATH + "version_" + projectName + ".csv");
 
-        CsvExporter.writeMethodsToCsv(project,
-                RESULT_PATH + "methods_" + projectName + ".csv");
+        PipelineBean.OutputFormat format = project.getPipeline().getOutputFormat();
+        CsvExporter.writeMethods(project,
+                RESULT_PATH + "methods_" + projectName + format.getExtension()
+                        + project.getPipeline().getOutputCompression().getExtension(), format);
     }
 }
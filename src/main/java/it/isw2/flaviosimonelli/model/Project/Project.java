@@ -1,7 +1,15 @@
 package it.isw2.flaviosimonelli.model.Project;
 
+import it.isw2.flaviosimonelli.model.ReleaseTimeline;
 import it.isw2.flaviosimonelli.model.Ticket;
 import it.isw2.flaviosimonelli.model.Version;
+import it.isw2.flaviosimonelli.utils.bean.PipelineBean;
+import it.isw2.flaviosimonelli.utils.cache.MethodCache;
+import it.isw2.flaviosimonelli.utils.cache.SymbolTable;
+import it.isw2.flaviosimonelli.utils.dao.CheckpointStore;
+import it.isw2.flaviosimonelli.utils.dao.ReleaseAncestry;
+import it.isw2.flaviosimonelli.utils.dao.RepositorySession;
+import it.isw2.flaviosimonelli.utils.dao.TicketCommitIndex;
 
 import java.util.List;
 
@@ -12,17 +20,27 @@ public class Project {
     private final String gitBranch; // Branch of the Git repository to work with
     private final String gitDirectory; // Directory where the Git repository is located or will be cloned
     private final String releaseTagFormat; // Convention for release tags, e.g. "v{VERSION}" or "release-{VERSION}"
+    private final PipelineBean pipeline; // Tuning options of the extraction pipeline
+    private final MethodCache methodCache; // Methods already extracted, keyed by git blob, shared by all the releases
+    private final SymbolTable symbols = new SymbolTable(); // Ids of the signatures, class paths and version names of the methods
+    private RepositorySession repositorySession; // Open session on the Git repository, shared by the whole pipeline
+    private TicketCommitIndex ticketCommitIndex; // Index from ticket IDs to the commits mentioning them, built once
     private List<Ticket> tickets; // List of tickets associated with the project, retrieved from Jira
     private List<Version> versions; // List of versions associated with the project
+    private ReleaseTimeline releaseTimeline; // Versions sorted by release date, rebuilt whenever the versions are set
+    private ReleaseAncestry releaseAncestry; // Release that first contains each commit, built on demand from the timeline
+    private CheckpointStore checkpoint; // Completed stages saved for a restarted run, null if checkpoints are disabled
 
     // Constructor for creating a new project with all necessary parameters (without tickets and versions)
-    public Project(String name, String jiraID, ApproachProportion approachProportion, String gitBranch, String gitDirectory, String releaseTagFormat) {
+    public Project(String name, String jiraID, ApproachProportion approachProportion, String gitBranch, String gitDirectory, String releaseTagFormat, PipelineBean pipeline) {
         this.name = name;
         this.jiraID = jiraID;
         this.approachProportion = approachProportion;
         this.gitBranch = gitBranch;
         this.gitDirectory = gitDirectory;
         this.releaseTagFormat = releaseTagFormat;
+        this.pipeline = pipeline != null ? pipeline : new PipelineBean();
+        this.methodCache = new MethodCache(this.pipeline.getParseCacheBytes());
     }
 
     // Getters and Setters for all fields
@@ -36,6 +54,10 @@ public class Project {
 
     public ApproachProportion getApproachProportion() { return approachProportion; }
 
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
     public String getGitBranch() {
         return gitBranch;
     }
@@ -56,6 +78,17 @@ public class Project {
     }
     public void setVersions(List<Version> versions) {
         this.versions = versions;
+        if (versions != null) {
+            // Ordinals replace the lookups of a version in the list
+            for (int i = 0; i < versions.size(); i++) {
+                versions.get(i).setOrdinal(i);
+            }
+        }
+        this.releaseTimeline = versions != null ? new ReleaseTimeline(versions) : null;
+        this.releaseAncestry = null;
+    }
+    public ReleaseTimeline getReleaseTimeline() {
+        return releaseTimeline;
     }
     public Version getVersionFromName(String name) {
         for (Version version : versions) {
@@ -67,5 +100,33 @@ public class Project {
     }
 
     public String getReleaseTagFormat() { return releaseTagFormat; }
+
+    public PipelineBean getPipeline() { return pipeline; }
+
+    public MethodCache getMethodCache() { return methodCache; }
+
+    public RepositorySession getRepositorySession() { return repositorySession; }
+
+    public void setRepositorySession(RepositorySession repositorySession) { this.repositorySession = repositorySession; }
+
+    public TicketCommitIndex getTicketCommitIndex() { return ticketCommitIndex; }
+
+    public void setTicketCommitIndex(TicketCommitIndex ticketCommitIndex) { this.ticketCommitIndex = ticketCommitIndex; }
+
+    public ReleaseAncestry getReleaseAncestry() { return releaseAncestry; }
+
+    public void setReleaseAncestry(ReleaseAncestry releaseAncestry) { this.releaseAncestry = releaseAncestry; }
+
+    public CheckpointStore getCheckpoint() { return checkpoint; }
+
+    public void setCheckpoint(CheckpointStore checkpoint) { this.checkpoint = checkpoint; }
+
+    // Releases the resources held by the project, closing the session on the Git repository
+    public void close() {
+        if (repositorySession != null) {
+            repositorySession.close();
+            repositorySession = null;
+        }
+    }
 }
 
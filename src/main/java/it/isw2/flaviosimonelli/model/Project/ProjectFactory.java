@@ -1,13 +1,21 @@
 package it.isw2.flaviosimonelli.model.Project;
 
+import it.isw2.flaviosimonelli.model.ReleaseTimeline;
 import it.isw2.flaviosimonelli.model.Ticket;
 import it.isw2.flaviosimonelli.model.Version;
+import it.isw2.flaviosimonelli.model.method.Method;
+import it.isw2.flaviosimonelli.utils.Comparator.TicketComparator;
 import it.isw2.flaviosimonelli.utils.Comparator.VersionComparator;
+import it.isw2.flaviosimonelli.utils.bean.PipelineBean;
+import it.isw2.flaviosimonelli.utils.cache.SymbolTable;
+import it.isw2.flaviosimonelli.utils.dao.CheckpointStore;
 import it.isw2.flaviosimonelli.utils.dao.GitService;
 import it.isw2.flaviosimonelli.utils.dao.JiraService;
+import it.isw2.flaviosimonelli.utils.dao.RepositorySession;
 import it.isw2.flaviosimonelli.utils.exception.GitException;
 import it.isw2.flaviosimonelli.utils.exception.JiraException;
 
+import java.io.IOException;
 import java.time.ZonedDateTime;
 import java.util.Iterator;
 import java.util.logging.Logger;
@@ -16,9 +24,18 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
 
 public class ProjectFactory {
     private static final Logger LOGGER = Logger.getLogger(ProjectFactory.class.getName());
+    private static final Path CHECKPOINT_PATH = Paths.get("checkpoint");
 
     private Project project;
     private static ProjectFactory instance; // Singleton instance of ProjectFactory
@@ -36,47 +53,100 @@ public class ProjectFactory {
     }
 
     // Method to create a new istance of Project and clone the git repository
-    public void createProject(String jiraID, ApproachProportion approachProportion, String gitURL, String gitBranch, String parentDirectory, String releaseTagFormat) throws GitException, JiraException {
+    public void createProject(String jiraID, ApproachProportion approachProportion, String gitURL, String gitBranch, String parentDirectory, String releaseTagFormat, PipelineBean pipeline) throws GitException, JiraException {
         GitService gitService = new GitService();
         // Crea il path in cui clonare il repository Git
         String gitDirectory = parentDirectory + "/" + extractGitHubProjectName(gitURL);
         // Clone del repository Git
-        gitService.cloneRepository(gitURL, gitDirectory, gitBranch); // prova a vedere se il repository esiste veramente
+        gitService.cloneRepository(gitURL, gitBranch, gitDirectory); // prova a vedere se il repository esiste veramente
         // Crea entità Project
-        Project project = new Project(extractGitHubProjectName(gitURL), jiraID, approachProportion, gitBranch, gitDirectory, releaseTagFormat);
-        // Inizializza le versioni del progetto prendendoli da Jira
-        getVersion(project);
-        // Inizializza i ticket del progetto prendendoli da Jira
-        getTicket(project);
-
+        Project project = new Project(extractGitHubProjectName(gitURL), jiraID, approachProportion, gitBranch, gitDirectory, releaseTagFormat, pipeline);
+        // Inizializza versioni e ticket del progetto
+        initializeProject(project);
         // imposta il progetto corrente
         this.project = project;
     }
 
     // Metodo che crea un nuovo progetto a partire da un repository Git locale
-    public void createProject(String JiraID, ApproachProportion approachProportion, String gitBranch, String gitDirectory, String releaseTagFormat) throws GitException, JiraException {
+    public void createProject(String JiraID, ApproachProportion approachProportion, String gitBranch, String gitDirectory, String releaseTagFormat, PipelineBean pipeline) throws GitException, JiraException {
         GitService gitService = new GitService();
         // Open the local Git repository
         gitService.openRepository(gitDirectory, gitBranch); // prova a vedere se il repository esiste veramente
         // Crea un entità project aprendo un repository Git locale
-        Project project = new Project(extractDirectoryName(gitDirectory), JiraID, approachProportion, gitBranch, gitDirectory, releaseTagFormat);
-        // Inizializza le versioni del progetto prendendoli da Jira
-        getVersion(project);
-        // Inizializza i ticket del progetto prendendoli da Jira
-        getTicket(project);
+        Project project = new Project(extractDirectoryName(gitDirectory), JiraID, approachProportion, gitBranch, gitDirectory, releaseTagFormat, pipeline);
+        // Inizializza versioni e ticket del progetto
+        initializeProject(project);
         // imposta il progetto corrente
         this.project = project;
     }
 
+    /**
+     * Opens the session on the Git repository and initializes versions and tickets of the project.
+     * If the initialization fails the session is closed before propagating the error.
+     *
+     * @param project The project to initialize
+     */
+    private void initializeProject(Project project) throws GitException, JiraException {
+        // Apre la sessione sul repository, condivisa da tutte le operazioni Git del progetto
+        project.setRepositorySession(RepositorySession.open(project.getGitDirectory()));
+        try {
+            // Apre i checkpoint di un'esecuzione precedente, validi solo per lo stesso HEAD e la stessa configurazione
+            if (project.getPipeline().isCheckpoint()) {
+                openCheckpoint(project);
+            }
+            // Inizializza le versioni del progetto prendendoli da Jira
+            getVersion(project);
+            // Inizializza i ticket del progetto prendendoli da Jira
+            getTicket(project);
+        } catch (JiraException | RuntimeException e) {
+            project.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Opens the checkpoint store of the project, discarding the checkpoints written for a different
+     * repository HEAD or configuration. If the store cannot be opened the run continues without checkpoints.
+     *
+     * @param project The project, with the session on the repository already open
+     */
+    private void openCheckpoint(Project project) throws GitException {
+        String headCommit = new GitService().getHeadCommit(project);
+        PipelineBean pipeline = project.getPipeline();
+        // Le opzioni che cambiano versioni, metodi, metriche o ticket salvati
+        String configuration = "jira=" + project.getJiraID()
+                + ";branch=" + project.getGitBranch()
+                + ";releaseTag=" + project.getReleaseTagFormat()
+                + ";extraction=" + pipeline.getExtractionMode()
+                + ";history=" + pipeline.isChangeHistory()
+                + ";assignment=" + pipeline.getReleaseAssignment();
+        try {
+            project.setCheckpoint(CheckpointStore.open(CHECKPOINT_PATH.resolve(project.getName()), headCommit, configuration));
+        } catch (IOException e) {
+            LOGGER.warning("Checkpoint non disponibili per il progetto " + project.getName() + ": " + e.getMessage());
+        }
+    }
+
+    // Delete the checkpoints of the current project, once its run is completed
+    public void clearCheckpoint() {
+        if (project == null || project.getCheckpoint() == null) return;
+        try {
+            project.getCheckpoint().clear();
+        } catch (IOException e) {
+            LOGGER.warning("Impossibile eliminare i checkpoint del progetto " + project.getName() + ": " + e.getMessage());
+        }
+    }
 
     // Get the current project
     public Project getProject() {
         return project;
     }
 
-    // Delete the current project
+    // Delete the current project, releasing its resources
     public void deleteProject() {
         if (project != null) {
+            project.close();
             project = null;
         }
     }
@@ -88,15 +158,31 @@ public class ProjectFactory {
      *
      */
     private void getVersion(Project project) throws JiraException, GitException {
-        JiraService jiraService = new JiraService();
-        // Recupera le versioni del progetto da Jira
-        List<Version> versions = jiraService.getVersions(project);
-        // Filtra le versioni per mantenere solo quelle che hanno un commit hash associato
-        versions = filterVersion(project, versions);
-        // ordina le versioni in ordine cronologico
-        versions.sort(new VersionComparator());
-        // per ogni versione, prendi tutti i metodi presenti in quella versione
-        getMethodsforVersion(project, versions);
+        CheckpointStore checkpoint = project.getCheckpoint();
+        // Versioni già filtrate e ordinate da un'esecuzione interrotta
+        List<Version> versions = checkpoint != null ? checkpoint.loadVersions() : null;
+        if (versions != null) {
+            LOGGER.info("Versioni del progetto " + project.getName() + " riprese dal checkpoint");
+        } else {
+            JiraService jiraService = new JiraService();
+            // Recupera le versioni del progetto da Jira
+            versions = jiraService.getVersions(project);
+            // Filtra le versioni per mantenere solo quelle che hanno un commit hash associato
+            versions = filterVersion(project, versions);
+            // ordina le versioni in ordine cronologico
+            versions.sort(new VersionComparator());
+            if (checkpoint != null) {
+                try {
+                    checkpoint.saveVersions(versions);
+                } catch (IOException e) {
+                    LOGGER.warning("Checkpoint delle versioni non salvato: " + e.getMessage());
+                }
+            }
+        }
+        // per ogni versione, prendi tutti i metodi presenti in quella versione; in streaming vengono estratti dopo i ticket
+        if (!project.getPipeline().isStreaming()) {
+            getMethodsforVersion(project, versions, version -> { });
+        }
         // setta le versioni nel progetto
         project.setVersions(versions);
     }
@@ -135,19 +221,95 @@ public class ProjectFactory {
         return validVersions;
     }
 
+    /**
+     * Extracts the methods of the versions of the project one at a time, in release order, for the streaming pipeline.
+     * Each version is passed to the consumer as soon as its methods and metrics are ready; the consumer
+     * may drop the methods of the version, which are not needed by the following versions.
+     *
+     * @param project  The project, with versions and tickets already initialized
+     * @param consumer The action performed on each extracted version
+     * @throws GitException If an error occurs during method extraction
+     */
+    public void extractMethodsForVersions(Project project, Consumer<Version> consumer) throws GitException {
+        getMethodsforVersion(project, project.getVersions(), consumer);
+    }
+
     /**
      * Retrieves method information for each version of the project from Git.
+     * In incremental mode only the first version is extracted in full, the following ones
+     * are built from the previous version by re-extracting the files changed between the tags.
+     * With checkpoints enabled each version is restored from the checkpoint when available,
+     * and saved there once its methods and metrics are computed.
      *
      * @param project The project to process
-     * @throws Exception If an error occurs during method extraction
+     * @param consumer The action performed on each version once its methods are extracted
+     * @throws GitException If an error occurs during method extraction
      */
-    private void getMethodsforVersion(Project project, List<Version> versions) throws GitException {
+    private void getMethodsforVersion(Project project, List<Version> versions, Consumer<Version> consumer) throws GitException {
         GitService gitService = new GitService();
-        for (Version version : versions) {
-            version.setMethods(gitService.getMethodsInVersion(project, version));
+        boolean incremental = project.getPipeline().isIncrementalExtraction();
+        CheckpointStore checkpoint = project.getCheckpoint();
+        Version previousVersion = null;
+        SortedMap<String, List<Method>> previousFiles = null;
+
+        for (int i = 0; i < versions.size(); i++) {
+            Version version = versions.get(i);
+            SortedMap<String, List<Method>> files;
+            if (checkpoint != null && checkpoint.loadMethods(i, version, project.getSymbols())) {
+                // metodi e metriche ripresi dal checkpoint; i file servono solo all'estrazione incrementale
+                LOGGER.info("Metodi della versione " + version.getName() + " ripresi dal checkpoint");
+                files = incremental ? groupByFile(version.getMethods(), project.getSymbols()) : null;
+            } else {
+                if (incremental && previousVersion != null) {
+                    files = gitService.getMethodsByFileSince(project, previousVersion, previousFiles, version);
+                } else {
+                    files = gitService.getMethodsByFile(project, version);
+                }
+
+                List<Method> methods = new ArrayList<>();
+                for (List<Method> fileMethods : files.values()) {
+                    methods.addAll(fileMethods);
+                }
+                version.setMethods(methods);
+                if (project.getPipeline().isChangeHistory()) {
+                    // metriche di storia calcolate sui commit fra il tag precedente e quello della versione
+                    gitService.computeChangeHistory(project, previousVersion, version);
+                }
+                // salvato prima del consumer, che in streaming rilascia i metodi
+                if (checkpoint != null) {
+                    try {
+                        checkpoint.saveMethods(i, version, project.getSymbols());
+                    } catch (IOException e) {
+                        LOGGER.warning("Checkpoint della versione " + version.getName() + " non salvato: " + e.getMessage());
+                    }
+                }
+            }
+            consumer.accept(version);
+
+            previousVersion = version;
+            // I metodi della versione servono alla successiva solo per l'estrazione incrementale
+            previousFiles = incremental ? files : null;
         }
     }
 
+    /**
+     * Groups the methods of a version by the file that declares them, as returned by the extraction.
+     * The class path of a method is the path of its file followed by the class name.
+     *
+     * @param methods The methods of the version, in extraction order
+     * @param symbols The symbol table of the project
+     * @return The methods of each file, keyed by file path
+     */
+    private SortedMap<String, List<Method>> groupByFile(List<Method> methods, SymbolTable symbols) {
+        SortedMap<String, List<Method>> files = new TreeMap<>();
+        for (Method method : methods) {
+            String classPath = symbols.classPaths().get(method.getClassPathId());
+            String filePath = classPath.substring(0, classPath.lastIndexOf('/'));
+            files.computeIfAbsent(filePath, path -> new ArrayList<>()).add(method);
+        }
+        return files;
+    }
+
     /**
      * Retrieves valid fixed bug tickets from Jira for the project.
      *
@@ -155,6 +317,14 @@ public class ProjectFactory {
      *
      */
     private void getTicket(Project project) throws JiraException {
+        CheckpointStore checkpoint = project.getCheckpoint();
+        // Ticket già analizzati e filtrati da un'esecuzione interrotta
+        List<Ticket> restored = checkpoint != null ? checkpoint.loadTickets(project) : null;
+        if (restored != null) {
+            LOGGER.info("Ticket del progetto " + project.getName() + " ripresi dal checkpoint");
+            project.setTickets(restored);
+            return;
+        }
         JiraService jiraService = new JiraService();
         // lista che conterrà i ticket bug risolti
         List<Ticket> tickets = null;
@@ -167,30 +337,121 @@ public class ProjectFactory {
         setOpeningVersionForTickets(project, tickets);
         // filter the tickets to remove those are invalid
         filterTickets(tickets);
+        // stesso ordine con la ricerca completa e con la sincronizzazione incrementale
+        tickets.sort(new TicketComparator());
+        if (checkpoint != null) {
+            try {
+                checkpoint.saveTickets(tickets, project.getSymbols());
+            } catch (IOException e) {
+                LOGGER.warning("Checkpoint dei ticket non salvato: " + e.getMessage());
+            }
+        }
         // set the tickets in the project
         project.setTickets(tickets);
     }
 
     /**
      * Sets the fix version for each ticket based on the project's git repository.
+     * The fix commits are analyzed concurrently, up to the number of ticket threads of the pipeline;
+     * the results are applied to the tickets in list order once all the analyses are completed.
+     * A failure on a ticket is logged and leaves that ticket without fix commit.
      *
      * @param project The project
      * @param tickets The list of tickets to process
      */
     private void setFixVersionForTickets(Project project, List<Ticket> tickets) throws GitException {
         GitService gitService = new GitService();
-        for (Ticket ticket : tickets) {
-            String fixCommitHash = gitService.findFixCommitForTicket(project, ticket.getId());
-            if (fixCommitHash != null) {
-                ticket.setCommitHash(fixCommitHash);
-                ticket.setFixVersion(gitService.getVersionForCommit(project, fixCommitHash));
-                ticket.setNameMethodsBuggy(gitService.getModifiedMethodSignaturesfromCommit(project, fixCommitHash));
-            } else {
-                ticket.setFixVersion(null);
-                ticket.setCommitHash(null);
-                ticket.setNameMethodsBuggy(null);
+        PipelineBean pipeline = project.getPipeline();
+        // Le strutture condivise vengono costruite prima di avviare i worker, così non vengono costruite sotto contesa
+        gitService.getTicketCommitIndex(project);
+        if (pipeline.getReleaseAssignment() == PipelineBean.ReleaseAssignment.ANCESTRY) {
+            gitService.getReleaseAncestry(project);
+        }
+
+        List<FixAnalysis> analyses = new ArrayList<>(tickets.size());
+        if (pipeline.getTicketThreads() <= 1 || tickets.size() < 2) {
+            for (Ticket ticket : tickets) {
+                analyses.add(analyzeFixCommit(gitService, project, ticket.getId()));
+            }
+        } else {
+            int threads = pipeline.getTicketThreads();
+            // Con i virtual thread il limite di concorrenza è dato dal semaforo
+            Semaphore permits = new Semaphore(threads);
+            try (ExecutorService executor = pipeline.isVirtualTicketThreads()
+                    ? Executors.newVirtualThreadPerTaskExecutor()
+                    : Executors.newFixedThreadPool(threads)) {
+                List<Future<FixAnalysis>> futures = new ArrayList<>(tickets.size());
+                for (Ticket ticket : tickets) {
+                    String ticketId = ticket.getId();
+                    futures.add(executor.submit(() -> {
+                        permits.acquire();
+                        try {
+                            return analyzeFixCommit(gitService, project, ticketId);
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                }
+                // Raccoglie i risultati nell'ordine dei ticket
+                for (Future<FixAnalysis> future : futures) {
+                    analyses.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GitException("setFixVersionForTickets", "Analisi dei ticket interrotta");
+            } catch (ExecutionException e) {
+                throw new GitException("setFixVersionForTickets", "Errore durante l'analisi dei ticket: " + e.getCause().getMessage());
             }
         }
+
+        for (int i = 0; i < tickets.size(); i++) {
+            Ticket ticket = tickets.get(i);
+            FixAnalysis analysis = analyses.get(i);
+            ticket.setCommitHash(analysis.commitHash);
+            ticket.setFixVersion(analysis.fixVersion);
+            ticket.setNameMethodsBuggy(analysis.modifiedMethods);
+        }
+    }
+
+    /**
+     * Finds the fix commit of a ticket and analyzes it. Errors are isolated to the ticket.
+     *
+     * @return The result of the analysis, empty if no fix commit is found or the analysis fails
+     */
+    private FixAnalysis analyzeFixCommit(GitService gitService, Project project, String ticketId) {
+        try {
+            String fixCommitHash = gitService.findFixCommitForTicket(project, ticketId);
+            if (fixCommitHash == null) {
+                return FixAnalysis.EMPTY;
+            }
+            Version fixVersion = gitService.getVersionForCommit(project, fixCommitHash);
+            List<String> signatures = gitService.getModifiedMethodSignaturesFromCommit(project, fixCommitHash);
+            // Le firme vengono convertite negli id della tabella dei simboli, condivisa con i metodi delle versioni
+            SymbolTable.Dictionary signatureIds = project.getSymbols().signatures();
+            int[] modifiedMethods = new int[signatures.size()];
+            for (int i = 0; i < modifiedMethods.length; i++) {
+                modifiedMethods[i] = signatureIds.intern(signatures.get(i));
+            }
+            return new FixAnalysis(fixCommitHash, fixVersion, modifiedMethods);
+        } catch (RuntimeException e) {
+            LOGGER.warning("Analisi del commit di fix fallita per il ticket " + ticketId + ": " + e.getMessage());
+            return FixAnalysis.EMPTY;
+        }
+    }
+
+    // Result of the analysis of the fix commit of a ticket
+    private static class FixAnalysis {
+        private static final FixAnalysis EMPTY = new FixAnalysis(null, null, null);
+
+        private final String commitHash;
+        private final Version fixVersion;
+        private final int[] modifiedMethods;
+
+        private FixAnalysis(String commitHash, Version fixVersion, int[] modifiedMethods) {
+            this.commitHash = commitHash;
+            this.fixVersion = fixVersion;
+            this.modifiedMethods = modifiedMethods;
+        }
     }
 
     /**
@@ -200,17 +461,12 @@ public class ProjectFactory {
      * @param tickets The list of tickets to process
      */
     private void setOpeningVersionForTickets(Project project, List<Ticket> tickets) {
+        ReleaseTimeline timeline = project.getReleaseTimeline();
         for (Ticket ticket : tickets) {
             ZonedDateTime openDate = ticket.getOpenDate();
             if (openDate != null) {
-                Version openingVersion = null;
-                for (Version version : project.getVersions()) {
-                    if (version.getReleaseDate() != null &&
-                            !version.getReleaseDate().before(Date.from(openDate.toInstant()))) {
-                        openingVersion = version;
-                        break;
-                    }
-                }
+                // la prima versione rilasciata alla data di apertura o dopo
+                Version openingVersion = timeline.firstReleaseAtOrAfter(openDate.toInstant().toEpochMilli());
                 if (openingVersion != null) {
                     ticket.setOpenVersion(openingVersion);
                 } else {
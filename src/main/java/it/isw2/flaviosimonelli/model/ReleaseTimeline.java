@@ -0,0 +1,107 @@
+package it.isw2.flaviosimonelli.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable timeline of the releases of a project.
+ * Release commit times are kept in a sorted array paired with the ordinals of the versions
+ * (their position in the project version list), so that the release of a point in time
+ * is found with a binary search and without accessing the repository.
+ */
+public class ReleaseTimeline {
+    private final List<Version> versions;          // Versions of the project, indexed by ordinal
+    private final long[] releaseTimes;             // Release times in epoch millis, ascending
+    private final int[] ordinals;                  // Ordinal of the version released at releaseTimes[i]
+    private final Map<String, Version> versionsByHash; // Versions indexed by the hash of their tag
+
+    /**
+     * Builds the timeline of a list of versions. Versions without a release date are not part of the timeline.
+     * Releases with the same time keep the order of the version list.
+     *
+     * @param versions The versions of the project
+     */
+    public ReleaseTimeline(List<Version> versions) {
+        this.versions = List.copyOf(versions);
+        this.versionsByHash = new HashMap<>();
+
+        Integer[] sorted = new Integer[this.versions.size()];
+        int count = 0;
+        for (int i = 0; i < this.versions.size(); i++) {
+            Version version = this.versions.get(i);
+            if (version.getHashCommit() != null) {
+                versionsByHash.putIfAbsent(version.getHashCommit(), version);
+            }
+            if (version.getReleaseDate() != null) {
+                sorted[count++] = i;
+            }
+        }
+        // L'ordinamento è stabile: a parità di data resta l'ordine della lista delle versioni
+        Arrays.sort(sorted, 0, count, Comparator.comparingLong(i -> this.versions.get(i).getReleaseDate().getTime()));
+
+        this.releaseTimes = new long[count];
+        this.ordinals = new int[count];
+        for (int i = 0; i < count; i++) {
+            ordinals[i] = sorted[i];
+            releaseTimes[i] = this.versions.get(sorted[i]).getReleaseDate().getTime();
+        }
+    }
+
+    /**
+     * Returns the version whose tag points to the given hash.
+     *
+     * @param hash The hash of a commit or tag
+     * @return The version tagged with the hash, or null if there is none
+     */
+    public Version getVersionByHash(String hash) {
+        return versionsByHash.get(hash);
+    }
+
+    /**
+     * Returns the earliest release strictly after the given time.
+     *
+     * @param epochMillis The time in epoch millis
+     * @return The first version released after the time, or null if there is none
+     */
+    public Version firstReleaseAfter(long epochMillis) {
+        // Il primo rilascio successivo è il primo con data >= epochMillis + 1
+        return epochMillis == Long.MAX_VALUE ? null : firstReleaseAtOrAfter(epochMillis + 1);
+    }
+
+    /**
+     * Returns the earliest release at or after the given time.
+     *
+     * @param epochMillis The time in epoch millis
+     * @return The first version released at or after the time, or null if there is none
+     */
+    public Version firstReleaseAtOrAfter(long epochMillis) {
+        int low = 0;
+        int high = releaseTimes.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (releaseTimes[mid] < epochMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < releaseTimes.length ? versions.get(ordinals[low]) : null;
+    }
+
+    /**
+     * Returns the released versions in release order.
+     *
+     * @return The versions with a release date, from the earliest to the latest
+     */
+    public List<Version> getReleases() {
+        List<Version> releases = new ArrayList<>(ordinals.length);
+        for (int ordinal : ordinals) {
+            releases.add(versions.get(ordinal));
+        }
+        return releases;
+    }
+}
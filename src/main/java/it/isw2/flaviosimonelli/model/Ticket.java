@@ -1,7 +1,6 @@
 package it.isw2.flaviosimonelli.model;
 
 import java.time.ZonedDateTime;
-import java.util.List;
 
 /**
  * Represents a ticket/issue from a tracking system like Jira.
@@ -13,7 +12,7 @@ public class Ticket {
     private Version injectedVersion;        // First version in which the issue is present
     private ZonedDateTime openDate;     // When the ticket was resolved
     private Version openVersion; // Version in which the ticket was opened
-    private List<String> nameMethodsBuggy; // List of methods that are buggy
+    private int[] nameMethodsBuggy; // Signature ids of the methods that are buggy, in the order they were found
 
     public Version getFixVersion() {
         return fixVersion;
@@ -45,11 +44,11 @@ public class Ticket {
         this.openVersion = openVersion;
     }
 
-    public List<String> getNameMethodsBuggy() {
+    public int[] getNameMethodsBuggy() {
         return nameMethodsBuggy;
     }
 
-    public void setNameMethodsBuggy(List<String> nameMethodsBuggy) {
+    public void setNameMethodsBuggy(int[] nameMethodsBuggy) {
         this.nameMethodsBuggy = nameMethodsBuggy;
     }
 
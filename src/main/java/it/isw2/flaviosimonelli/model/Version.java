@@ -3,6 +3,8 @@ package it.isw2.flaviosimonelli.model;
 import java.util.Date;
 import java.util.List;
 import it.isw2.flaviosimonelli.model.method.Method;
+import it.isw2.flaviosimonelli.model.method.MethodIndex;
+import it.isw2.flaviosimonelli.model.method.MetricStore;
 
 public class Version {
     private String name; // e.g., "1.0.0"
@@ -10,6 +12,9 @@ public class Version {
     private Date releaseDate; // date of release, null if not released
     private String hashCommit; // hash of the tag associated with this version
     private List<Method> methods; // list of methods associated with this version
+    private MetricStore metrics; // metrics of the methods, one row per method in list order
+    private MethodIndex methodIndex; // rows of the methods by signature id
+    private int ordinal = -1; // position in the ordered versions of the project, -1 if not part of them
 
     public void setName(String name) {
         this.name = name;
@@ -41,8 +46,30 @@ public class Version {
 
     public void setMethods(List<Method> methods) {
         this.methods = methods;
+        this.metrics = null;
+        this.methodIndex = null;
+        if (methods == null) return;
+        // Le metriche dei metodi vengono raccolte in colonne, nello stesso ordine della lista
+        this.metrics = new MetricStore(methods.size());
+        for (Method method : methods) {
+            method.moveMetricsTo(metrics);
+        }
+        this.methodIndex = MethodIndex.build(methods);
     }
     public List<Method> getMethods() {
         return methods;
     }
+    public MetricStore getMetrics() {
+        return metrics;
+    }
+    public MethodIndex getMethodIndex() {
+        return methodIndex;
+    }
+
+    public void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+    public int getOrdinal() {
+        return ordinal;
+    }
 }
@@ -1,88 +1,136 @@
 package it.isw2.flaviosimonelli.model.method;
 
+import org.eclipse.jgit.lib.ObjectId;
+
 /**
  * Represents a method within the system, with its metrics and information.
  * This class contains information about the method signature, its containing class,
  * the file path, and associated metrics.
+ * The source of the body is not kept in memory: the method only references the blob of its file
+ * and the byte range of the body, and the text is loaded on demand through GitService.getMethodContent.
+ * Signature, class path and version are ids of the project SymbolTable, shared by all the releases.
+ * The metrics are a row of a {@link MetricStore}. Until the method is stored in its version they are
+ * shared with the method it was created from, so they must be written only after
+ * {@link #moveMetricsTo(MetricStore)}.
  */
 public class Method {
-    private final String signature;    // The method signature (name and parameters)
-    private final String classPath;    // The name of the class containing this method
-    private final String version;      // The version of the project al quale appartiene il metodo
-    private final String content;
-    private final Metric metric;       // The metrics associated with this method
+    private final int signatureId;     // The id of the method signature (name and parameters)
+    private final int classPathId;     // The id of the path of the class containing this method
+    private final int versionId;       // The id of the version of the project al quale appartiene il metodo
+    private final ObjectId blobId;     // The blob of the file containing this method, null if unknown
+    private final int contentBegin;    // Byte offset of the body in the blob
+    private final int contentEnd;      // Byte offset after the end of the body, equal to contentBegin if there is no body
+    private MetricStore metricStore;   // The store holding the metrics associated with this method
+    private int metricRow;             // The row of the metrics in the store
     private Boolean Buggy; // Indicates if the method is buggy or not, default is false
 
     /**
      * Constructs a new Method object with all required information.
      *
-     * @param signature The method signature (name and parameters)
-     * @param classPath The path of the class containing this method
-     * @param metric    The metrics associated with this method
-     * @param content   The content of the method (e.g., source code)
-     * @param version   The version project al quale appartiene il metodo
+     * @param signatureId  The id of the method signature (name and parameters)
+     * @param classPathId  The id of the path of the class containing this method
+     * @param versionId    The id of the version project al quale appartiene il metodo
+     * @param blobId       The blob of the file containing the method
+     * @param contentBegin The byte offset of the body in the blob
+     * @param contentEnd   The byte offset after the end of the body
+     * @param metric       The metrics associated with this method
      */
-    public Method(String signature, String classPath, String version, String content, Metric metric) {
-        this.signature = signature;
-        this.classPath = classPath;
-        this.content = content;
-        this.version = version;
-        this.metric = metric;
+    public Method(int signatureId, int classPathId, int versionId, ObjectId blobId, int contentBegin, int contentEnd, Metric metric) {
+        this.signatureId = signatureId;
+        this.classPathId = classPathId;
+        this.versionId = versionId;
+        this.blobId = blobId;
+        this.contentBegin = contentBegin;
+        this.contentEnd = contentEnd;
+        this.metricStore = metric.getStore();
+        this.metricRow = metric.getRow();
         this.Buggy = false; // Default value for Buggy
     }
 
     /**
      * Constructs a new Method object with all required information, without metric.
      *
-     * @param signature The method signature (name and parameters)
-     * @param classPath The path of the class containing this method
-     * @param content   The content of the method (e.g., source code)
-     * @param version   The version of the method al quale appartiene il metodo
+     * @param signatureId The id of the method signature (name and parameters)
+     * @param classPathId The id of the path of the class containing this method
+     * @param versionId   The id of the version of the method al quale appartiene il metodo
      */
-    public Method(String signature, String classPath, String version, String content) {
-        this.signature = signature;
-        this.classPath = classPath;
-        this.version = version;
-        this.content = content;
-        this.metric = new Metric(); // Initialize with default metrics
+    public Method(int signatureId, int classPathId, int versionId) {
+        this.signatureId = signatureId;
+        this.classPathId = classPathId;
+        this.versionId = versionId;
+        this.blobId = null;
+        this.contentBegin = 0;
+        this.contentEnd = 0;
+        Metric metric = new Metric(); // Initialize with default metrics
+        this.metricStore = metric.getStore();
+        this.metricRow = metric.getRow();
         this.Buggy = false; // Default value for Buggy
     }
 
     /**
-     * Returns the method signature.
+     * Creates a copy of this method for another version of the project.
+     * The copy shares the metrics of this method until it is stored in its version; the buggy flag is reset.
+     *
+     * @param versionId The id of the version the copy belongs to
+     * @return A new Method object with the same signature, class path, source range and metrics
+     */
+    public Method copyForVersion(int versionId) {
+        return new Method(signatureId, classPathId, versionId, blobId, contentBegin, contentEnd, getMetric());
+    }
+
+    /**
+     * Returns the id of the method signature.
      *
-     * @return The method signature
+     * @return The signature id
      */
-    public String getSignature() {
-        return signature;
+    public int getSignatureId() {
+        return signatureId;
     }
 
     /**
-     * Returns the name of the class containing this method.
+     * Returns the id of the path of the class containing this method.
      *
-     * @return The class name
+     * @return The class path id
      */
-    public String getClassPath() {
-        return classPath;
+    public int getClassPathId() {
+        return classPathId;
     }
 
 
     /**
-     * Returns the content of the method.
+     * Returns the blob of the file containing the method.
+     *
+     * @return The ObjectId of the blob, or null if the source of the method is unknown
+     */
+    public ObjectId getBlobId() {
+        return blobId;
+    }
+
+    /**
+     * Returns the byte offset of the body in the blob.
      *
-     * @return The content of the method
+     * @return The offset of the opening brace of the body
      */
-    public String getContent() {
-        return content;
+    public int getContentBegin() {
+        return contentBegin;
     }
 
     /**
-     * Returns the version of the method, if applicable.
+     * Returns the byte offset after the end of the body in the blob.
      *
-     * @return The version of the method
+     * @return The offset after the closing brace of the body
      */
-    public String getVersion() {
-        return version;
+    public int getContentEnd() {
+        return contentEnd;
+    }
+
+    /**
+     * Returns the id of the version of the method.
+     *
+     * @return The version id
+     */
+    public int getVersionId() {
+        return versionId;
     }
 
     /**
@@ -91,7 +139,18 @@ public class Method {
      * @return The Metric object containing all metrics for this method
      */
     public Metric getMetric() {
-        return metric;
+        return new Metric(metricStore, metricRow);
+    }
+
+    /**
+     * Copies the metrics of this method into a new row of a store, which from now on holds them.
+     *
+     * @param store The store of the metrics of the version the method belongs to
+     */
+    public void moveMetricsTo(MetricStore store) {
+        Metric metric = store.add(getMetric());
+        this.metricStore = store;
+        this.metricRow = metric.getRow();
     }
 
     /**
@@ -0,0 +1,77 @@
+package it.isw2.flaviosimonelli.model.method;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index from the signature id of a method to the rows of the methods with that signature in a list,
+ * built once when the methods of a version are set. The index is stored as three primitive arrays:
+ * the distinct signature ids in ascending order, the offset of their rows, and the rows grouped by signature.
+ * A lookup is a binary search on the signature ids. The index is immutable.
+ */
+public class MethodIndex {
+    private static final int[] NO_ROWS = new int[0];
+
+    private final int[] signatureIds; // Id delle firme distinte, in ordine crescente
+    private final int[] offsets;      // Per ogni firma, la posizione della sua prima riga in rows; un elemento in più in coda
+    private final int[] rows;         // Righe dei metodi raggruppate per firma, in ordine crescente dentro ogni gruppo
+
+    private MethodIndex(int[] signatureIds, int[] offsets, int[] rows) {
+        this.signatureIds = signatureIds;
+        this.offsets = offsets;
+        this.rows = rows;
+    }
+
+    /**
+     * Builds the index of a list of methods.
+     *
+     * @param methods The methods, whose positions in the list are the indexed rows
+     * @return The index of the methods
+     */
+    public static MethodIndex build(List<Method> methods) {
+        int size = methods.size();
+        // Coppie (firma, riga) codificate in un long, ordinate per firma e poi per riga
+        long[] pairs = new long[size];
+        for (int row = 0; row < size; row++) {
+            pairs[row] = ((long) methods.get(row).getSignatureId() << 32) | row;
+        }
+        Arrays.sort(pairs);
+
+        int[] rows = new int[size];
+        int[] signatureIds = new int[size];
+        int[] offsets = new int[size + 1];
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            int signatureId = (int) (pairs[i] >>> 32);
+            rows[i] = (int) pairs[i];
+            if (distinct == 0 || signatureIds[distinct - 1] != signatureId) {
+                signatureIds[distinct] = signatureId;
+                offsets[distinct] = i;
+                distinct++;
+            }
+        }
+        offsets[distinct] = size;
+        return new MethodIndex(Arrays.copyOf(signatureIds, distinct), Arrays.copyOf(offsets, distinct + 1), rows);
+    }
+
+    /**
+     * Returns the rows of the methods with a signature.
+     *
+     * @param signatureId The id of the signature
+     * @return The rows of the methods, in ascending order; empty if no method has the signature
+     */
+    public int[] rowsOf(int signatureId) {
+        int position = Arrays.binarySearch(signatureIds, signatureId);
+        if (position < 0) return NO_ROWS;
+        return Arrays.copyOfRange(rows, offsets[position], offsets[position + 1]);
+    }
+
+    /**
+     * Returns the number of distinct signatures.
+     *
+     * @return The number of signatures indexed
+     */
+    public int size() {
+        return signatureIds.length;
+    }
+}
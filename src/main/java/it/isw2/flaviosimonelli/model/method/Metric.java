@@ -4,48 +4,30 @@ package it.isw2.flaviosimonelli.model.method;
  * Represents a collection of metrics associated with a method.
  * This class contains various code quality, complexity, and change history metrics
  * that can be used for analysis and evaluation of method quality and evolution.
+ * <p>
+ * A Metric is a view on a row of a {@link MetricStore}: the values are kept in the columns of the store,
+ * so the metrics of all the methods of a release share a few primitive arrays. A Metric created with
+ * a constructor owns a private single-row store.
+ * <ul>
+ *     <li>Size and complexity: loc, statementsCount, cyclomaticComplexity, cognitiveComplexity,
+ *     nestingDepth, numberOfBranches, parameterCount</li>
+ *     <li>Halstead: halsteadVolume, halsteadDifficulty, halsteadEffort</li>
+ *     <li>Quality: numberOfCodeSmells, duplication</li>
+ *     <li>Change history: methodHistories, authors, stmtAdded, maxStmtAdded, avgStmtAdded, stmtDeleted,
+ *     maxStmtDeleted, avgStmtDeleted, churn, maxChurn, avgChurn, cond, elseAdded, elseDeleted</li>
+ * </ul>
  */
 public class Metric {
 
-    // --- Size and Complexity Metrics ---
-    private int loc;                     // Lines of code
-    private int statementsCount;         // Number of statements
-    private int cyclomaticComplexity;    // McCabe's cyclomatic complexity
-    private int cognitiveComplexity;     // Cognitive complexity
-    private int nestingDepth;            // Maximum nesting depth
-    private int numberOfBranches;        // Number of branch points
-    private int parameterCount;          // Number of parameters
-
-    // --- Halstead Metrics ---
-    private double halsteadVolume;       // Halstead volume
-    private double halsteadDifficulty;   // Halstead difficulty
-    private double halsteadEffort;       // Halstead effort
-
-    // --- Quality Metrics ---
-    private int numberOfCodeSmells;      // Number of code smells
-    private int duplication;             // Duplication metric
-
-    // --- Change History Metrics ---
-    private int methodHistories;         // Number of change histories
-    private int authors;                 // Number of distinct authors
-    private int stmtAdded;               // Total statements added
-    private int maxStmtAdded;            // Maximum statements added in one change
-    private double avgStmtAdded;         // Average statements added per change
-    private int stmtDeleted;             // Total statements deleted
-    private int maxStmtDeleted;          // Maximum statements deleted in one change
-    private double avgStmtDeleted;       // Average statements deleted per change
-    private int churn;                   // Code churn (added + deleted)
-    private int maxChurn;                // Maximum churn in one change
-    private double avgChurn;             // Average churn per change
-    private int cond;                    // Conditional changes
-    private int elseAdded;               // Else branches added
-    private int elseDeleted;             // Else branches deleted
+    private final MetricStore store; // The store holding the values
+    private final int row;           // The row of the metrics in the store
 
     /**
      * Creates a new Metric object with default values (all zeros).
      */
     public Metric() {
-        // Initialize with default values
+        this.store = new MetricStore(1);
+        this.row = store.addRow().row;
     }
 
     /**
@@ -55,217 +37,247 @@ public class Metric {
      * @param cognitiveComplexity The cognitive complexity
      */
     public Metric(int cyclomaticComplexity, int cognitiveComplexity) {
-        this.cyclomaticComplexity = cyclomaticComplexity;
-        this.cognitiveComplexity = cognitiveComplexity;
+        this();
+        setCyclomaticComplexity(cyclomaticComplexity);
+        setCognitiveComplexity(cognitiveComplexity);
+    }
+
+    /**
+     * Creates a copy of another Metric object.
+     *
+     * @param other The metrics to copy
+     */
+    public Metric(Metric other) {
+        this.store = new MetricStore(1);
+        this.row = store.add(other).row;
+    }
+
+    // Vista su una riga esistente di uno store
+    Metric(MetricStore store, int row) {
+        this.store = store;
+        this.row = row;
+    }
+
+    /**
+     * Returns the store holding the values of this metric.
+     *
+     * @return The store
+     */
+    public MetricStore getStore() {
+        return store;
+    }
+
+    int getRow() {
+        return row;
     }
 
     // --- Getters and Setters ---
 
     public int getLoc() {
-        return loc;
+        return store.getInt(MetricStore.LOC, row);
     }
 
     public void setLoc(int loc) {
-        this.loc = loc;
+        store.setInt(MetricStore.LOC, row, loc);
     }
 
     public int getStatementsCount() {
-        return statementsCount;
+        return store.getInt(MetricStore.STATEMENTS_COUNT, row);
     }
 
     public void setStatementsCount(int statementsCount) {
-        this.statementsCount = statementsCount;
+        store.setInt(MetricStore.STATEMENTS_COUNT, row, statementsCount);
     }
 
     public int getCyclomaticComplexity() {
-        return cyclomaticComplexity;
+        return store.getInt(MetricStore.CYCLOMATIC_COMPLEXITY, row);
     }
 
     public void setCyclomaticComplexity(int cyclomaticComplexity) {
-        this.cyclomaticComplexity = cyclomaticComplexity;
+        store.setInt(MetricStore.CYCLOMATIC_COMPLEXITY, row, cyclomaticComplexity);
     }
 
     public int getCognitiveComplexity() {
-        return cognitiveComplexity;
+        return store.getInt(MetricStore.COGNITIVE_COMPLEXITY, row);
     }
 
     public void setCognitiveComplexity(int cognitiveComplexity) {
-        this.cognitiveComplexity = cognitiveComplexity;
+        store.setInt(MetricStore.COGNITIVE_COMPLEXITY, row, cognitiveComplexity);
     }
 
     public double getHalsteadVolume() {
-        return halsteadVolume;
+        return store.getDouble(MetricStore.HALSTEAD_VOLUME, row);
     }
 
     public void setHalsteadVolume(double halsteadVolume) {
-        this.halsteadVolume = halsteadVolume;
+        store.setDouble(MetricStore.HALSTEAD_VOLUME, row, halsteadVolume);
     }
 
     public double getHalsteadDifficulty() {
-        return halsteadDifficulty;
+        return store.getDouble(MetricStore.HALSTEAD_DIFFICULTY, row);
     }
 
     public void setHalsteadDifficulty(double halsteadDifficulty) {
-        this.halsteadDifficulty = halsteadDifficulty;
+        store.setDouble(MetricStore.HALSTEAD_DIFFICULTY, row, halsteadDifficulty);
     }
 
     public double getHalsteadEffort() {
-        return halsteadEffort;
+        return store.getDouble(MetricStore.HALSTEAD_EFFORT, row);
     }
 
     public void setHalsteadEffort(double halsteadEffort) {
-        this.halsteadEffort = halsteadEffort;
+        store.setDouble(MetricStore.HALSTEAD_EFFORT, row, halsteadEffort);
     }
 
     public int getNestingDepth() {
-        return nestingDepth;
+        return store.getInt(MetricStore.NESTING_DEPTH, row);
     }
 
     public void setNestingDepth(int nestingDepth) {
-        this.nestingDepth = nestingDepth;
+        store.setInt(MetricStore.NESTING_DEPTH, row, nestingDepth);
     }
 
     public int getNumberOfBranches() {
-        return numberOfBranches;
+        return store.getInt(MetricStore.NUMBER_OF_BRANCHES, row);
     }
 
     public void setNumberOfBranches(int numberOfBranches) {
-        this.numberOfBranches = numberOfBranches;
+        store.setInt(MetricStore.NUMBER_OF_BRANCHES, row, numberOfBranches);
     }
 
     public int getNumberOfCodeSmells() {
-        return numberOfCodeSmells;
+        return store.getInt(MetricStore.NUMBER_OF_CODE_SMELLS, row);
     }
 
     public void setNumberOfCodeSmells(int numberOfCodeSmells) {
-        this.numberOfCodeSmells = numberOfCodeSmells;
+        store.setInt(MetricStore.NUMBER_OF_CODE_SMELLS, row, numberOfCodeSmells);
     }
 
     public int getParameterCount() {
-        return parameterCount;
+        return store.getInt(MetricStore.PARAMETER_COUNT, row);
     }
 
     public void setParameterCount(int parameterCount) {
-        this.parameterCount = parameterCount;
+        store.setInt(MetricStore.PARAMETER_COUNT, row, parameterCount);
     }
 
     public int getDuplication() {
-        return duplication;
+        return store.getInt(MetricStore.DUPLICATION, row);
     }
 
     public void setDuplication(int duplication) {
-        this.duplication = duplication;
+        store.setInt(MetricStore.DUPLICATION, row, duplication);
     }
 
     public int getMethodHistories() {
-        return methodHistories;
+        return store.getInt(MetricStore.METHOD_HISTORIES, row);
     }
 
     public void setMethodHistories(int methodHistories) {
-        this.methodHistories = methodHistories;
+        store.setInt(MetricStore.METHOD_HISTORIES, row, methodHistories);
     }
 
     public int getAuthors() {
-        return authors;
+        return store.getInt(MetricStore.AUTHORS, row);
     }
 
     public void setAuthors(int authors) {
-        this.authors = authors;
+        store.setInt(MetricStore.AUTHORS, row, authors);
     }
 
     public int getStmtAdded() {
-        return stmtAdded;
+        return store.getInt(MetricStore.STMT_ADDED, row);
     }
 
     public void setStmtAdded(int stmtAdded) {
-        this.stmtAdded = stmtAdded;
+        store.setInt(MetricStore.STMT_ADDED, row, stmtAdded);
     }
 
     public int getMaxStmtAdded() {
-        return maxStmtAdded;
+        return store.getInt(MetricStore.MAX_STMT_ADDED, row);
     }
 
     public void setMaxStmtAdded(int maxStmtAdded) {
-        this.maxStmtAdded = maxStmtAdded;
+        store.setInt(MetricStore.MAX_STMT_ADDED, row, maxStmtAdded);
     }
 
     public double getAvgStmtAdded() {
-        return avgStmtAdded;
+        return store.getDouble(MetricStore.AVG_STMT_ADDED, row);
     }
 
     public void setAvgStmtAdded(double avgStmtAdded) {
-        this.avgStmtAdded = avgStmtAdded;
+        store.setDouble(MetricStore.AVG_STMT_ADDED, row, avgStmtAdded);
     }
 
     public int getStmtDeleted() {
-        return stmtDeleted;
+        return store.getInt(MetricStore.STMT_DELETED, row);
     }
 
     public void setStmtDeleted(int stmtDeleted) {
-        this.stmtDeleted = stmtDeleted;
+        store.setInt(MetricStore.STMT_DELETED, row, stmtDeleted);
     }
 
     public int getMaxStmtDeleted() {
-        return maxStmtDeleted;
+        return store.getInt(MetricStore.MAX_STMT_DELETED, row);
     }
 
     public void setMaxStmtDeleted(int maxStmtDeleted) {
-        this.maxStmtDeleted = maxStmtDeleted;
+        store.setInt(MetricStore.MAX_STMT_DELETED, row, maxStmtDeleted);
     }
 
     public double getAvgStmtDeleted() {
-        return avgStmtDeleted;
+        return store.getDouble(MetricStore.AVG_STMT_DELETED, row);
     }
 
     public void setAvgStmtDeleted(double avgStmtDeleted) {
-        this.avgStmtDeleted = avgStmtDeleted;
+        store.setDouble(MetricStore.AVG_STMT_DELETED, row, avgStmtDeleted);
     }
 
     public int getChurn() {
-        return churn;
+        return store.getInt(MetricStore.CHURN, row);
     }
 
     public void setChurn(int churn) {
-        this.churn = churn;
+        store.setInt(MetricStore.CHURN, row, churn);
     }
 
     public int getMaxChurn() {
-        return maxChurn;
+        return store.getInt(MetricStore.MAX_CHURN, row);
     }
 
     public void setMaxChurn(int maxChurn) {
-        this.maxChurn = maxChurn;
+        store.setInt(MetricStore.MAX_CHURN, row, maxChurn);
     }
 
     public double getAvgChurn() {
-        return avgChurn;
+        return store.getDouble(MetricStore.AVG_CHURN, row);
     }
 
     public void setAvgChurn(double avgChurn) {
-        this.avgChurn = avgChurn;
+        store.setDouble(MetricStore.AVG_CHURN, row, avgChurn);
     }
 
     public int getCond() {
-        return cond;
+        return store.getInt(MetricStore.COND, row);
     }
 
     public void setCond(int cond) {
-        this.cond = cond;
+        store.setInt(MetricStore.COND, row, cond);
     }
 
     public int getElseAdded() {
-        return elseAdded;
+        return store.getInt(MetricStore.ELSE_ADDED, row);
     }
 
     public void setElseAdded(int elseAdded) {
-        this.elseAdded = elseAdded;
+        store.setInt(MetricStore.ELSE_ADDED, row, elseAdded);
     }
 
     public int getElseDeleted() {
-        return elseDeleted;
+        return store.getInt(MetricStore.ELSE_DELETED, row);
     }
 
     public void setElseDeleted(int elseDeleted) {
-        this.elseDeleted = elseDeleted;
+        store.setInt(MetricStore.ELSE_DELETED, row, elseDeleted);
     }
 }
\ No newline at end of file
@@ -0,0 +1,229 @@
+package it.isw2.flaviosimonelli.model.method;
+
+import java.util.Arrays;
+
+/**
+ * Columnar storage of the metrics of a set of methods: one primitive array per metric,
+ * indexed by the row of the method. Rows are appended and never removed; the capacity grows as needed.
+ * The metrics of a row are read and written through a {@link Metric} view, so the storage layout
+ * stays hidden behind the usual getters and setters.
+ * Not thread-safe: a store is filled by a single thread and then only read.
+ */
+public class MetricStore {
+
+    // Colonne intere
+    static final int LOC = 0;
+    static final int STATEMENTS_COUNT = 1;
+    static final int CYCLOMATIC_COMPLEXITY = 2;
+    static final int COGNITIVE_COMPLEXITY = 3;
+    static final int NESTING_DEPTH = 4;
+    static final int NUMBER_OF_BRANCHES = 5;
+    static final int PARAMETER_COUNT = 6;
+    static final int NUMBER_OF_CODE_SMELLS = 7;
+    static final int DUPLICATION = 8;
+    static final int METHOD_HISTORIES = 9;
+    static final int AUTHORS = 10;
+    static final int STMT_ADDED = 11;
+    static final int MAX_STMT_ADDED = 12;
+    static final int STMT_DELETED = 13;
+    static final int MAX_STMT_DELETED = 14;
+    static final int CHURN = 15;
+    static final int MAX_CHURN = 16;
+    static final int COND = 17;
+    static final int ELSE_ADDED = 18;
+    static final int ELSE_DELETED = 19;
+    private static final int INT_COLUMNS = 20;
+
+    // Colonne decimali
+    static final int HALSTEAD_VOLUME = 0;
+    static final int HALSTEAD_DIFFICULTY = 1;
+    static final int HALSTEAD_EFFORT = 2;
+    static final int AVG_STMT_ADDED = 3;
+    static final int AVG_STMT_DELETED = 4;
+    static final int AVG_CHURN = 5;
+    private static final int DOUBLE_COLUMNS = 6;
+
+    /**
+     * Number of integer columns, as exported by {@link #intColumn(int)}.
+     */
+    public static final int INT_COLUMN_COUNT = INT_COLUMNS;
+
+    /**
+     * Number of decimal columns, as exported by {@link #doubleColumn(int)}.
+     */
+    public static final int DOUBLE_COLUMN_COUNT = DOUBLE_COLUMNS;
+
+    // Stima di header e campi dell'oggetto e dell'header di un array, per getFootprintBytes
+    private static final long OBJECT_OVERHEAD = 32;
+    private static final long ARRAY_HEADER = 16;
+
+    private final int[][] ints = new int[INT_COLUMNS][];
+    private final double[][] doubles = new double[DOUBLE_COLUMNS][];
+    private int size;
+
+    /**
+     * Creates an empty store.
+     *
+     * @param capacity The initial number of rows
+     */
+    public MetricStore(int capacity) {
+        int initial = Math.max(1, capacity);
+        for (int column = 0; column < INT_COLUMNS; column++) {
+            ints[column] = new int[initial];
+        }
+        for (int column = 0; column < DOUBLE_COLUMNS; column++) {
+            doubles[column] = new double[initial];
+        }
+    }
+
+    /**
+     * Appends a row with all the metrics set to zero.
+     *
+     * @return The view of the new row
+     */
+    public Metric addRow() {
+        ensureCapacity(size + 1);
+        return new Metric(this, size++);
+    }
+
+    /**
+     * Appends a row with the values of another metric, which may belong to a different store.
+     *
+     * @param values The metrics to copy
+     * @return The view of the new row
+     */
+    public Metric add(Metric values) {
+        ensureCapacity(size + 1);
+        int row = size++;
+        MetricStore source = values.getStore();
+        int sourceRow = values.getRow();
+        for (int column = 0; column < INT_COLUMNS; column++) {
+            ints[column][row] = source.ints[column][sourceRow];
+        }
+        for (int column = 0; column < DOUBLE_COLUMNS; column++) {
+            doubles[column][row] = source.doubles[column][sourceRow];
+        }
+        return new Metric(this, row);
+    }
+
+    /**
+     * Returns the view of a row.
+     *
+     * @param row The row, between 0 and size() - 1
+     * @return A view reading and writing the metrics of the row
+     */
+    public Metric get(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Riga " + row + " fuori dai limiti: " + size);
+        }
+        return new Metric(this, row);
+    }
+
+    /**
+     * Builds a store from columns previously exported with {@link #intColumn(int)} and {@link #doubleColumn(int)}.
+     *
+     * @param intColumns    The integer columns, all with the same length
+     * @param doubleColumns The decimal columns, with the same length as the integer ones
+     * @return A store holding the columns; the arrays are not copied
+     */
+    public static MetricStore fromColumns(int[][] intColumns, double[][] doubleColumns) {
+        if (intColumns.length != INT_COLUMNS || doubleColumns.length != DOUBLE_COLUMNS) {
+            throw new IllegalArgumentException("Numero di colonne non valido: " + intColumns.length + " + " + doubleColumns.length);
+        }
+        int rows = intColumns[0].length;
+        MetricStore store = new MetricStore(0);
+        for (int column = 0; column < INT_COLUMNS; column++) {
+            if (intColumns[column].length != rows) throw new IllegalArgumentException("Colonne di lunghezza diversa");
+            store.ints[column] = intColumns[column];
+        }
+        for (int column = 0; column < DOUBLE_COLUMNS; column++) {
+            if (doubleColumns[column].length != rows) throw new IllegalArgumentException("Colonne di lunghezza diversa");
+            store.doubles[column] = doubleColumns[column];
+        }
+        store.size = rows;
+        return store;
+    }
+
+    /**
+     * Returns a copy of an integer column, one value per row.
+     *
+     * @param column The column, between 0 and {@link #INT_COLUMN_COUNT} - 1
+     * @return The values of the column
+     */
+    public int[] intColumn(int column) {
+        return Arrays.copyOf(ints[column], size);
+    }
+
+    /**
+     * Returns a copy of a decimal column, one value per row.
+     *
+     * @param column The column, between 0 and {@link #DOUBLE_COLUMN_COUNT} - 1
+     * @return The values of the column
+     */
+    public double[] doubleColumn(int column) {
+        return Arrays.copyOf(doubles[column], size);
+    }
+
+    /**
+     * Shrinks the columns to the number of rows, releasing the capacity reserved for further rows.
+     * Used for stores that are complete, such as the metrics of a parsed file kept in the cache.
+     */
+    public void trimToSize() {
+        if (ints[0].length == size) return;
+        for (int column = 0; column < INT_COLUMNS; column++) {
+            ints[column] = Arrays.copyOf(ints[column], size);
+        }
+        for (int column = 0; column < DOUBLE_COLUMNS; column++) {
+            doubles[column] = Arrays.copyOf(doubles[column], size);
+        }
+    }
+
+    /**
+     * Estimates the heap occupied by the store: the object, the two arrays of columns and the columns
+     * at their current capacity.
+     *
+     * @return The estimated size in bytes
+     */
+    public long getFootprintBytes() {
+        long capacity = ints[0].length;
+        long columns = INT_COLUMNS * (ARRAY_HEADER + 4 * capacity) + DOUBLE_COLUMNS * (ARRAY_HEADER + 8 * capacity);
+        return OBJECT_OVERHEAD + 2 * ARRAY_HEADER + 4L * (INT_COLUMNS + DOUBLE_COLUMNS) + columns;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return The number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    int getInt(int column, int row) {
+        return ints[column][row];
+    }
+
+    void setInt(int column, int row, int value) {
+        ints[column][row] = value;
+    }
+
+    double getDouble(int column, int row) {
+        return doubles[column][row];
+    }
+
+    void setDouble(int column, int row, double value) {
+        doubles[column][row] = value;
+    }
+
+    private void ensureCapacity(int rows) {
+        int capacity = ints[0].length;
+        if (rows <= capacity) return;
+        int newCapacity = Math.max(rows, capacity + (capacity >> 1) + 1);
+        for (int column = 0; column < INT_COLUMNS; column++) {
+            ints[column] = Arrays.copyOf(ints[column], newCapacity);
+        }
+        for (int column = 0; column < DOUBLE_COLUMNS; column++) {
+            doubles[column] = Arrays.copyOf(doubles[column], newCapacity);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package it.isw2.flaviosimonelli.utils;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+import it.isw2.flaviosimonelli.model.Version;
+import it.isw2.flaviosimonelli.model.method.Method;
+import it.isw2.flaviosimonelli.model.method.Metric;
+import it.isw2.flaviosimonelli.utils.cache.SymbolTable;
+
+/**
+ * Methods dataset in the ARFF format read by Weka. The header declares the release as a nominal attribute
+ * over the releases of the project, class path and signature as string attributes, one numeric attribute per
+ * metric and the buggy label as nominal class attribute; the rows are then streamed as they are written.
+ * <p>
+ * In the sparse encoding a row lists only its non-zero metrics as index-value pairs, which shrinks the
+ * file and speeds up its loading, since most change-history metrics are zero. Release, class path,
+ * signature and label are always written, because an omitted sparse value means the first nominal value
+ * for a nominal attribute and is not meaningful for a string attribute.
+ */
+class ArffMethodSink implements MethodSink {
+    private static final int FIRST_METRIC = 3; // Indice del primo attributo delle metriche
+    private static final int CLASS_INDEX = FIRST_METRIC + MetricColumn.COLUMNS.length;
+
+    private final CsvWriter writer;
+    private final boolean sparse;
+
+    ArffMethodSink(WritableByteChannel channel, String relation, List<Version> versions, boolean sparse) throws IOException {
+        this.writer = new CsvWriter(channel);
+        this.sparse = sparse;
+        writer.header(buildHeader(relation, versions));
+    }
+
+    @Override
+    public void writeVersion(Version version, SymbolTable symbols) throws IOException {
+        List<Method> methods = version.getMethods();
+        if (methods == null) return;
+
+        for (Method method : methods) {
+            if (sparse) writer.raw('{');
+            string(0, version.getName());
+            string(1, symbols.classPaths().get(method.getClassPathId()));
+            string(2, symbols.signatures().get(method.getSignatureId()));
+
+            // Metriche nello stesso ordine delle colonne del CSV
+            Metric metric = method.getMetric();
+            for (int i = 0; i < MetricColumn.COLUMNS.length; i++) {
+                MetricColumn column = MetricColumn.COLUMNS[i];
+                if (column.isDecimal()) {
+                    metric(FIRST_METRIC + i, column.decimalValue(metric));
+                } else {
+                    metric(FIRST_METRIC + i, column.intValue(metric));
+                }
+            }
+
+            // Attributo di classe
+            if (sparse) writer.index(CLASS_INDEX);
+            writer.bool(method.isBuggy());
+            if (sparse) writer.raw('}');
+            writer.endRow();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    // Scrive un attributo stringa o nominale, presente anche nelle righe sparse
+    private void string(int index, String value) throws IOException {
+        if (sparse) writer.index(index);
+        writer.singleQuoted(value);
+    }
+
+    // Scrive una metrica intera; come nel CSV i valori non positivi valgono zero, omesso nelle righe sparse
+    private void metric(int index, int value) throws IOException {
+        if (value > 0) {
+            if (sparse) writer.index(index);
+            writer.integer(value);
+        } else if (!sparse) {
+            writer.integer(0);
+        }
+    }
+
+    // Scrive una metrica decimale con due cifre, come nel CSV
+    private void metric(int index, double value) throws IOException {
+        if (value > 0) {
+            if (sparse) writer.index(index);
+            writer.positiveDecimal(value);
+        } else if (!sparse) {
+            writer.integer(0);
+        }
+    }
+
+    // Intestazione ARFF: relazione, attributi e inizio della sezione dei dati
+    private static String buildHeader(String relation, List<Version> versions) {
+        StringBuilder header = new StringBuilder();
+        header.append("@relation ").append(quote(relation)).append("\n\n");
+
+        header.append("@attribute Version {");
+        for (int i = 0; i < versions.size(); i++) {
+            if (i > 0) header.append(',');
+            header.append(quote(versions.get(i).getName()));
+        }
+        header.append("}\n");
+        header.append("@attribute ClassPath string\n");
+        header.append("@attribute MethodName string\n");
+        for (MetricColumn column : MetricColumn.COLUMNS) {
+            header.append("@attribute ").append(column.header()).append(" numeric\n");
+        }
+        header.append("@attribute buggy {false,true}\n\n");
+        header.append("@data");
+        return header.toString();
+    }
+
+    // Racchiude un nome fra apici, con l'escape usato anche per i campi stringa delle righe
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('\'');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\'' || c == '\\') quoted.append('\\');
+            quoted.append(c);
+        }
+        return quoted.append('\'').toString();
+    }
+}
@@ -0,0 +1,31 @@
+package it.isw2.flaviosimonelli.utils.Comparator;
+
+import it.isw2.flaviosimonelli.model.Ticket;
+
+import java.util.Comparator;
+
+/**
+ * Orders the tickets by fix version, as the Jira search does, and then by ticket number,
+ * so the order does not depend on how the tickets were downloaded. Tickets without fix version come last.
+ */
+public class TicketComparator implements Comparator<Ticket> {
+
+    @Override
+    public int compare(Ticket t1, Ticket t2) {
+        int v1 = t1.getFixVersion() != null ? t1.getFixVersion().getOrdinal() : Integer.MAX_VALUE;
+        int v2 = t2.getFixVersion() != null ? t2.getFixVersion().getOrdinal() : Integer.MAX_VALUE;
+        if (v1 != v2) return Integer.compare(v1, v2);
+        int byNumber = Long.compare(number(t1.getId()), number(t2.getId()));
+        return byNumber != 0 ? byNumber : t1.getId().compareTo(t2.getId());
+    }
+
+    // Numero della chiave Jira (PROGETTO-123), o -1 se la chiave non termina con un numero
+    private static long number(String key) {
+        int dash = key.lastIndexOf('-');
+        try {
+            return Long.parseLong(key.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -1,59 +1,67 @@
 package it.isw2.flaviosimonelli.utils;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 
 import it.isw2.flaviosimonelli.model.method.Method;
 import it.isw2.flaviosimonelli.model.Project.Project;
 import it.isw2.flaviosimonelli.model.Version;
 import it.isw2.flaviosimonelli.model.Ticket;
+import it.isw2.flaviosimonelli.utils.bean.PipelineBean;
+import it.isw2.flaviosimonelli.utils.cache.SymbolTable;
 
 public class CsvExporter {
 
-    private static String escapeCsv(String field) {
-        if (field == null) return "";
-        String escaped = field.replace("\"", "\"\"");
-        return "\"" + escaped + "\"";
-    }
-
-    public static void writeVersionsToCsv(List<Version> versions, String filePath) {
+    /**
+     * Esporta le versioni in un file CSV
+     * @param versions versioni da esportare
+     * @param filePath percorso dove salvare il file CSV
+     * @throws IOException se il file non può essere scritto
+     */
+    public static void writeVersionsToCsv(List<Version> versions, String filePath) throws IOException {
         ensureParentDirectoryExists(filePath);
 
-        try (FileWriter writer = new FileWriter(filePath)) {
-            writer.append("name,released,commit\n");
+        try (CsvWriter writer = new CsvWriter(filePath)) {
+            writer.header("name,released,commit");
 
             for (Version version : versions) {
-                writer.append(escapeCsv(version.getName())).append(",")
-                        .append(Boolean.toString(version.isReleased())).append(",")
-                        .append(escapeCsv(version.getHashCommit() != null ? version.getHashCommit() : ""))
-                        .append("\n");
+                writer.quoted(version.getName())
+                        .bool(version.isReleased())
+                        .quoted(version.getHashCommit() != null ? version.getHashCommit() : "")
+                        .endRow();
             }
             System.out.println("CSV scritto con successo: " + filePath);
-        } catch (IOException e) {
-            e.printStackTrace();
         }
     }
 
-    public static void writeTicketsToCsv(List<Ticket> tickets, String filePath) {
+    /**
+     * Esporta i ticket in un file CSV, con le firme dei metodi buggy separate da ';'
+     * @param tickets ticket da esportare
+     * @param symbols tabella dei simboli da cui ricavare le firme dei metodi
+     * @param filePath percorso dove salvare il file CSV
+     * @throws IOException se il file non può essere scritto
+     */
+    public static void writeTicketsToCsv(List<Ticket> tickets, SymbolTable symbols, String filePath) throws IOException {
         ensureParentDirectoryExists(filePath);
 
-        try (FileWriter writer = new FileWriter(filePath)) {
-            writer.append("TicketID,CommitHash,OpenVerision,FixVersion,AffectedVersion,NameMethodsBuggy\n");
+        try (CsvWriter writer = new CsvWriter(filePath)) {
+            writer.header("TicketID,CommitHash,OpenVerision,FixVersion,AffectedVersion,NameMethodsBuggy");
 
             for (Ticket ticket : tickets) {
-                writer.append(escapeCsv(ticket.getId())).append(",")
-                        .append(escapeCsv(ticket.getCommitHash() != null ? ticket.getCommitHash() : "")).append(",")
-                        .append(escapeCsv(ticket.getOpenVersion() != null ? ticket.getOpenVersion().getName() : "")).append(",")
-                        .append(escapeCsv(ticket.getFixVersion() != null ? ticket.getFixVersion().getName() : "")).append(",")
-                        .append(escapeCsv(ticket.getInjectedVersion() != null ? ticket.getInjectedVersion().getName() : "")).append(",")
-                        .append(escapeCsv(ticket.getNameMethodsBuggy() != null ? String.join(";", ticket.getNameMethodsBuggy()) : ""))
-                        .append("\n");
+                writer.quoted(ticket.getId())
+                        .quoted(ticket.getCommitHash() != null ? ticket.getCommitHash() : "")
+                        .quoted(ticket.getOpenVersion() != null ? ticket.getOpenVersion().getName() : "")
+                        .quoted(ticket.getFixVersion() != null ? ticket.getFixVersion().getName() : "")
+                        .quoted(ticket.getInjectedVersion() != null ? ticket.getInjectedVersion().getName() : "")
+                        .quoted(joinSignatures(ticket.getNameMethodsBuggy(), symbols))
+                        .endRow();
             }
             System.out.println("CSV scritto con successo: " + filePath);
-        } catch (IOException e) {
-            e.printStackTrace();
         }
     }
 
@@ -61,40 +69,81 @@ public class CsvExporter {
      * Esporta tutti i metodi di ogni versione del progetto in un file CSV, incluse le metriche non nulle
      * @param project progetto contenente le versioni e i metodi
      * @param filePath percorso dove salvare il file CSV
+     * @throws IOException se il file non può essere scritto
      */
-    public static void writeMethodsToCsv(Project project, String filePath) {
-        ensureParentDirectoryExists(filePath);
-
-        try (FileWriter writer = new FileWriter(filePath)) {
-            // Intestazione con le colonne delle metriche
-            writer.append("Version,ClassPath,MethodName,LOC,StatementsCount,CyclomaticComplexity,buggy\n");
+    public static void writeMethodsToCsv(Project project, String filePath) throws IOException {
+        writeMethods(project, filePath, PipelineBean.OutputFormat.CSV);
+    }
 
-            List<Version> versions = project.getVersions();
-            for (Version version : versions) {
+    /**
+     * Esporta tutti i metodi di ogni versione del progetto nel formato richiesto
+     * @param project progetto contenente le versioni e i metodi
+     * @param filePath percorso dove salvare il file
+     * @param format formato del file: CSV, ARFF o ARFF sparso
+     * @throws IOException se il file non può essere scritto
+     */
+    public static void writeMethods(Project project, String filePath, PipelineBean.OutputFormat format) throws IOException {
+        try (MethodSink sink = openMethodsSink(project, filePath, format)) {
+            SymbolTable symbols = project.getSymbols();
+            for (Version version : project.getVersions()) {
                 List<Method> methods = version.getMethods();
                 System.out.println("Numero di metodi per la versione " + version.getName() + ": " + (methods != null ? methods.size() : 0));
-
-                if (methods != null) {
-                    for (Method method : methods) {
-                        writer.append(escapeCsv(version.getName())).append(",")
-                                .append(escapeCsv(method.getClassPath())).append(",")
-                                .append(escapeCsv(method.getSignature())).append(",");
-
-                        // Aggiungi le metriche, lasciando il campo vuoto se la metrica è zero
-                        writer.append(method.getMetric().getLoc() > 0 ? String.valueOf(method.getMetric().getLoc()) : "").append(",")
-                                .append(method.getMetric().getStatementsCount() > 0 ? String.valueOf(method.getMetric().getStatementsCount()) : "").append(",")
-                                .append(method.getMetric().getCyclomaticComplexity() > 0 ? String.valueOf(method.getMetric().getCyclomaticComplexity()) : "").append(",");
-
-                        // Aggiungi il flag buggy, se il metodo è buggy
-                        writer.append(method.isBuggy() ? "true" : "false").append("\n");
-                    }
-                }
+                sink.writeVersion(version, symbols);
             }
 
-            System.out.println("CSV esportato con successo: " + filePath);
+            System.out.println("File dei metodi esportato con successo: " + filePath);
+        }
+    }
+
+    /**
+     * Apre il file dei metodi e ne scrive l'intestazione; le versioni vengono aggiunte una alla volta dal chiamante.
+     * Se il percorso termina con .gz il file viene compresso in gzip, con .bgz in BGZF, su tutti i core disponibili
+     * @param project progetto di cui esportare i metodi, da cui vengono presi il nome e le versioni per l'intestazione ARFF
+     * @param filePath percorso dove salvare il file
+     * @param format formato del file: CSV, ARFF o ARFF sparso
+     * @return la destinazione dei metodi, da chiudere al termine
+     * @throws IOException se il file non può essere creato
+     */
+    public static MethodSink openMethodsSink(Project project, String filePath, PipelineBean.OutputFormat format) throws IOException {
+        WritableByteChannel channel = openOutput(filePath);
+        try {
+            switch (format) {
+                case ARFF:
+                    return new ArffMethodSink(channel, project.getName(), project.getVersions(), false);
+                case SPARSE_ARFF:
+                    return new ArffMethodSink(channel, project.getName(), project.getVersions(), true);
+                case CSV:
+                default:
+                    return new CsvMethodSink(channel);
+            }
         } catch (IOException e) {
-            System.err.println("Errore durante l'esportazione dei metodi: " + e.getMessage());
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Apre il file in scrittura, con la compressione indicata dall'estensione
+    private static WritableByteChannel openOutput(String filePath) throws IOException {
+        ensureParentDirectoryExists(filePath);
+        FileChannel file = FileChannel.open(Path.of(filePath),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        PipelineBean.OutputCompression compression = PipelineBean.OutputCompression.fromPath(filePath);
+        if (compression == PipelineBean.OutputCompression.NONE) {
+            return file;
+        }
+        return new ParallelGzipChannel(file, compression == PipelineBean.OutputCompression.BGZF,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    // Ricompone le firme a partire dai loro id, nell'ordine in cui sono state trovate
+    private static String joinSignatures(int[] signatureIds, SymbolTable symbols) {
+        if (signatureIds == null) return "";
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < signatureIds.length; i++) {
+            if (i > 0) joined.append(';');
+            joined.append(symbols.signatures().get(signatureIds[i]));
         }
+        return joined.toString();
     }
 
     // 🔒 Ensures that the directory for the file path exists
@@ -0,0 +1,65 @@
+package it.isw2.flaviosimonelli.utils;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+import it.isw2.flaviosimonelli.model.Version;
+import it.isw2.flaviosimonelli.model.method.Method;
+import it.isw2.flaviosimonelli.model.method.Metric;
+import it.isw2.flaviosimonelli.utils.cache.SymbolTable;
+
+/**
+ * Methods dataset in CSV format: one row per method of each release, with the metrics
+ * left empty when zero and the buggy label as last column.
+ */
+class CsvMethodSink implements MethodSink {
+    private static final String HEADER = buildHeader();
+
+    private final CsvWriter writer;
+
+    CsvMethodSink(WritableByteChannel channel) throws IOException {
+        this.writer = new CsvWriter(channel);
+        // Intestazione con le colonne delle metriche
+        writer.header(HEADER);
+    }
+
+    @Override
+    public void writeVersion(Version version, SymbolTable symbols) throws IOException {
+        List<Method> methods = version.getMethods();
+        if (methods == null) return;
+
+        for (Method method : methods) {
+            writer.quoted(version.getName())
+                    .quoted(symbols.classPaths().get(method.getClassPathId()))
+                    .quoted(symbols.signatures().get(method.getSignatureId()));
+
+            // Aggiungi le metriche, lasciando il campo vuoto se la metrica è zero
+            Metric metric = method.getMetric();
+            for (MetricColumn column : MetricColumn.COLUMNS) {
+                if (column.isDecimal()) {
+                    writer.positiveDecimal(column.decimalValue(metric));
+                } else {
+                    writer.positiveInt(column.intValue(metric));
+                }
+            }
+
+            // Aggiungi il flag buggy, se il metodo è buggy
+            writer.bool(method.isBuggy()).endRow();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    // Intestazione: release, class path, firma, le colonne delle metriche e l'etichetta
+    private static String buildHeader() {
+        StringBuilder header = new StringBuilder("Version,ClassPath,MethodName");
+        for (MetricColumn column : MetricColumn.COLUMNS) {
+            header.append(',').append(column.header());
+        }
+        return header.append(",buggy").toString();
+    }
+}
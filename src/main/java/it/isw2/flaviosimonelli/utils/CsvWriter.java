@@ -0,0 +1,344 @@
+package it.isw2.flaviosimonelli.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Buffered writer of CSV files in UTF-8. Fields are encoded straight into a reused byte buffer,
+ * which is flushed on a channel when full, so writing a row allocates no intermediate String.
+ * Separators are added automatically between the fields of a row.
+ * <p>
+ * The formats are those of the files written so far: strings are always quoted with the inner quotes
+ * doubled, integer metrics are written only when positive and decimal metrics only when positive,
+ * with two decimals and the dot as separator, exactly as {@code String.format(Locale.ROOT, "%.2f", value)}.
+ * The data section of an ARFF file is comma-separated as well, so the writer also provides ARFF strings
+ * and the indexed values of sparse rows.
+ * Not thread-safe.
+ */
+public class CsvWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Byte massimi per carattere: 3 in UTF-8 (4 per una coppia di surrogati, cioè 2 caratteri), 2 per un carattere con escape
+    private static final int MAX_CHAR_BYTES = 3;
+    // Limite oltre il quale il valore scalato di un decimale non ha più abbastanza precisione per l'arrotondamento veloce
+    private static final double MAX_FAST_SCALED = 1e14;
+
+    // Modalità di escape delle stringhe
+    private static final int ESCAPE_NONE = 0;
+    private static final int ESCAPE_CSV = 1;  // virgolette raddoppiate
+    private static final int ESCAPE_ARFF = 2; // backslash davanti ad apici, backslash e caratteri di controllo
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] bytes = buffer.array();
+    private final byte[] digits = new byte[20];
+    private int position;
+    private boolean rowStarted;
+    private boolean indexed; // il campo successivo è il valore di un indice di una riga sparsa
+
+    /**
+     * Opens a writer on a file, truncating it if it exists.
+     *
+     * @param filePath The path of the file
+     * @throws IOException if the file cannot be opened
+     */
+    public CsvWriter(String filePath) throws IOException {
+        this(FileChannel.open(Path.of(filePath),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * Creates a writer on a channel, for instance a compressing one.
+     *
+     * @param channel The channel receiving the encoded bytes; closed when the writer is closed
+     */
+    public CsvWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Writes a header line as is, followed by the line terminator.
+     *
+     * @param header The comma-separated column names
+     * @throws IOException in case of write errors
+     */
+    public void header(String header) throws IOException {
+        writeChars(header, ESCAPE_NONE);
+        endLine();
+    }
+
+    /**
+     * Writes a quoted string field; null is written as an empty field.
+     *
+     * @param value The string
+     * @return This writer
+     * @throws IOException in case of write errors
+     */
+    public CsvWriter quoted(String value) throws IOException {
+        separator();
+        if (value == null) return this;
+        ensure(1);
+        bytes[position++] = '"';
+        writeChars(value, ESCAPE_CSV);
+        ensure(1);
+        bytes[position++] = '"';
+        return this;
+    }
+
+    /**
+     * Writes an ARFF string field: quoted with single quotes, with backslash escapes for quotes,
+     * backslashes and line breaks. Null is written as the ARFF missing value.
+     *
+     * @param value The string
+     * @return This writer
+     * @throws IOException in case of write errors
+     */
+    public CsvWriter singleQuoted(String value) throws IOException {
+        separator();
+        if (value == null) {
+            ensure(1);
+            bytes[position++] = '?';
+            return this;
+        }
+        ensure(1);
+        bytes[position++] = '\'';
+        writeChars(value, ESCAPE_ARFF);
+        ensure(1);
+        bytes[position++] = '\'';
+        return this;
+    }
+
+    /**
+     * Writes an integer field, whatever its sign.
+     *
+     * @param value The integer
+     * @return This writer
+     * @throws IOException in case of write errors
+     */
+    public CsvWriter integer(int value) throws IOException {
+        separator();
+        if (value < 0) {
+            ensure(1);
+            bytes[position++] = '-';
+        }
+        writeDigits(Math.abs((long) value));
+        return this;
+    }
+
+    /**
+     * Starts the entry of a sparse row: writes the index followed by a space, so that the next field
+     * is written as its value without separator.
+     *
+     * @param index The index of the column
+     * @return This writer
+     * @throws IOException in case of write errors
+     */
+    public CsvWriter index(int index) throws IOException {
+        separator();
+        writeDigits(index);
+        ensure(1);
+        bytes[position++] = ' ';
+        indexed = true;
+        return this;
+    }
+
+    /**
+     * Writes a character as is, without separator; used for the braces around a sparse row.
+     * The character after an opening brace starts the row again, so it is not preceded by a separator.
+     *
+     * @param c The ASCII character
+     * @return This writer
+     * @throws IOException in case of write errors
+     */
+    public CsvWriter raw(char c) throws IOException {
+        ensure(1);
+        bytes[position++] = (byte) c;
+        if (c == '{') rowStarted = false;
+        return this;
+    }
+
+    /**
+     * Writes a boolean field as true or false.
+     *
+     * @param value The boolean
+     * @return This writer
+     * @throws IOException in case of write errors
+     */
+    public CsvWriter bool(boolean value) throws IOException {
+        separator();
+        writeChars(value ? "true" : "false", ESCAPE_NONE);
+        return this;
+    }
+
+    /**
+     * Writes an integer field, left empty if the value is not positive.
+     *
+     * @param value The integer
+     * @return This writer
+     * @throws IOException in case of write errors
+     */
+    public CsvWriter positiveInt(int value) throws IOException {
+        separator();
+        if (value > 0) writeDigits(value);
+        return this;
+    }
+
+    /**
+     * Writes a decimal field with two decimals, left empty if the value is not positive.
+     *
+     * @param value The decimal
+     * @return This writer
+     * @throws IOException in case of write errors
+     */
+    public CsvWriter positiveDecimal(double value) throws IOException {
+        separator();
+        if (!(value > 0)) return this;
+
+        // Formatter arrotonda half-up le cifre decimali del double, che distano dal valore binario meno di mezzo ulp:
+        // scalate per 100 distano dal prodotto in virgola mobile meno di due ulp del prodotto. Lontano da un pareggio
+        // l'arrotondamento del prodotto dà quindi lo stesso risultato. Un pareggio esatto (come 0.125) ha cifre esatte
+        // e si arrotonda per eccesso; vicino a un pareggio si usa Formatter
+        double scaled = value * 100;
+        double floor = Math.floor(scaled);
+        double fraction = scaled - floor;
+        boolean exactTie = fraction == 0.5 && Math.fma(value, 100, -scaled) == 0;
+        if (scaled >= MAX_FAST_SCALED || (!exactTie && Math.abs(fraction - 0.5) <= 4 * Math.ulp(scaled))) {
+            writeChars(String.format(Locale.ROOT, "%.2f", value), ESCAPE_NONE);
+            return this;
+        }
+
+        long cents = (long) floor + (fraction >= 0.5 ? 1 : 0);
+        writeDigits(cents / 100);
+        int decimals = (int) (cents % 100);
+        ensure(3);
+        bytes[position++] = '.';
+        bytes[position++] = (byte) ('0' + decimals / 10);
+        bytes[position++] = (byte) ('0' + decimals % 10);
+        return this;
+    }
+
+    /**
+     * Terminates the current row.
+     *
+     * @throws IOException in case of write errors
+     */
+    public void endRow() throws IOException {
+        endLine();
+    }
+
+    /**
+     * Writes the buffered bytes and closes the file.
+     *
+     * @throws IOException in case of write errors
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void separator() throws IOException {
+        if (indexed) {
+            indexed = false;
+            return;
+        }
+        if (rowStarted) {
+            ensure(1);
+            bytes[position++] = ',';
+        }
+        rowStarted = true;
+    }
+
+    private void endLine() throws IOException {
+        ensure(1);
+        bytes[position++] = '\n';
+        rowStarted = false;
+    }
+
+    private void writeDigits(long value) throws IOException {
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        ensure(count);
+        while (count > 0) {
+            bytes[position++] = digits[--count];
+        }
+    }
+
+    // Codifica i caratteri in UTF-8 con l'escape richiesto. Ogni carattere occupa al massimo
+    // MAX_CHAR_BYTES byte, quindi lo spazio di una stringa che entra nel buffer viene riservato una sola volta
+    private void writeChars(String value, int escape) throws IOException {
+        int length = value.length();
+        boolean fits = (long) length * MAX_CHAR_BYTES <= BUFFER_SIZE;
+        if (fits) ensure(length * MAX_CHAR_BYTES);
+        for (int i = 0; i < length; i++) {
+            if (!fits) ensure(2 * MAX_CHAR_BYTES);
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (escape == ESCAPE_CSV && c == '"') {
+                    bytes[position++] = '"';
+                } else if (escape == ESCAPE_ARFF && (c == '\'' || c == '\\' || c < 0x20)) {
+                    bytes[position++] = '\\';
+                    c = arffEscape(c);
+                }
+                bytes[position++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[position++] = (byte) (0xC0 | (c >> 6));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Surrogato isolato: sostituito con '?' come fa l'encoder UTF-8 del JDK
+                bytes[position++] = '?';
+            } else {
+                bytes[position++] = (byte) (0xE0 | (c >> 12));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    // Carattere che segue il backslash nell'escape ARFF di un carattere
+    private static char arffEscape(char c) {
+        switch (c) {
+            case '\n':
+                return 'n';
+            case '\r':
+                return 'r';
+            case '\t':
+                return 't';
+            case '\'':
+            case '\\':
+                return c;
+            default:
+                // Gli altri caratteri di controllo non compaiono nelle firme: vengono scritti come uno spazio
+                return ' ';
+        }
+    }
+
+    private void ensure(int space) throws IOException {
+        if (position + space > BUFFER_SIZE) flush();
+    }
+
+    private void flush() throws IOException {
+        buffer.clear().limit(position);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        position = 0;
+    }
+}
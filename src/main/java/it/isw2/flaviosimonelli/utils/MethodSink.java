@@ -0,0 +1,24 @@
+package it.isw2.flaviosimonelli.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import it.isw2.flaviosimonelli.model.Version;
+import it.isw2.flaviosimonelli.utils.cache.SymbolTable;
+
+/**
+ * Destination of the methods dataset, written one release at a time in release order.
+ * The sink does not keep references to the methods of a release after writing them,
+ * so the caller can drop them before the next release is extracted.
+ */
+public interface MethodSink extends Closeable {
+
+    /**
+     * Writes the methods of a release, with their metrics and their buggy label.
+     *
+     * @param version The release, with its methods already extracted and labeled
+     * @param symbols The symbol table of the ids of the methods
+     * @throws IOException in case of write errors
+     */
+    void writeVersion(Version version, SymbolTable symbols) throws IOException;
+}
@@ -0,0 +1,79 @@
+package it.isw2.flaviosimonelli.utils;
+
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+import it.isw2.flaviosimonelli.model.method.Metric;
+
+/**
+ * Metric columns of the methods dataset, in the order they are written: every column pairs its name with the
+ * getter of its value, so the header and the rows of the CSV and ARFF formats cannot drift apart.
+ */
+enum MetricColumn {
+    LOC("LOC", Metric::getLoc),
+    STATEMENTS_COUNT("StatementsCount", Metric::getStatementsCount),
+    CYCLOMATIC_COMPLEXITY("CyclomaticComplexity", Metric::getCyclomaticComplexity),
+    COGNITIVE_COMPLEXITY("CognitiveComplexity", Metric::getCognitiveComplexity),
+    NESTING_DEPTH("NestingDepth", Metric::getNestingDepth),
+    NUMBER_OF_BRANCHES("NumberOfBranches", Metric::getNumberOfBranches),
+    PARAMETER_COUNT("ParameterCount", Metric::getParameterCount),
+    HALSTEAD_VOLUME("HalsteadVolume", Metric::getHalsteadVolume),
+    HALSTEAD_DIFFICULTY("HalsteadDifficulty", Metric::getHalsteadDifficulty),
+    HALSTEAD_EFFORT("HalsteadEffort", Metric::getHalsteadEffort),
+    // Metriche di storia delle modifiche nella release
+    METHOD_HISTORIES("MethodHistories", Metric::getMethodHistories),
+    AUTHORS("Authors", Metric::getAuthors),
+    STMT_ADDED("StmtAdded", Metric::getStmtAdded),
+    MAX_STMT_ADDED("MaxStmtAdded", Metric::getMaxStmtAdded),
+    AVG_STMT_ADDED("AvgStmtAdded", Metric::getAvgStmtAdded),
+    STMT_DELETED("StmtDeleted", Metric::getStmtDeleted),
+    MAX_STMT_DELETED("MaxStmtDeleted", Metric::getMaxStmtDeleted),
+    AVG_STMT_DELETED("AvgStmtDeleted", Metric::getAvgStmtDeleted),
+    CHURN("Churn", Metric::getChurn),
+    MAX_CHURN("MaxChurn", Metric::getMaxChurn),
+    AVG_CHURN("AvgChurn", Metric::getAvgChurn),
+    COND("Cond", Metric::getCond),
+    ELSE_ADDED("ElseAdded", Metric::getElseAdded),
+    ELSE_DELETED("ElseDeleted", Metric::getElseDeleted);
+
+    // Copia di values() condivisa, per non allocare un array a ogni riga
+    static final MetricColumn[] COLUMNS = values();
+
+    private final String header;
+    private final ToIntFunction<Metric> integer;
+    private final ToDoubleFunction<Metric> decimal;
+
+    MetricColumn(String header, ToIntFunction<Metric> integer) {
+        this.header = header;
+        this.integer = integer;
+        this.decimal = null;
+    }
+
+    MetricColumn(String header, ToDoubleFunction<Metric> decimal) {
+        this.header = header;
+        this.integer = null;
+        this.decimal = decimal;
+    }
+
+    /**
+     * Returns the name of the column in the CSV header and of the attribute in the ARFF header.
+     */
+    String header() {
+        return header;
+    }
+
+    /**
+     * Tells whether the metric is a decimal, written with two digits, rather than an integer.
+     */
+    boolean isDecimal() {
+        return decimal != null;
+    }
+
+    int intValue(Metric metric) {
+        return integer.applyAsInt(metric);
+    }
+
+    double decimalValue(Metric metric) {
+        return decimal.applyAsDouble(metric);
+    }
+}
@@ -0,0 +1,215 @@
+package it.isw2.flaviosimonelli.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Channel that gzip-compresses the bytes written to it on several threads. The input is cut into blocks,
+ * each block is compressed on its own into a complete gzip member, and the members are written to the
+ * target channel in input order. A concatenation of gzip members is a valid gzip file, so the output is
+ * read by gzip, zcat and GZIPInputStream like a single-member file.
+ * <p>
+ * In BGZF mode the blocks hold at most 65280 bytes, every member records its compressed size in the
+ * extra field of the header and the file ends with the empty BGZF block: each block can then be located
+ * and decompressed independently of the others, as done by bgzip and htslib.
+ * <p>
+ * The number of blocks being compressed is bounded, so the memory used does not depend on the size
+ * of the output. Not thread-safe: a single thread writes, the compression runs on the internal pool.
+ */
+public class ParallelGzipChannel implements WritableByteChannel {
+    private static final int GZIP_BLOCK_SIZE = 1 << 20;
+    private static final int BGZF_BLOCK_SIZE = 0xff00;
+    private static final int BGZF_MAX_MEMBER_SIZE = 1 << 16;
+    private static final int HEADER_SIZE = 10;
+    private static final int BGZF_EXTRA_SIZE = 8;
+    private static final int TRAILER_SIZE = 8;
+    // Blocco vuoto che chiude un file BGZF
+    private static final byte[] BGZF_EOF = {
+            0x1f, (byte) 0x8b, 0x08, 0x04, 0, 0, 0, 0, 0, (byte) 0xff, 0x06, 0, 0x42, 0x43, 0x02, 0, 0x1b, 0, 0x03, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+
+    private final WritableByteChannel target;
+    private final boolean bgzf;
+    private final int blockSize;
+    private final int maxPending;
+    private final ExecutorService executor;
+    private final BlockingQueue<Deflater> deflaters; // Un deflater per thread, riusati fra i blocchi
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private byte[] block;
+    private int blockLength;
+    private boolean open = true;
+
+    /**
+     * Creates a compressing channel over a target channel.
+     *
+     * @param target  The channel receiving the compressed bytes; closed when this channel is closed
+     * @param bgzf    true for the BGZF block format, false for plain multi-member gzip
+     * @param threads The number of compression threads, at least 1
+     */
+    public ParallelGzipChannel(WritableByteChannel target, boolean bgzf, int threads) {
+        int poolSize = Math.max(1, threads);
+        this.target = target;
+        this.bgzf = bgzf;
+        this.blockSize = bgzf ? BGZF_BLOCK_SIZE : GZIP_BLOCK_SIZE;
+        // Due blocchi in coda per thread tengono occupato il pool mentre il chiamante riempie il blocco successivo
+        this.maxPending = 2 * poolSize;
+        this.executor = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "gzip-block");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.deflaters = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            deflaters.add(new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+        }
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public int write(ByteBuffer source) throws IOException {
+        if (!open) throw new ClosedChannelException();
+        int written = source.remaining();
+        while (source.hasRemaining()) {
+            int length = Math.min(source.remaining(), blockSize - blockLength);
+            source.get(block, blockLength, length);
+            blockLength += length;
+            if (blockLength == blockSize) submitBlock();
+        }
+        return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Compresses the last block, writes all the pending members and closes the target channel.
+     *
+     * @throws IOException in case of compression or write errors
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) return;
+        open = false;
+        try {
+            if (blockLength > 0) submitBlock();
+            while (!pending.isEmpty()) {
+                writeOldest();
+            }
+            if (bgzf) writeFully(BGZF_EOF, BGZF_EOF.length);
+        } finally {
+            executor.shutdownNow();
+            for (Deflater deflater : deflaters) {
+                deflater.end();
+            }
+            target.close();
+        }
+    }
+
+    // Affida il blocco corrente al pool; se troppi blocchi sono in attesa scrive prima il più vecchio
+    private void submitBlock() throws IOException {
+        while (pending.size() >= maxPending) {
+            writeOldest();
+        }
+        byte[] input = block;
+        int length = blockLength;
+        pending.add(executor.submit(() -> compress(input, length)));
+        block = new byte[blockSize];
+        blockLength = 0;
+    }
+
+    private void writeOldest() throws IOException {
+        try {
+            byte[] member = pending.poll().get();
+            writeFully(member, member.length);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Compressione interrotta");
+        } catch (ExecutionException e) {
+            throw new IOException("Errore durante la compressione di un blocco: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void writeFully(byte[] bytes, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    // Comprime un blocco in un membro gzip completo: header, dati deflate, CRC32 e dimensione non compressa
+    private byte[] compress(byte[] input, int length) throws InterruptedException {
+        int headerSize = bgzf ? HEADER_SIZE + BGZF_EXTRA_SIZE : HEADER_SIZE;
+        // Limite superiore della dimensione deflate, come deflateBound di zlib
+        int bound = length + (length >> 12) + (length >> 14) + (length >> 25) + 13;
+        byte[] member = new byte[headerSize + bound + TRAILER_SIZE];
+
+        Deflater deflater = deflaters.take();
+        int compressedLength;
+        try {
+            deflater.reset();
+            deflater.setInput(input, 0, length);
+            deflater.finish();
+            compressedLength = 0;
+            while (!deflater.finished()) {
+                if (compressedLength == bound) {
+                    throw new IllegalStateException("Blocco compresso oltre il limite di " + bound + " byte");
+                }
+                compressedLength += deflater.deflate(member, headerSize + compressedLength, bound - compressedLength);
+            }
+        } finally {
+            deflaters.add(deflater);
+        }
+
+        int memberSize = headerSize + compressedLength + TRAILER_SIZE;
+        if (bgzf && memberSize > BGZF_MAX_MEMBER_SIZE) {
+            throw new IllegalStateException("Blocco BGZF compresso oltre 64 KB: " + memberSize + " byte");
+        }
+
+        member[0] = 0x1f;
+        member[1] = (byte) 0x8b;
+        member[2] = Deflater.DEFLATED;
+        member[3] = (byte) (bgzf ? 0x04 : 0); // FEXTRA nei blocchi BGZF
+        // mtime (4 byte) e flag di compressione a zero
+        member[9] = (byte) 0xff;              // Sistema operativo sconosciuto
+        if (bgzf) {
+            // Campo extra BC con la dimensione del membro meno uno
+            putShort(member, 10, 6);
+            member[12] = 'B';
+            member[13] = 'C';
+            putShort(member, 14, 2);
+            putShort(member, 16, memberSize - 1);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(input, 0, length);
+        int trailer = headerSize + compressedLength;
+        putInt(member, trailer, (int) crc.getValue());
+        putInt(member, trailer + 4, length);
+        return memberSize == member.length ? member : Arrays.copyOf(member, memberSize);
+    }
+
+    private static void putShort(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        putShort(bytes, offset, value);
+        putShort(bytes, offset + 2, value >>> 16);
+    }
+}
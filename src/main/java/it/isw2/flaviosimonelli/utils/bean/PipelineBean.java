@@ -0,0 +1,393 @@
+package it.isw2.flaviosimonelli.utils.bean;
+
+/**
+ * Bean class representing the tuning options of the extraction pipeline.
+ * Every option has a default value, so an empty configuration reproduces the standard behaviour.
+ */
+public class PipelineBean {
+    private int extractionThreads = Runtime.getRuntime().availableProcessors();
+    private long parseCacheBytes = 256L * 1024 * 1024;
+    private boolean incrementalExtraction;
+    private ReleaseAssignment releaseAssignment = ReleaseAssignment.TIMESTAMP;
+    private int ticketThreads = Runtime.getRuntime().availableProcessors();
+    private boolean virtualTicketThreads;
+    private boolean changeHistory;
+    private ExtractionMode extractionMode = ExtractionMode.PARSER;
+    private boolean streaming;
+    private OutputFormat outputFormat = OutputFormat.CSV;
+    private OutputCompression outputCompression = OutputCompression.NONE;
+    private int jiraThreads = 4;
+    private boolean jiraCache = true;
+    private long jiraCacheTtlMinutes;
+    private boolean jiraOffline;
+    private boolean jiraIncremental;
+    private boolean checkpoint;
+
+    /**
+     * Returns the number of threads used to parse the Java files of a release.
+     *
+     * @return The number of extraction threads (1 means sequential extraction)
+     */
+    public int getExtractionThreads() {
+        return extractionThreads;
+    }
+
+    /**
+     * Sets the number of threads used to parse the Java files of a release.
+     * Values lower than 1 select the number of available processors.
+     *
+     * @param extractionThreads The number of extraction threads
+     */
+    public void setExtractionThreads(int extractionThreads) {
+        this.extractionThreads = extractionThreads < 1 ? Runtime.getRuntime().availableProcessors() : extractionThreads;
+    }
+
+    /**
+     * Returns the memory bound of the cache of parsed files.
+     *
+     * @return The estimated memory bound in bytes (0 means cache disabled)
+     */
+    public long getParseCacheBytes() {
+        return parseCacheBytes;
+    }
+
+    /**
+     * Sets the memory bound of the cache of parsed files, in megabytes.
+     *
+     * @param megabytes The memory bound in MB, 0 disables the cache
+     */
+    public void setParseCacheMegabytes(long megabytes) {
+        this.parseCacheBytes = Math.max(0, megabytes) * 1024 * 1024;
+    }
+
+    /**
+     * Returns whether releases after the first one are extracted from the diff with the previous release.
+     *
+     * @return true if the incremental extraction is enabled
+     */
+    public boolean isIncrementalExtraction() {
+        return incrementalExtraction;
+    }
+
+    public void setIncrementalExtraction(boolean incrementalExtraction) {
+        this.incrementalExtraction = incrementalExtraction;
+    }
+
+    /**
+     * Returns how fix commits are assigned to releases.
+     *
+     * @return TIMESTAMP to use the commit dates, ANCESTRY to use the history reachable from the release tags
+     */
+    public ReleaseAssignment getReleaseAssignment() {
+        return releaseAssignment;
+    }
+
+    public void setReleaseAssignment(ReleaseAssignment releaseAssignment) {
+        this.releaseAssignment = releaseAssignment != null ? releaseAssignment : ReleaseAssignment.TIMESTAMP;
+    }
+
+    /**
+     * Returns the maximum number of tickets whose fix commit is analyzed at the same time.
+     *
+     * @return The number of concurrent ticket analyses (1 means sequential analysis)
+     */
+    public int getTicketThreads() {
+        return ticketThreads;
+    }
+
+    /**
+     * Sets the maximum number of tickets whose fix commit is analyzed at the same time.
+     * Values lower than 1 select the number of available processors.
+     *
+     * @param ticketThreads The number of concurrent ticket analyses
+     */
+    public void setTicketThreads(int ticketThreads) {
+        this.ticketThreads = ticketThreads < 1 ? Runtime.getRuntime().availableProcessors() : ticketThreads;
+    }
+
+    /**
+     * Returns whether the tickets are analyzed on virtual threads instead of a fixed pool of platform threads.
+     *
+     * @return true if virtual threads are used
+     */
+    public boolean isVirtualTicketThreads() {
+        return virtualTicketThreads;
+    }
+
+    public void setVirtualTicketThreads(boolean virtualTicketThreads) {
+        this.virtualTicketThreads = virtualTicketThreads;
+    }
+
+    /**
+     * Returns whether the change-history metrics are computed from the commits between consecutive releases.
+     *
+     * @return true if the change-history metrics are computed
+     */
+    public boolean isChangeHistory() {
+        return changeHistory;
+    }
+
+    public void setChangeHistory(boolean changeHistory) {
+        this.changeHistory = changeHistory;
+    }
+
+    /**
+     * Returns how the methods of a Java file are extracted.
+     *
+     * @return PARSER for the full parser, LEXER for the lexer-only extractor, VERIFY to run both and compare them
+     */
+    public ExtractionMode getExtractionMode() {
+        return extractionMode;
+    }
+
+    public void setExtractionMode(ExtractionMode extractionMode) {
+        this.extractionMode = extractionMode != null ? extractionMode : ExtractionMode.PARSER;
+    }
+
+    /**
+     * Returns whether the releases are extracted, labeled and written one at a time after the tickets are resolved,
+     * instead of keeping the methods of all the releases in memory until the export.
+     *
+     * @return true if the streaming pipeline is enabled
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Returns the format of the methods dataset.
+     *
+     * @return CSV, ARFF or SPARSE_ARFF for the sparse encoding of ARFF
+     */
+    public OutputFormat getOutputFormat() {
+        return outputFormat;
+    }
+
+    public void setOutputFormat(OutputFormat outputFormat) {
+        this.outputFormat = outputFormat != null ? outputFormat : OutputFormat.CSV;
+    }
+
+    /**
+     * Returns the compression of the methods dataset.
+     *
+     * @return NONE, GZIP for multi-member gzip or BGZF for the block gzip format
+     */
+    public OutputCompression getOutputCompression() {
+        return outputCompression;
+    }
+
+    public void setOutputCompression(OutputCompression outputCompression) {
+        this.outputCompression = outputCompression != null ? outputCompression : OutputCompression.NONE;
+    }
+
+    /**
+     * Returns the maximum number of search pages requested to Jira at the same time.
+     *
+     * @return The number of concurrent Jira requests (1 means sequential requests)
+     */
+    public int getJiraThreads() {
+        return jiraThreads;
+    }
+
+    /**
+     * Sets the maximum number of search pages requested to Jira at the same time.
+     * Values lower than 1 select sequential requests.
+     *
+     * @param jiraThreads The number of concurrent Jira requests
+     */
+    public void setJiraThreads(int jiraThreads) {
+        this.jiraThreads = Math.max(1, jiraThreads);
+    }
+
+    /**
+     * Tells whether the Jira responses are kept in the on-disk cache.
+     *
+     * @return true if the responses are cached and revalidated
+     */
+    public boolean isJiraCache() {
+        return jiraCache;
+    }
+
+    public void setJiraCache(boolean jiraCache) {
+        this.jiraCache = jiraCache;
+    }
+
+    /**
+     * Returns the time for which a cached Jira response is used without contacting the server.
+     * Older responses are revalidated with ETag or Last-Modified, or downloaded again.
+     *
+     * @return The time to live of the cached responses, in minutes (0 means always revalidate)
+     */
+    public long getJiraCacheTtlMinutes() {
+        return jiraCacheTtlMinutes;
+    }
+
+    /**
+     * Sets the time for which a cached Jira response is used without contacting the server.
+     * Negative values are treated as 0.
+     *
+     * @param jiraCacheTtlMinutes The time to live of the cached responses, in minutes
+     */
+    public void setJiraCacheTtlMinutes(long jiraCacheTtlMinutes) {
+        this.jiraCacheTtlMinutes = Math.max(0, jiraCacheTtlMinutes);
+    }
+
+    /**
+     * Tells whether every Jira response is served from the cache, without contacting the server.
+     *
+     * @return true in offline mode
+     */
+    public boolean isJiraOffline() {
+        return jiraOffline;
+    }
+
+    public void setJiraOffline(boolean jiraOffline) {
+        this.jiraOffline = jiraOffline;
+    }
+
+    /**
+     * Tells whether the fixed bugs are kept in a local store and synchronized with Jira
+     * by asking only for the issues updated since the previous run.
+     *
+     * @return true for the incremental synchronization of the tickets
+     */
+    public boolean isJiraIncremental() {
+        return jiraIncremental;
+    }
+
+    public void setJiraIncremental(boolean jiraIncremental) {
+        this.jiraIncremental = jiraIncremental;
+    }
+
+    /**
+     * Tells whether each completed stage of the project is saved to the checkpoint store,
+     * so that a restarted run resumes from the last completed unit.
+     *
+     * @return true if the checkpoints are written and restored
+     */
+    public boolean isCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(boolean checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Strategy used to assign a commit to a release.
+     */
+    public enum ReleaseAssignment {
+        TIMESTAMP,  // first release whose tag commit is later than the commit
+        ANCESTRY;   // first release whose tag commit contains the commit in its history
+
+        public static ReleaseAssignment fromString(String value) {
+            if (value == null) return TIMESTAMP;
+            switch (value.trim().toUpperCase()) {
+                case "ANCESTRY":
+                    return ANCESTRY;
+                case "TIMESTAMP":
+                default:
+                    return TIMESTAMP;
+            }
+        }
+    }
+
+    /**
+     * Strategy used to extract the methods of a Java file.
+     */
+    public enum ExtractionMode {
+        PARSER,  // full parser, all the metrics
+        LEXER,   // lexer-only extractor, size metrics only, full parser for the files it cannot handle
+        VERIFY;  // both extractors, the differences are logged and the parser results are kept
+
+        public static ExtractionMode fromString(String value) {
+            if (value == null) return PARSER;
+            switch (value.trim().toUpperCase()) {
+                case "LEXER":
+                    return LEXER;
+                case "VERIFY":
+                    return VERIFY;
+                case "PARSER":
+                default:
+                    return PARSER;
+            }
+        }
+    }
+
+    /**
+     * Format of the methods dataset.
+     */
+    public enum OutputFormat {
+        CSV(".csv"),          // comma-separated values, zero metrics left empty
+        ARFF(".arff"),        // ARFF for Weka, one value per attribute
+        SPARSE_ARFF(".arff"); // ARFF for Weka, only the non-zero metrics of each row
+
+        private final String extension;
+
+        OutputFormat(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static OutputFormat fromString(String value) {
+            if (value == null) return CSV;
+            switch (value.trim().toUpperCase().replace('-', '_')) {
+                case "ARFF":
+                    return ARFF;
+                case "SPARSE_ARFF":
+                    return SPARSE_ARFF;
+                case "CSV":
+                default:
+                    return CSV;
+            }
+        }
+    }
+
+    /**
+     * Compression of the methods dataset, applied by block on all the available cores.
+     * The compression of a file is chosen from the extension of its path.
+     */
+    public enum OutputCompression {
+        NONE(""),
+        GZIP(".gz"),  // multi-member gzip, read by gzip and zcat
+        BGZF(".bgz"); // gzip members of at most 64 KB with their size in the header, decompressible one by one
+
+        private final String extension;
+
+        OutputCompression(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static OutputCompression fromString(String value) {
+            if (value == null) return NONE;
+            switch (value.trim().toUpperCase()) {
+                case "GZIP":
+                case "GZ":
+                    return GZIP;
+                case "BGZF":
+                case "BGZ":
+                    return BGZF;
+                case "NONE":
+                default:
+                    return NONE;
+            }
+        }
+
+        public static OutputCompression fromPath(String path) {
+            if (path.endsWith(GZIP.extension)) return GZIP;
+            if (path.endsWith(BGZF.extension) || path.endsWith(".bgzf")) return BGZF;
+            return NONE;
+        }
+    }
+}
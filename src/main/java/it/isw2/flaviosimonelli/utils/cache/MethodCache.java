@@ -0,0 +1,206 @@
+package it.isw2.flaviosimonelli.utils.cache;
+
+import it.isw2.flaviosimonelli.model.method.Method;
+import it.isw2.flaviosimonelli.model.method.Metric;
+import it.isw2.flaviosimonelli.model.method.MetricStore;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the methods extracted from a Java file, keyed by the ObjectId of the git blob.
+ * A blob with the same id has the same content, so a file that does not change between
+ * releases is parsed only once per run. The cache is bounded by an estimate of the memory
+ * occupied by its entries and evicts the least recently used blobs first.
+ * All methods are thread-safe.
+ */
+public class MethodCache {
+    // Stima dell'occupazione fissa di una entry e di un metodo (header, riferimenti, Metric)
+    private static final long ENTRY_OVERHEAD = 96;
+    private static final long METHOD_OVERHEAD = 256;
+
+    private final long maxBytes;
+    private final LinkedHashMap<ObjectId, CachedFile> entries = new LinkedHashMap<>(1024, 0.75f, true);
+    private long usedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a cache bounded to the given memory size.
+     *
+     * @param maxBytes Estimated memory bound in bytes, 0 disables the cache
+     */
+    public MethodCache(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    /**
+     * Returns the methods cached for a blob, or null if the blob has not been parsed yet.
+     *
+     * @param blobId The ObjectId of the blob
+     * @return The version-independent methods of the blob, or null on a miss
+     */
+    public List<CachedMethod> get(ObjectId blobId) {
+        CachedFile cached;
+        synchronized (this) {
+            cached = entries.get(blobId);
+        }
+        if (cached == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return cached.methods;
+    }
+
+    /**
+     * Stores the methods extracted from a blob, evicting the least recently used blobs if needed.
+     *
+     * @param blobId  The ObjectId of the blob
+     * @param methods The version-independent methods of the blob
+     */
+    public void put(ObjectId blobId, List<CachedMethod> methods) {
+        if (maxBytes == 0) return;
+        CachedFile cached = new CachedFile(methods);
+        // Un singolo file più grande dell'intera cache non viene memorizzato
+        if (cached.weight > maxBytes) return;
+
+        synchronized (this) {
+            CachedFile previous = entries.put(blobId.copy(), cached);
+            if (previous != null) {
+                usedBytes -= previous.weight;
+            }
+            usedBytes += cached.weight;
+
+            Iterator<CachedFile> iterator = entries.values().iterator();
+            while (usedBytes > maxBytes && iterator.hasNext()) {
+                usedBytes -= iterator.next().weight;
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns a one-line summary of the cache counters, suitable for logging.
+     *
+     * @return The summary of hits, misses, evictions and occupied memory
+     */
+    public synchronized String getStatistics() {
+        long lookups = getHits() + getMisses();
+        double hitRate = lookups == 0 ? 0 : 100.0 * getHits() / lookups;
+        return String.format("hit=%d miss=%d (hit rate %.1f%%), evicted=%d, entries=%d, ~%d KiB occupati",
+                getHits(), getMisses(), hitRate, getEvictions(), entries.size(), usedBytes / 1024);
+    }
+
+    /**
+     * A method extracted from a blob, independent from the path and the version in which the blob appears.
+     */
+    public static class CachedMethod {
+        private final String className;
+        private final String signature;
+        private final int contentBegin; // Byte offset of the body in the blob
+        private final int contentEnd;   // Byte offset after the end of the body, equal to contentBegin if there is no body
+        private final Metric metric;
+        private final int beginLine; // First line of the declaration in the blob, 1-based
+        private final int endLine;   // Last line of the declaration in the blob, inclusive
+
+        public CachedMethod(String className, String signature, int contentBegin, int contentEnd, Metric metric, int beginLine, int endLine) {
+            this.className = className;
+            this.signature = signature;
+            this.contentBegin = contentBegin;
+            this.contentEnd = contentEnd;
+            this.metric = metric;
+            this.beginLine = beginLine;
+            this.endLine = endLine;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getSignature() {
+            return signature;
+        }
+
+        public int getContentBegin() {
+            return contentBegin;
+        }
+
+        public int getContentEnd() {
+            return contentEnd;
+        }
+
+        public Metric getMetric() {
+            return metric;
+        }
+
+        public int getBeginLine() {
+            return beginLine;
+        }
+
+        public int getEndLine() {
+            return endLine;
+        }
+
+        /**
+         * Creates the Method of a given file path and version from the cached data.
+         * The metrics are shared with the cache until the Method is stored in its version, which copies them.
+         *
+         * @param blobId    The blob the method was extracted from
+         * @param filePath  The path of the file containing the method
+         * @param versionId The id of the version the method belongs to
+         * @param symbols   The symbol table that assigns the ids of signature and class path
+         * @return A new Method object
+         */
+        public Method toMethod(ObjectId blobId, String filePath, int versionId, SymbolTable symbols) {
+            return new Method(symbols.signatures().intern(signature), symbols.classPaths().intern(filePath + "/" + className),
+                    versionId, blobId, contentBegin, contentEnd, metric);
+        }
+
+        private long weight() {
+            return METHOD_OVERHEAD + 2L * (className.length() + signature.length());
+        }
+    }
+
+    private static class CachedFile {
+        private final List<CachedMethod> methods;
+        private final long weight;
+
+        private CachedFile(List<CachedMethod> methods) {
+            this.methods = new ArrayList<>(methods);
+            long total = ENTRY_OVERHEAD;
+            // Le metriche dei metodi di un file stanno di solito in un unico store, contato una sola volta
+            Set<MetricStore> stores = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (CachedMethod method : methods) {
+                total += method.weight();
+                MetricStore store = method.getMetric().getStore();
+                if (stores.add(store)) {
+                    total += store.getFootprintBytes();
+                }
+            }
+            this.weight = total;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package it.isw2.flaviosimonelli.utils.cache;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Run-wide dictionaries of the strings shared by the methods of all the releases: signatures,
+ * class paths and version names. Each distinct string gets a compact int id, assigned in order of
+ * first use, so the methods keep only the ids and compare them with ==. The strings are needed
+ * only when the data is exported.
+ * All methods are thread-safe.
+ */
+public class SymbolTable {
+    private final Dictionary signatures = new Dictionary();
+    private final Dictionary classPaths = new Dictionary();
+    private final Dictionary versions = new Dictionary();
+
+    /**
+     * Returns the dictionary of the method signatures.
+     *
+     * @return The signature dictionary
+     */
+    public Dictionary signatures() {
+        return signatures;
+    }
+
+    /**
+     * Returns the dictionary of the class paths (file path and class name).
+     *
+     * @return The class path dictionary
+     */
+    public Dictionary classPaths() {
+        return classPaths;
+    }
+
+    /**
+     * Returns the dictionary of the version names.
+     *
+     * @return The version dictionary
+     */
+    public Dictionary versions() {
+        return versions;
+    }
+
+    /**
+     * Dictionary from strings to dense int ids, starting at 0.
+     */
+    public static class Dictionary {
+        private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+        private volatile String[] values = new String[1024];
+        private int size;
+
+        /**
+         * Returns the id of a string, assigning a new one on first use.
+         *
+         * @param value The string
+         * @return The id of the string
+         */
+        public int intern(String value) {
+            Integer id = ids.get(value);
+            if (id != null) return id;
+            synchronized (this) {
+                id = ids.get(value);
+                if (id != null) return id;
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                // La stringa viene pubblicata nell'array prima che l'id diventi visibile nella mappa
+                values[size] = value;
+                ids.put(value, size);
+                return size++;
+            }
+        }
+
+        /**
+         * Returns the id of a string without assigning a new one.
+         *
+         * @param value The string
+         * @return The id of the string, or -1 if the string has never been interned
+         */
+        public int find(String value) {
+            Integer id = ids.get(value);
+            return id != null ? id : -1;
+        }
+
+        /**
+         * Returns the string of an id.
+         *
+         * @param id The id, as returned by {@link #intern(String)}
+         * @return The string with that id
+         */
+        public String get(int id) {
+            return values[id];
+        }
+
+        /**
+         * Returns the number of distinct strings.
+         *
+         * @return The number of ids assigned
+         */
+        public int size() {
+            return ids.size();
+        }
+    }
+}
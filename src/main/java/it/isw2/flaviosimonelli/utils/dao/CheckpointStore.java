@@ -0,0 +1,516 @@
+package it.isw2.flaviosimonelli.utils.dao;
+
+import it.isw2.flaviosimonelli.model.Project.Project;
+import it.isw2.flaviosimonelli.model.Ticket;
+import it.isw2.flaviosimonelli.model.Version;
+import it.isw2.flaviosimonelli.model.method.Method;
+import it.isw2.flaviosimonelli.model.method.MetricStore;
+import it.isw2.flaviosimonelli.utils.cache.SymbolTable;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Archivio binario dei checkpoint di un progetto, per riprendere un'esecuzione interrotta dall'ultima unità completata.
+ * Ogni unità è un file: le versioni con gli hash dei tag, i metodi con le metriche di ogni release e i ticket
+ * con commit di fix, versioni e firme buggy. Un file viene scritto in un file temporaneo, sincronizzato su disco
+ * e rinominato in modo atomico, e termina con il CRC32 del contenuto: un'unità esiste solo se è stata scritta
+ * per intero, e un file danneggiato viene ignorato come se mancasse.
+ * <p>
+ * Il manifest registra il commit di HEAD del repository e la configurazione che determina il risultato:
+ * se uno dei due è cambiato dall'esecuzione precedente i checkpoint vengono scartati.
+ * Le stringhe dei metodi sono scritte una sola volta per file e referenziate per indice; interi e metriche sono
+ * codificati come varint, colonna per colonna.
+ */
+public class CheckpointStore {
+    private static final Logger LOGGER = Logger.getLogger(CheckpointStore.class.getName());
+    private static final int MAGIC = 0x49535743; // "ISWC"
+    private static final int FORMAT_VERSION = 1;
+    private static final String MANIFEST = "manifest.bin";
+    private static final String VERSIONS = "versions.bin";
+    private static final String TICKETS = "tickets.bin";
+
+    private final Path directory;
+
+    private CheckpointStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Apre l'archivio dei checkpoint in una directory. Se il manifest manca o non corrisponde al commit di HEAD
+     * e alla configurazione indicati, i checkpoint presenti vengono eliminati e viene scritto un nuovo manifest.
+     *
+     * @param directory     La directory dei checkpoint del progetto
+     * @param headCommit    L'hash del commit di HEAD del repository
+     * @param configuration La descrizione della configurazione che determina il risultato
+     * @return L'archivio aperto
+     * @throws IOException In caso di errore di lettura o di scrittura della directory
+     */
+    public static CheckpointStore open(Path directory, String headCommit, String configuration) throws IOException {
+        CheckpointStore store = new CheckpointStore(directory);
+        Files.createDirectories(directory);
+        String expected = headCommit + "\n" + configuration;
+        String found = store.read(MANIFEST, in -> readString(in));
+        if (!expected.equals(found)) {
+            if (found != null) {
+                LOGGER.info("Checkpoint in " + directory + " non validi per HEAD o configurazione correnti: vengono scartati");
+            }
+            store.clear();
+            store.write(MANIFEST, out -> writeString(out, expected));
+        }
+        return store;
+    }
+
+    /**
+     * Legge le versioni del progetto.
+     *
+     * @return Le versioni, in ordine, senza metodi; null se il checkpoint non esiste
+     */
+    public List<Version> loadVersions() {
+        return read(VERSIONS, in -> {
+            int count = readCount(in, 4);
+            List<Version> versions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Version version = new Version();
+                version.setName(readString(in));
+                version.setReleased(in.readBoolean());
+                version.setHashCommit(readString(in));
+                if (in.readBoolean()) version.setReleaseDate(new Date(in.readLong()));
+                versions.add(version);
+            }
+            return versions;
+        });
+    }
+
+    /**
+     * Salva le versioni del progetto, già filtrate e ordinate.
+     *
+     * @param versions Le versioni
+     * @throws IOException In caso di errore di scrittura
+     */
+    public void saveVersions(List<Version> versions) throws IOException {
+        write(VERSIONS, out -> {
+            writeVarInt(out, versions.size());
+            for (Version version : versions) {
+                writeString(out, version.getName());
+                out.writeBoolean(version.isReleased());
+                writeString(out, version.getHashCommit());
+                out.writeBoolean(version.getReleaseDate() != null);
+                if (version.getReleaseDate() != null) out.writeLong(version.getReleaseDate().getTime());
+            }
+        });
+    }
+
+    /**
+     * Legge i metodi di una release e li imposta nella versione, con le metriche.
+     *
+     * @param position La posizione della versione fra le versioni del progetto
+     * @param version  La versione, il cui nome e hash devono corrispondere a quelli del checkpoint
+     * @param symbols  La tabella dei simboli del progetto, in cui vengono registrate firme e class path
+     * @return true se i metodi sono stati letti, false se il checkpoint non esiste o è di un'altra versione
+     */
+    public boolean loadMethods(int position, Version version, SymbolTable symbols) {
+        List<Method> methods = read(methodsFile(position), in -> {
+            if (!readString(in).equals(version.getName()) || !readString(in).equals(version.getHashCommit())) {
+                return null;
+            }
+            int versionId = symbols.versions().intern(version.getName());
+            int[] signatureIds = readDictionary(in, symbols.signatures());
+            int[] classPathIds = readDictionary(in, symbols.classPaths());
+            ObjectId[] blobs = new ObjectId[readCount(in, 20)];
+            byte[] raw = new byte[20];
+            for (int i = 0; i < blobs.length; i++) {
+                in.readFully(raw);
+                blobs[i] = ObjectId.fromRaw(raw);
+            }
+
+            int count = readCount(in, 5);
+            int[] signatures = new int[count];
+            int[] classPaths = new int[count];
+            int[] blobIndexes = new int[count];
+            int[] begins = new int[count];
+            int[] ends = new int[count];
+            for (int i = 0; i < count; i++) {
+                signatures[i] = signatureIds[readVarInt(in)];
+                classPaths[i] = classPathIds[readVarInt(in)];
+                blobIndexes[i] = readVarInt(in) - 1;
+                begins[i] = readVarInt(in);
+                ends[i] = begins[i] + readVarInt(in);
+            }
+            MetricStore metrics = readMetrics(in, count);
+
+            List<Method> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ObjectId blob = blobIndexes[i] >= 0 ? blobs[blobIndexes[i]] : null;
+                result.add(new Method(signatures[i], classPaths[i], versionId, blob, begins[i], ends[i], metrics.get(i)));
+            }
+            return result;
+        });
+        if (methods == null) return false;
+        version.setMethods(methods);
+        return true;
+    }
+
+    /**
+     * Salva i metodi di una release, con le metriche già calcolate.
+     *
+     * @param position La posizione della versione fra le versioni del progetto
+     * @param version  La versione, con i metodi impostati
+     * @param symbols  La tabella dei simboli del progetto
+     * @throws IOException In caso di errore di scrittura
+     */
+    public void saveMethods(int position, Version version, SymbolTable symbols) throws IOException {
+        List<Method> methods = version.getMethods();
+        write(methodsFile(position), out -> {
+            writeString(out, version.getName());
+            writeString(out, version.getHashCommit());
+
+            // Dizionari locali: ogni stringa e ogni blob compaiono una sola volta nel file
+            Map<Integer, Integer> signatures = new HashMap<>();
+            Map<Integer, Integer> classPaths = new HashMap<>();
+            Map<ObjectId, Integer> blobs = new HashMap<>();
+            List<ObjectId> blobList = new ArrayList<>();
+            int[] signatureIndexes = new int[methods.size()];
+            int[] classPathIndexes = new int[methods.size()];
+            int[] blobIndexes = new int[methods.size()];
+            for (int i = 0; i < methods.size(); i++) {
+                Method method = methods.get(i);
+                signatureIndexes[i] = signatures.computeIfAbsent(method.getSignatureId(), id -> signatures.size());
+                classPathIndexes[i] = classPaths.computeIfAbsent(method.getClassPathId(), id -> classPaths.size());
+                if (method.getBlobId() != null) {
+                    blobIndexes[i] = 1 + blobs.computeIfAbsent(method.getBlobId().copy(), blob -> {
+                        blobList.add(blob);
+                        return blobList.size() - 1;
+                    });
+                }
+            }
+            writeDictionary(out, signatures, symbols.signatures());
+            writeDictionary(out, classPaths, symbols.classPaths());
+            writeVarInt(out, blobList.size());
+            byte[] raw = new byte[20];
+            for (ObjectId blob : blobList) {
+                blob.copyRawTo(raw, 0);
+                out.write(raw);
+            }
+
+            writeVarInt(out, methods.size());
+            for (int i = 0; i < methods.size(); i++) {
+                Method method = methods.get(i);
+                writeVarInt(out, signatureIndexes[i]);
+                writeVarInt(out, classPathIndexes[i]);
+                writeVarInt(out, blobIndexes[i]);
+                writeVarInt(out, method.getContentBegin());
+                writeVarInt(out, method.getContentEnd() - method.getContentBegin());
+            }
+            writeMetrics(out, version.getMetrics());
+        });
+    }
+
+    /**
+     * Legge i ticket del progetto, già analizzati e filtrati.
+     *
+     * @param project Il progetto, con le versioni impostate
+     * @return I ticket, nell'ordine in cui sono stati salvati; null se il checkpoint non esiste
+     *         o fa riferimento a versioni che il progetto non ha
+     */
+    public List<Ticket> loadTickets(Project project) {
+        SymbolTable.Dictionary signatureIds = project.getSymbols().signatures();
+        return read(TICKETS, in -> {
+            int count = readCount(in, 7);
+            List<Ticket> tickets = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Ticket ticket = new Ticket();
+                ticket.setId(readString(in));
+                ticket.setCommitHash(readNullableString(in));
+                Version[] versions = new Version[3];
+                for (int v = 0; v < versions.length; v++) {
+                    String name = readNullableString(in);
+                    versions[v] = name != null ? project.getVersionFromName(name) : null;
+                    if (name != null && versions[v] == null) return null;
+                }
+                ticket.setFixVersion(versions[0]);
+                ticket.setInjectedVersion(versions[1]);
+                ticket.setOpenVersion(versions[2]);
+                if (in.readBoolean()) {
+                    long epochMillis = in.readLong();
+                    ticket.setOpenDate(ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.of(readString(in))));
+                }
+                int signatures = readCount(in, 1) - 1;
+                if (signatures >= 0) {
+                    int[] buggy = new int[signatures];
+                    for (int s = 0; s < signatures; s++) {
+                        buggy[s] = signatureIds.intern(readString(in));
+                    }
+                    ticket.setNameMethodsBuggy(buggy);
+                }
+                tickets.add(ticket);
+            }
+            return tickets;
+        });
+    }
+
+    /**
+     * Salva i ticket del progetto, già analizzati e filtrati.
+     *
+     * @param tickets I ticket
+     * @param symbols La tabella dei simboli del progetto
+     * @throws IOException In caso di errore di scrittura
+     */
+    public void saveTickets(List<Ticket> tickets, SymbolTable symbols) throws IOException {
+        write(TICKETS, out -> {
+            writeVarInt(out, tickets.size());
+            for (Ticket ticket : tickets) {
+                writeString(out, ticket.getId());
+                writeNullableString(out, ticket.getCommitHash());
+                for (Version version : new Version[]{ticket.getFixVersion(), ticket.getInjectedVersion(), ticket.getOpenVersion()}) {
+                    writeNullableString(out, version != null ? version.getName() : null);
+                }
+                ZonedDateTime openDate = ticket.getOpenDate();
+                out.writeBoolean(openDate != null);
+                if (openDate != null) {
+                    out.writeLong(openDate.toInstant().toEpochMilli());
+                    writeString(out, openDate.getZone().getId());
+                }
+                int[] buggy = ticket.getNameMethodsBuggy();
+                writeVarInt(out, buggy != null ? buggy.length + 1 : 0);
+                if (buggy != null) {
+                    for (int signatureId : buggy) {
+                        writeString(out, symbols.signatures().get(signatureId));
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Elimina tutti i checkpoint, manifest compreso.
+     *
+     * @throws IOException In caso di errore di cancellazione
+     */
+    public void clear() throws IOException {
+        if (!Files.isDirectory(directory)) return;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static String methodsFile(int position) {
+        return "methods_" + position + ".bin";
+    }
+
+    // --- LETTURA E SCRITTURA DEI FILE ---
+
+    @FunctionalInterface
+    private interface Reader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Legge un file controllandone intestazione e CRC; restituisce null se il file manca, è danneggiato
+     * o se il reader restituisce null.
+     */
+    private <T> T read(String name, Reader<T> reader) {
+        Path file = directory.resolve(name);
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            CRC32 crc = new CRC32();
+            DataInputStream in = new DataInputStream(new CheckedInputStream(raw, crc));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                LOGGER.warning("Checkpoint " + file + " di un formato diverso: viene ignorato");
+                return null;
+            }
+            T value = reader.read(in);
+            long expected = crc.getValue();
+            if (new DataInputStream(raw).readLong() != expected) {
+                LOGGER.warning("Checkpoint " + file + " danneggiato: viene ignorato");
+                return null;
+            }
+            return value;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warning("Checkpoint " + file + " non leggibile, viene ignorato: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Scrive un file in modo atomico: contenuto e CRC vanno in un file temporaneo, sincronizzato su disco
+     * prima di sostituire il file definitivo.
+     */
+    private void write(String name, Writer writer) throws IOException {
+        Path temp = Files.createTempFile(directory, name, ".tmp");
+        try {
+            try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+                BufferedOutputStream buffered = new BufferedOutputStream(file, 1 << 16);
+                CRC32 crc = new CRC32();
+                DataOutputStream out = new DataOutputStream(new CheckedOutputStream(buffered, crc));
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writer.write(out);
+                out.flush();
+                new DataOutputStream(buffered).writeLong(crc.getValue());
+                buffered.flush();
+                file.getFD().sync();
+            }
+            try {
+                Files.move(temp, directory.resolve(name), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // --- CODIFICA ---
+
+    private static void writeDictionary(DataOutput out, Map<Integer, Integer> localIndexes, SymbolTable.Dictionary dictionary) throws IOException {
+        String[] values = new String[localIndexes.size()];
+        for (Map.Entry<Integer, Integer> entry : localIndexes.entrySet()) {
+            values[entry.getValue()] = dictionary.get(entry.getKey());
+        }
+        writeVarInt(out, values.length);
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    // Legge un dizionario locale e restituisce gli id dei suoi valori nella tabella dei simboli
+    private static int[] readDictionary(DataInputStream in, SymbolTable.Dictionary dictionary) throws IOException {
+        int[] ids = new int[readCount(in, 1)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = dictionary.intern(readString(in));
+        }
+        return ids;
+    }
+
+    // Metriche per colonna: gli interi come varint, i decimali come coppie (distanza dalla riga precedente, valore) dei soli valori non nulli
+    private static void writeMetrics(DataOutput out, MetricStore metrics) throws IOException {
+        for (int column = 0; column < MetricStore.INT_COLUMN_COUNT; column++) {
+            for (int value : metrics.intColumn(column)) {
+                writeVarInt(out, (value << 1) ^ (value >> 31));
+            }
+        }
+        for (int column = 0; column < MetricStore.DOUBLE_COLUMN_COUNT; column++) {
+            double[] values = metrics.doubleColumn(column);
+            int nonZero = 0;
+            for (double value : values) {
+                if (value != 0) nonZero++;
+            }
+            writeVarInt(out, nonZero);
+            int previous = -1;
+            for (int row = 0; row < values.length; row++) {
+                if (values[row] == 0) continue;
+                writeVarInt(out, row - previous);
+                out.writeDouble(values[row]);
+                previous = row;
+            }
+        }
+    }
+
+    private static MetricStore readMetrics(DataInputStream in, int rows) throws IOException {
+        int[][] ints = new int[MetricStore.INT_COLUMN_COUNT][rows];
+        double[][] doubles = new double[MetricStore.DOUBLE_COLUMN_COUNT][rows];
+        for (int[] column : ints) {
+            for (int row = 0; row < rows; row++) {
+                int encoded = readVarInt(in);
+                column[row] = (encoded >>> 1) ^ -(encoded & 1);
+            }
+        }
+        for (double[] column : doubles) {
+            int nonZero = readCount(in, 9);
+            int row = -1;
+            for (int i = 0; i < nonZero; i++) {
+                row += readVarInt(in);
+                column[row] = in.readDouble();
+            }
+        }
+        return MetricStore.fromColumns(ints, doubles);
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Varint non valido");
+    }
+
+    // Numero di elementi, ciascuno di almeno minBytes byte: un numero che supera i byte rimasti nel file è di un file
+    // danneggiato, e viene rifiutato prima di allocare gli array
+    private static int readCount(DataInputStream in, int minBytes) throws IOException {
+        int count = readVarInt(in);
+        if (count < 0 || (long) count * minBytes > in.available()) {
+            throw new EOFException("Numero di elementi non valido: " + count);
+        }
+        return count;
+    }
+
+    // Stringa in UTF-8 preceduta dalla lunghezza, senza il limite di 64 KB di writeUTF
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readCount(in, 1);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeNullableString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) writeString(out, value);
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+}
@@ -1,35 +1,50 @@
 package it.isw2.flaviosimonelli.utils.dao;
 
 import ch.qos.logback.classic.Logger;
+import com.github.javaparser.JavaParser;
 import com.github.javaparser.ParseProblemException;
-import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.Problem;
+import com.github.javaparser.Position;
 import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
-import com.github.javaparser.ast.expr.BinaryExpr;
-import com.github.javaparser.ast.stmt.*;
+import com.github.javaparser.ast.stmt.BlockStmt;
 import it.isw2.flaviosimonelli.model.Project.Project;
+import it.isw2.flaviosimonelli.model.ReleaseTimeline;
 import it.isw2.flaviosimonelli.model.Version;
 import it.isw2.flaviosimonelli.model.method.Method;
 import it.isw2.flaviosimonelli.model.method.Metric;
+import it.isw2.flaviosimonelli.model.method.MetricStore;
 import it.isw2.flaviosimonelli.utils.VersionTagger;
+import it.isw2.flaviosimonelli.utils.bean.PipelineBean;
+import it.isw2.flaviosimonelli.utils.cache.MethodCache;
+import it.isw2.flaviosimonelli.utils.cache.SymbolTable;
 import it.isw2.flaviosimonelli.utils.exception.GitException;
+import it.isw2.flaviosimonelli.utils.metric.ChangeHistoryCalculator;
+import it.isw2.flaviosimonelli.utils.metric.LexerMethodExtractor;
+import it.isw2.flaviosimonelli.utils.metric.MetricCalculator;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.api.errors.NoHeadException;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffFormatter;
 import org.eclipse.jgit.lib.*;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
 
 import java.io.*;
-import java.time.Instant;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 /**
@@ -39,6 +54,13 @@ import java.util.regex.Pattern;
 public class GitService {
 
     private static final Logger LOGGER = (Logger) org.slf4j.LoggerFactory.getLogger(GitService.class);
+    // Un parser per thread: la configurazione globale di StaticJavaParser non è thread-safe.
+    // Il livello più recente supportato accetta record, pattern di instanceof, switch expression, text block
+    // e classi sealed, come il lexer: con il livello predefinito (Java 11) quei file verrebbero scartati
+    private static final ThreadLocal<JavaParser> PARSER = ThreadLocal.withInitial(() -> new JavaParser(
+            new ParserConfiguration().setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_17)));
+    private static final Pattern CONTEXTUAL_KEYWORD_PROBLEM =
+            Pattern.compile("'(permits|sealed)' cannot be used as an identifier as it is a keyword\\.");
 
     /**
      * Clona un repository Git in una directory specificata.
@@ -77,6 +99,22 @@ public class GitService {
         }
     }
 
+    /**
+     * Recupera l'hash del commit a cui punta HEAD nel repository del progetto.
+     *
+     * @param project Il progetto, con la sessione sul repository aperta
+     * @return L'hash del commit di HEAD, o null se il repository non ha commit
+     * @throws GitException in caso di errore durante la lettura del repository
+     */
+    public String getHeadCommit(Project project) throws GitException {
+        try {
+            ObjectId head = project.getRepositorySession().getRepository().resolve(Constants.HEAD);
+            return head != null ? head.getName() : null;
+        } catch (IOException e) {
+            throw new GitException("getHeadCommit", "Errore nel leggere HEAD del repository: " + e.getMessage());
+        }
+    }
+
     /**
      * Recupera l'hash del commit associato a una versione specifica.
      *
@@ -88,10 +126,9 @@ public class GitService {
     public String getCommitByVersion(Project project, Version version) throws GitException {
         // Applica il formato del tag di rilascio per ottenere il nome del tag
         String versionTag = VersionTagger.applyVersion(project.getReleaseTagFormat(), version.getName());
-        // Apre il repository git
-        try (Git git = Git.open(new File(project.getGitDirectory()))) {
-            // Trova il riferimento del tag nel repository
-            Ref ref = git.getRepository().findRef(versionTag);
+        try {
+            // Trova il riferimento del tag nel repository aperto dalla sessione
+            Ref ref = project.getRepositorySession().getRepository().findRef(versionTag);
             if (ref != null) {
                 // Se il riferimento esiste, ottiene l'ObjectId del commit associato al tag
                 ObjectId objectId = ref.getObjectId();
@@ -102,7 +139,7 @@ public class GitService {
                 return null;
             }
         } catch (IOException e) {
-            throw new GitException("getCommitByVersion", "Errore nell'aprire il repository: " + e.getMessage());
+            throw new GitException("getCommitByVersion", "Errore nella lettura del tag: " + e.getMessage());
         }
     }
 
@@ -117,38 +154,225 @@ public class GitService {
     public List<Method> getMethodsInVersion(Project project, Version version) throws GitException {
         // Lista per memorizzare i metodi estratti
         List<Method> methods = new ArrayList<>();
+        for (List<Method> fileMethods : getMethodsByFile(project, version).values()) {
+            methods.addAll(fileMethods);
+        }
+        return methods;
+    }
 
-        try (Repository repository = Git.open(new File(project.getGitDirectory())).getRepository();
-             RevWalk revWalk = new RevWalk(repository)) {
-            // va a cercare il commit associato alla versione
-            RevCommit commit = revWalk.parseCommit(repository.resolve(version.getHashCommit()));
-            // Ottiene l'ID dell'albero del commit
-            ObjectId treeId = commit.getTree().getId();
-
-            try (TreeWalk treeWalk = new TreeWalk(repository)) {
-                // Configura il TreeWalk per camminare nell'albero del commit
-                treeWalk.addTree(treeId);
-                // Imposta il TreeWalk per essere ricorsivo e filtrare solo i file .java
-                treeWalk.setRecursive(true);
-                // Filtra i file per estensione .java
-                treeWalk.setFilter(PathSuffixFilter.create(".java"));
-                // Itera attraverso i file trovati
-                while (treeWalk.next()) {
-                    // Ottiene il percorso del file corrente
-                    String filePath = treeWalk.getPathString();
-                    // Ignora i file di test
-                    if (isTestFile(filePath)) continue;
-                    // Estrae i metodi dal file corrente
-                    List<Method> extracted = extractMethodsFromFile(repository, treeWalk.getObjectId(0), filePath, version);
-                    // Aggiunge i metodi estratti alla lista principale
-                    methods.addAll(extracted);
-                }
+    /**
+     * Estrae tutti i metodi Java presenti in una versione, raggruppati per file.
+     * La mappa è ordinata per percorso, che coincide con l'ordine di visita dell'albero git.
+     *
+     * @param project Il progetto da analizzare.
+     * @param version La versione del progetto da cui estrarre i metodi.
+     * @return I metodi della versione, indicizzati per percorso del file.
+     * @throws GitException Se si verifica un errore durante l'accesso al repository Git.
+     */
+    public SortedMap<String, List<Method>> getMethodsByFile(Project project, Version version) throws GitException {
+        // Mappa ordinata dei metodi estratti per file
+        SortedMap<String, List<Method>> files = new TreeMap<>();
+
+        RepositorySession session = project.getRepositorySession();
+        try {
+            // Percorsi e blob dei file da analizzare, nell'ordine del TreeWalk
+            List<String> filePaths = new ArrayList<>();
+            List<ObjectId> blobIds = new ArrayList<>();
+
+            session.withRevWalk(revWalk -> {
+                // va a cercare il commit associato alla versione
+                RevCommit commit = revWalk.parseCommit(session.getRepository().resolve(version.getHashCommit()));
+                // Ottiene l'ID dell'albero del commit
+                ObjectId treeId = commit.getTree().getId();
+                collectJavaFiles(revWalk.getObjectReader(), treeId, filePaths, blobIds);
+                return null;
+            });
+
+            // Estrae i metodi dai file trovati
+            List<List<Method>> extracted = extractMethodsFromFiles(project, filePaths, blobIds, version);
+            for (int i = 0; i < filePaths.size(); i++) {
+                files.put(filePaths.get(i), extracted.get(i));
             }
         } catch (IOException | ParseProblemException e) {
             throw new GitException("getMethodsInVersion", "Errore durante l'estrazione dei metodi: " + e.getMessage());
         }
 
-        return methods;
+        return files;
+    }
+
+    /**
+     * Raccoglie percorsi e blob dei file Java non di test presenti in un albero, nell'ordine del TreeWalk.
+     */
+    private void collectJavaFiles(ObjectReader reader, ObjectId treeId, List<String> filePaths, List<ObjectId> blobIds) throws IOException {
+        try (TreeWalk treeWalk = new TreeWalk(null, reader)) {
+            // Configura il TreeWalk per camminare nell'albero del commit
+            treeWalk.addTree(treeId);
+            // Imposta il TreeWalk per essere ricorsivo e filtrare solo i file .java
+            treeWalk.setRecursive(true);
+            // Filtra i file per estensione .java
+            treeWalk.setFilter(PathSuffixFilter.create(".java"));
+            // Itera attraverso i file trovati
+            while (treeWalk.next()) {
+                // Ottiene il percorso del file corrente
+                String filePath = treeWalk.getPathString();
+                // Ignora i file di test
+                if (isTestFile(filePath)) continue;
+                filePaths.add(filePath);
+                blobIds.add(treeWalk.getObjectId(0));
+            }
+        }
+    }
+
+    /**
+     * Estrae i metodi di una versione a partire da quelli della versione precedente.
+     * Vengono analizzati solo i file aggiunti o modificati fra i due tag, i metodi dei file
+     * invariati sono riportati nella nuova versione e quelli dei file eliminati vengono scartati.
+     *
+     * @param project         Il progetto da analizzare.
+     * @param previousVersion La versione precedente, già estratta.
+     * @param previousFiles   I metodi della versione precedente, raggruppati per file.
+     * @param version         La versione da estrarre.
+     * @return I metodi della versione, indicizzati per percorso del file.
+     * @throws GitException Se si verifica un errore durante l'accesso al repository Git.
+     */
+    public SortedMap<String, List<Method>> getMethodsByFileSince(Project project, Version previousVersion, SortedMap<String, List<Method>> previousFiles, Version version) throws GitException {
+        SortedMap<String, List<Method>> files = new TreeMap<>();
+
+        RepositorySession session = project.getRepositorySession();
+        try {
+            List<DiffEntry> diffs = session.withRevWalk(revWalk -> {
+                Repository repository = session.getRepository();
+                RevCommit previousCommit = revWalk.parseCommit(repository.resolve(previousVersion.getHashCommit()));
+                RevCommit commit = revWalk.parseCommit(repository.resolve(version.getHashCommit()));
+
+                // Confronta gli alberi dei due tag limitandosi ai file .java
+                try (DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+                    diffFormatter.setReader(revWalk.getObjectReader(), repository.getConfig());
+                    diffFormatter.setPathFilter(PathSuffixFilter.create(".java"));
+                    return diffFormatter.scan(previousCommit.getTree(), commit.getTree());
+                }
+            });
+
+            // Percorsi da non riportare dalla versione precedente e file da analizzare di nuovo
+            Set<String> changedPaths = new HashSet<>();
+            List<String> filePaths = new ArrayList<>();
+            List<ObjectId> blobIds = new ArrayList<>();
+            for (DiffEntry diff : diffs) {
+                if (diff.getChangeType() != DiffEntry.ChangeType.ADD) {
+                    changedPaths.add(diff.getOldPath());
+                }
+                if (diff.getChangeType() != DiffEntry.ChangeType.DELETE && !isTestFile(diff.getNewPath())) {
+                    filePaths.add(diff.getNewPath());
+                    blobIds.add(diff.getNewId().toObjectId());
+                }
+            }
+
+            // Riporta i metodi dei file invariati nella nuova versione
+            int versionId = project.getSymbols().versions().intern(version.getName());
+            for (Map.Entry<String, List<Method>> entry : previousFiles.entrySet()) {
+                if (changedPaths.contains(entry.getKey())) continue;
+                List<Method> methods = new ArrayList<>(entry.getValue().size());
+                for (Method method : entry.getValue()) {
+                    methods.add(method.copyForVersion(versionId));
+                }
+                files.put(entry.getKey(), methods);
+            }
+
+            // Analizza solo i file aggiunti o modificati
+            List<List<Method>> extracted = extractMethodsFromFiles(project, filePaths, blobIds, version);
+            for (int i = 0; i < filePaths.size(); i++) {
+                files.put(filePaths.get(i), extracted.get(i));
+            }
+            LOGGER.info("Versione {}: {} file modificati rispetto a {}, {} file totali", version.getName(), diffs.size(), previousVersion.getName(), files.size());
+        } catch (IOException | ParseProblemException e) {
+            throw new GitException("getMethodsByFileSince", "Errore durante l'estrazione incrementale dei metodi: " + e.getMessage());
+        }
+
+        return files;
+    }
+
+    /**
+     * Calcola le metriche di storia delle modifiche dei metodi di una versione, visitando una sola volta
+     * i commit introdotti dalla versione: quelli raggiungibili dal suo tag ma non dal tag della versione precedente.
+     * I commit di merge vengono ignorati. Per la prima versione vengono visitati tutti i commit raggiungibili.
+     *
+     * @param project         Il progetto da analizzare.
+     * @param previousVersion La versione precedente, o null per la prima versione.
+     * @param version         La versione, con i metodi già estratti.
+     * @throws GitException Se si verifica un errore durante l'accesso al repository Git.
+     */
+    public void computeChangeHistory(Project project, Version previousVersion, Version version) throws GitException {
+        RepositorySession session = project.getRepositorySession();
+        ChangeHistoryCalculator calculator = new ChangeHistoryCalculator(version.getMethods(), project.getSymbols());
+
+        try {
+            session.withRevWalk(revWalk -> {
+                Repository repository = session.getRepository();
+                ObjectReader reader = revWalk.getObjectReader();
+
+                revWalk.markStart(revWalk.parseCommit(repository.resolve(version.getHashCommit())));
+                if (previousVersion != null) {
+                    revWalk.markUninteresting(revWalk.parseCommit(repository.resolve(previousVersion.getHashCommit())));
+                }
+                revWalk.setRevFilter(RevFilter.NO_MERGES);
+
+                try (DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+                    diffFormatter.setReader(reader, repository.getConfig());
+                    diffFormatter.setPathFilter(PathSuffixFilter.create(".java"));
+                    for (RevCommit commit : revWalk) {
+                        if (commit.getParentCount() > 0) {
+                            revWalk.parseHeaders(commit.getParent(0));
+                        }
+                        // I file di test non hanno metodi per il calcolatore, come nell'estrazione
+                        calculator.addCommit(commit, reader, diffFormatter, (blobId, filePath) -> isTestFile(filePath)
+                                ? List.of() : getCachedMethods(project, blobId, filePath));
+                    }
+                }
+                return null;
+            });
+        } catch (IOException e) {
+            throw new GitException("computeChangeHistory", "Errore durante l'analisi dei commit della versione " + version.getName() + ": " + e.getMessage());
+        }
+
+        calculator.fill();
+        LOGGER.info("Storia delle modifiche della versione {}: {} commit analizzati", version.getName(), calculator.getCommitCount());
+    }
+
+    /**
+     * Estrae i metodi da una lista di file, eventualmente in parallelo.
+     * Il risultato contiene una lista di metodi per ogni file, nello stesso ordine dei percorsi in input,
+     * così che l'output sia identico a quello dell'estrazione sequenziale.
+     */
+    private List<List<Method>> extractMethodsFromFiles(Project project, List<String> filePaths, List<ObjectId> blobIds, Version version) {
+        List<List<Method>> results = new ArrayList<>(filePaths.size());
+        int threads = project.getPipeline().getExtractionThreads();
+
+        if (threads <= 1 || filePaths.size() < 2) {
+            for (int i = 0; i < filePaths.size(); i++) {
+                results.add(extractMethodsFromFile(project, blobIds.get(i), filePaths.get(i), version));
+            }
+            return results;
+        }
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            List<Future<List<Method>>> futures = new ArrayList<>(filePaths.size());
+            for (int i = 0; i < filePaths.size(); i++) {
+                ObjectId blobId = blobIds.get(i);
+                String filePath = filePaths.get(i);
+                futures.add(executor.submit(() -> extractMethodsFromFile(project, blobId, filePath, version)));
+            }
+            // Raccoglie i risultati nell'ordine di sottomissione
+            for (Future<List<Method>> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GitException("getMethodsInVersion", "Estrazione dei metodi interrotta");
+        } catch (ExecutionException e) {
+            throw new GitException("getMethodsInVersion", "Errore durante l'estrazione parallela: " + e.getCause().getMessage());
+        }
+
+        return results;
     }
 
     /**
@@ -160,23 +384,122 @@ public class GitService {
 
     /**
      * Estrae i metodi Java da un file specifico nel repository.
+     * Il parsing avviene solo se il blob non è già presente nella cache dei metodi.
      */
-    private List<Method> extractMethodsFromFile(Repository repository, ObjectId objectId, String filePath, Version version) {
-        // Lista per memorizzare i metodi estratti dal file
-        List<Method> methods = new ArrayList<>();
+    private List<Method> extractMethodsFromFile(Project project, ObjectId objectId, String filePath, Version version) {
+        List<MethodCache.CachedMethod> parsed = getCachedMethods(project, objectId, filePath);
+
+        // Crea i Method della versione richiesta a partire dai dati indipendenti dalla versione
+        SymbolTable symbols = project.getSymbols();
+        int versionId = version != null ? symbols.versions().intern(version.getName()) : -1;
+        List<Method> methods = new ArrayList<>(parsed.size());
+        for (MethodCache.CachedMethod cachedMethod : parsed) {
+            methods.add(cachedMethod.toMethod(objectId, filePath, versionId, symbols));
+        }
+        return methods;
+    }
 
+    /**
+     * Restituisce i metodi di un blob Java dalla cache, analizzando il blob solo alla prima richiesta.
+     */
+    private List<MethodCache.CachedMethod> getCachedMethods(Project project, ObjectId objectId, String filePath) {
+        MethodCache cache = project.getMethodCache();
+        List<MethodCache.CachedMethod> parsed = cache.get(objectId);
+        if (parsed == null) {
+            parsed = parseMethodsFromBlob(project.getRepositorySession(), objectId, filePath, project.getPipeline().getExtractionMode());
+            cache.put(objectId, parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     * Legge e analizza un blob Java, restituendo i metodi in forma indipendente da path e versione.
+     * In modalità LEXER il blob viene analizzato dall'estrattore basato sul solo lexer, che calcola le metriche
+     * di dimensione; i file con costrutti non gestiti dal lexer passano comunque dal parser completo.
+     * In modalità VERIFY vengono eseguiti entrambi e le differenze vengono registrate nel log.
+     */
+    private List<MethodCache.CachedMethod> parseMethodsFromBlob(RepositorySession session, ObjectId objectId, String filePath, PipelineBean.ExtractionMode mode) {
+        byte[] fileBytes;
         try {
             // Apre il file dal repository e lo legge come byte array
-            byte[] fileBytes = repository.open(objectId).getBytes();
-            // Converte il byte array in un InputStream per l'analisi
-            CompilationUnit cu = StaticJavaParser.parse(new ByteArrayInputStream(fileBytes));
-            for (ClassOrInterfaceDeclaration classDecl : cu.findAll(ClassOrInterfaceDeclaration.class)) {
+            fileBytes = session.withReader(reader -> reader.open(objectId).getBytes());
+        } catch (Exception e) {
+            LOGGER.warn("Impossibile leggere il file {}: {}", filePath, e.getMessage());
+            return new ArrayList<>();
+        }
+
+        if (mode == PipelineBean.ExtractionMode.PARSER) {
+            return parseMethods(fileBytes, filePath);
+        }
+        List<MethodCache.CachedMethod> lexed = LexerMethodExtractor.extract(fileBytes);
+        if (mode == PipelineBean.ExtractionMode.LEXER) {
+            return lexed != null ? lexed : parseMethods(fileBytes, filePath);
+        }
+
+        List<MethodCache.CachedMethod> parsed = parseMethods(fileBytes, filePath);
+        if (lexed != null) {
+            compareExtractions(filePath, parsed, lexed);
+        }
+        return parsed;
+    }
+
+    /**
+     * Confronta i metodi estratti dal parser con quelli del lexer: firme, classi e metriche di dimensione.
+     */
+    private void compareExtractions(String filePath, List<MethodCache.CachedMethod> parsed, List<MethodCache.CachedMethod> lexed) {
+        if (parsed.size() != lexed.size()) {
+            LOGGER.warn("Estrazione divergente per {}: {} metodi dal parser, {} dal lexer", filePath, parsed.size(), lexed.size());
+            return;
+        }
+        for (int i = 0; i < parsed.size(); i++) {
+            MethodCache.CachedMethod expected = parsed.get(i);
+            MethodCache.CachedMethod actual = lexed.get(i);
+            Metric expectedMetric = expected.getMetric();
+            Metric actualMetric = actual.getMetric();
+            if (!expected.getSignature().equals(actual.getSignature())
+                    || !expected.getClassName().equals(actual.getClassName())
+                    || expected.getBeginLine() != actual.getBeginLine()
+                    || expected.getEndLine() != actual.getEndLine()
+                    || expectedMetric.getLoc() != actualMetric.getLoc()
+                    || expectedMetric.getStatementsCount() != actualMetric.getStatementsCount()
+                    || expectedMetric.getCyclomaticComplexity() != actualMetric.getCyclomaticComplexity()
+                    || expectedMetric.getParameterCount() != actualMetric.getParameterCount()) {
+                LOGGER.warn("Estrazione divergente per {}: parser {}#{} (loc {}, statement {}, cc {}), lexer {}#{} (loc {}, statement {}, cc {})",
+                        filePath, expected.getClassName(), expected.getSignature(), expectedMetric.getLoc(),
+                        expectedMetric.getStatementsCount(), expectedMetric.getCyclomaticComplexity(),
+                        actual.getClassName(), actual.getSignature(), actualMetric.getLoc(),
+                        actualMetric.getStatementsCount(), actualMetric.getCyclomaticComplexity());
+            }
+        }
+    }
+
+    /**
+     * Analizza il sorgente di un file Java con il parser completo.
+     * Un file che il parser non accetta viene registrato nel log e non produce metodi.
+     */
+    List<MethodCache.CachedMethod> parseMethods(byte[] fileBytes, String filePath) {
+        // Lista per memorizzare i metodi estratti dal file
+        List<MethodCache.CachedMethod> methods = new ArrayList<>();
+
+        try {
+            // Converte il byte array in una stringa per l'analisi
+            CompilationUnit cu = parse(new String(fileBytes, StandardCharsets.UTF_8));
+            // Inizio di ogni riga nel blob, per convertire le posizioni del parser in offset di byte
+            int[] lineStarts = lineStarts(fileBytes);
+            // Le metriche di tutti i metodi del file sono raccolte in un unico store colonnare, dimensionato
+            // sul numero di metodi: lo store resta nella cache dei file analizzati
+            List<ClassOrInterfaceDeclaration> classDecls = cu.findAll(ClassOrInterfaceDeclaration.class);
+            int methodCount = 0;
+            for (ClassOrInterfaceDeclaration classDecl : classDecls) {
+                methodCount += classDecl.getMethods().size();
+            }
+            MetricStore fileMetrics = new MetricStore(methodCount);
+            for (ClassOrInterfaceDeclaration classDecl : classDecls) {
                 // Per ogni dichiarazione di classe, ottiene il nome della classe
                 String className = classDecl.getNameAsString();
                 for (MethodDeclaration methodDecl : classDecl.getMethods()) {
-                    // Per ogni dichiarazione di metodo, costruisce l'oggetto Method
-                    Method method = buildMethodObject(methodDecl, className, filePath, version);
-                    methods.add(method);
+                    // Per ogni dichiarazione di metodo, costruisce il metodo con le sue metriche
+                    methods.add(buildCachedMethod(methodDecl, className, fileBytes, lineStarts, fileMetrics));
                 }
             }
         } catch (Exception e) {
@@ -187,29 +510,90 @@ public class GitService {
     }
 
     /**
-     * Crea l'oggetto Method a partire dalla dichiarazione del metodo.
+     * Crea il metodo a partire dalla dichiarazione, calcolandone le metriche.
+     * Del corpo viene memorizzato solo l'intervallo di byte nel blob, il testo si ottiene con getMethodContent.
      */
-    private Method buildMethodObject(MethodDeclaration methodDecl, String className, String path, Version version) {
+    private MethodCache.CachedMethod buildCachedMethod(MethodDeclaration methodDecl, String className, byte[] fileBytes, int[] lineStarts, MetricStore fileMetrics) {
         // Ottiene la firma del metodo come stringa, senza parametri e senza tipo di ritorno
         String signature = methodDecl.getDeclarationAsString(false, false, false);
-        // Ottiene il corpo del metodo come stringa, se presente
-        String content = methodDecl.getBody().map(BlockStmt::toString).orElse("");
-        // Costruisce il classPath come path + "/" + className
-        String classPath = path + "/" + className;
+        // Intervallo del corpo del metodo nel blob, vuoto se il metodo non ha corpo
+        Optional<BlockStmt> body = methodDecl.getBody();
+        int contentBegin = body.flatMap(Node::getBegin).map(position -> byteOffset(fileBytes, lineStarts, position)).orElse(0);
+        int contentEnd = body.flatMap(Node::getEnd).map(position -> byteOffset(fileBytes, lineStarts, position) + 1).orElse(contentBegin);
 
-        Method method = new Method(signature, classPath, version.getName(), content);
+        // Calcola tutte le metriche di dimensione e complessità con una sola visita del corpo
+        Metric metric = MetricCalculator.compute(methodDecl, fileMetrics.addRow());
 
-        // TODO: Modificare per mettere una funzione privata che calcola le metriche e aggiungere tutte le metriche da calcolare
-        Metric metric = method.getMetric();
-        metric.setLoc(calculateMethodLoc(methodDecl));
-        metric.setStatementsCount(getStatementCount(methodDecl));
-        metric.setCyclomaticComplexity(getCyclomaticComplexity(methodDecl));
+        // Intervallo di righe della dichiarazione, usato per attribuire le modifiche dei commit ai metodi
+        int beginLine = methodDecl.getBegin().map(position -> position.line).orElse(-1);
+        int endLine = methodDecl.getEnd().map(position -> position.line).orElse(-1);
 
-        return method;
+        return new MethodCache.CachedMethod(className, signature, contentBegin, contentEnd, metric, beginLine, endLine);
+    }
+
+    /**
+     * Restituisce l'offset di inizio di ogni riga di un sorgente.
+     */
+    private static int[] lineStarts(byte[] source) {
+        int lines = 1;
+        for (byte b : source) {
+            if (b == '\n') lines++;
+        }
+        int[] starts = new int[lines];
+        int line = 1;
+        for (int i = 0; i < source.length; i++) {
+            if (source[i] == '\n') starts[line++] = i + 1;
+        }
+        return starts;
+    }
+
+    /**
+     * Converte una posizione del parser (riga e colonna in caratteri, a partire da 1) nell'offset del byte
+     * corrispondente, percorrendo la riga in UTF-8.
+     */
+    private static int byteOffset(byte[] source, int[] lineStarts, Position position) {
+        int offset = lineStarts[position.line - 1];
+        for (int column = 1; column < position.column && offset < source.length; column++) {
+            int lead = source[offset] & 0xFF;
+            if (lead < 0x80) {
+                offset++;
+            } else if (lead < 0xE0) {
+                offset += 2;
+            } else if (lead < 0xF0) {
+                offset += 3;
+            } else {
+                // Carattere fuori dal BMP: due unità UTF-16, quindi due colonne
+                offset += 4;
+                column++;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Carica il sorgente del corpo di un metodo dal blob del suo file.
+     * Il testo non viene mantenuto nei Method: viene letto dal repository a ogni chiamata.
+     *
+     * @param project Il progetto a cui appartiene il metodo
+     * @param method  Il metodo
+     * @return Il sorgente del corpo del metodo, stringa vuota se il metodo non ha corpo o il blob non è noto
+     * @throws GitException in caso di errore durante la lettura del blob
+     */
+    public String getMethodContent(Project project, Method method) throws GitException {
+        if (method.getBlobId() == null || method.getContentEnd() <= method.getContentBegin()) return "";
+        try {
+            byte[] fileBytes = project.getRepositorySession().withReader(reader -> reader.open(method.getBlobId(), Constants.OBJ_BLOB).getCachedBytes());
+            return new String(fileBytes, method.getContentBegin(), method.getContentEnd() - method.getContentBegin(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new GitException("getMethodContent", "Errore durante la lettura del metodo " + project.getSymbols().signatures().get(method.getSignatureId()) + ": " + e.getMessage());
+        }
     }
 
     /**
      * Trova l'ultimo commit che ha risolto un ticket specifico.
+     * La ricerca usa l'indice ticket-commit del progetto, costruito con una sola visita della storia
+     * alla prima chiamata: fra i commit che menzionano il ticket viene preferito il più recente con
+     * una parola di fix (fix/resolve/close), altrimenti il più recente che lo menziona.
      *
      * @param project Il progetto in cui cercare il commit
      * @param ticketId L'ID del ticket da cercare
@@ -217,68 +601,35 @@ public class GitService {
      * @throws GitException in caso di errore durante l'operazione
      */
     public String findFixCommitForTicket(Project project, String ticketId) throws GitException {
-        // Normalizza l'ID del ticket per evitare problemi di case sensitivity
-        final String normalizedTicketId = ticketId.toUpperCase(Locale.ROOT);
-        // Definisce i pattern per la ricerca dei commit (strong pattern per commit con parola fix)
-        final Pattern strongPattern = Pattern.compile(
-                "\\b(fix(?:es|ed)?|resolve(?:s|d)?|close(?:s|d)?)\\b.*\\b" + Pattern.quote(normalizedTicketId) + "\\b",
-                Pattern.CASE_INSENSITIVE
-        );
-        // Fallback pattern per commit che menzionano il ticket
-        final Pattern containsPattern = Pattern.compile(
-                "\\b" + Pattern.quote(normalizedTicketId) + "\\b",
-                Pattern.CASE_INSENSITIVE
-        );
-
-        try (Git git = Git.open(new File(project.getGitDirectory()))) {
-            // Recupera il log dei commit del repository
-            Iterable<RevCommit> commits = git.log().call();
-            RevCommit strongMatch = null;
-            RevCommit weakMatch = null;
-
-            for (RevCommit commit : commits) {
-                // Ottiene il messaggio completo del commit
-                String message = commit.getFullMessage();
-                // Se il messaggio è null, salta al prossimo commit
-                if (message == null) continue;
-
-                if (strongPattern.matcher(message).find()) {
-                    // Se il commit corrisponde al pattern forte, verifica se è il più recente fra quelli forti
-                    if (strongMatch == null || commit.getCommitTime() > strongMatch.getCommitTime()) {
-                        strongMatch = commit;
-                    }
-                } else if (containsPattern.matcher(message).find()) {
-                    // Se il commit corrisponde al pattern debole, verifica se è il più recente fra quelli deboli
-                    if (weakMatch == null || commit.getCommitTime() > weakMatch.getCommitTime()) {
-                        weakMatch = commit;
-                    }
-                }
-            }
+        String fixCommit = getTicketCommitIndex(project).findFixCommit(ticketId);
+        if (fixCommit != null) {
+            LOGGER.info("Commit trovato per il ticket {}: {}", ticketId, fixCommit);
+        } else {
+            // Se non è stato trovato nessun commit, logga l'informazione e restituisce null
+            LOGGER.warn("Nessun commit trovato per il ticket: {}", ticketId.toUpperCase(Locale.ROOT));
+        }
+        return fixCommit;
+    }
 
-            if (strongMatch != null) {
-                // Se è stato trovato un commit forte, restituisce il suo nome
-                LOGGER.info("Commit forte trovato: {}", strongMatch.getName());
-                return strongMatch.getName();
-            } else if (weakMatch != null) {
-                // Se non è stato trovato un commit forte, ma uno debole, restituisce il suo nome
-                LOGGER.info("Commit debole trovato: {}", weakMatch.getName());
-                return weakMatch.getName();
-            } else {
-                // Se non è stato trovato nessun commit, logga l'informazione e restituisce null
-                LOGGER.warn("Nessun commit trovato per il ticket: {}", normalizedTicketId);
-                return null;
+    /**
+     * Restituisce l'indice ticket-commit del progetto, costruendolo alla prima richiesta.
+     *
+     * @param project Il progetto
+     * @return L'indice dei commit che menzionano i ticket del progetto
+     * @throws GitException in caso di errore durante la visita della storia
+     */
+    public TicketCommitIndex getTicketCommitIndex(Project project) throws GitException {
+        synchronized (project) {
+            if (project.getTicketCommitIndex() == null) {
+                try {
+                    TicketCommitIndex index = TicketCommitIndex.build(project.getRepositorySession(), project.getJiraID());
+                    LOGGER.info("Indice ticket-commit costruito: {} ticket menzionati", index.size());
+                    project.setTicketCommitIndex(index);
+                } catch (IOException e) {
+                    throw new GitException("findFixCommitForTicket", "Errore I/O durante l'accesso al repository: " + e.getMessage());
+                }
             }
-
-        } catch (FileNotFoundException | NoHeadException e) {
-            throw new GitException("findFixCommitForTicket", "Repository Git non inizializzato correttamente: " + e.getMessage());
-        } catch (IOException e) {
-            throw new GitException("findFixCommitForTicket", "Errore I/O durante l'accesso al repository: " + e.getMessage());
-        } catch (GitAPIException e) {
-            throw new GitException("findFixCommitForTicket", "Errore Git API durante l'esecuzione del log: " + e.getMessage());
-        } catch (Exception e) {
-            // Catch finale per errori inaspettati, ma loggato e tracciato correttamente
-            LOGGER.error("Errore imprevisto nella ricerca commit per ticket {}: {}", normalizedTicketId, e.getMessage(), e);
-            throw new GitException("findFixCommitForTicket", "Errore imprevisto: " + e.getMessage());
+            return project.getTicketCommitIndex();
         }
     }
 
@@ -291,30 +642,27 @@ public class GitService {
      * @throws GitException in caso di errore durante l'operazione
      */
     public Date getCommitDate(Project project, String commitHash) throws GitException {
-        try (Git git = Git.open(new File(project.getGitDirectory()))) {
-            // Crea un RevWalk per camminare attraverso i commit
-            RevWalk walk = new RevWalk(git.getRepository());
-            // Risolve l'hash del commit in un ObjectId
-            ObjectId commitId = git.getRepository().resolve(commitHash);
-            //ottiene il commit associato all'ObjectId
-            RevCommit commit = walk.parseCommit(commitId);
-
-            return new Date(commit.getCommitTime() * 1000L);
+        RepositorySession session = project.getRepositorySession();
+        try {
+            // Prende in prestito un RevWalk per camminare attraverso i commit
+            return session.withRevWalk(walk -> {
+                // Risolve l'hash del commit in un ObjectId
+                ObjectId commitId = session.getRepository().resolve(commitHash);
+                //ottiene il commit associato all'ObjectId
+                RevCommit commit = walk.parseCommit(commitId);
+
+                return new Date(commit.getCommitTime() * 1000L);
+            });
         } catch (IOException e) {
             throw new GitException("getCommitDate", e.getMessage());
         }
     }
 
-    /**
-     * Trova la versione più vicina a un commit specifico.
-     *
-     * @param project Il progetto da cui recuperare le versioni
-     * @param commitId L'hash del commit di cui si vuole trovare la versione
-     * @return La versione più vicina al commit, o null se non trovata
-     * @throws GitException in caso di errore durante l'operazione
-     */
     /**
      * Restituisce la versione del progetto corrispondente a un commit, oppure la successiva se non trovata direttamente.
+     * Con l'assegnazione per discendenza la versione è la prima release il cui tag contiene il commit.
+     * Con l'assegnazione per data la data del commit viene presa dall'indice ticket-commit quando disponibile, altrimenti viene letta una sola volta
+     * dal repository; la versione viene poi cercata con una ricerca binaria sulla timeline dei rilasci del progetto.
      *
      * @param project  Il progetto
      * @param commitId L'hash del commit da cercare
@@ -322,59 +670,68 @@ public class GitService {
      * @throws GitException In caso di errore durante l'accesso al repository
      */
     public Version getVersionForCommit(Project project, String commitId) throws GitException {
-        try (Git git = Git.open(new File(project.getGitDirectory()));
-             // Crea un RevWalk per camminare attraverso i commit
-             Repository repo = git.getRepository();
-             RevWalk revWalk = new RevWalk(repo)) {
-
-            // Risolve l'hash del commit in un ObjectId
-            ObjectId targetId = repo.resolve(commitId);
-            if (targetId == null) {
+        ReleaseTimeline timeline = project.getReleaseTimeline();
+        if (timeline == null) {
+            throw new GitException("getVersionForCommit", "Le versioni del progetto non sono ancora state impostate");
+        }
+        if (project.getPipeline().getReleaseAssignment() == PipelineBean.ReleaseAssignment.ANCESTRY) {
+            return getReleaseAncestry(project).getVersionForCommit(commitId);
+        }
+
+        // 1. Primo controllo: match diretto per hash, senza accedere al repository
+        Version tagged = timeline.getVersionByHash(commitId);
+        if (tagged != null) {
+            return tagged;
+        }
+
+        // 2. Fallback: la prima versione rilasciata dopo il commit
+        TicketCommitIndex index = project.getTicketCommitIndex();
+        long commitTime = index != null ? index.getCommitTime(commitId) : -1;
+        if (commitTime < 0) {
+            commitTime = readCommitTime(project, commitId);
+            if (commitTime < 0) {
                 // Se l'hash del commit non è valido, logga un avviso e restituisce null
                 LOGGER.warn("Commit non trovato: {}", commitId);
                 return null;
             }
+        }
+        return timeline.firstReleaseAfter(commitTime * 1000L);
+    }
 
-            // Ottiene il commit associato all'ObjectId
-            RevCommit targetCommit = revWalk.parseCommit(targetId);
-            // Converte il tempo del commit in un oggetto Instant per confronti temporali
-            Instant commitInstant = Instant.ofEpochSecond(targetCommit.getCommitTime());
-
-            // 1. Primo controllo: match diretto per hash
-            for (Version version : project.getVersions()) {
-                if (commitId.equals(version.getHashCommit())) {
-                    return version;
-                }
-            }
-
-            // 2. Fallback: trova la prima versione con commit successivo
-            Version nextVersion = null;
-            Instant nextInstant = null;
-
-            for (Version version : project.getVersions()) {
-                String versionHash = version.getHashCommit();
-                if (versionHash == null) continue;
-
+    /**
+     * Restituisce l'assegnazione per discendenza dei commit alle release, costruendola alla prima richiesta.
+     *
+     * @param project Il progetto, con le versioni già impostate
+     * @return L'assegnazione dei commit alla prima release che li contiene
+     * @throws GitException in caso di errore durante la visita della storia
+     */
+    public ReleaseAncestry getReleaseAncestry(Project project) throws GitException {
+        synchronized (project) {
+            if (project.getReleaseAncestry() == null) {
                 try {
-                    ObjectId versionId = repo.resolve(versionHash);
-                    if (versionId == null) continue;
-
-                    RevCommit versionCommit = revWalk.parseCommit(versionId);
-                    Instant versionInstant = Instant.ofEpochSecond(versionCommit.getCommitTime());
-
-                    if (versionInstant.isAfter(commitInstant)) {
-                        if (nextInstant == null || versionInstant.isBefore(nextInstant)) {
-                            nextVersion = version;
-                            nextInstant = versionInstant;
-                        }
+                    List<Version> releases = project.getReleaseTimeline().getReleases();
+                    ReleaseAncestry ancestry = ReleaseAncestry.build(project.getRepositorySession(), releases);
+                    LOGGER.info("Assegnazione per discendenza costruita: {} commit in {} release", ancestry.size(), releases.size());
+                    for (int i = 0; i < releases.size(); i++) {
+                        LOGGER.debug("Release {}: {} commit introdotti", releases.get(i).getName(), ancestry.countIntroducedCommits(i));
                     }
+                    project.setReleaseAncestry(ancestry);
                 } catch (IOException e) {
-                    LOGGER.warn("Errore durante l'elaborazione della versione {}: {}", version.getName(), e.getMessage());
+                    throw new GitException("getVersionForCommit", "Errore I/O durante la visita della storia: " + e.getMessage());
                 }
             }
+            return project.getReleaseAncestry();
+        }
+    }
 
-            return nextVersion;
-
+    // Legge dal repository la data di un commit in secondi dall'epoch, -1 se il commit non esiste
+    private long readCommitTime(Project project, String commitId) throws GitException {
+        RepositorySession session = project.getRepositorySession();
+        try {
+            return session.withRevWalk(revWalk -> {
+                ObjectId targetId = session.getRepository().resolve(commitId);
+                return targetId != null ? (long) revWalk.parseCommit(targetId).getCommitTime() : -1L;
+            });
         } catch (IOException e) {
             throw new GitException("getVersionForCommit", "Errore di I/O o Git: " + e.getMessage());
         } catch (IllegalArgumentException e) {
@@ -392,78 +749,64 @@ public class GitService {
      */
     public List<String> getModifiedMethodSignaturesFromCommit(Project project, String commitId) throws GitException {
         List<String> modifiedSignatures = new ArrayList<>();
+        RepositorySession session = project.getRepositorySession();
 
-        try (Git git = Git.open(new File(project.getGitDirectory()));
-             Repository repo = git.getRepository();
-             RevWalk revWalk = new RevWalk(repo)) {
-
-            ObjectId commitObjectId = repo.resolve(commitId);
-            if (commitObjectId == null) {
-                LOGGER.warn("Commit non trovato: {}", commitId);
-                return modifiedSignatures;
-            }
-
-            RevCommit commit = revWalk.parseCommit(commitObjectId);
-
-            if (commit.getParentCount() == 0) {
-                // Primo commit → estrai tutto
-                RevTree tree = commit.getTree();
-                try (TreeWalk treeWalk = new TreeWalk(repo)) {
-                    treeWalk.addTree(tree);
-                    treeWalk.setRecursive(true);
-                    treeWalk.setFilter(PathSuffixFilter.create(".java"));
+        try {
+            session.withRevWalk(revWalk -> {
+                Repository repo = session.getRepository();
+                ObjectReader reader = revWalk.getObjectReader();
+
+                ObjectId commitObjectId = repo.resolve(commitId);
+                if (commitObjectId == null) {
+                    LOGGER.warn("Commit non trovato: {}", commitId);
+                    return null;
+                }
 
-                    while (treeWalk.next()) {
-                        String path = treeWalk.getPathString();
-                        if (isTestFile(path)) continue;
+                RevCommit commit = revWalk.parseCommit(commitObjectId);
 
-                        List<Method> methods = extractMethodsFromFile(repo, treeWalk.getObjectId(0), path, null);
-                        methods.stream()
-                                .map(Method::getSignature)
+                if (commit.getParentCount() == 0) {
+                    // Primo commit → estrai tutto
+                    List<String> filePaths = new ArrayList<>();
+                    List<ObjectId> blobIds = new ArrayList<>();
+                    collectJavaFiles(reader, commit.getTree(), filePaths, blobIds);
+                    for (int i = 0; i < filePaths.size(); i++) {
+                        getCachedMethods(project, blobIds.get(i), filePaths.get(i)).stream()
+                                .map(MethodCache.CachedMethod::getSignature)
                                 .forEach(modifiedSignatures::add);
                     }
+                    return null;
                 }
-                return modifiedSignatures;
-            }
 
-            RevCommit parent = revWalk.parseCommit(commit.getParent(0).getId());
+                RevCommit parent = revWalk.parseCommit(commit.getParent(0).getId());
 
-            try (ObjectReader reader = repo.newObjectReader()) {
                 CanonicalTreeParser newTree = new CanonicalTreeParser(null, reader, commit.getTree());
                 CanonicalTreeParser oldTree = new CanonicalTreeParser(null, reader, parent.getTree());
 
-                try (DiffFormatter diffFormatter = new DiffFormatter(new ByteArrayOutputStream())) {
-                    diffFormatter.setRepository(repo);
+                try (DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+                    diffFormatter.setReader(reader, repo.getConfig());
                     List<DiffEntry> diffs = diffFormatter.scan(oldTree, newTree);
 
                     for (DiffEntry diff : diffs) {
+                        if (diff.getChangeType() == DiffEntry.ChangeType.DELETE) continue;
                         if (!diff.getNewPath().endsWith(".java") || isTestFile(diff.getNewPath())) continue;
 
-                        String newSource = getFileContent(repo, commit, diff.getNewPath());
-                        if (newSource == null) continue;
-
-                        CompilationUnit newCU;
-                        try {
-                            newCU = StaticJavaParser.parse(newSource);
-                        } catch (Exception e) {
-                            LOGGER.warn("Errore nel parsing di {}: {}", diff.getNewPath(), e.getMessage());
-                            continue;
-                        }
+                        // Metodi del file dopo il commit, estratti come quelli delle versioni: stesse firme e stessa cache
+                        List<MethodCache.CachedMethod> methods = getCachedMethods(project, diff.getNewId().toObjectId(), diff.getNewPath());
+                        if (methods.isEmpty()) continue;
 
                         List<Integer> changedLines = getChangedLines(diffFormatter, diff);
-                        for (MethodDeclaration method : newCU.findAll(MethodDeclaration.class)) {
-                            int begin = method.getBegin().map(Position::line).orElse(-1);
-                            int end = method.getEnd().map(Position::line).orElse(-1);
+                        for (MethodCache.CachedMethod method : methods) {
                             for (int line : changedLines) {
-                                if (line >= begin && line <= end) {
-                                    modifiedSignatures.add(method.getDeclarationAsString(false, false, true));
+                                if (line >= method.getBeginLine() && line <= method.getEndLine()) {
+                                    modifiedSignatures.add(method.getSignature());
                                     break;
                                 }
                             }
                         }
                     }
                 }
-            }
+                return null;
+            });
         } catch (IOException e) {
             throw new GitException("getModifiedMethodSignaturesFromCommit", "Errore I/O: " + e.getMessage());
         } catch (Exception e) {
@@ -474,6 +817,25 @@ public class GitService {
     }
 
 
+    /**
+     * Analizza un sorgente Java con il parser del thread corrente.
+     *
+     * @throws ParseProblemException se il sorgente non è analizzabile
+     */
+    private CompilationUnit parse(String source) {
+        ParseResult<CompilationUnit> result = PARSER.get().parse(source);
+        if (result.getResult().isEmpty() || !result.getProblems().stream().allMatch(GitService::isContextualKeywordProblem)) {
+            throw new ParseProblemException(result.getProblems());
+        }
+        return result.getResult().get();
+    }
+
+    // Il validatore di Java 17 tratta permits e sealed come parole riservate, mentre per javac sono contestuali:
+    // un file che li usa come identificatori (es. Semaphore) è valido e viene accettato
+    private static boolean isContextualKeywordProblem(Problem problem) {
+        return CONTEXTUAL_KEYWORD_PROBLEM.matcher(problem.getMessage()).matches();
+    }
+
     private List<Integer> getChangedLines(DiffFormatter diffFormatter, DiffEntry diff) throws IOException {
         List<Integer> changedLines = new ArrayList<>();
         for (var edit : diffFormatter.toFileHeader(diff).toEditList()) {
@@ -483,53 +845,4 @@ public class GitService {
         }
         return changedLines;
     }
-
-
-    private int calculateMethodLoc(MethodDeclaration methodDecl) {
-        Optional<BlockStmt> bodyOpt = methodDecl.getBody();
-        if (bodyOpt.isPresent()) {
-            String bodyString = bodyOpt.get().toString();
-            long loc = Arrays.stream(bodyString.split("\n"))
-                    .map(String::trim)
-                    .filter(line -> !line.isEmpty())
-                    .filter(line -> !line.startsWith("//"))
-                    .filter(line -> !line.startsWith("/*"))
-                    .filter(line -> !line.startsWith("*"))
-                    .filter(line -> !line.startsWith("*/"))
-                    .count();
-            return (int) loc;
-        } else {
-            return 0;
-        }
-    }
-
-    public static int getStatementCount(MethodDeclaration methodDecl) {
-        Optional<BlockStmt> bodyOpt = methodDecl.getBody();
-        if (bodyOpt.isEmpty()) {
-            return 0;
-        }
-        BlockStmt body = bodyOpt.get();
-        return (int) body.findAll(Statement.class).stream().count();
-    }
-
-    public static int getCyclomaticComplexity(MethodDeclaration methodDecl) {
-        if (methodDecl.getBody().isEmpty()) {
-            return 1;
-        }
-        BlockStmt body = methodDecl.getBody().get();
-        int complexity = 1;
-        complexity += body.findAll(IfStmt.class).size();
-        complexity += body.findAll(ForStmt.class).size();
-        complexity += body.findAll(ForEachStmt.class).size();
-        complexity += body.findAll(WhileStmt.class).size();
-        complexity += body.findAll(DoStmt.class).size();
-        complexity += body.findAll(SwitchEntry.class).stream()
-                .mapToInt(entry -> entry.getLabels().isEmpty() ? 0 : 1)
-                .sum();
-        complexity += (int) body.findAll(BinaryExpr.class).stream()
-                .filter(expr -> expr.getOperator() == BinaryExpr.Operator.AND
-                        || expr.getOperator() == BinaryExpr.Operator.OR)
-                .count();
-        return complexity;
-    }
 }
\ No newline at end of file
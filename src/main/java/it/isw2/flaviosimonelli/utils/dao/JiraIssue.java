@@ -0,0 +1,66 @@
+package it.isw2.flaviosimonelli.utils.dao;
+
+import java.util.List;
+
+/**
+ * Campi di una issue Jira usati dalla pipeline: chiave, data di creazione, data dell'ultimo aggiornamento
+ * e nomi delle affected version. Le date sono mantenute nel formato restituito da Jira.
+ * Tipo, stato e risoluzione sono presenti solo se richiesti alla ricerca e non vengono salvati nell'archivio dei ticket.
+ */
+class JiraIssue {
+    private final String key;
+    private final String created;
+    private final String updated;
+    private final List<String> versionNames;
+    private String issueType;
+    private String status;
+    private String resolution;
+
+    JiraIssue(String key, String created, String updated, List<String> versionNames) {
+        this.key = key;
+        this.created = created;
+        this.updated = updated;
+        this.versionNames = versionNames;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    String getCreated() {
+        return created;
+    }
+
+    /**
+     * Restituisce la data dell'ultimo aggiornamento, o null se la risposta non la conteneva.
+     */
+    String getUpdated() {
+        return updated;
+    }
+
+    List<String> getVersionNames() {
+        return versionNames;
+    }
+
+    /**
+     * Indica se la issue è un bug risolto, cioè se soddisfa ancora la JQL dei bug risolti.
+     * Richiede che tipo, stato e risoluzione siano stati letti dalla risposta.
+     */
+    boolean isFixedBug() {
+        return "Bug".equals(issueType)
+                && ("Resolved".equals(status) || "Closed".equals(status))
+                && "Fixed".equals(resolution);
+    }
+
+    void setIssueType(String issueType) {
+        this.issueType = issueType;
+    }
+
+    void setStatus(String status) {
+        this.status = status;
+    }
+
+    void setResolution(String resolution) {
+        this.resolution = resolution;
+    }
+}
@@ -0,0 +1,264 @@
+package it.isw2.flaviosimonelli.utils.dao;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache su disco delle risposte della Jira REST API, indicizzata per URL della richiesta.
+ * Per ogni URL viene salvato un solo file compresso in gzip, con i metadati della risposta
+ * (URL, ETag, Last-Modified, istante del download e snapshot) seguiti dal corpo: metadati e corpo vengono
+ * sostituiti insieme, quindi un lettore non può mai abbinare un corpo nuovo a un ETag vecchio.
+ * Una risposta più giovane del TTL viene servita senza contattare il server; una più vecchia viene rivalidata
+ * con una richiesta condizionale se il server ha fornito ETag o Last-Modified, altrimenti viene scaricata di nuovo.
+ * <p>
+ * Le pagine di una stessa ricerca devono provenire dallo stesso momento, altrimenti uno spostamento dei risultati
+ * fra due pagine duplica o salta delle issue. Per questo ogni risposta registra lo snapshot a cui appartiene:
+ * l'istante in cui è stata scaricata la prima pagina della sua ricerca, o il proprio download se è una risposta
+ * singola. Le pagine successive alla prima sono servite dalla cache solo se appartengono allo snapshot della prima
+ * (vedi {@link #isUsable(Entry, long)}).
+ * In modalità offline tutte le risposte vengono servite dalla cache, indipendentemente dalla loro età.
+ * I file vengono scritti in modo atomico, quindi più thread e più esecuzioni possono condividere la cache.
+ * Un file illeggibile o danneggiato viene cancellato e trattato come una risposta assente.
+ */
+public class JiraResponseCache {
+    private static final Logger LOGGER = Logger.getLogger(JiraResponseCache.class.getName());
+    private static final String ENTRY_SUFFIX = ".entry.gz";
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * Snapshot di una risposta singola, che non fa parte di una ricerca: coincide con l'istante del download.
+     */
+    public static final long OWN_SNAPSHOT = -1;
+
+    private final Path directory;
+    private final Duration ttl;
+    private final boolean offline;
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger revalidations = new AtomicInteger();
+    private final AtomicInteger downloads = new AtomicInteger();
+
+    /**
+     * Crea la cache in una directory, creata al primo salvataggio se non esiste.
+     *
+     * @param directory La directory della cache
+     * @param ttl       Il tempo per cui una risposta è servita senza contattare il server
+     * @param offline   true per servire tutte le risposte dalla cache, senza mai contattare il server
+     */
+    public JiraResponseCache(Path directory, Duration ttl, boolean offline) {
+        this.directory = directory;
+        this.ttl = ttl;
+        this.offline = offline;
+    }
+
+    /**
+     * Restituisce la risposta salvata per un URL.
+     *
+     * @param url L'URL della richiesta
+     * @return La risposta salvata, o null se l'URL non è in cache o il suo file non è leggibile
+     */
+    public Entry get(String url) {
+        Path file = directory.resolve(key(url) + ENTRY_SUFFIX);
+        try {
+            return readEntry(url, file);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            // File troncato o danneggiato: la risposta viene scaricata di nuovo
+            LOGGER.warning("Risposta in cache " + file + " non leggibile, viene scartata: " + e);
+            discard(file);
+            return null;
+        }
+    }
+
+    private static Entry readEntry(String url, Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) return null;
+            // Una collisione dell'hash non deve restituire la risposta di un altro URL
+            if (!url.equals(in.readUTF())) return null;
+            String etag = emptyToNull(in.readUTF());
+            String lastModified = emptyToNull(in.readUTF());
+            long fetchedAt = in.readLong();
+            long snapshot = in.readLong();
+            return new Entry(in.readAllBytes(), etag, lastModified, fetchedAt, snapshot);
+        }
+    }
+
+    /**
+     * Indica se una risposta salvata può essere servita senza contattare il server.
+     *
+     * @param entry La risposta salvata
+     * @return true in modalità offline o se la risposta è più giovane del TTL
+     */
+    public boolean isUsable(Entry entry) {
+        return offline || System.currentTimeMillis() - entry.fetchedAt < ttl.toMillis();
+    }
+
+    /**
+     * Indica se una pagina salvata può essere servita senza contattare il server come parte di una ricerca.
+     *
+     * @param entry    La pagina salvata
+     * @param snapshot Lo snapshot della prima pagina della ricerca
+     * @return true in modalità offline o se la pagina appartiene allo stesso snapshot, indipendentemente dalla sua età
+     */
+    public boolean isUsable(Entry entry, long snapshot) {
+        return offline || entry.snapshot == snapshot;
+    }
+
+    /**
+     * Indica se la cache è in modalità offline.
+     *
+     * @return true se il server non deve mai essere contattato
+     */
+    public boolean isOffline() {
+        return offline;
+    }
+
+    /**
+     * Salva la risposta scaricata per un URL, sostituendo quella precedente.
+     *
+     * @param url          L'URL della richiesta
+     * @param body         Il corpo della risposta, non compresso
+     * @param etag         L'ETag della risposta, o null
+     * @param lastModified Il Last-Modified della risposta, o null
+     * @param snapshot     Lo snapshot della ricerca a cui appartiene la risposta, o {@link #OWN_SNAPSHOT}
+     * @throws IOException In caso di errore di scrittura
+     */
+    public void put(String url, byte[] body, String etag, String lastModified, long snapshot) throws IOException {
+        downloads.incrementAndGet();
+        Files.createDirectories(directory);
+        writeEntry(url, body, etag, lastModified, snapshot);
+    }
+
+    /**
+     * Registra che la risposta salvata per un URL è stata confermata dal server (304 Not Modified),
+     * facendo ripartire il suo TTL. Il file viene riscritto con il corpo della risposta confermata.
+     *
+     * @param url      L'URL della richiesta
+     * @param entry    La risposta salvata
+     * @param snapshot Lo snapshot della ricerca in cui la risposta è stata confermata, o {@link #OWN_SNAPSHOT}
+     * @throws IOException In caso di errore di scrittura
+     */
+    public void revalidated(String url, Entry entry, long snapshot) throws IOException {
+        revalidations.incrementAndGet();
+        Files.createDirectories(directory);
+        writeEntry(url, entry.body, entry.etag, entry.lastModified, snapshot);
+    }
+
+    /**
+     * Registra una risposta servita dalla cache senza contattare il server.
+     */
+    public void hit() {
+        hits.incrementAndGet();
+    }
+
+    /**
+     * Restituisce le statistiche di utilizzo della cache.
+     *
+     * @return Una descrizione delle risposte servite dalla cache, rivalidate e scaricate
+     */
+    public String getStatistics() {
+        return "servite dalla cache " + hits.get() + ", rivalidate " + revalidations.get() + ", scaricate " + downloads.get();
+    }
+
+    // Scrive metadati e corpo in un file temporaneo e lo sposta al posto della voce precedente con un'unica operazione
+    private void writeEntry(String url, byte[] body, String etag, String lastModified, long snapshot) throws IOException {
+        String key = key(url);
+        long fetchedAt = System.currentTimeMillis();
+        Path temp = Files.createTempFile(directory, key, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(url);
+                out.writeUTF(etag != null ? etag : "");
+                out.writeUTF(lastModified != null ? lastModified : "");
+                out.writeLong(fetchedAt);
+                out.writeLong(snapshot == OWN_SNAPSHOT ? fetchedAt : snapshot);
+                out.write(body);
+            }
+            move(temp, directory.resolve(key + ENTRY_SUFFIX));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void discard(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.warning("Impossibile cancellare " + file + ": " + e);
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Nome dei file di un URL: SHA-256 dell'URL in esadecimale
+    private static String key(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(url.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 non disponibile", e);
+        }
+    }
+
+    /**
+     * Risposta salvata nella cache.
+     */
+    public static class Entry {
+        private final byte[] body;
+        private final String etag;
+        private final String lastModified;
+        private final long fetchedAt;
+        private final long snapshot;
+
+        private Entry(byte[] body, String etag, String lastModified, long fetchedAt, long snapshot) {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.fetchedAt = fetchedAt;
+            this.snapshot = snapshot;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public long getSnapshot() {
+            return snapshot;
+        }
+    }
+}
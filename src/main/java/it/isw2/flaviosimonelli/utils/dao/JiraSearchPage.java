@@ -0,0 +1,164 @@
+package it.isw2.flaviosimonelli.utils.dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pagina di una ricerca Jira, letta in streaming dal corpo della risposta con {@link JsonPullParser}.
+ * Della pagina vengono conservati solo il totale, la dimensione effettiva della pagina e i campi delle issue
+ * usati dalla pipeline; tutti gli altri valori vengono saltati senza essere materializzati.
+ */
+class JiraSearchPage {
+    private final int total;
+    private final int maxResults;
+    private final List<JiraIssue> issues;
+
+    private JiraSearchPage(int total, int maxResults, List<JiraIssue> issues) {
+        this.total = total;
+        this.maxResults = maxResults;
+        this.issues = issues;
+    }
+
+    /**
+     * Legge una pagina della ricerca dal corpo della risposta, già decompresso. Lo stream non viene chiuso.
+     *
+     * @param body              Il corpo della risposta in UTF-8
+     * @param defaultMaxResults La dimensione della pagina se la risposta non la indica
+     * @return La pagina letta
+     * @throws IOException In caso di errore di lettura o di JSON non valido
+     */
+    static JiraSearchPage read(InputStream body, int defaultMaxResults) throws IOException {
+        JsonPullParser parser = new JsonPullParser(new InputStreamReader(body, StandardCharsets.UTF_8));
+        int total = -1;
+        int maxResults = defaultMaxResults;
+        List<JiraIssue> issues = Collections.emptyList();
+
+        parser.beginObject();
+        while (parser.hasNext()) {
+            switch (parser.nextName()) {
+                case "total":
+                    total = parser.nextInt();
+                    break;
+                case "maxResults":
+                    maxResults = parser.nextInt();
+                    break;
+                case "issues":
+                    issues = new ArrayList<>(maxResults);
+                    parser.beginArray();
+                    while (parser.hasNext()) {
+                        issues.add(readIssue(parser));
+                    }
+                    parser.endArray();
+                    break;
+                default:
+                    parser.skipValue();
+            }
+        }
+        parser.endObject();
+
+        if (total < 0) throw new IOException("Pagina della ricerca senza il campo total");
+        return new JiraSearchPage(total, maxResults, issues);
+    }
+
+    int getTotal() {
+        return total;
+    }
+
+    int getMaxResults() {
+        return maxResults;
+    }
+
+    List<JiraIssue> getIssues() {
+        return issues;
+    }
+
+    private static JiraIssue readIssue(JsonPullParser parser) throws IOException {
+        String key = null;
+        String created = null;
+        String updated = null;
+        List<String> versionNames = Collections.emptyList();
+        String issueType = null;
+        String status = null;
+        String resolution = null;
+
+        parser.beginObject();
+        while (parser.hasNext()) {
+            String name = parser.nextName();
+            if (name.equals("key")) {
+                key = parser.nextString();
+            } else if (name.equals("fields")) {
+                parser.beginObject();
+                while (parser.hasNext()) {
+                    switch (parser.nextName()) {
+                        case "created":
+                            created = parser.nextString();
+                            break;
+                        case "updated":
+                            updated = parser.nextString();
+                            break;
+                        case "versions":
+                            versionNames = readVersionNames(parser);
+                            break;
+                        case "issuetype":
+                            issueType = readName(parser);
+                            break;
+                        case "status":
+                            status = readName(parser);
+                            break;
+                        case "resolution":
+                            resolution = readName(parser);
+                            break;
+                        default:
+                            parser.skipValue();
+                    }
+                }
+                parser.endObject();
+            } else {
+                parser.skipValue();
+            }
+        }
+        parser.endObject();
+
+        if (key == null || created == null) {
+            throw new IOException("Issue senza chiave o data di creazione" + (key != null ? ": " + key : ""));
+        }
+        JiraIssue issue = new JiraIssue(key, created, updated, versionNames);
+        issue.setIssueType(issueType);
+        issue.setStatus(status);
+        issue.setResolution(resolution);
+        return issue;
+    }
+
+    private static List<String> readVersionNames(JsonPullParser parser) throws IOException {
+        if (parser.nextNull()) return Collections.emptyList();
+        List<String> names = new ArrayList<>(2);
+        parser.beginArray();
+        while (parser.hasNext()) {
+            String name = readName(parser);
+            if (name != null) names.add(name);
+        }
+        parser.endArray();
+        return names;
+    }
+
+    // Campo name di un oggetto come issuetype, status, resolution o una versione; null se l'oggetto è null
+    private static String readName(JsonPullParser parser) throws IOException {
+        if (parser.nextNull()) return null;
+        String value = null;
+        parser.beginObject();
+        while (parser.hasNext()) {
+            if (parser.nextName().equals("name")) {
+                value = parser.nextString();
+            } else {
+                parser.skipValue();
+            }
+        }
+        parser.endObject();
+        return value;
+    }
+}
@@ -3,74 +3,133 @@ package it.isw2.flaviosimonelli.utils.dao;
 import it.isw2.flaviosimonelli.model.Project.Project;
 import it.isw2.flaviosimonelli.model.Version;
 import it.isw2.flaviosimonelli.model.Ticket;
+import it.isw2.flaviosimonelli.utils.bean.PipelineBean;
 import it.isw2.flaviosimonelli.utils.Comparator.NameVersionComparator;
 import it.isw2.flaviosimonelli.utils.exception.JiraException;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.logging.Level;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 /**
  * DAO per l'interazione con la Jira REST API.
+ * Le richieste passano da un unico HttpClient condiviso, che riusa le connessioni e chiede le risposte compresse in gzip.
+ * Se abilitata dalla pipeline, le risposte vengono salvate in una cache su disco e rivalidate con richieste
+ * condizionali (vedi {@link JiraResponseCache}).
  * Tutti i metodi pubblici lanciano JiraException in caso di errore.
  */
 public class JiraService {
     private static final Logger LOGGER = Logger.getLogger(JiraService.class.getName());
     private static final String JIRA_URL = "https://issues.apache.org/jira/rest/api/2";
     private static final int MAX_RESULTS_PER_PAGE = 100;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(120);
+    private static final Path CACHE_PATH = Path.of("cache", "jira");
+    private static final DateTimeFormatter JIRA_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+    private static final DateTimeFormatter JQL_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm");
+    // Campi delle issue della ricerca incrementale: quelli dei ticket e quelli per verificare che siano ancora bug risolti
+    private static final String UPDATED_FIELDS = "created,updated,versions,issuetype,status,resolution";
+    // Campi delle issue della ricerca completa: quelli dei ticket e la data di aggiornamento per il watermark
+    private static final String FIXED_BUG_FIELDS = "created,updated,versions";
+
+    // Client condiviso da tutte le istanze: mantiene il pool delle connessioni aperte verso Jira
+    private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
+            .connectTimeout(CONNECT_TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    private final String jiraUrl;
+    private final Path cachePath;
+
+    /**
+     * Crea il servizio verso l'istanza Jira di Apache.
+     */
+    public JiraService() {
+        this(JIRA_URL);
+    }
+
+    /**
+     * Crea il servizio verso un'altra istanza della Jira REST API.
+     *
+     * @param jiraUrl L'URL base della REST API, senza la barra finale
+     */
+    public JiraService(String jiraUrl) {
+        this(jiraUrl, CACHE_PATH);
+    }
+
+    /**
+     * Crea il servizio verso un'istanza della Jira REST API, con la cache delle risposte e l'archivio dei ticket
+     * in una directory diversa da quella predefinita.
+     *
+     * @param jiraUrl   L'URL base della REST API, senza la barra finale
+     * @param cachePath La directory della cache
+     */
+    JiraService(String jiraUrl, Path cachePath) {
+        this.jiraUrl = jiraUrl;
+        this.cachePath = cachePath;
+    }
 
     /**
      * Recupera i ticket bug risolti per un progetto.
+     * Con la sincronizzazione incrementale le issue vengono lette dall'archivio locale del progetto, aggiornato
+     * chiedendo a Jira solo le issue modificate dopo il watermark; altrimenti viene scaricata l'intera ricerca.
      *
      * @param project Il progetto da interrogare
      * @return Lista di Ticket
      * @throws JiraException In caso di errore nella chiamata API
      */
     public List<Ticket> getFixedBugTickets(Project project) throws JiraException {
-
         String projName = project.getJiraID();
-        String jql = buildFixedBugsJql(projName);
+        JiraResponseCache cache = responseCache(project.getPipeline());
 
-        List<Ticket> tickets = new ArrayList<>();
-        int startAt = 0;
-        int totalIssues = 0;
-        int processedIssues = 0;
-        boolean hasMorePages = true;
-
-        while (hasMorePages) {
-            String url = JIRA_URL + "/search/?jql=" + jql + "&startAt=" + startAt + "&maxResults=" + MAX_RESULTS_PER_PAGE;
-            try {
-                JSONObject jsonResponse = getJsonFromJira(jql, startAt, MAX_RESULTS_PER_PAGE);
-
-                totalIssues = jsonResponse.getInt("total");
-                JSONArray issues = jsonResponse.getJSONArray("issues");
-                int currentPageSize = issues.length();
-
-                processTicketsFromJson(issues, tickets, project);
-
-                processedIssues += currentPageSize;
-                hasMorePages = processedIssues < totalIssues && currentPageSize > 0;
-                startAt += currentPageSize;
-
-            } catch (JSONException | IOException | URISyntaxException e) {
-                throw new JiraException("Errore durante il recupero dei ticket da Jira: " + e.getMessage(), e.getClass().getSimpleName(), url);
-            }
+        Collection<JiraIssue> issues;
+        if (project.getPipeline().isJiraIncremental()) {
+            issues = syncFixedBugIssues(project, cache);
+        } else {
+            List<JiraIssue> found = new ArrayList<>();
+            searchIssues(buildFixedBugsJql(projName), FIXED_BUG_FIELDS, project, cache, found::add);
+            issues = found;
         }
+        if (cache != null) LOGGER.info("Risposte Jira: " + cache.getStatistics());
 
+        List<Ticket> tickets = new ArrayList<>(issues.size());
+        try {
+            processTickets(issues, tickets, project);
+        } catch (DateTimeParseException e) {
+            throw new JiraException("Errore durante la conversione dei ticket di Jira: " + e.getMessage(), e.getClass().getSimpleName(), null);
+        }
         return tickets;
     }
 
@@ -88,22 +147,13 @@ public class JiraService {
 
         List<Version> versions = new ArrayList<>();
         String projName = project.getJiraID();
-        String url = JIRA_URL + "/project/" + projName + "/versions";
+        String url = jiraUrl + "/project/" + projName + "/versions";
 
         try {
             LOGGER.info("URL request http: " + url);
 
-            URI uri = new URI(url);
-            HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
-            connection.setRequestMethod("GET");
-
-            int responseCode = connection.getResponseCode();
-            if (responseCode != HttpURLConnection.HTTP_OK) {
-                throw new IOException("Risposta non valida da JIRA. Codice: " + responseCode);
-            }
-
-            String response = readResponseFromConnection(connection);
-            JSONArray jsonVersions = new JSONArray(response);
+            JSONArray jsonVersions = getFromJira(url, responseCache(project.getPipeline()), JiraResponseCache.OWN_SNAPSHOT,
+                    body -> new JSONArray(new JSONTokener(new InputStreamReader(body, StandardCharsets.UTF_8))));
 
             for (int i = 0; i < jsonVersions.length(); i++) {
                 JSONObject versionJson = jsonVersions.getJSONObject(i);
@@ -117,6 +167,9 @@ public class JiraService {
             return versions;
         } catch (JSONException | IOException | URISyntaxException e) {
             throw new JiraException("Errore durante il recupero delle versioni da Jira: " + e.getMessage(), e.getClass().getSimpleName(), url);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JiraException("Recupero delle versioni da Jira interrotto", e.getClass().getSimpleName(), url);
         }
     }
 
@@ -133,40 +186,321 @@ public class JiraService {
     }
 
     /**
-     * Recupera dati JSON da Jira con supporto paginazione.
+     * Costruisce la JQL delle issue del progetto aggiornate a partire da un istante, in ordine di aggiornamento.
+     * Lo stato non viene filtrato, così le issue che non sono più bug risolti possono essere rimosse dall'archivio.
      */
-    private JSONObject getJsonFromJira(String jql, int startAt, int maxResults) throws IOException, JSONException, URISyntaxException {
-        String url = JIRA_URL + "/search/?jql=" + jql + "&startAt=" + startAt + "&maxResults=" + maxResults;
-        URI uri = new URI(url);
-        HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
-        connection.setRequestMethod("GET");
+    private String buildUpdatedSinceJql(String projectName, ZonedDateTime since) {
+        String jql = "project = " + projectName + " AND updated >= \"" + since.format(JQL_DATE_FORMAT) + "\" ORDER BY updated ASC";
+        return URLEncoder.encode(jql, StandardCharsets.UTF_8).replace("+", "%20");
+    }
 
-        int responseCode = connection.getResponseCode();
-        if (responseCode != HttpURLConnection.HTTP_OK) {
-            throw new IOException("Risposta non valida da JIRA. Codice: " + responseCode);
+    /**
+     * Costruisce l'URL di una pagina della ricerca.
+     */
+    private String searchUrl(String jql, String fields, int startAt, int maxResults) {
+        return jiraUrl + "/search/?jql=" + jql + "&fields=" + fields + "&startAt=" + startAt + "&maxResults=" + maxResults;
+    }
+
+    /**
+     * Sincronizza l'archivio locale dei bug risolti del progetto e ne restituisce le issue.
+     * Alla prima esecuzione l'archivio viene riempito con la ricerca completa; nelle successive Jira restituisce
+     * solo le issue aggiornate dopo il watermark, che sostituiscono quelle salvate o vengono rimosse se non
+     * sono più bug risolti. La ricerca parte un giorno prima del watermark: la JQL ha la precisione del minuto
+     * e usa il fuso orario del server, e le issue aggiornate mentre le pagine venivano scaricate vengono rilette.
+     * Le issue cancellate o spostate in un altro progetto non risultano aggiornate: dopo la sincronizzazione il numero
+     * dei bug risolti viene confrontato con quello della ricerca completa e, se è diverso, l'archivio viene ricostruito.
+     * L'ordine delle issue dell'archivio non è quello della ricerca completa: i ticket vengono ordinati dal chiamante.
+     * In modalità offline viene usato l'archivio così com'è.
+     */
+    private Collection<JiraIssue> syncFixedBugIssues(Project project, JiraResponseCache cache) throws JiraException {
+        String projName = project.getJiraID();
+        Path file = cachePath.resolve("tickets_" + projName + ".json");
+        JiraTicketStore stored;
+        try {
+            stored = JiraTicketStore.load(file);
+        } catch (IOException | JSONException | DateTimeParseException e) {
+            throw new JiraException("Errore durante la lettura dei ticket salvati: " + e.getMessage(), e.getClass().getSimpleName(), file.toString());
         }
 
-        String response = readResponseFromConnection(connection);
-        return new JSONObject(response);
+        JiraTicketStore store;
+        if (stored == null || stored.getWatermark() == null) {
+            store = JiraTicketStore.create(file);
+            searchIssues(buildFixedBugsJql(projName), FIXED_BUG_FIELDS, project, cache, store::merge);
+            LOGGER.info("Archivio dei ticket creato con " + store.getIssues().size() + " issue per il progetto " + projName);
+        } else if (!project.getPipeline().isJiraOffline()) {
+            ZonedDateTime since = stored.getWatermark().minusDays(1).withZoneSameInstant(ZoneOffset.UTC);
+            int[] updated = new int[1];
+            // Le risposte della ricerca incrementale cambiano a ogni esecuzione: non passano dalla cache
+            searchIssues(buildUpdatedSinceJql(projName, since), UPDATED_FIELDS, project, null, issue -> {
+                updated[0]++;
+                if (issue.isFixedBug()) {
+                    stored.merge(issue);
+                } else {
+                    stored.remove(issue.getKey(), issue.getUpdated());
+                }
+            });
+            LOGGER.info("Sincronizzazione incrementale: " + updated[0] + " issue aggiornate dal " + since
+                    + ", " + stored.getIssues().size() + " bug risolti per il progetto " + projName);
+
+            // Le issue cancellate o spostate in un altro progetto non compaiono fra quelle aggiornate:
+            // se il numero dei bug risolti su Jira è diverso da quello dell'archivio, l'archivio viene ricostruito
+            int fixedBugs = countIssues(buildFixedBugsJql(projName));
+            if (fixedBugs != stored.getIssues().size()) {
+                LOGGER.info("Jira ha " + fixedBugs + " bug risolti e l'archivio " + stored.getIssues().size()
+                        + ": l'archivio del progetto " + projName + " viene ricostruito");
+                store = JiraTicketStore.create(file);
+                searchIssues(buildFixedBugsJql(projName), FIXED_BUG_FIELDS, project, null, store::merge);
+            } else if (updated[0] == 0) {
+                return stored.getIssues();
+            } else {
+                store = stored;
+            }
+        } else {
+            LOGGER.info("Jira offline: usati i " + stored.getIssues().size() + " ticket salvati per il progetto " + projName);
+            return stored.getIssues();
+        }
+
+        try {
+            store.save();
+        } catch (IOException | JSONException e) {
+            throw new JiraException("Errore durante il salvataggio dei ticket: " + e.getMessage(), e.getClass().getSimpleName(), file.toString());
+        }
+        return store.getIssues();
     }
 
     /**
-     * Converte issues JSON in Ticket.
+     * Esegue una ricerca e passa le issue trovate al consumer, nell'ordine della ricerca.
+     * La prima pagina fornisce il numero totale di issue, le pagine successive vengono scaricate in parallelo
+     * fino al numero di richieste concorrenti della pipeline e poi elaborate nell'ordine di startAt.
+     * Con la cache, tutte le pagine provengono dallo snapshot della prima: se la prima pagina è servita dalla cache
+     * ma manca qualcuna delle successive dello stesso snapshot, la ricerca viene riletta da capo dal server.
+     *
+     * @param jql      La JQL già codificata per l'URL
+     * @param fields   I campi richiesti
+     * @param cache    La cache delle risposte, o null
+     * @param consumer Riceve ogni issue della ricerca
      */
-    private void processTicketsFromJson(JSONArray issues, List<Ticket> tickets, Project project) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
-        for (int i = 0; i < issues.length(); i++) {
-            JSONObject issue = issues.getJSONObject(i);
-            JSONObject fields = issue.getJSONObject("fields");
+    private void searchIssues(String jql, String fields, Project project, JiraResponseCache cache, Consumer<JiraIssue> consumer) throws JiraException {
+        String projName = project.getJiraID();
+        String url = searchUrl(jql, fields, 0, MAX_RESULTS_PER_PAGE);
+        try {
+            long searchStart = System.currentTimeMillis();
+            JiraSearchPage firstPage = getPageFromJira(url, cache, JiraResponseCache.OWN_SNAPSHOT);
+            long snapshot = snapshotOf(url, cache);
+            List<String> pageUrls = pageUrls(jql, fields, firstPage);
+            if (cache != null && !cache.isOffline() && snapshot < searchStart && !isCachedSnapshot(pageUrls, cache, snapshot)) {
+                // Prima pagina di un'esecuzione precedente senza tutte le pagine dello stesso snapshot
+                LOGGER.info("Pagine in cache di snapshot diversi per il progetto " + projName + ": la ricerca viene riletta");
+                snapshot = System.currentTimeMillis();
+                firstPage = getPageFromJira(url, cache, snapshot);
+                pageUrls = pageUrls(jql, fields, firstPage);
+            }
 
-            Ticket ticket = new Ticket();
-            ticket.setId(issue.getString("key"));
+            int totalIssues = firstPage.getTotal();
+            firstPage.getIssues().forEach(consumer);
+            // Jira può ridurre la dimensione delle pagine richiesta: vale quella indicata nella risposta
+            int pageSize = firstPage.getMaxResults();
+            int processedIssues = firstPage.getIssues().size();
+            if (pageUrls.isEmpty()) {
+                return;
+            }
+
+            List<JiraSearchPage> pages = getPagesFromJira(pageUrls, project.getPipeline().getJiraThreads(), cache, snapshot);
+            int startAt = processedIssues;
+            for (int i = 0; i < pages.size(); i++) {
+                url = pageUrls.get(i);
+                List<JiraIssue> issues = pages.get(i).getIssues();
+                issues.forEach(consumer);
+                processedIssues += issues.size();
+                startAt += pageSize;
+                // Il totale più recente fra quelli delle pagine: può essere cresciuto dopo la prima
+                totalIssues = Math.max(totalIssues, pages.get(i).getTotal());
+            }
+
+            // Se il totale è cresciuto durante il download, le issue rimanenti vengono lette in sequenza
+            while (processedIssues < totalIssues) {
+                url = searchUrl(jql, fields, startAt, pageSize);
+                JiraSearchPage page = getPageFromJira(url, cache, snapshot);
+                totalIssues = page.getTotal();
+                List<JiraIssue> issues = page.getIssues();
+                if (issues.isEmpty()) break;
+                issues.forEach(consumer);
+                processedIssues += issues.size();
+                startAt += issues.size();
+            }
+            LOGGER.info("Scaricate " + (pages.size() + 1) + " pagine con " + processedIssues + " issue per il progetto " + projName);
+        } catch (IOException | URISyntaxException e) {
+            throw new JiraException("Errore durante il recupero dei ticket da Jira: " + e.getMessage(), e.getClass().getSimpleName(), url);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JiraException("Recupero dei ticket da Jira interrotto", e.getClass().getSimpleName(), url);
+        }
+    }
+
+    /**
+     * Restituisce il numero di issue di una ricerca, chiedendo una pagina vuota. La risposta non passa dalla cache.
+     *
+     * @param jql La JQL già codificata per l'URL
+     */
+    private int countIssues(String jql) throws JiraException {
+        String url = searchUrl(jql, "key", 0, 0);
+        try {
+            return getPageFromJira(url, null, JiraResponseCache.OWN_SNAPSHOT).getTotal();
+        } catch (IOException | URISyntaxException e) {
+            throw new JiraException("Errore durante il conteggio dei ticket su Jira: " + e.getMessage(), e.getClass().getSimpleName(), url);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JiraException("Conteggio dei ticket su Jira interrotto", e.getClass().getSimpleName(), url);
+        }
+    }
+
+    /**
+     * Costruisce gli URL delle pagine successive alla prima, secondo il totale e la dimensione delle pagine della prima.
+     */
+    private List<String> pageUrls(String jql, String fields, JiraSearchPage firstPage) {
+        List<String> pageUrls = new ArrayList<>();
+        int firstIssues = firstPage.getIssues().size();
+        if (firstIssues == 0) return pageUrls;
+        for (int startAt = firstIssues; startAt < firstPage.getTotal(); startAt += firstPage.getMaxResults()) {
+            pageUrls.add(searchUrl(jql, fields, startAt, firstPage.getMaxResults()));
+        }
+        return pageUrls;
+    }
+
+    /**
+     * Restituisce lo snapshot della prima pagina di una ricerca appena letta; senza cache, o se la pagina non è
+     * più in cache, vale l'istante corrente, così nessuna pagina salvata in precedenza vi appartiene.
+     */
+    private static long snapshotOf(String url, JiraResponseCache cache) {
+        JiraResponseCache.Entry entry = cache != null ? cache.get(url) : null;
+        return entry != null ? entry.getSnapshot() : System.currentTimeMillis();
+    }
+
+    /**
+     * Indica se tutte le pagine indicate sono in cache e appartengono allo snapshot indicato.
+     */
+    private static boolean isCachedSnapshot(List<String> urls, JiraResponseCache cache, long snapshot) {
+        for (String url : urls) {
+            JiraResponseCache.Entry entry = cache.get(url);
+            if (entry == null || entry.getSnapshot() != snapshot) return false;
+        }
+        return true;
+    }
 
-            String createdDate = fields.getString("created");
-            ticket.setOpenDate(ZonedDateTime.parse(createdDate, formatter));
+    /**
+     * Scarica una pagina della ricerca e la legge in streaming dal corpo della risposta.
+     */
+    private JiraSearchPage getPageFromJira(String url, JiraResponseCache cache, long snapshot) throws IOException, URISyntaxException, InterruptedException {
+        return getFromJira(url, cache, snapshot, body -> JiraSearchPage.read(body, MAX_RESULTS_PER_PAGE));
+    }
 
-            JSONArray affectedVersions = fields.getJSONArray("versions");
-            Version affectedVersion = findMatchingVersion(project, affectedVersions, true);
+    /**
+     * Crea la cache delle risposte secondo la configurazione della pipeline; null se la cache è disabilitata.
+     */
+    private JiraResponseCache responseCache(PipelineBean pipeline) {
+        if (!pipeline.isJiraCache() && !pipeline.isJiraOffline()) return null;
+        return new JiraResponseCache(cachePath, Duration.ofMinutes(pipeline.getJiraCacheTtlMinutes()), pipeline.isJiraOffline());
+    }
+
+    /**
+     * Scarica più pagine della ricerca, con al più il numero indicato di richieste contemporanee.
+     * Le pagine vengono restituite nello stesso ordine degli URL.
+     */
+    private List<JiraSearchPage> getPagesFromJira(List<String> urls, int concurrency, JiraResponseCache cache, long snapshot) throws IOException, URISyntaxException, InterruptedException {
+        List<JiraSearchPage> pages = new ArrayList<>(urls.size());
+        if (concurrency <= 1 || urls.size() < 2) {
+            for (String url : urls) {
+                pages.add(getPageFromJira(url, cache, snapshot));
+            }
+            return pages;
+        }
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, urls.size()))) {
+            List<Future<JiraSearchPage>> futures = new ArrayList<>(urls.size());
+            for (String url : urls) {
+                futures.add(executor.submit(() -> getPageFromJira(url, cache, snapshot)));
+            }
+            for (Future<JiraSearchPage> future : futures) {
+                pages.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof URISyntaxException) throw (URISyntaxException) cause;
+            throw new IOException(cause);
+        }
+        return pages;
+    }
+
+    /**
+     * Esegue una GET su Jira e legge il corpo della risposta con il parser indicato, direttamente dallo stream
+     * della connessione e decompresso se il server lo ha inviato in gzip.
+     * Con la cache, una risposta ancora valida viene letta dalla cache senza contattare il server, una scaduta viene
+     * rivalidata con If-None-Match / If-Modified-Since e riusata se il server risponde 304 Not Modified;
+     * una risposta scaricata viene copiata nella cache mentre il parser la legge.
+     * Una pagina di una ricerca, con lo snapshot della prima pagina, è servita dalla cache solo se appartiene a quello
+     * snapshot, e viene salvata o rivalidata come parte di esso.
+     */
+    private <T> T getFromJira(String url, JiraResponseCache cache, long snapshot, ResponseParser<T> parser) throws IOException, URISyntaxException, InterruptedException {
+        JiraResponseCache.Entry cached = cache != null ? cache.get(url) : null;
+        boolean usable = cached != null && (snapshot == JiraResponseCache.OWN_SNAPSHOT
+                ? cache.isUsable(cached) : cache.isUsable(cached, snapshot));
+        if (usable) {
+            cache.hit();
+            return parser.parse(new ByteArrayInputStream(cached.getBody()));
+        }
+        if (cache != null && cache.isOffline()) {
+            throw new IOException("Risposta non presente nella cache di Jira (modalità offline): " + url);
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(new URI(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Accept", "application/json")
+                .header("Accept-Encoding", "gzip")
+                .GET();
+        if (cached != null && cached.getEtag() != null) builder.header("If-None-Match", cached.getEtag());
+        if (cached != null && cached.getLastModified() != null) builder.header("If-Modified-Since", cached.getLastModified());
+        HttpResponse<InputStream> response = HTTP_CLIENT.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+
+        T result;
+        ByteArrayOutputStream copy = cache != null ? new ByteArrayOutputStream() : null;
+        try (InputStream body = response.body()) {
+            if (response.statusCode() == 304 && cached != null) {
+                body.transferTo(OutputStream.nullOutputStream());
+                cache.revalidated(url, cached, snapshot);
+                return parser.parse(new ByteArrayInputStream(cached.getBody()));
+            }
+            if (response.statusCode() != 200) {
+                throw new IOException("Risposta non valida da JIRA. Codice: " + response.statusCode());
+            }
+            boolean gzip = response.headers().firstValue("Content-Encoding").map("gzip"::equalsIgnoreCase).orElse(false);
+            InputStream content = gzip ? new GZIPInputStream(body) : body;
+            if (copy != null) content = new CopyingInputStream(content, copy);
+            result = parser.parse(content);
+            // Il resto del corpo viene consumato: completa la copia per la cache e
+            // la connessione torna nel pool solo se il corpo è stato letto fino alla fine
+            content.transferTo(OutputStream.nullOutputStream());
+            body.transferTo(OutputStream.nullOutputStream());
+        }
+
+        if (cache != null) {
+            cache.put(url, copy.toByteArray(),
+                    response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null), snapshot);
+        }
+        return result;
+    }
+
+    /**
+     * Converte le issue in Ticket.
+     */
+    private void processTickets(Collection<JiraIssue> issues, List<Ticket> tickets, Project project) {
+        for (JiraIssue issue : issues) {
+            Ticket ticket = new Ticket();
+            ticket.setId(issue.getKey());
+            ticket.setOpenDate(ZonedDateTime.parse(issue.getCreated(), JIRA_DATE_FORMAT));
+
+            Version affectedVersion = findMatchingVersion(project, issue.getVersionNames(), true);
             ticket.setInjectedVersion(affectedVersion);
 
             tickets.add(ticket);
@@ -174,11 +508,9 @@ public class JiraService {
     }
 
     /**
-     * Trova la versione corrispondente da un array JSON.
+     * Trova la versione corrispondente fra i nomi delle versioni di una issue.
      */
-    private Version findMatchingVersion(Project project, JSONArray versionsArray, boolean findFirst) {
-        List<String> versionNames = extractVersionNames(versionsArray);
-
+    private Version findMatchingVersion(Project project, List<String> versionNames, boolean findFirst) {
         List<String> sortedVersions = versionNames.stream()
                 .sorted(new NameVersionComparator())
                 .collect(Collectors.toList());
@@ -202,29 +534,42 @@ public class JiraService {
     }
 
     /**
-     * Estrae i nomi delle versioni da un array JSON.
+     * Legge il corpo di una risposta.
      */
-    private List<String> extractVersionNames(JSONArray versionsArray) {
-        List<String> versionNames = new ArrayList<>();
-        for (int i = 0; i < versionsArray.length(); i++) {
-            versionNames.add(versionsArray.getJSONObject(i).getString("name"));
-        }
-        return versionNames;
+    @FunctionalInterface
+    private interface ResponseParser<T> {
+        T parse(InputStream body) throws IOException;
     }
 
     /**
-     * Legge la risposta da una connessione HTTP.
+     * Stream che copia in un buffer i byte letti, per salvare in cache la risposta mentre viene letta.
      */
-    private String readResponseFromConnection(HttpURLConnection connection) throws IOException {
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+    private static class CopyingInputStream extends FilterInputStream {
+        private final ByteArrayOutputStream copy;
 
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                response.append(line);
-            }
-            return response.toString();
+        CopyingInputStream(InputStream in, ByteArrayOutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) copy.write(b);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int read = super.read(bytes, offset, length);
+            if (read > 0) copy.write(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Anche i byte saltati devono finire nella copia
+            return Math.max(0, read(new byte[(int) Math.min(n, 8192)]));
         }
     }
-}
\ No newline at end of file
+}
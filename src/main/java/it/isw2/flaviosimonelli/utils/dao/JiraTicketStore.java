@@ -0,0 +1,153 @@
+package it.isw2.flaviosimonelli.utils.dao;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Archivio su disco dei bug risolti di un progetto, usato per la sincronizzazione incrementale con Jira.
+ * Contiene i campi delle issue già elaborate, nell'ordine in cui sono state ricevute, e il watermark:
+ * la data di aggiornamento più recente fra quelle ricevute. Le esecuzioni successive chiedono a Jira
+ * solo le issue aggiornate dopo il watermark e le fondono nell'archivio con {@link #merge}.
+ * Il file è un JSON scritto in modo atomico, quindi un'esecuzione interrotta lascia l'archivio precedente.
+ */
+class JiraTicketStore {
+    private static final DateTimeFormatter JIRA_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+
+    private final Path file;
+    private final Map<String, JiraIssue> issues = new LinkedHashMap<>();
+    private String watermark;
+
+    private JiraTicketStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Legge l'archivio da un file.
+     *
+     * @param file Il file dell'archivio
+     * @return L'archivio letto, o null se il file non esiste
+     * @throws IOException In caso di errore di lettura o di file non valido
+     */
+    static JiraTicketStore load(Path file) throws IOException {
+        if (!Files.exists(file)) return null;
+        JSONObject json = new JSONObject(Files.readString(file, StandardCharsets.UTF_8));
+        JiraTicketStore store = new JiraTicketStore(file);
+        store.watermark = json.optString("watermark", null);
+        JSONArray array = json.getJSONArray("issues");
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject issue = array.getJSONObject(i);
+            JSONArray versions = issue.getJSONArray("versions");
+            List<String> versionNames = new ArrayList<>(versions.length());
+            for (int j = 0; j < versions.length(); j++) {
+                versionNames.add(versions.getString(j));
+            }
+            store.issues.put(issue.getString("key"), new JiraIssue(issue.getString("key"), issue.getString("created"),
+                    issue.optString("updated", null), versionNames));
+        }
+        return store;
+    }
+
+    /**
+     * Crea un archivio vuoto, salvato nel file indicato.
+     *
+     * @param file Il file dell'archivio
+     * @return L'archivio vuoto
+     */
+    static JiraTicketStore create(Path file) {
+        return new JiraTicketStore(file);
+    }
+
+    /**
+     * Aggiunge o sostituisce una issue che è un bug risolto. Una issue già presente mantiene la sua posizione,
+     * una nuova viene aggiunta in coda.
+     *
+     * @param issue La issue
+     */
+    void merge(JiraIssue issue) {
+        issues.put(issue.getKey(), issue);
+        advanceWatermark(issue.getUpdated());
+    }
+
+    /**
+     * Rimuove una issue che non è più un bug risolto, ad esempio perché è stata riaperta.
+     *
+     * @param key     La chiave della issue
+     * @param updated La data di aggiornamento della issue, o null
+     */
+    void remove(String key, String updated) {
+        issues.remove(key);
+        advanceWatermark(updated);
+    }
+
+    /**
+     * Restituisce le issue dell'archivio, nell'ordine in cui sono state aggiunte.
+     *
+     * @return Le issue
+     */
+    Collection<JiraIssue> getIssues() {
+        return issues.values();
+    }
+
+    /**
+     * Restituisce il watermark, cioè la data di aggiornamento più recente fra le issue ricevute.
+     *
+     * @return Il watermark, o null se l'archivio non ha ancora ricevuto issue con data di aggiornamento
+     */
+    ZonedDateTime getWatermark() {
+        return watermark != null ? ZonedDateTime.parse(watermark, JIRA_DATE_FORMAT) : null;
+    }
+
+    /**
+     * Salva l'archivio, sostituendo atomicamente il file precedente.
+     *
+     * @throws IOException In caso di errore di scrittura
+     */
+    void save() throws IOException {
+        JSONArray array = new JSONArray();
+        for (JiraIssue issue : issues.values()) {
+            JSONObject json = new JSONObject();
+            json.put("key", issue.getKey());
+            json.put("created", issue.getCreated());
+            if (issue.getUpdated() != null) json.put("updated", issue.getUpdated());
+            json.put("versions", new JSONArray(issue.getVersionNames()));
+            array.put(json);
+        }
+        JSONObject json = new JSONObject();
+        if (watermark != null) json.put("watermark", watermark);
+        json.put("issues", array);
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            json.write(writer);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void advanceWatermark(String updated) {
+        if (updated == null) return;
+        if (watermark == null || ZonedDateTime.parse(updated, JIRA_DATE_FORMAT).isAfter(getWatermark())) {
+            watermark = updated;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package it.isw2.flaviosimonelli.utils.dao;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Parser JSON a richiesta (pull): il chiamante legge i token uno alla volta nell'ordine del documento,
+ * senza che venga costruito l'albero dei valori. I valori che non interessano vengono saltati con
+ * {@link #skipValue()} senza creare oggetti; i nomi dei campi, che si ripetono in ogni elemento di un array,
+ * vengono restituiti da una piccola cache di stringhe.
+ * Il parser è tollerante sulle virgole fra gli elementi e segnala gli altri errori di sintassi con una IOException.
+ * Non è thread-safe.
+ */
+class JsonPullParser {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int NAME_CACHE_SIZE = 256; // potenza di due, maggiore dei nomi distinti di una pagina
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private final StringBuilder text = new StringBuilder();
+    private final String[] names = new String[NAME_CACHE_SIZE];
+
+    /**
+     * Crea il parser su un reader, letto a blocchi; il reader non viene chiuso.
+     *
+     * @param reader Il reader del documento JSON
+     */
+    JsonPullParser(Reader reader) {
+        this.reader = reader;
+    }
+
+    void beginObject() throws IOException {
+        expect('{');
+    }
+
+    void endObject() throws IOException {
+        expect('}');
+    }
+
+    void beginArray() throws IOException {
+        expect('[');
+    }
+
+    void endArray() throws IOException {
+        expect(']');
+    }
+
+    /**
+     * Indica se l'oggetto o l'array corrente ha un altro elemento, consumando la virgola che lo precede.
+     *
+     * @return false se il prossimo token chiude l'oggetto o l'array
+     * @throws IOException In caso di errore di lettura
+     */
+    boolean hasNext() throws IOException {
+        int c = peek();
+        if (c == ',') {
+            position++;
+            c = peek();
+        }
+        return c != '}' && c != ']' && c != -1;
+    }
+
+    /**
+     * Legge il nome di un campo e i due punti che lo seguono.
+     *
+     * @return Il nome del campo
+     * @throws IOException In caso di errore di lettura o di sintassi
+     */
+    String nextName() throws IOException {
+        readString();
+        expect(':');
+        // I nomi si ripetono: una stringa uguale già creata viene riusata
+        int hash = 0;
+        for (int i = 0; i < text.length(); i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (NAME_CACHE_SIZE - 1);
+        String cached = names[slot];
+        if (cached != null && cached.contentEquals(text)) return cached;
+        String name = text.toString();
+        names[slot] = name;
+        return name;
+    }
+
+    /**
+     * Legge un valore stringa.
+     *
+     * @return La stringa, con gli escape risolti
+     * @throws IOException In caso di errore di lettura o di sintassi
+     */
+    String nextString() throws IOException {
+        readString();
+        return text.toString();
+    }
+
+    /**
+     * Legge un valore numerico intero.
+     *
+     * @return Il numero
+     * @throws IOException In caso di errore di lettura o se il valore non è un intero
+     */
+    int nextInt() throws IOException {
+        int c = peek();
+        boolean negative = c == '-';
+        if (negative) position++;
+        long value = 0;
+        int digits = 0;
+        while ((c = read()) >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE + 1L) throw syntaxError("intero fuori intervallo");
+            digits++;
+        }
+        if (c != -1) position--;
+        if (digits == 0 || c == '.' || c == 'e' || c == 'E') throw syntaxError("atteso un numero intero");
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Consuma un valore null, se è il prossimo valore.
+     *
+     * @return true se il valore era null ed è stato consumato
+     * @throws IOException In caso di errore di lettura
+     */
+    boolean nextNull() throws IOException {
+        if (peek() != 'n') return false;
+        skipLiteral();
+        return true;
+    }
+
+    /**
+     * Salta il prossimo valore, con tutti i valori annidati, senza crearne una rappresentazione.
+     *
+     * @throws IOException In caso di errore di lettura o di sintassi
+     */
+    void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            int c = peek();
+            switch (c) {
+                case '{':
+                case '[':
+                    position++;
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                    position++;
+                    depth--;
+                    break;
+                case ',':
+                case ':':
+                    position++;
+                    break;
+                case '"':
+                    skipString();
+                    break;
+                case -1:
+                    throw syntaxError("fine del documento inattesa");
+                default:
+                    skipLiteral();
+            }
+        } while (depth > 0);
+    }
+
+    private void readString() throws IOException {
+        expect('"');
+        text.setLength(0);
+        while (true) {
+            // Copia in blocco i caratteri senza escape presenti nel buffer
+            int start = position;
+            while (position < limit && buffer[position] != '"' && buffer[position] != '\\') {
+                position++;
+            }
+            text.append(buffer, start, position - start);
+            // Fine del buffer, virgolette di chiusura o escape
+            int c = read();
+            if (c == '"') return;
+            if (c == '\\') {
+                text.append(readEscape());
+            } else if (c == -1) {
+                throw syntaxError("stringa non terminata");
+            } else {
+                text.append((char) c);
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        expect('"');
+        int c;
+        while ((c = read()) != '"') {
+            if (c == '\\') {
+                read();
+            } else if (c == -1) {
+                throw syntaxError("stringa non terminata");
+            }
+        }
+    }
+
+    // Salta numeri, true, false e null
+    private void skipLiteral() throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            if (c == ',' || c == '}' || c == ']' || c == ':' || Character.isWhitespace(c)) {
+                position--;
+                return;
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int code = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) throw syntaxError("escape unicode non valido");
+                    code = code * 16 + digit;
+                }
+                return (char) code;
+            case -1:
+                throw syntaxError("stringa non terminata");
+            default:
+                // \" \\ \/ e, per tolleranza, qualsiasi altro carattere
+                return (char) c;
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = peek();
+        if (c != expected) {
+            throw syntaxError("atteso '" + expected + "', trovato " + (c == -1 ? "fine del documento" : "'" + (char) c + "'"));
+        }
+        position++;
+    }
+
+    // Prossimo carattere diverso da uno spazio, senza consumarlo; -1 a fine documento
+    private int peek() throws IOException {
+        while (true) {
+            if (position == limit && !fill()) return -1;
+            char c = buffer[position];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+            position++;
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) return -1;
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer, 0, BUFFER_SIZE);
+        if (read <= 0) return false;
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException("JSON non valido: " + message);
+    }
+}
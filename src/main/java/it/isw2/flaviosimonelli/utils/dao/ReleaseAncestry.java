@@ -0,0 +1,125 @@
+package it.isw2.flaviosimonelli.utils.dao;
+
+import it.isw2.flaviosimonelli.model.Version;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdOwnerMap;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Assegnazione dei commit alle release basata sulla raggiungibilità dai tag.
+ * Un commit appartiene alla prima release (in ordine di rilascio) il cui commit di tag lo contiene nella sua storia.
+ * Le release vengono visitate in ordine e per ognuna si percorrono solo i commit non raggiungibili dalle
+ * precedenti, quindi ogni commit viene visitato una sola volta e il costo resta lineare nella dimensione della storia.
+ * Ogni commit visitato viene registrato in una mappa indicizzata per ObjectId insieme alla release che lo introduce,
+ * quindi la ricerca della release di un commit costa O(1). Per ogni release viene contato il numero di commit introdotti.
+ */
+public class ReleaseAncestry {
+
+    private final List<Version> releases;
+    private final int[] introducedCommits;  // Per ogni release, il numero di commit che introduce
+    private final ObjectIdOwnerMap<CommitEntry> commits = new ObjectIdOwnerMap<>();
+
+    private ReleaseAncestry(List<Version> releases) {
+        this.releases = List.copyOf(releases);
+        this.introducedCommits = new int[releases.size()];
+    }
+
+    /**
+     * Costruisce l'assegnazione visitando la storia raggiungibile dai tag delle release.
+     *
+     * @param session  La sessione sul repository
+     * @param releases Le versioni rilasciate, in ordine di rilascio
+     * @return L'assegnazione costruita
+     * @throws IOException in caso di errore durante la visita dei commit
+     */
+    public static ReleaseAncestry build(RepositorySession session, List<Version> releases) throws IOException {
+        ReleaseAncestry ancestry = new ReleaseAncestry(releases);
+
+        session.withRevWalk(revWalk -> {
+            // Solo la topologia serve: il corpo dei commit non viene trattenuto
+            revWalk.setRetainBody(false);
+            List<RevCommit> previousTags = new ArrayList<>();
+
+            for (int release = 0; release < ancestry.releases.size(); release++) {
+                RevCommit tagCommit = parseTagCommit(revWalk, ancestry.releases.get(release));
+                if (tagCommit == null) continue;
+
+                revWalk.reset();
+                revWalk.sort(RevSort.TOPO);
+                revWalk.markStart(tagCommit);
+                for (RevCommit previous : previousTags) {
+                    // I commit già contenuti in una release precedente non vengono rivisitati
+                    revWalk.markUninteresting(previous);
+                }
+                previousTags.add(tagCommit);
+
+                for (RevCommit commit : revWalk) {
+                    ancestry.commits.add(new CommitEntry(commit, release));
+                    ancestry.introducedCommits[release]++;
+                }
+            }
+            return null;
+        });
+
+        return ancestry;
+    }
+
+    /**
+     * Restituisce la prima release che contiene un commit.
+     *
+     * @param commitHash L'hash del commit
+     * @return La release che contiene per prima il commit, o null se il commit non è contenuto in nessuna release
+     */
+    public Version getVersionForCommit(String commitHash) {
+        if (!ObjectId.isId(commitHash)) return null;
+        CommitEntry entry = commits.get(ObjectId.fromString(commitHash));
+        return entry != null ? releases.get(entry.release) : null;
+    }
+
+    /**
+     * Restituisce il numero di commit introdotti da una release, cioè non contenuti in nessuna release precedente.
+     *
+     * @param release La posizione della release nell'ordine di rilascio
+     * @return Il numero di commit introdotti dalla release
+     */
+    public int countIntroducedCommits(int release) {
+        return introducedCommits[release];
+    }
+
+    /**
+     * Restituisce il numero di commit contenuti in almeno una release.
+     *
+     * @return Il numero di commit indicizzati
+     */
+    public int size() {
+        return commits.size();
+    }
+
+    private static RevCommit parseTagCommit(RevWalk revWalk, Version version) throws IOException {
+        if (version.getHashCommit() == null || !ObjectId.isId(version.getHashCommit())) return null;
+        try {
+            // parseCommit risolve anche i tag annotati nel commit a cui puntano
+            return revWalk.parseCommit(ObjectId.fromString(version.getHashCommit()));
+        } catch (MissingObjectException e) {
+            return null;
+        }
+    }
+
+    // Voce della mappa dei commit: l'ObjectId del commit e la release che lo introduce
+    private static class CommitEntry extends ObjectIdOwnerMap.Entry {
+        private final int release;
+
+        private CommitEntry(AnyObjectId id, int release) {
+            super(id);
+            this.release = release;
+        }
+    }
+}
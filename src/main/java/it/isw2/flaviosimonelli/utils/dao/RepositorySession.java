@@ -0,0 +1,156 @@
+package it.isw2.flaviosimonelli.utils.dao;
+
+import it.isw2.flaviosimonelli.utils.exception.GitException;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Sessione di lavoro su un repository Git, condivisa da tutta la pipeline di un progetto.
+ * Mantiene aperto un solo Repository, così che le cache di JGit (indici dei pack, finestre)
+ * sopravvivano fra una chiamata e l'altra, e riutilizza ObjectReader e RevWalk tramite due pool.
+ * ObjectReader e RevWalk non sono thread-safe: ogni chiamata ne prende uno in prestito in modo
+ * esclusivo, quindi la sessione può essere usata da più thread contemporaneamente.
+ */
+public class RepositorySession implements AutoCloseable {
+
+    /**
+     * Operazione eseguita con una risorsa presa in prestito dalla sessione.
+     */
+    @FunctionalInterface
+    public interface Operation<R, T> {
+        T apply(R resource) throws IOException;
+    }
+
+    private final Repository repository;
+    private final Deque<ObjectReader> readers = new ConcurrentLinkedDeque<>();
+    private final Deque<RevWalk> revWalks = new ConcurrentLinkedDeque<>();
+    private volatile boolean closed;
+
+    private RepositorySession(Repository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Apre una sessione sul repository Git contenuto in una directory.
+     *
+     * @param gitDirectory Directory del repository Git
+     * @return La sessione aperta
+     * @throws GitException in caso di errore durante l'apertura del repository
+     */
+    public static RepositorySession open(String gitDirectory) throws GitException {
+        try (Git git = Git.open(new File(gitDirectory))) {
+            // Il Repository resta aperto: Git.close() decrementa solo il contatore di utilizzo
+            Repository repository = git.getRepository();
+            repository.incrementOpen();
+            return new RepositorySession(repository);
+        } catch (IOException e) {
+            throw new GitException("open", "Errore nell'aprire il repository: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Restituisce il repository aperto dalla sessione. Il repository non va chiuso dal chiamante.
+     *
+     * @return Il repository della sessione
+     */
+    public Repository getRepository() {
+        ensureOpen();
+        return repository;
+    }
+
+    /**
+     * Esegue un'operazione con un ObjectReader preso in prestito dal pool.
+     *
+     * @param operation L'operazione da eseguire
+     * @return Il risultato dell'operazione
+     * @throws IOException in caso di errore di lettura dal repository
+     */
+    public <T> T withReader(Operation<ObjectReader, T> operation) throws IOException {
+        ensureOpen();
+        ObjectReader reader = readers.pollFirst();
+        if (reader == null) {
+            reader = repository.newObjectReader();
+        }
+        try {
+            return operation.apply(reader);
+        } finally {
+            release(readers, reader);
+        }
+    }
+
+    /**
+     * Esegue un'operazione con un RevWalk preso in prestito dal pool.
+     * Prima di tornare nel pool il RevWalk viene svuotato con dispose(): i commit analizzati, con i loro body,
+     * non restano in memoria dopo una visita dell'intera storia. Gli oggetti restituiti dal walk non vanno
+     * quindi usati al di fuori dell'operazione.
+     *
+     * @param operation L'operazione da eseguire
+     * @return Il risultato dell'operazione
+     * @throws IOException in caso di errore di lettura dal repository
+     */
+    public <T> T withRevWalk(Operation<RevWalk, T> operation) throws IOException {
+        ensureOpen();
+        RevWalk revWalk = revWalks.pollFirst();
+        if (revWalk == null) {
+            revWalk = new RevWalk(repository);
+        }
+        try {
+            return operation.apply(revWalk);
+        } finally {
+            revWalk.dispose();
+            revWalk.sort(RevSort.NONE);
+            revWalk.setRevFilter(RevFilter.ALL);
+            revWalk.setTreeFilter(TreeFilter.ALL);
+            revWalk.setRetainBody(true);
+            release(revWalks, revWalk);
+        }
+    }
+
+    /**
+     * Chiude tutte le risorse in pool e il repository. Le risorse ancora in prestito
+     * vengono chiuse al momento della restituzione.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        closeAll(readers);
+        closeAll(revWalks);
+        repository.close();
+    }
+
+    private <R extends AutoCloseable> void release(Deque<R> pool, R resource) {
+        pool.offerFirst(resource);
+        // Se la sessione è stata chiusa nel frattempo, la risorsa non deve restare nel pool
+        if (closed) {
+            closeAll(pool);
+        }
+    }
+
+    private static <R extends AutoCloseable> void closeAll(Deque<R> pool) {
+        R resource;
+        while ((resource = pool.pollFirst()) != null) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                // La chiusura di reader e walk non lancia eccezioni significative
+            }
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new GitException("session", "La sessione sul repository è già stata chiusa");
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package it.isw2.flaviosimonelli.utils.dao;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Indice dai ticket Jira ai commit che li menzionano, costruito con una sola visita della storia.
+ * Per ogni ticket conserva il commit più recente "forte" (il messaggio contiene fix/resolve/close
+ * prima dell'ID del ticket, sulla stessa riga) e il commit più recente "debole" (il messaggio
+ * menziona soltanto il ticket). La ricerca per ticket costa O(1).
+ */
+public class TicketCommitIndex {
+
+    // Parole chiave che qualificano un commit come fix del ticket
+    private static final Pattern FIX_KEYWORD = Pattern.compile(
+            "\\b(fix(?:es|ed)?|resolve(?:s|d)?|close(?:s|d)?)\\b",
+            Pattern.CASE_INSENSITIVE
+    );
+    // Terminatori di riga esclusi dal metacarattere '.' delle espressioni regolari Java
+    private static final Pattern LINE_TERMINATOR = Pattern.compile("[\\n\\r\\u0085\\u2028\\u2029]");
+
+    private final Map<String, IndexedCommit> strongMatches = new HashMap<>();
+    private final Map<String, IndexedCommit> weakMatches = new HashMap<>();
+    private final Map<String, IndexedCommit> commitsByHash = new HashMap<>();
+
+    private TicketCommitIndex() {
+    }
+
+    /**
+     * Visita una volta la storia raggiungibile da HEAD ed estrae ogni menzione di un ticket del progetto.
+     *
+     * @param session La sessione sul repository
+     * @param jiraKey La chiave del progetto Jira (es. BOOKKEEPER)
+     * @return L'indice costruito
+     * @throws IOException in caso di errore durante la visita dei commit
+     */
+    public static TicketCommitIndex build(RepositorySession session, String jiraKey) throws IOException {
+        TicketCommitIndex index = new TicketCommitIndex();
+        Pattern ticketPattern = Pattern.compile(
+                "\\b" + Pattern.quote(jiraKey) + "-\\d+\\b",
+                Pattern.CASE_INSENSITIVE
+        );
+
+        session.withRevWalk(revWalk -> {
+            ObjectId head = session.getRepository().resolve(Constants.HEAD);
+            if (head == null) {
+                throw new IOException("HEAD non trovato");
+            }
+            revWalk.markStart(revWalk.parseCommit(head));
+
+            Set<String> strongTickets = new HashSet<>();
+            Set<String> mentionedTickets = new HashSet<>();
+            for (RevCommit commit : revWalk) {
+                String message = commit.getFullMessage();
+                if (message == null) continue;
+
+                strongTickets.clear();
+                mentionedTickets.clear();
+                for (String line : LINE_TERMINATOR.split(message)) {
+                    classifyLine(line, ticketPattern, strongTickets, mentionedTickets);
+                }
+                // Il messaggio non serve più: libera il corpo del commit trattenuto dal RevWalk in pool
+                commit.disposeBody();
+                if (mentionedTickets.isEmpty()) continue;
+
+                IndexedCommit indexed = new IndexedCommit(commit.getName(), commit.getCommitTime());
+                index.commitsByHash.put(indexed.hash, indexed);
+                for (String ticketId : mentionedTickets) {
+                    // Un commit forte per il ticket non viene considerato anche come debole
+                    index.offer(strongTickets.contains(ticketId) ? index.strongMatches : index.weakMatches, ticketId, indexed);
+                }
+            }
+            return null;
+        });
+
+        return index;
+    }
+
+    /**
+     * Restituisce il commit di fix di un ticket: il più recente fra quelli forti, altrimenti il più recente fra quelli deboli.
+     *
+     * @param ticketId L'ID del ticket
+     * @return L'hash del commit, o null se nessun commit menziona il ticket
+     */
+    public String findFixCommit(String ticketId) {
+        IndexedCommit commit = findFixCommitEntry(ticketId);
+        return commit != null ? commit.hash : null;
+    }
+
+    /**
+     * Restituisce la data di un commit indicizzato, senza accedere al repository.
+     *
+     * @param commitHash L'hash del commit
+     * @return La data del commit in secondi dall'epoch, o -1 se il commit non menziona alcun ticket
+     */
+    public long getCommitTime(String commitHash) {
+        IndexedCommit commit = commitsByHash.get(commitHash);
+        return commit != null ? commit.commitTime : -1;
+    }
+
+    /**
+     * Restituisce il numero di ticket menzionati da almeno un commit.
+     *
+     * @return Il numero di ticket indicizzati
+     */
+    public int size() {
+        Set<String> tickets = new HashSet<>(strongMatches.keySet());
+        tickets.addAll(weakMatches.keySet());
+        return tickets.size();
+    }
+
+    private IndexedCommit findFixCommitEntry(String ticketId) {
+        String normalizedTicketId = ticketId.toUpperCase(Locale.ROOT);
+        IndexedCommit strong = strongMatches.get(normalizedTicketId);
+        return strong != null ? strong : weakMatches.get(normalizedTicketId);
+    }
+
+    /**
+     * Classifica le menzioni dei ticket in una riga: una menzione è forte se nella stessa riga
+     * una parola chiave di fix termina prima dell'inizio dell'ID del ticket.
+     */
+    private static void classifyLine(String line, Pattern ticketPattern, Set<String> strongTickets, Set<String> mentionedTickets) {
+        Matcher ticketMatcher = ticketPattern.matcher(line);
+        if (!ticketMatcher.find()) return;
+
+        Matcher keywordMatcher = FIX_KEYWORD.matcher(line);
+        int firstKeywordEnd = keywordMatcher.find() ? keywordMatcher.end() : Integer.MAX_VALUE;
+
+        do {
+            String ticketId = ticketMatcher.group().toUpperCase(Locale.ROOT);
+            mentionedTickets.add(ticketId);
+            if (ticketMatcher.start() >= firstKeywordEnd) {
+                strongTickets.add(ticketId);
+            }
+        } while (ticketMatcher.find());
+    }
+
+    // Conserva il commit più recente; a parità di data resta il primo incontrato nella visita
+    private void offer(Map<String, IndexedCommit> matches, String ticketId, IndexedCommit commit) {
+        IndexedCommit current = matches.get(ticketId);
+        if (current == null || commit.commitTime > current.commitTime) {
+            matches.put(ticketId, commit);
+        }
+    }
+
+    private static class IndexedCommit {
+        private final String hash;
+        private final int commitTime;
+
+        private IndexedCommit(String hash, int commitTime) {
+            this.hash = hash;
+            this.commitTime = commitTime;
+        }
+    }
+}
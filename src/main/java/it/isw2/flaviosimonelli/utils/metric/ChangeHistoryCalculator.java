@@ -0,0 +1,298 @@
+package it.isw2.flaviosimonelli.utils.metric;
+
+import it.isw2.flaviosimonelli.model.method.Method;
+import it.isw2.flaviosimonelli.model.method.Metric;
+import it.isw2.flaviosimonelli.utils.cache.MethodCache;
+import it.isw2.flaviosimonelli.utils.cache.SymbolTable;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Computes the change-history metrics of the methods of a release from the commits introduced by the release.
+ * Each commit is diffed once against its parent; the edits of every changed file are mapped onto the line
+ * ranges of the methods of the post-image, and the counters are accumulated in primitive arrays indexed
+ * by the position of the method in the release. The cost is linear in the number of commits and hunks.
+ * <p>
+ * Added lines are the post-image lines of an edit falling inside the method. Deleted lines are attributed
+ * to the outermost method that encloses the edit in the post-image, so the lines of a removed method are
+ * not charged to its neighbours. A line counts for cond when
+ * it contains a condition keyword (if, while, for, switch, case, ?), and for elseAdded/elseDeleted when it
+ * contains else.
+ * <p>
+ * Methods are identified by (class path, signature). When several methods of the release share the same pair,
+ * for example methods with the same signature in local or anonymous classes reported under the enclosing class,
+ * they are not merged: the k-th method with that pair in a changed file, in line order, is matched with the k-th
+ * one in the release, so each duplicate keeps its own counters. Not thread-safe: one instance per release.
+ */
+public class ChangeHistoryCalculator {
+
+    /**
+     * Source of the methods of a Java blob, with their line ranges.
+     */
+    @FunctionalInterface
+    public interface MethodSource {
+        List<MethodCache.CachedMethod> methodsOf(ObjectId blobId, String filePath);
+    }
+
+    private static final Pattern CONDITION = Pattern.compile("\\b(if|while|for|switch|case)\\b|\\?");
+    private static final Pattern ELSE = Pattern.compile("\\belse\\b");
+    private static final Comparator<MethodCache.CachedMethod> BY_BEGIN_LINE = Comparator.comparingInt(MethodCache.CachedMethod::getBeginLine);
+
+    private final List<Method> methods;
+    private final SymbolTable symbols;
+    private final LongIntHashMap methodIds; // Da (class path, firma) alla posizione del primo metodo con la coppia
+    private final int[] nextDuplicate; // Posizione del metodo successivo con la stessa coppia, -1 se non c'è
+    private final Map<String, Integer> authorIds = new HashMap<>();
+    private final LongHashSet methodAuthors = new LongHashSet(); // Coppie (metodo, autore) già contate
+    private final DiffAlgorithm diffAlgorithm = DiffAlgorithm.getAlgorithm(DiffAlgorithm.SupportedAlgorithm.HISTOGRAM);
+
+    // Contatori della release, indicizzati per metodo
+    private final int[] histories;
+    private final int[] authors;
+    private final int[] added;
+    private final int[] maxAdded;
+    private final int[] deleted;
+    private final int[] maxDeleted;
+    private final int[] maxChurn;
+    private final int[] cond;
+    private final int[] elseAdded;
+    private final int[] elseDeleted;
+
+    // Contatori del commit corrente, azzerati solo per i metodi toccati
+    private final int[] commitAdded;
+    private final int[] commitDeleted;
+    private final int[] touched;
+    private final int[] touchedInCommit; // Numero dell'ultimo commit che ha toccato il metodo
+    private int touchedCount;
+
+    private int commits;
+
+    /**
+     * Creates the calculator for the methods of a release.
+     *
+     * @param methods The methods of the release, whose metrics will be filled
+     * @param symbols The symbol table of the ids of the methods
+     */
+    public ChangeHistoryCalculator(List<Method> methods, SymbolTable symbols) {
+        this.methods = methods;
+        this.symbols = symbols;
+        int size = methods.size();
+        methodIds = new LongIntHashMap(size);
+        nextDuplicate = new int[size];
+        int[] lastDuplicate = null; // Ultimo metodo della catena di ogni primo metodo, creato solo se servono catene
+        for (int id = 0; id < size; id++) {
+            Method method = methods.get(id);
+            nextDuplicate[id] = -1;
+            int first = methodIds.putIfAbsent(key(method.getClassPathId(), method.getSignatureId()), id);
+            if (first >= 0) {
+                // Metodi con la stessa coppia, concatenati nell'ordine della release
+                if (lastDuplicate == null) lastDuplicate = new int[size];
+                int last = nextDuplicate[first] < 0 ? first : lastDuplicate[first];
+                nextDuplicate[last] = id;
+                lastDuplicate[first] = id;
+            }
+        }
+        histories = new int[size];
+        authors = new int[size];
+        added = new int[size];
+        maxAdded = new int[size];
+        deleted = new int[size];
+        maxDeleted = new int[size];
+        maxChurn = new int[size];
+        cond = new int[size];
+        elseAdded = new int[size];
+        elseDeleted = new int[size];
+        commitAdded = new int[size];
+        commitDeleted = new int[size];
+        touched = new int[size];
+        touchedInCommit = new int[size];
+    }
+
+    /**
+     * Accumulates the changes of a commit. Merge commits must be filtered by the caller.
+     *
+     * @param commit        The commit, with its headers parsed
+     * @param reader        The reader used to load the blobs
+     * @param diffFormatter A formatter configured with the reader and the path filter of the Java files
+     * @param methodSource  The source of the methods of the post-image blobs; a file that is not analyzed,
+     *                      such as a test, has no methods and is skipped without reading its blobs
+     * @throws IOException in case of errors while reading the repository
+     */
+    public void addCommit(RevCommit commit, ObjectReader reader, DiffFormatter diffFormatter, MethodSource methodSource) throws IOException {
+        commits++;
+        ObjectId parentTree = commit.getParentCount() > 0 ? commit.getParent(0).getTree() : null;
+        for (DiffEntry diff : diffFormatter.scan(parentTree, commit.getTree())) {
+            if (diff.getChangeType() == DiffEntry.ChangeType.DELETE) continue;
+            addFileChange(diff, reader, methodSource);
+        }
+        if (touchedCount == 0) return;
+
+        int authorId = authorIds.computeIfAbsent(commit.getAuthorIdent().getEmailAddress(), email -> authorIds.size());
+        for (int i = 0; i < touchedCount; i++) {
+            int id = touched[i];
+            histories[id]++;
+            added[id] += commitAdded[id];
+            deleted[id] += commitDeleted[id];
+            maxAdded[id] = Math.max(maxAdded[id], commitAdded[id]);
+            maxDeleted[id] = Math.max(maxDeleted[id], commitDeleted[id]);
+            maxChurn[id] = Math.max(maxChurn[id], commitAdded[id] + commitDeleted[id]);
+            if (methodAuthors.add(((long) id << 32) | authorId)) {
+                authors[id]++;
+            }
+            commitAdded[id] = 0;
+            commitDeleted[id] = 0;
+        }
+        touchedCount = 0;
+    }
+
+    /**
+     * Writes the accumulated counters on the metrics of the methods. Every method is written,
+     * so values inherited from a previous release are overwritten.
+     */
+    public void fill() {
+        for (int id = 0; id < methods.size(); id++) {
+            Metric metric = methods.get(id).getMetric();
+            int changes = histories[id];
+            int churn = added[id] + deleted[id];
+            metric.setMethodHistories(changes);
+            metric.setAuthors(authors[id]);
+            metric.setStmtAdded(added[id]);
+            metric.setMaxStmtAdded(maxAdded[id]);
+            metric.setAvgStmtAdded(changes > 0 ? (double) added[id] / changes : 0);
+            metric.setStmtDeleted(deleted[id]);
+            metric.setMaxStmtDeleted(maxDeleted[id]);
+            metric.setAvgStmtDeleted(changes > 0 ? (double) deleted[id] / changes : 0);
+            metric.setChurn(churn);
+            metric.setMaxChurn(maxChurn[id]);
+            metric.setAvgChurn(changes > 0 ? (double) churn / changes : 0);
+            metric.setCond(cond[id]);
+            metric.setElseAdded(elseAdded[id]);
+            metric.setElseDeleted(elseDeleted[id]);
+        }
+    }
+
+    /**
+     * Returns the number of commits processed.
+     *
+     * @return The number of commits
+     */
+    public int getCommitCount() {
+        return commits;
+    }
+
+    private void addFileChange(DiffEntry diff, ObjectReader reader, MethodSource methodSource) throws IOException {
+        String path = diff.getNewPath();
+        ObjectId newId = diff.getNewId().toObjectId();
+        List<MethodCache.CachedMethod> fileMethods = new ArrayList<>(methodSource.methodsOf(newId, path));
+        if (fileMethods.isEmpty()) return;
+
+        // Identificativi dei metodi del file nella release; -1 se il metodo non esiste più alla release
+        fileMethods.sort(BY_BEGIN_LINE);
+        int[] ids = new int[fileMethods.size()];
+        boolean anyKnown = false;
+        for (int i = 0; i < ids.length; i++) {
+            MethodCache.CachedMethod method = fileMethods.get(i);
+            int classPathId = symbols.classPaths().find(path + "/" + method.getClassName());
+            int signatureId = symbols.signatures().find(method.getSignature());
+            int id = classPathId >= 0 && signatureId >= 0 ? methodIds.get(key(classPathId, signatureId)) : -1;
+            if (id >= 0 && nextDuplicate[id] >= 0) {
+                // Coppia duplicata: l'occorrenza k-esima nel file corrisponde al k-esimo metodo della catena
+                for (int j = 0; j < i && id >= 0; j++) {
+                    if (ids[j] >= 0 && sameKey(methods.get(ids[j]), methods.get(id))) {
+                        id = nextDuplicate[id];
+                    }
+                }
+            }
+            ids[i] = id;
+            anyKnown |= id >= 0;
+        }
+        if (!anyKnown) return;
+
+        RawText newText = new RawText(reader.open(newId, Constants.OBJ_BLOB).getCachedBytes());
+        RawText oldText = diff.getChangeType() == DiffEntry.ChangeType.ADD
+                ? RawText.EMPTY_TEXT
+                : new RawText(reader.open(diff.getOldId().toObjectId(), Constants.OBJ_BLOB).getCachedBytes());
+        if (RawText.isBinary(newText.getRawContent())) return;
+
+        EditList edits = diffAlgorithm.diff(RawTextComparator.DEFAULT, oldText, newText);
+        for (Edit edit : edits) {
+            addEdit(edit, oldText, newText, fileMethods, ids);
+        }
+    }
+
+    private void addEdit(Edit edit, RawText oldText, RawText newText, List<MethodCache.CachedMethod> fileMethods, int[] ids) {
+        // Posizioni delle righe delle modifiche: 0-based, estremo superiore escluso; quelle dei metodi: 1-based, inclusive
+        int firstLine = edit.getBeginB() + 1;
+        int lastLine = Math.max(edit.getEndB(), firstLine);
+        // Le righe eliminate appartengono al metodo solo se la modifica è interna al metodo: per una cancellazione
+        // pura entrambe le righe che la circondano nel post-image, per una sostituzione le righe che la sostituiscono
+        boolean pureDeletion = edit.getBeginB() == edit.getEndB();
+        int deletionFrom = pureDeletion ? edit.getBeginB() : firstLine;
+        int deletionTo = pureDeletion ? edit.getBeginB() + 1 : edit.getEndB();
+        boolean deletionsAssigned = edit.getBeginA() == edit.getEndA();
+
+        for (int i = 0; i < fileMethods.size(); i++) {
+            MethodCache.CachedMethod method = fileMethods.get(i);
+            if (method.getBeginLine() > lastLine) break;
+            if (method.getEndLine() < firstLine) continue;
+
+            int id = ids[i];
+            if (id < 0) continue;
+
+            int from = Math.max(edit.getBeginB(), method.getBeginLine() - 1);
+            int to = Math.min(edit.getEndB(), method.getEndLine());
+            boolean ownsDeletions = !deletionsAssigned
+                    && method.getBeginLine() <= deletionFrom && deletionTo <= method.getEndLine();
+            if (from >= to && !ownsDeletions) continue;
+            touch(id);
+
+            for (int line = from; line < to; line++) {
+                commitAdded[id]++;
+                String text = newText.getString(line);
+                if (CONDITION.matcher(text).find()) cond[id]++;
+                if (ELSE.matcher(text).find()) elseAdded[id]++;
+            }
+
+            if (ownsDeletions) {
+                deletionsAssigned = true;
+                for (int line = edit.getBeginA(); line < edit.getEndA(); line++) {
+                    commitDeleted[id]++;
+                    String text = oldText.getString(line);
+                    if (CONDITION.matcher(text).find()) cond[id]++;
+                    if (ELSE.matcher(text).find()) elseDeleted[id]++;
+                }
+            }
+        }
+    }
+
+    private void touch(int id) {
+        if (touchedInCommit[id] == commits) return;
+        touchedInCommit[id] = commits;
+        touched[touchedCount++] = id;
+    }
+
+    private static boolean sameKey(Method a, Method b) {
+        return a.getClassPathId() == b.getClassPathId() && a.getSignatureId() == b.getSignatureId();
+    }
+
+    private static long key(int classPathId, int signatureId) {
+        return ((long) classPathId << 32) | (signatureId & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,702 @@
+package it.isw2.flaviosimonelli.utils.metric;
+
+import it.isw2.flaviosimonelli.model.method.Metric;
+import it.isw2.flaviosimonelli.model.method.MetricStore;
+import it.isw2.flaviosimonelli.utils.cache.MethodCache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fast extractor of the methods of a Java file, based on a hand-written lexer over the raw bytes
+ * and on a recursive scan of the tokens, without building an AST.
+ * It produces the same methods as the full parser (methods of classes and interfaces, in pre-order
+ * of the class declarations) with the same signatures and source ranges, and fills only loc,
+ * statementsCount, cyclomaticComplexity and parameterCount.
+ * <p>
+ * Constructs that the scanner does not model (enums, records, annotation declarations, local and
+ * anonymous classes, text blocks, unicode escapes, annotated types, C-style array dimensions on
+ * methods, receiver parameters) make {@link #extract(byte[])} return null, so that the caller
+ * falls back to the full parser.
+ */
+public final class LexerMethodExtractor {
+
+    // Tipi di token
+    private static final int IDENT = 1;
+    private static final int LITERAL = 2;
+    private static final int ARROW = 3;        // ->
+    private static final int AND_AND = 4;      // &&
+    private static final int OR_OR = 5;        // ||
+    private static final int COLON_COLON = 6;  // ::
+    private static final int ELLIPSIS = 7;     // ...
+    private static final int INC_DEC = 8;      // ++ --
+    // Gli altri segni di punteggiatura usano il proprio carattere come tipo (es. '{')
+
+    private final byte[] src;
+    private int[] kinds = new int[1024];
+    private int[] starts = new int[1024];
+    private int[] ends = new int[1024];
+    private int[] lines = new int[1024];
+    private int count;
+
+    private int p; // Token corrente
+    private final List<ClassEntry> classes = new ArrayList<>();
+    private final MetricStore metrics = new MetricStore(16); // Metriche di tutti i metodi del file
+
+    // Contatori del metodo in analisi
+    private int statements;
+    private int cyclomatic;
+
+    private LexerMethodExtractor(byte[] src) {
+        this.src = src;
+    }
+
+    /**
+     * Extracts the methods of a Java source.
+     *
+     * @param source The bytes of the source file, UTF-8 encoded
+     * @return The methods of the file, or null if the source contains a construct that requires the full parser
+     */
+    public static List<MethodCache.CachedMethod> extract(byte[] source) {
+        LexerMethodExtractor extractor = new LexerMethodExtractor(source);
+        try {
+            extractor.tokenize();
+            extractor.compilationUnit();
+        } catch (Unsupported e) {
+            return null;
+        }
+        // Lo store resta nella cache dei file analizzati: la capacità in eccesso viene rilasciata
+        extractor.metrics.trimToSize();
+        List<MethodCache.CachedMethod> methods = new ArrayList<>();
+        for (ClassEntry entry : extractor.classes) {
+            methods.addAll(entry.methods);
+        }
+        return methods;
+    }
+
+    // ------------------------------------------------------------------ lexer
+
+    private void tokenize() {
+        int i = 0;
+        int line = 1;
+        int n = src.length;
+        while (i < n) {
+            byte c = src[i];
+            if (c == '\n') {
+                line++;
+                i++;
+            } else if (c == ' ' || c == '\t' || c == '\r' || c == '\f') {
+                i++;
+            } else if (c == '/' && i + 1 < n && src[i + 1] == '/') {
+                while (i < n && src[i] != '\n') i++;
+            } else if (c == '/' && i + 1 < n && src[i + 1] == '*') {
+                i += 2;
+                while (i < n && !(src[i] == '*' && i + 1 < n && src[i + 1] == '/')) {
+                    if (src[i] == '\n') line++;
+                    i++;
+                }
+                i += 2;
+            } else if (c == '"') {
+                if (i + 2 < n && src[i + 1] == '"' && src[i + 2] == '"') throw Unsupported.INSTANCE; // text block
+                int start = i++;
+                while (i < n && src[i] != '"') {
+                    if (src[i] == '\\') i++;
+                    else if (src[i] == '\n') throw Unsupported.INSTANCE;
+                    i++;
+                }
+                add(LITERAL, start, ++i, line);
+            } else if (c == '\'') {
+                int start = i++;
+                while (i < n && src[i] != '\'') {
+                    if (src[i] == '\\') i++;
+                    else if (src[i] == '\n') throw Unsupported.INSTANCE;
+                    i++;
+                }
+                add(LITERAL, start, ++i, line);
+            } else if (isDigit(c) || (c == '.' && i + 1 < n && isDigit(src[i + 1]))) {
+                int start = i++;
+                while (i < n && (isIdentifierPart(src[i]) || src[i] == '.'
+                        || ((src[i] == '+' || src[i] == '-') && isExponent(src[i - 1]) && !isHex(start)))) {
+                    i++;
+                }
+                add(LITERAL, start, i, line);
+            } else if (isIdentifierStart(c)) {
+                int start = i++;
+                while (i < n && isIdentifierPart(src[i])) i++;
+                add(IDENT, start, i, line);
+            } else if (c == '\\') {
+                throw Unsupported.INSTANCE; // escape unicode fuori da stringhe e caratteri
+            } else {
+                int start = i;
+                int kind = c;
+                byte next = i + 1 < n ? src[i + 1] : 0;
+                if (c == '-' && next == '>') kind = ARROW;
+                else if (c == '&' && next == '&') kind = AND_AND;
+                else if (c == '|' && next == '|') kind = OR_OR;
+                else if (c == ':' && next == ':') kind = COLON_COLON;
+                else if ((c == '+' || c == '-') && next == c) kind = INC_DEC;
+                else if (c == '.' && next == '.' && i + 2 < n && src[i + 2] == '.') kind = ELLIPSIS;
+                i += kind == ELLIPSIS ? 3 : kind == c ? 1 : 2;
+                add(kind, start, i, line);
+            }
+        }
+    }
+
+    private void add(int kind, int start, int end, int line) {
+        if (count == kinds.length) {
+            int size = count * 2;
+            kinds = Arrays.copyOf(kinds, size);
+            starts = Arrays.copyOf(starts, size);
+            ends = Arrays.copyOf(ends, size);
+            lines = Arrays.copyOf(lines, size);
+        }
+        kinds[count] = kind;
+        starts[count] = start;
+        ends[count] = end;
+        lines[count] = line;
+        count++;
+    }
+
+    private static boolean isDigit(byte c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentifierStart(byte c) {
+        // I byte >= 0x80 fanno parte di caratteri UTF-8 non ASCII, trattati come lettere
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$' || c < 0;
+    }
+
+    private static boolean isIdentifierPart(byte c) {
+        return isIdentifierStart(c) || isDigit(c);
+    }
+
+    private static boolean isExponent(byte c) {
+        return c == 'e' || c == 'E' || c == 'p' || c == 'P';
+    }
+
+    private boolean isHex(int start) {
+        return src[start] == '0' && start + 1 < src.length && (src[start + 1] == 'x' || src[start + 1] == 'X');
+    }
+
+    // ------------------------------------------------------------------ token helpers
+
+    private int kind(int index) {
+        return index >= 0 && index < count ? kinds[index] : 0;
+    }
+
+    private boolean is(int index, int kind) {
+        return kind(index) == kind;
+    }
+
+    private boolean isWord(int index, String word) {
+        if (kind(index) != IDENT || ends[index] - starts[index] != word.length()) return false;
+        for (int i = 0; i < word.length(); i++) {
+            if (src[starts[index] + i] != word.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private String text(int index) {
+        return new String(src, starts[index], ends[index] - starts[index], StandardCharsets.UTF_8);
+    }
+
+    private void expect(int kind) {
+        if (kind(p) != kind) throw Unsupported.INSTANCE;
+        p++;
+    }
+
+    private boolean isModifier(int index) {
+        return isWord(index, "public") || isWord(index, "protected") || isWord(index, "private")
+                || isWord(index, "static") || isWord(index, "final") || isWord(index, "abstract")
+                || isWord(index, "native") || isWord(index, "synchronized") || isWord(index, "transient")
+                || isWord(index, "volatile") || isWord(index, "strictfp") || isWord(index, "default")
+                || isWord(index, "sealed");
+    }
+
+    // Dichiarazioni di tipo che richiedono il parser completo o che non sono ammesse nel corpo dei metodi
+    private boolean isTypeDeclaration(int index) {
+        if (is(index - 1, '.')) return false; // Foo.class
+        return isWord(index, "class") || isWord(index, "interface") || isWord(index, "enum")
+                || (isWord(index, "record") && is(index + 1, IDENT) && (is(index + 2, '(') || is(index + 2, '<')));
+    }
+
+    // ------------------------------------------------------------------ declarations
+
+    private void compilationUnit() {
+        while (p < count) {
+            if (is(p, ';')) {
+                p++;
+            } else if (isWord(p, "package") || isWord(p, "import")) {
+                while (p < count && !is(p, ';')) p++;
+                p++;
+            } else {
+                skipAnnotationsAndModifiers();
+                if (isWord(p, "class") || isWord(p, "interface")) {
+                    classDeclaration();
+                } else {
+                    throw Unsupported.INSTANCE; // enum, record, @interface, module
+                }
+            }
+        }
+    }
+
+    private void skipAnnotationsAndModifiers() {
+        while (true) {
+            if (is(p, '@')) {
+                if (isWord(p + 1, "interface")) throw Unsupported.INSTANCE;
+                p++;
+                expect(IDENT);
+                while (is(p, '.') && is(p + 1, IDENT)) p += 2;
+                if (is(p, '(')) skipBalanced('(', ')');
+            } else if (isModifier(p)) {
+                p++;
+            } else if (isWord(p, "non") && is(p + 1, '-') && isWord(p + 2, "sealed")) {
+                p += 3;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void classDeclaration() {
+        p++; // class | interface
+        if (!is(p, IDENT)) throw Unsupported.INSTANCE;
+        ClassEntry entry = new ClassEntry(text(p));
+        classes.add(entry);
+        p++;
+        // Parametri di tipo, extends, implements, permits
+        while (p < count && !is(p, '{')) {
+            if (is(p, '@') || is(p, '(')) throw Unsupported.INSTANCE;
+            p++;
+        }
+        expect('{');
+        classBody(entry);
+        expect('}');
+    }
+
+    private void classBody(ClassEntry entry) {
+        while (p < count && !is(p, '}')) {
+            if (is(p, ';')) {
+                p++;
+                continue;
+            }
+            int memberStart = p;
+            skipAnnotationsAndModifiers();
+            if (is(p, '{')) {
+                // Blocco di inizializzazione
+                skipCode('{', '}');
+            } else if (isWord(p, "class") || isWord(p, "interface")) {
+                classDeclaration();
+            } else if (isTypeDeclaration(p)) {
+                throw Unsupported.INSTANCE; // enum, record
+            } else {
+                member(entry, memberStart);
+            }
+        }
+    }
+
+    private void member(ClassEntry entry, int memberStart) {
+        if (is(p, '<')) skipTypeParameters();
+        if (is(p, IDENT) && is(p + 1, '(')) {
+            // Costruttore: non è un metodo
+            p++;
+            skipCode('(', ')');
+            while (p < count && !is(p, '{')) p++;
+            skipCode('{', '}');
+            return;
+        }
+
+        String returnType = type();
+        if (!is(p, IDENT) || isTypeDeclaration(p)) throw Unsupported.INSTANCE;
+        int nameIndex = p++;
+
+        if (!is(p, '(')) {
+            // Campo: salta fino al ';' finale
+            while (p < count && !is(p, ';')) {
+                if (is(p, '{') || is(p, '(') || is(p, '[')) skipCode(kind(p), closing(kind(p)));
+                else checkDeclaration(p++);
+            }
+            expect(';');
+            return;
+        }
+
+        // Metodo
+        StringBuilder signature = new StringBuilder(returnType).append(' ').append(text(nameIndex)).append('(');
+        int parameters = 0;
+        p++;
+        while (!is(p, ')')) {
+            if (parameters > 0) {
+                expect(',');
+                signature.append(", ");
+            }
+            skipAnnotationsAndModifiers();
+            StringBuilder parameterType = new StringBuilder(type());
+            if (is(p, ELLIPSIS)) {
+                parameterType.append("...");
+                p++;
+            }
+            if (!is(p, IDENT) || isWord(p, "this")) throw Unsupported.INSTANCE; // receiver parameter
+            p++;
+            while (is(p, '[') && is(p + 1, ']')) {
+                parameterType.append("[]");
+                p += 2;
+            }
+            signature.append(parameterType);
+            parameters++;
+        }
+        p++;
+        signature.append(')');
+        if (is(p, '[')) throw Unsupported.INSTANCE; // dimensioni dopo i parametri
+        if (isWord(p, "throws")) {
+            while (p < count && !is(p, '{') && !is(p, ';')) {
+                if (is(p, '@')) throw Unsupported.INSTANCE;
+                p++;
+            }
+        }
+
+        Metric metric = metrics.addRow();
+        metric.setParameterCount(parameters);
+        int contentBegin = 0;
+        int contentEnd = 0;
+        if (is(p, ';')) {
+            metric.setCyclomaticComplexity(1);
+        } else {
+            int bodyStart = p;
+            statements = 0;
+            cyclomatic = 1;
+            statement();
+            int bodyEnd = p - 1;
+            metric.setLoc(countLines(bodyStart, bodyEnd));
+            metric.setStatementsCount(statements);
+            metric.setCyclomaticComplexity(cyclomatic);
+            contentBegin = starts[bodyStart];
+            contentEnd = ends[bodyEnd];
+            p--;
+        }
+        int endLine = lines[p];
+        p++;
+        entry.methods.add(new MethodCache.CachedMethod(entry.name, signature.toString(), contentBegin, contentEnd, metric, lines[memberStart], endLine));
+    }
+
+    /**
+     * Builds the string of a type as printed by the parser: qualified names, type arguments separated
+     * by ", ", wildcards and array dimensions.
+     */
+    private String type() {
+        StringBuilder type = new StringBuilder();
+        classOrPrimitiveType(type);
+        while (is(p, '[') && is(p + 1, ']')) {
+            type.append("[]");
+            p += 2;
+        }
+        return type.toString();
+    }
+
+    private void classOrPrimitiveType(StringBuilder type) {
+        while (true) {
+            if (is(p, '@')) throw Unsupported.INSTANCE; // annotazioni sui tipi
+            if (!is(p, IDENT)) throw Unsupported.INSTANCE;
+            type.append(text(p++));
+            if (is(p, '<')) typeArguments(type);
+            if (is(p, '.') && is(p + 1, IDENT)) {
+                type.append('.');
+                p++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void typeArguments(StringBuilder type) {
+        expect('<');
+        type.append('<');
+        boolean first = true;
+        while (!is(p, '>')) {
+            if (!first) {
+                expect(',');
+                type.append(", ");
+            }
+            first = false;
+            if (is(p, '?')) {
+                type.append('?');
+                p++;
+                if (isWord(p, "extends") || isWord(p, "super")) {
+                    type.append(' ').append(text(p++)).append(' ');
+                    type.append(type());
+                }
+            } else {
+                type.append(type());
+            }
+        }
+        p++;
+        type.append('>');
+    }
+
+    private void skipTypeParameters() {
+        int depth = 0;
+        do {
+            if (is(p, '<')) depth++;
+            else if (is(p, '>')) depth--;
+            else if (is(p, '@') || is(p, '(') || p >= count) throw Unsupported.INSTANCE;
+            p++;
+        } while (depth > 0);
+    }
+
+    // ------------------------------------------------------------------ statements
+
+    private void statement() {
+        int k = kind(p);
+        if (k == '{') {
+            statements++;
+            p++;
+            while (!is(p, '}')) {
+                if (p >= count) throw Unsupported.INSTANCE;
+                statement();
+            }
+            p++;
+        } else if (k == ';') {
+            statements++;
+            p++;
+        } else if (isWord(p, "if")) {
+            statements++;
+            cyclomatic++;
+            p++;
+            expression('(', ')');
+            statement();
+            if (isWord(p, "else")) {
+                p++;
+                statement();
+            }
+        } else if (isWord(p, "for") || isWord(p, "while")) {
+            statements++;
+            cyclomatic++;
+            p++;
+            expression('(', ')');
+            statement();
+        } else if (isWord(p, "do")) {
+            statements++;
+            cyclomatic++;
+            p++;
+            statement();
+            if (!isWord(p, "while")) throw Unsupported.INSTANCE;
+            p++;
+            expression('(', ')');
+            expect(';');
+        } else if (isWord(p, "switch")) {
+            statements++;
+            p++;
+            expression('(', ')');
+            switchBody();
+        } else if (isWord(p, "try")) {
+            statements++;
+            p++;
+            if (is(p, '(')) expression('(', ')');
+            block();
+            while (isWord(p, "catch")) {
+                p++;
+                expression('(', ')');
+                block();
+            }
+            if (isWord(p, "finally")) {
+                p++;
+                block();
+            }
+        } else if (isWord(p, "synchronized")) {
+            statements++;
+            p++;
+            expression('(', ')');
+            block();
+        } else if (k == IDENT && is(p + 1, ':')) {
+            // Istruzione con etichetta
+            statements++;
+            p += 2;
+            statement();
+        } else if (isWord(p, "else") || isWord(p, "case") || isWord(p, "default")
+                || isWord(p, "catch") || isWord(p, "finally")) {
+            throw Unsupported.INSTANCE;
+        } else {
+            // Espressione, dichiarazione di variabile locale, return, throw, break, continue, yield, assert
+            int start = p;
+            skipAnnotationsAndModifiers();
+            if (isTypeDeclaration(p)) throw Unsupported.INSTANCE; // classe locale
+            p = start;
+            statements++;
+            expressionUntil(';');
+            p++;
+        }
+    }
+
+    private void block() {
+        if (!is(p, '{')) throw Unsupported.INSTANCE;
+        statement();
+    }
+
+    /**
+     * Scans the entries of a switch body, starting at its opening brace.
+     */
+    private void switchBody() {
+        expect('{');
+        while (!is(p, '}')) {
+            if (isWord(p, "case")) {
+                cyclomatic++;
+                p++;
+                // Etichette fino a ':' o '->'
+                while (!is(p, ':') && !is(p, ARROW)) {
+                    if (p >= count || is(p, '{') || is(p, ';')) throw Unsupported.INSTANCE;
+                    p++;
+                }
+            } else if (isWord(p, "default")) {
+                p++;
+            } else {
+                throw Unsupported.INSTANCE;
+            }
+
+            if (is(p, ARROW)) {
+                p++;
+                if (is(p, '{') || isWord(p, "throw")) {
+                    statement();
+                } else {
+                    // L'espressione del caso è racchiusa in un'istruzione
+                    statements++;
+                    expressionUntil(';');
+                    p++;
+                }
+            } else {
+                expect(':');
+                while (!isWord(p, "case") && !isWord(p, "default") && !is(p, '}')) {
+                    if (p >= count) throw Unsupported.INSTANCE;
+                    statement();
+                }
+            }
+        }
+        p++;
+    }
+
+    /**
+     * Scans a parenthesized expression, starting at the opening token and ending after the closing one.
+     */
+    private void expression(int open, int close) {
+        expect(open);
+        expressionUntil(close);
+        p++;
+    }
+
+    /**
+     * Scans an expression up to the given terminator at depth zero, leaving the terminator as current token.
+     * Lambdas and switch expressions contribute their statements and decision points.
+     */
+    private void expressionUntil(int terminator) {
+        int depth = 0;
+        while (true) {
+            if (p >= count) throw Unsupported.INSTANCE;
+            int k = kind(p);
+            if (depth == 0 && k == terminator) return;
+
+            if (k == '(' || k == '[') {
+                depth++;
+                p++;
+            } else if (k == ')' || k == ']' || k == '}') {
+                if (depth == 0) throw Unsupported.INSTANCE;
+                depth--;
+                p++;
+            } else if (k == '{') {
+                if (is(p - 1, ARROW)) {
+                    statement(); // corpo a blocco di una lambda
+                } else if (is(p - 1, ')')) {
+                    throw Unsupported.INSTANCE; // classe anonima
+                } else {
+                    depth++; // inizializzatore di array
+                    p++;
+                }
+            } else if (k == ARROW) {
+                p++;
+                if (!is(p, '{')) {
+                    statements++; // il corpo espressione di una lambda è racchiuso in un'istruzione
+                }
+            } else if (k == AND_AND || k == OR_OR) {
+                cyclomatic++;
+                p++;
+            } else if (isWord(p, "switch")) {
+                p++;
+                expression('(', ')');
+                switchBody();
+            } else if (k == IDENT && isTypeDeclaration(p)) {
+                throw Unsupported.INSTANCE;
+            } else if (k == ';' && terminator == ';') {
+                throw Unsupported.INSTANCE; // ammesso solo nelle intestazioni di for e try
+            } else {
+                p++;
+            }
+        }
+    }
+
+    /**
+     * Skips a balanced region of code outside method bodies, checking that it declares no class.
+     */
+    private void skipCode(int open, int close) {
+        expect(open);
+        int depth = 1;
+        while (depth > 0) {
+            if (p >= count) throw Unsupported.INSTANCE;
+            int k = kind(p);
+            if (k == open) depth++;
+            else if (k == close) depth--;
+            else checkDeclaration(p);
+            p++;
+        }
+    }
+
+    private void skipBalanced(int open, int close) {
+        expect(open);
+        int depth = 1;
+        while (depth > 0) {
+            if (p >= count) throw Unsupported.INSTANCE;
+            if (is(p, open)) depth++;
+            else if (is(p, close)) depth--;
+            p++;
+        }
+    }
+
+    private void checkDeclaration(int index) {
+        if (kind(index) == IDENT && isTypeDeclaration(index)) throw Unsupported.INSTANCE;
+    }
+
+    private static int closing(int open) {
+        return open == '{' ? '}' : open == '(' ? ')' : ']';
+    }
+
+    private int countLines(int from, int to) {
+        int result = 0;
+        int last = -1;
+        for (int i = from; i <= to; i++) {
+            if (lines[i] != last) {
+                result++;
+                last = lines[i];
+            }
+        }
+        return result;
+    }
+
+    // ------------------------------------------------------------------ support types
+
+    // Classe dichiarata nel file, con i propri metodi nell'ordine di dichiarazione
+    private static final class ClassEntry {
+        private final String name;
+        private final List<MethodCache.CachedMethod> methods = new ArrayList<>();
+
+        private ClassEntry(String name) {
+            this.name = name;
+        }
+    }
+
+    // Segnala un costrutto non gestito; senza stack trace perché usata per il controllo del flusso
+    private static final class Unsupported extends RuntimeException {
+        private static final Unsupported INSTANCE = new Unsupported();
+
+        private Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+}
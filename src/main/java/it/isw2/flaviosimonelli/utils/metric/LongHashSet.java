@@ -0,0 +1,75 @@
+package it.isw2.flaviosimonelli.utils.metric;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash set of primitive longs, used to count distinct tokens without boxing.
+ * The set is meant to be cleared and reused: clearing keeps the allocated table.
+ * Not thread-safe.
+ */
+final class LongHashSet {
+    private static final int INITIAL_CAPACITY = 64; // Potenza di due
+    private static final long EMPTY = 0L;
+
+    private long[] table = new long[INITIAL_CAPACITY];
+    private int size;
+    private boolean containsEmpty; // Lo zero è il marcatore delle celle vuote e viene tracciato a parte
+
+    /**
+     * Adds a value to the set.
+     *
+     * @param value The value to add
+     * @return true if the value was not already present
+     */
+    boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsEmpty) return false;
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+        // Fattore di carico massimo 0.5
+        if ((size + 1) * 2 > table.length) {
+            grow();
+        }
+        int mask = table.length - 1;
+        int index = mix(value) & mask;
+        while (table[index] != EMPTY) {
+            if (table[index] == value) return false;
+            index = (index + 1) & mask;
+        }
+        table[index] = value;
+        size++;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        if (size == 0) return;
+        Arrays.fill(table, EMPTY);
+        size = 0;
+        containsEmpty = false;
+    }
+
+    private void grow() {
+        long[] old = table;
+        table = new long[old.length * 2];
+        int mask = table.length - 1;
+        for (long value : old) {
+            if (value == EMPTY) continue;
+            int index = mix(value) & mask;
+            while (table[index] != EMPTY) {
+                index = (index + 1) & mask;
+            }
+            table[index] = value;
+        }
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
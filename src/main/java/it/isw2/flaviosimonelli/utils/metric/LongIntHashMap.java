@@ -0,0 +1,102 @@
+package it.isw2.flaviosimonelli.utils.metric;
+
+/**
+ * Open-addressing hash map from primitive longs to non-negative ints, used to index methods without boxing.
+ * The table is sized from the expected number of keys and grows only if that number is exceeded.
+ * Not thread-safe.
+ */
+final class LongIntHashMap {
+    private static final long EMPTY = 0L;
+    private static final int ABSENT = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int emptyKeyValue = ABSENT; // Lo zero è il marcatore delle celle vuote e il suo valore viene tracciato a parte
+
+    /**
+     * Creates a map able to hold the expected number of keys without growing.
+     *
+     * @param expectedSize The expected number of keys
+     */
+    LongIntHashMap(int expectedSize) {
+        // Fattore di carico massimo 0.5, capacità potenza di due
+        int capacity = Integer.highestOneBit(Math.max(2, expectedSize) * 2 - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+    }
+
+    /**
+     * Associates a value with a key, unless the key is already present.
+     *
+     * @param key   The key
+     * @param value The value, not negative
+     * @return The value already associated with the key, or -1 if the value was added
+     */
+    int putIfAbsent(long key, int value) {
+        if (key == EMPTY) {
+            int previous = emptyKeyValue;
+            if (previous == ABSENT) {
+                emptyKeyValue = value;
+                size++;
+            }
+            return previous;
+        }
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) return values[index];
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        size++;
+        return ABSENT;
+    }
+
+    /**
+     * Returns the value associated with a key.
+     *
+     * @param key The key
+     * @return The value, or -1 if the key is not present
+     */
+    int get(long key) {
+        if (key == EMPTY) return emptyKeyValue;
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) return values[index];
+            index = (index + 1) & mask;
+        }
+        return ABSENT;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) continue;
+            int index = mix(oldKeys[i]) & mask;
+            while (keys[index] != EMPTY) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = oldKeys[i];
+            values[index] = oldValues[i];
+        }
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
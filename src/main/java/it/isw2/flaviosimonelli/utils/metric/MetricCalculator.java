@@ -0,0 +1,444 @@
+package it.isw2.flaviosimonelli.utils.metric;
+
+import com.github.javaparser.GeneratedJavaParserConstants;
+import com.github.javaparser.JavaToken;
+import com.github.javaparser.TokenRange;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.ConditionalExpr;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import com.github.javaparser.ast.expr.SwitchExpr;
+import com.github.javaparser.ast.stmt.*;
+import com.github.javaparser.ast.visitor.GenericVisitorAdapter;
+import it.isw2.flaviosimonelli.model.method.Metric;
+
+import java.util.BitSet;
+import java.util.Optional;
+
+/**
+ * Computes the size, complexity and Halstead metrics of a method with a single traversal of its body
+ * and a single scan of its tokens.
+ * The visitor carries the current nesting level as argument and always returns null,
+ * so that the adapter visits the whole subtree.
+ * <ul>
+ *     <li>loc: lines of the body containing at least one token that is not whitespace or comment</li>
+ *     <li>statementsCount: statements in the body, the body block included</li>
+ *     <li>cyclomaticComplexity: 1 + if, for, foreach, while, do, labelled switch cases, && and ||</li>
+ *     <li>cognitiveComplexity: structural increments plus nesting increments, as defined by SonarSource</li>
+ *     <li>nestingDepth: maximum nesting of control structures (if, else, loops, switch, catch, ternary)</li>
+ *     <li>numberOfBranches: branch points (if, loops, labelled switch cases, ternary, catch)</li>
+ *     <li>parameterCount: declared parameters</li>
+ *     <li>halsteadVolume, halsteadDifficulty, halsteadEffort: computed on the tokens of the whole declaration</li>
+ * </ul>
+ */
+public final class MetricCalculator {
+
+    private static final ThreadLocal<HalsteadCounter> HALSTEAD = ThreadLocal.withInitial(HalsteadCounter::new);
+
+    private MetricCalculator() {
+    }
+
+    /**
+     * Computes the metrics of a method declaration.
+     *
+     * @param methodDecl The method to measure
+     * @return A new Metric with the size, complexity and Halstead fields filled
+     */
+    public static Metric compute(MethodDeclaration methodDecl) {
+        return compute(methodDecl, new Metric());
+    }
+
+    /**
+     * Computes the metrics of a method declaration into an existing Metric, typically a row of a MetricStore.
+     *
+     * @param methodDecl The method to measure
+     * @param metric     The metrics to fill
+     * @return The given Metric, with the size, complexity and Halstead fields filled
+     */
+    public static Metric compute(MethodDeclaration methodDecl, Metric metric) {
+        metric.setParameterCount(methodDecl.getParameters().size());
+
+        Optional<BlockStmt> body = methodDecl.getBody();
+        measureTokens(methodDecl, body.orElse(null), metric);
+        if (body.isEmpty()) {
+            // Metodo astratto o nativo: nessun corpo da misurare
+            metric.setCyclomaticComplexity(1);
+            return metric;
+        }
+
+        MetricVisitor visitor = new MetricVisitor();
+        body.get().accept(visitor, 0);
+
+        metric.setStatementsCount(visitor.statements);
+        metric.setCyclomaticComplexity(visitor.cyclomatic);
+        metric.setCognitiveComplexity(visitor.cognitive);
+        metric.setNestingDepth(visitor.maxNesting);
+        metric.setNumberOfBranches(visitor.branches);
+        return metric;
+    }
+
+    /**
+     * Scans the tokens of the method once, computing the Halstead metrics over the whole declaration
+     * and the lines of code of the body from the token positions, instead of printing the body again.
+     */
+    private static void measureTokens(MethodDeclaration methodDecl, BlockStmt body, Metric metric) {
+        Optional<TokenRange> range = methodDecl.getTokenRange();
+        if (range.isEmpty()) return;
+        JavaToken bodyBegin = body != null ? body.getTokenRange().map(TokenRange::getBegin).orElse(null) : null;
+        JavaToken bodyEnd = body != null ? body.getTokenRange().map(TokenRange::getEnd).orElse(null) : null;
+
+        HalsteadCounter halstead = HALSTEAD.get();
+        halstead.reset();
+        boolean inBody = false;
+        int lines = 0;
+        int lastLine = -1;
+        for (JavaToken token : range.get()) {
+            if (token == bodyBegin) inBody = true;
+            if (!token.getCategory().isWhitespaceOrComment()) {
+                halstead.add(token);
+                if (inBody) {
+                    // I token sono in ordine di posizione: basta contare i cambi di riga
+                    int line = token.getRange().map(r -> r.begin.line).orElse(lastLine);
+                    if (line != lastLine) {
+                        lines++;
+                        lastLine = line;
+                    }
+                }
+            }
+            if (token == bodyEnd) inBody = false;
+        }
+
+        metric.setLoc(lines);
+        halstead.fill(metric);
+    }
+
+    /**
+     * Counts operators and operands of a token stream. Operands are identifiers and literals;
+     * operators are keywords, operators and separators, with closing brackets counted together
+     * with the opening ones. Distinct operators are tracked by token kind and distinct operands
+     * by a 64-bit hash of their text, so no String is created while counting.
+     * One instance per thread is reused for every method.
+     */
+    private static final class HalsteadCounter {
+        private final BitSet distinctOperators = new BitSet();
+        private final LongHashSet distinctOperands = new LongHashSet();
+        private int totalOperators;
+        private int totalOperands;
+
+        private void reset() {
+            distinctOperators.clear();
+            distinctOperands.clear();
+            totalOperators = 0;
+            totalOperands = 0;
+        }
+
+        private void add(JavaToken token) {
+            JavaToken.Category category = token.getCategory();
+            if (category.isIdentifier() || category.isLiteral()) {
+                totalOperands++;
+                distinctOperands.add(hash(token.getText()));
+                return;
+            }
+            int kind = token.getKind();
+            if (kind == GeneratedJavaParserConstants.RPAREN
+                    || kind == GeneratedJavaParserConstants.RBRACKET
+                    || kind == GeneratedJavaParserConstants.RBRACE) {
+                return;
+            }
+            totalOperators++;
+            distinctOperators.set(kind);
+        }
+
+        private void fill(Metric metric) {
+            int n1 = distinctOperators.cardinality();
+            int n2 = distinctOperands.size();
+            int vocabulary = n1 + n2;
+            int length = totalOperators + totalOperands;
+
+            double volume = vocabulary > 1 ? length * (Math.log(vocabulary) / Math.log(2)) : 0;
+            double difficulty = n2 > 0 ? (n1 / 2.0) * ((double) totalOperands / n2) : 0;
+            metric.setHalsteadVolume(volume);
+            metric.setHalsteadDifficulty(difficulty);
+            metric.setHalsteadEffort(volume * difficulty);
+        }
+
+        // FNV-1a a 64 bit sui caratteri del testo del token
+        private static long hash(String text) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < text.length(); i++) {
+                h ^= text.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            return h;
+        }
+    }
+
+    private static final class MetricVisitor extends GenericVisitorAdapter<Void, Integer> {
+        private int statements;
+        private int cyclomatic = 1;
+        private int cognitive;
+        private int maxNesting;
+        private int branches;
+
+        // Incremento strutturale più incremento di annidamento, e visita del corpo al livello successivo
+        private void structure(int nesting) {
+            cognitive += 1 + nesting;
+            maxNesting = Math.max(maxNesting, nesting + 1);
+        }
+
+        private void nested(Node child, int nesting) {
+            child.accept(this, nesting + 1);
+        }
+
+        // --- Strutture di controllo ---
+
+        @Override
+        public Void visit(IfStmt n, Integer nesting) {
+            statements++;
+            cyclomatic++;
+            branches++;
+            boolean elseIf = n.getParentNode()
+                    .filter(IfStmt.class::isInstance)
+                    .map(parent -> ((IfStmt) parent).getElseStmt().filter(e -> e == n).isPresent())
+                    .orElse(false);
+            if (elseIf) {
+                // "else if": incremento senza annidamento, il livello è quello della catena
+                cognitive++;
+                maxNesting = Math.max(maxNesting, nesting + 1);
+            } else {
+                structure(nesting);
+            }
+
+            n.getCondition().accept(this, nesting);
+            nested(n.getThenStmt(), nesting);
+            n.getElseStmt().ifPresent(elseStmt -> {
+                if (elseStmt instanceof IfStmt) {
+                    elseStmt.accept(this, nesting);
+                } else {
+                    cognitive++;
+                    nested(elseStmt, nesting);
+                }
+            });
+            return null;
+        }
+
+        @Override
+        public Void visit(ForStmt n, Integer nesting) {
+            statements++;
+            cyclomatic++;
+            branches++;
+            structure(nesting);
+            n.getInitialization().forEach(init -> init.accept(this, nesting));
+            n.getCompare().ifPresent(compare -> compare.accept(this, nesting));
+            n.getUpdate().forEach(update -> update.accept(this, nesting));
+            nested(n.getBody(), nesting);
+            return null;
+        }
+
+        @Override
+        public Void visit(ForEachStmt n, Integer nesting) {
+            statements++;
+            cyclomatic++;
+            branches++;
+            structure(nesting);
+            n.getVariable().accept(this, nesting);
+            n.getIterable().accept(this, nesting);
+            nested(n.getBody(), nesting);
+            return null;
+        }
+
+        @Override
+        public Void visit(WhileStmt n, Integer nesting) {
+            statements++;
+            cyclomatic++;
+            branches++;
+            structure(nesting);
+            n.getCondition().accept(this, nesting);
+            nested(n.getBody(), nesting);
+            return null;
+        }
+
+        @Override
+        public Void visit(DoStmt n, Integer nesting) {
+            statements++;
+            cyclomatic++;
+            branches++;
+            structure(nesting);
+            nested(n.getBody(), nesting);
+            n.getCondition().accept(this, nesting);
+            return null;
+        }
+
+        @Override
+        public Void visit(SwitchStmt n, Integer nesting) {
+            statements++;
+            structure(nesting);
+            n.getSelector().accept(this, nesting);
+            n.getEntries().forEach(entry -> nested(entry, nesting));
+            return null;
+        }
+
+        @Override
+        public Void visit(SwitchExpr n, Integer nesting) {
+            structure(nesting);
+            n.getSelector().accept(this, nesting);
+            n.getEntries().forEach(entry -> nested(entry, nesting));
+            return null;
+        }
+
+        @Override
+        public Void visit(SwitchEntry n, Integer nesting) {
+            // Il caso "default" non ha etichette e non è un punto di decisione
+            if (!n.getLabels().isEmpty()) {
+                cyclomatic++;
+                branches++;
+            }
+            return super.visit(n, nesting);
+        }
+
+        @Override
+        public Void visit(CatchClause n, Integer nesting) {
+            branches++;
+            structure(nesting);
+            n.getParameter().accept(this, nesting);
+            nested(n.getBody(), nesting);
+            return null;
+        }
+
+        @Override
+        public Void visit(ConditionalExpr n, Integer nesting) {
+            branches++;
+            structure(nesting);
+            n.getCondition().accept(this, nesting);
+            nested(n.getThenExpr(), nesting);
+            nested(n.getElseExpr(), nesting);
+            return null;
+        }
+
+        @Override
+        public Void visit(LambdaExpr n, Integer nesting) {
+            // Una lambda aumenta l'annidamento senza incremento strutturale
+            n.getParameters().forEach(parameter -> parameter.accept(this, nesting));
+            nested(n.getBody(), nesting);
+            return null;
+        }
+
+        @Override
+        public Void visit(BinaryExpr n, Integer nesting) {
+            BinaryExpr.Operator operator = n.getOperator();
+            if (operator == BinaryExpr.Operator.AND || operator == BinaryExpr.Operator.OR) {
+                cyclomatic++;
+                // Una sequenza di operatori logici uguali conta una sola volta
+                boolean continuesSequence = n.getParentNode()
+                        .filter(BinaryExpr.class::isInstance)
+                        .map(parent -> ((BinaryExpr) parent).getOperator() == operator)
+                        .orElse(false);
+                if (!continuesSequence) {
+                    cognitive++;
+                }
+            }
+            return super.visit(n, nesting);
+        }
+
+        @Override
+        public Void visit(BreakStmt n, Integer nesting) {
+            statements++;
+            if (n.getLabel().isPresent()) cognitive++;
+            return super.visit(n, nesting);
+        }
+
+        @Override
+        public Void visit(ContinueStmt n, Integer nesting) {
+            statements++;
+            if (n.getLabel().isPresent()) cognitive++;
+            return super.visit(n, nesting);
+        }
+
+        // --- Altre istruzioni: contano solo come statement ---
+
+        @Override
+        public Void visit(AssertStmt n, Integer nesting) {
+            statements++;
+            return super.visit(n, nesting);
+        }
+
+        @Override
+        public Void visit(BlockStmt n, Integer nesting) {
+            statements++;
+            return super.visit(n, nesting);
+        }
+
+        @Override
+        public Void visit(EmptyStmt n, Integer nesting) {
+            statements++;
+            return super.visit(n, nesting);
+        }
+
+        @Override
+        public Void visit(ExplicitConstructorInvocationStmt n, Integer nesting) {
+            statements++;
+            return super.visit(n, nesting);
+        }
+
+        @Override
+        public Void visit(ExpressionStmt n, Integer nesting) {
+            statements++;
+            return super.visit(n, nesting);
+        }
+
+        @Override
+        public Void visit(LabeledStmt n, Integer nesting) {
+            statements++;
+            return super.visit(n, nesting);
+        }
+
+        @Override
+        public Void visit(LocalClassDeclarationStmt n, Integer nesting) {
+            statements++;
+            return super.visit(n, nesting);
+        }
+
+        @Override
+        public Void visit(LocalRecordDeclarationStmt n, Integer nesting) {
+            statements++;
+            return super.visit(n, nesting);
+        }
+
+        @Override
+        public Void visit(ReturnStmt n, Integer nesting) {
+            statements++;
+            return super.visit(n, nesting);
+        }
+
+        @Override
+        public Void visit(SynchronizedStmt n, Integer nesting) {
+            statements++;
+            return super.visit(n, nesting);
+        }
+
+        @Override
+        public Void visit(ThrowStmt n, Integer nesting) {
+            statements++;
+            return super.visit(n, nesting);
+        }
+
+        @Override
+        public Void visit(TryStmt n, Integer nesting) {
+            statements++;
+            return super.visit(n, nesting);
+        }
+
+        @Override
+        public Void visit(UnparsableStmt n, Integer nesting) {
+            statements++;
+            return super.visit(n, nesting);
+        }
+
+        @Override
+        public Void visit(YieldStmt n, Integer nesting) {
+            statements++;
+            return super.visit(n, nesting);
+        }
+    }
+}
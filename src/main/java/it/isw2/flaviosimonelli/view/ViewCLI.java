@@ -3,6 +3,7 @@ package it.isw2.flaviosimonelli.view;
 import it.isw2.flaviosimonelli.controller.CreateCSVController;
 import it.isw2.flaviosimonelli.utils.bean.JiraBean;
 import it.isw2.flaviosimonelli.utils.bean.GitBean;
+import it.isw2.flaviosimonelli.utils.bean.PipelineBean;
 
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -80,6 +81,7 @@ public class ViewCLI {
             config.parentDirectory = properties.getProperty("local.directory.parent", "");
             config.directory = properties.getProperty("local.directory.git", "");
             config.approachProportion = ApproachProportion.fromString(properties.getProperty("approach.proportion", "COMPLETE"));
+            config.pipeline = loadPipeline();
 
             if (!validateConfiguration(config)) {
                 throw new RuntimeException("Invalid configuration");
@@ -98,6 +100,34 @@ public class ViewCLI {
         }
     }
 
+    /**
+     * Loads the optional tuning options of the extraction pipeline.
+     *
+     * @return A PipelineBean with the configured options, defaults for the missing ones
+     * @throws NumberFormatException if a numeric option is not a valid number
+     */
+    private PipelineBean loadPipeline() {
+        PipelineBean pipeline = new PipelineBean();
+        pipeline.setExtractionThreads(Integer.parseInt(properties.getProperty("extraction.threads", "0").trim()));
+        pipeline.setParseCacheMegabytes(Long.parseLong(properties.getProperty("parse.cache.mb", "256").trim()));
+        pipeline.setIncrementalExtraction(Boolean.parseBoolean(properties.getProperty("extraction.incremental", "false").trim()));
+        pipeline.setReleaseAssignment(PipelineBean.ReleaseAssignment.fromString(properties.getProperty("release.assignment", "timestamp")));
+        pipeline.setTicketThreads(Integer.parseInt(properties.getProperty("ticket.threads", "0").trim()));
+        pipeline.setVirtualTicketThreads(Boolean.parseBoolean(properties.getProperty("ticket.virtual.threads", "false").trim()));
+        pipeline.setChangeHistory(Boolean.parseBoolean(properties.getProperty("metrics.history", "false").trim()));
+        pipeline.setExtractionMode(PipelineBean.ExtractionMode.fromString(properties.getProperty("extraction.mode", "parser")));
+        pipeline.setStreaming(Boolean.parseBoolean(properties.getProperty("pipeline.streaming", "false").trim()));
+        pipeline.setOutputFormat(PipelineBean.OutputFormat.fromString(properties.getProperty("output.format", "csv")));
+        pipeline.setOutputCompression(PipelineBean.OutputCompression.fromString(properties.getProperty("output.compression", "none")));
+        pipeline.setJiraThreads(Integer.parseInt(properties.getProperty("jira.threads", "4").trim()));
+        pipeline.setJiraCache(Boolean.parseBoolean(properties.getProperty("jira.cache", "true").trim()));
+        pipeline.setJiraCacheTtlMinutes(Long.parseLong(properties.getProperty("jira.cache.ttl.minutes", "0").trim()));
+        pipeline.setJiraOffline(Boolean.parseBoolean(properties.getProperty("jira.offline", "false").trim()));
+        pipeline.setJiraIncremental(Boolean.parseBoolean(properties.getProperty("jira.incremental", "false").trim()));
+        pipeline.setCheckpoint(Boolean.parseBoolean(properties.getProperty("pipeline.checkpoint", "false").trim()));
+        return pipeline;
+    }
+
     /**
      * Displays a summary of the loaded configuration.
      *
@@ -118,6 +148,23 @@ public class ViewCLI {
         System.out.println("- Branch: " + config.branch);
         System.out.println("- Convenzione di rilascio: " + config.conventionReleaseTag);
         System.out.println("- Approach proportion: " + config.approachProportion);
+        System.out.println("- Thread di estrazione: " + config.pipeline.getExtractionThreads());
+        System.out.println("- Cache dei file analizzati: " + config.pipeline.getParseCacheBytes() / (1024 * 1024) + " MB");
+        System.out.println("- Estrazione incrementale: " + config.pipeline.isIncrementalExtraction());
+        System.out.println("- Assegnazione dei commit alle release: " + config.pipeline.getReleaseAssignment());
+        System.out.println("- Ticket analizzati in parallelo: " + config.pipeline.getTicketThreads()
+                + (config.pipeline.isVirtualTicketThreads() ? " (virtual thread)" : ""));
+        System.out.println("- Metriche di storia delle modifiche: " + config.pipeline.isChangeHistory());
+        System.out.println("- Modalità di estrazione dei metodi: " + config.pipeline.getExtractionMode());
+        System.out.println("- Pipeline in streaming (una release alla volta): " + config.pipeline.isStreaming());
+        System.out.println("- Formato del dataset dei metodi: " + config.pipeline.getOutputFormat());
+        System.out.println("- Compressione del dataset dei metodi: " + config.pipeline.getOutputCompression());
+        System.out.println("- Pagine Jira scaricate in parallelo: " + config.pipeline.getJiraThreads());
+        System.out.println("- Cache delle risposte Jira: " + config.pipeline.isJiraCache()
+                + " (TTL " + config.pipeline.getJiraCacheTtlMinutes() + " minuti)");
+        System.out.println("- Jira offline (solo cache): " + config.pipeline.isJiraOffline());
+        System.out.println("- Sincronizzazione incrementale dei ticket: " + config.pipeline.isJiraIncremental());
+        System.out.println("- Checkpoint per riprendere le esecuzioni interrotte: " + config.pipeline.isCheckpoint());
     }
 
     /**
@@ -186,7 +233,7 @@ public class ViewCLI {
         }
 
         CreateCSVController controller = new CreateCSVController();
-        controller.createCSV(jiraBean, gitBean);
+        controller.createCSV(jiraBean, gitBean, config.pipeline);
     }
 
 
@@ -202,6 +249,7 @@ public class ViewCLI {
         String parentDirectory;
         String directory;
         ApproachProportion approachProportion;
+        PipelineBean pipeline;
     }
 
     /**
@@ -0,0 +1,242 @@
+package it.isw2.flaviosimonelli.utils;
+
+import it.isw2.flaviosimonelli.model.Version;
+import it.isw2.flaviosimonelli.model.method.Method;
+import it.isw2.flaviosimonelli.model.method.Metric;
+import it.isw2.flaviosimonelli.model.method.MetricStore;
+import it.isw2.flaviosimonelli.utils.cache.SymbolTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the ARFF methods dataset against the CSV one written from the same releases: the attributes must be the
+ * CSV columns, and every dense and sparse row must hold the values of the CSV row, with the strings unescaped
+ * from their quotes and the zero metrics written as 0 or omitted from the sparse rows.
+ */
+class ArffMethodSinkTest {
+    private static final String[] SIGNATURES = {
+            "plain()", "quotes(String \"s\", char 'c')", "backslash(String a\\b)", "comma(int a, int b)",
+            "tab(int\ta)", "lineBreak(int\na)", "unicode(String città)"};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void headerDeclaresTheCsvColumns() throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        List<Version> versions = versions(symbols);
+        List<String> csvHeader = Arrays.asList(csvRows(write(versions, symbols, "csv")).get(0));
+
+        for (String format : List.of("arff", "sparse_arff")) {
+            List<String> lines = Files.readAllLines(write(versions, symbols, format), StandardCharsets.UTF_8);
+            assertEquals("@relation 'project\\'s'", lines.get(0));
+            List<String> attributes = new ArrayList<>();
+            for (String line : lines.subList(1, lines.indexOf("@data"))) {
+                if (line.startsWith("@attribute ")) attributes.add(line.substring("@attribute ".length()));
+            }
+            assertEquals("Version {'1.0.0','it\\'s-2.0'}", attributes.get(0));
+            assertEquals("ClassPath string", attributes.get(1));
+            assertEquals("MethodName string", attributes.get(2));
+            for (int i = 3; i < csvHeader.size() - 1; i++) {
+                assertEquals(csvHeader.get(i) + " numeric", attributes.get(i), "Attributo " + i);
+            }
+            assertEquals("buggy {false,true}", attributes.get(csvHeader.size() - 1));
+            assertEquals(csvHeader.size(), attributes.size());
+        }
+    }
+
+    @Test
+    void denseRowsMatchTheCsvRows() throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        List<Version> versions = versions(symbols);
+        List<String[]> csv = csvRows(write(versions, symbols, "csv"));
+        List<String> arff = dataLines(write(versions, symbols, "arff"));
+
+        assertEquals(csv.size() - 1, arff.size());
+        for (int row = 0; row < arff.size(); row++) {
+            String[] expected = csv.get(row + 1);
+            List<String> actual = split(arff.get(row)).stream().map(ArffMethodSinkTest::unquote).toList();
+            assertEquals(expected.length, actual.size(), "Riga " + row);
+            for (int i = 0; i < expected.length; i++) {
+                // Come nel CSV le metriche nulle sono zero, scritte come 0 perché il campo vuoto non è un valore ARFF
+                String value = i >= 3 && i < expected.length - 1 && expected[i].isEmpty() ? "0" : expected[i];
+                assertEquals(value, actual.get(i), "Riga " + row + ", colonna " + i);
+            }
+        }
+    }
+
+    @Test
+    void sparseRowsMatchTheCsvRows() throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        List<Version> versions = versions(symbols);
+        List<String[]> csv = csvRows(write(versions, symbols, "csv"));
+        List<String> arff = dataLines(write(versions, symbols, "sparse_arff"));
+
+        assertEquals(csv.size() - 1, arff.size());
+        boolean omitted = false;
+        for (int row = 0; row < arff.size(); row++) {
+            String[] expected = csv.get(row + 1);
+            String line = arff.get(row);
+            assertTrue(line.startsWith("{") && line.endsWith("}"), "Riga sparsa senza parentesi: " + line);
+
+            // Indici crescenti, ciascuno con il suo valore
+            Map<Integer, String> entries = new TreeMap<>();
+            int previous = -1;
+            for (String entry : split(line.substring(1, line.length() - 1))) {
+                int space = entry.indexOf(' ');
+                int index = Integer.parseInt(entry.substring(0, space));
+                assertTrue(index > previous, "Indici non crescenti nella riga " + row);
+                previous = index;
+                entries.put(index, unquote(entry.substring(space + 1)));
+            }
+            for (int i = 0; i < expected.length; i++) {
+                boolean metric = i >= 3 && i < expected.length - 1;
+                if (metric && expected[i].isEmpty()) {
+                    assertFalse(entries.containsKey(i), "La metrica nulla " + i + " della riga " + row + " deve essere omessa");
+                    omitted = true;
+                } else {
+                    assertEquals(expected[i], entries.get(i), "Riga " + row + ", colonna " + i);
+                }
+            }
+            assertEquals(expected.length, entries.size() + (int) Arrays.stream(expected, 3, expected.length - 1).filter(String::isEmpty).count());
+        }
+        assertTrue(omitted, "I dati di prova devono contenere metriche nulle");
+    }
+
+    // Due release con metodi le cui firme richiedono l'escape, metriche positive, nulle e negative
+    private static List<Version> versions(SymbolTable symbols) {
+        List<Version> versions = new ArrayList<>();
+        for (String name : List.of("1.0.0", "it's-2.0")) {
+            MetricStore store = new MetricStore(SIGNATURES.length);
+            List<Method> methods = new ArrayList<>();
+            for (int i = 0; i < SIGNATURES.length; i++) {
+                Metric metric = store.addRow();
+                metric.setLoc(10 + i);
+                metric.setStatementsCount(i % 3);
+                metric.setCyclomaticComplexity(i == 4 ? -1 : i);
+                metric.setHalsteadVolume(i * 10.125);
+                metric.setHalsteadEffort(i % 2 == 0 ? 0 : 1234.5678);
+                metric.setMethodHistories(versions.size() + i % 2);
+                metric.setAvgChurn(i == 1 ? -0.5 : i / 3.0);
+                metric.setElseDeleted(i == SIGNATURES.length - 1 ? 7 : 0);
+                int signature = symbols.signatures().intern(SIGNATURES[i]);
+                int classPath = symbols.classPaths().intern("src/main/java/a,b/Class" + i % 2 + ".java/Class" + i % 2);
+                Method method = new Method(signature, classPath, 0, null, 0, 0, metric);
+                method.setBuggy(i % 3 == 0);
+                methods.add(method);
+            }
+            Version version = new Version();
+            version.setName(name);
+            version.setMethods(methods);
+            versions.add(version);
+        }
+        return versions;
+    }
+
+    private Path write(List<Version> versions, SymbolTable symbols, String format) throws IOException {
+        Path file = directory.resolve("methods." + format);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try (MethodSink sink = format.equals("csv")
+                ? new CsvMethodSink(channel)
+                : new ArffMethodSink(channel, "project's", versions, format.equals("sparse_arff"))) {
+            for (Version version : versions) {
+                sink.writeVersion(version, symbols);
+            }
+        }
+        return file;
+    }
+
+    private static List<String> dataLines(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        return lines.subList(lines.indexOf("@data") + 1, lines.size());
+    }
+
+    // Righe del CSV: campi separati da virgole, fra virgolette con le virgolette interne raddoppiate
+    private static List<String[]> csvRows(Path file) throws IOException {
+        String text = Files.readString(file, StandardCharsets.UTF_8);
+        List<String[]> rows = new ArrayList<>();
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                fields.add(field.toString());
+                field.setLength(0);
+                rows.add(fields.toArray(new String[0]));
+                fields.clear();
+            } else {
+                field.append(c);
+            }
+        }
+        return rows;
+    }
+
+    // Campi di una riga ARFF separati da virgole fuori dagli apici, così come sono scritti
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        int start = 0;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted && c == '\\') {
+                i++;
+            } else if (c == '\'') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                fields.add(line.substring(start, i));
+                start = i + 1;
+            }
+        }
+        fields.add(line.substring(start));
+        return fields;
+    }
+
+    // Valore di un campo ARFF: senza apici e senza escape se è una stringa, altrimenti così com'è
+    private static String unquote(String field) {
+        if (!field.startsWith("'")) return field;
+        assertTrue(field.endsWith("'") && field.length() >= 2, "Stringa ARFF non chiusa: " + field);
+        StringBuilder value = new StringBuilder();
+        for (int i = 1; i < field.length() - 1; i++) {
+            char c = field.charAt(i);
+            if (c == '\\') {
+                char escaped = field.charAt(++i);
+                value.append(escaped == 'n' ? '\n' : escaped == 'r' ? '\r' : escaped == 't' ? '\t' : escaped);
+            } else {
+                assertFalse(c == '\'', "Apice senza escape in " + field);
+                value.append(c);
+            }
+        }
+        return value.toString();
+    }
+}
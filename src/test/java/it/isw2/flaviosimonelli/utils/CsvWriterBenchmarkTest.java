@@ -0,0 +1,186 @@
+package it.isw2.flaviosimonelli.utils;
+
+import it.isw2.flaviosimonelli.model.Version;
+import it.isw2.flaviosimonelli.model.method.Method;
+import it.isw2.flaviosimonelli.model.method.Metric;
+import it.isw2.flaviosimonelli.model.method.MetricStore;
+import it.isw2.flaviosimonelli.utils.cache.SymbolTable;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Benchmark of the methods CSV: rows per second of {@link CsvMethodSink} against the exporter it replaced,
+ * which appended every field to an unbuffered FileWriter through intermediate Strings.
+ * Both write the same synthetic releases and must produce byte-identical files.
+ * <p>
+ * Runs only with {@code mvn test -Pbenchmark}. The number of rows is {@code -Dbenchmark.rows}, three million by
+ * default: the releases share one list of methods with random metrics, so memory does not grow with the rows.
+ */
+@Tag("benchmark")
+class CsvWriterBenchmarkTest {
+    private static final int METHODS_PER_VERSION = 100_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void methodsCsvThroughput() throws IOException {
+        int rows = Integer.getInteger("benchmark.rows", 3_000_000);
+        SymbolTable symbols = new SymbolTable();
+        List<Version> versions = versions(symbols, Math.max(1, rows / METHODS_PER_VERSION));
+        int totalRows = versions.size() * METHODS_PER_VERSION;
+
+        Path legacyFile = directory.resolve("methods_legacy.csv");
+        long start = System.nanoTime();
+        writeWithFileWriter(versions, symbols, legacyFile);
+        long legacyNanos = System.nanoTime() - start;
+
+        Path file = directory.resolve("methods.csv");
+        start = System.nanoTime();
+        try (CsvMethodSink sink = new CsvMethodSink(FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+            for (Version version : versions) {
+                sink.writeVersion(version, symbols);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+
+        assertEquals(-1L, Files.mismatch(legacyFile, file), "I due file dei metodi sono diversi");
+        System.out.printf("%d righe, %d MB%n", totalRows, Files.size(file) / (1024 * 1024));
+        print("FileWriter e String (prima)", totalRows, legacyNanos);
+        print("CsvWriter", totalRows, nanos);
+    }
+
+    // Release sintetiche che condividono gli stessi metodi, con metriche casuali e circa un terzo dei campi a zero
+    private static List<Version> versions(SymbolTable symbols, int count) {
+        Random random = new Random(42);
+        MetricStore store = new MetricStore(METHODS_PER_VERSION);
+        List<Method> methods = new ArrayList<>(METHODS_PER_VERSION);
+        for (int i = 0; i < METHODS_PER_VERSION; i++) {
+            Metric metric = store.addRow();
+            metric.setLoc(randomInt(random));
+            metric.setStatementsCount(randomInt(random));
+            metric.setCyclomaticComplexity(randomInt(random));
+            metric.setCognitiveComplexity(randomInt(random));
+            metric.setNestingDepth(randomInt(random));
+            metric.setNumberOfBranches(randomInt(random));
+            metric.setParameterCount(randomInt(random));
+            metric.setHalsteadVolume(randomDecimal(random));
+            metric.setHalsteadDifficulty(randomDecimal(random));
+            metric.setHalsteadEffort(randomDecimal(random) * 1000);
+            metric.setMethodHistories(randomInt(random));
+            metric.setAuthors(randomInt(random));
+            metric.setStmtAdded(randomInt(random));
+            metric.setMaxStmtAdded(randomInt(random));
+            metric.setAvgStmtAdded(randomDecimal(random));
+            metric.setStmtDeleted(randomInt(random));
+            metric.setMaxStmtDeleted(randomInt(random));
+            metric.setAvgStmtDeleted(randomDecimal(random));
+            metric.setChurn(randomInt(random));
+            metric.setMaxChurn(randomInt(random));
+            metric.setAvgChurn(randomDecimal(random));
+            metric.setCond(randomInt(random));
+            metric.setElseAdded(randomInt(random));
+            metric.setElseDeleted(randomInt(random));
+
+            int signature = symbols.signatures().intern("method" + i + "(int, \"String\")");
+            int classPath = symbols.classPaths().intern("src/main/java/org/example/Class" + i / 20 + ".java/Class" + i / 20);
+            Method method = new Method(signature, classPath, 0, null, 0, 0, metric);
+            method.setBuggy(random.nextInt(10) == 0);
+            methods.add(method);
+        }
+
+        List<Version> versions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Version version = new Version();
+            version.setName("1." + i + ".0");
+            version.setMethods(methods);
+            versions.add(version);
+        }
+        return versions;
+    }
+
+    private static int randomInt(Random random) {
+        return random.nextInt(3) == 0 ? 0 : random.nextInt(500);
+    }
+
+    private static double randomDecimal(Random random) {
+        if (random.nextInt(3) == 0) return 0;
+        // Metà dei valori cade su un pareggio del terzo decimale
+        return random.nextBoolean() ? random.nextDouble() * 500 : random.nextInt(500_000) / 1000.0 + 0.005;
+    }
+
+    private static void print(String label, int rows, long nanos) {
+        System.out.printf("%-30s %8.1f s %10.0f righe/s%n", label, nanos / 1e9, rows / (nanos / 1e9));
+    }
+
+    // Il file dei metodi come lo scriveva CsvExporter prima di CsvWriter
+    private static void writeWithFileWriter(List<Version> versions, SymbolTable symbols, Path file) throws IOException {
+        try (FileWriter writer = new FileWriter(file.toFile())) {
+            writer.append("Version,ClassPath,MethodName,LOC,StatementsCount,CyclomaticComplexity,CognitiveComplexity,NestingDepth,NumberOfBranches,ParameterCount,HalsteadVolume,HalsteadDifficulty,HalsteadEffort,MethodHistories,Authors,StmtAdded,MaxStmtAdded,AvgStmtAdded,StmtDeleted,MaxStmtDeleted,AvgStmtDeleted,Churn,MaxChurn,AvgChurn,Cond,ElseAdded,ElseDeleted,buggy\n");
+            for (Version version : versions) {
+                for (Method method : version.getMethods()) {
+                    writer.append(escapeCsv(version.getName())).append(",")
+                            .append(escapeCsv(symbols.classPaths().get(method.getClassPathId()))).append(",")
+                            .append(escapeCsv(symbols.signatures().get(method.getSignatureId()))).append(",");
+
+                    Metric metric = method.getMetric();
+                    writer.append(formatInteger(metric.getLoc())).append(",")
+                            .append(formatInteger(metric.getStatementsCount())).append(",")
+                            .append(formatInteger(metric.getCyclomaticComplexity())).append(",")
+                            .append(formatInteger(metric.getCognitiveComplexity())).append(",")
+                            .append(formatInteger(metric.getNestingDepth())).append(",")
+                            .append(formatInteger(metric.getNumberOfBranches())).append(",")
+                            .append(formatInteger(metric.getParameterCount())).append(",")
+                            .append(formatDecimal(metric.getHalsteadVolume())).append(",")
+                            .append(formatDecimal(metric.getHalsteadDifficulty())).append(",")
+                            .append(formatDecimal(metric.getHalsteadEffort())).append(",");
+
+                    writer.append(formatInteger(metric.getMethodHistories())).append(",")
+                            .append(formatInteger(metric.getAuthors())).append(",")
+                            .append(formatInteger(metric.getStmtAdded())).append(",")
+                            .append(formatInteger(metric.getMaxStmtAdded())).append(",")
+                            .append(formatDecimal(metric.getAvgStmtAdded())).append(",")
+                            .append(formatInteger(metric.getStmtDeleted())).append(",")
+                            .append(formatInteger(metric.getMaxStmtDeleted())).append(",")
+                            .append(formatDecimal(metric.getAvgStmtDeleted())).append(",")
+                            .append(formatInteger(metric.getChurn())).append(",")
+                            .append(formatInteger(metric.getMaxChurn())).append(",")
+                            .append(formatDecimal(metric.getAvgChurn())).append(",")
+                            .append(formatInteger(metric.getCond())).append(",")
+                            .append(formatInteger(metric.getElseAdded())).append(",")
+                            .append(formatInteger(metric.getElseDeleted())).append(",");
+
+                    writer.append(method.isBuggy() ? "true" : "false").append("\n");
+                }
+            }
+        }
+    }
+
+    private static String escapeCsv(String field) {
+        if (field == null) return "";
+        return "\"" + field.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String formatInteger(int value) {
+        return value > 0 ? String.valueOf(value) : "";
+    }
+
+    private static String formatDecimal(double value) {
+        return value > 0 ? String.format(Locale.ROOT, "%.2f", value) : "";
+    }
+}
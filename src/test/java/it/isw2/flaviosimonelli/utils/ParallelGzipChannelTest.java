@@ -0,0 +1,193 @@
+package it.isw2.flaviosimonelli.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the parallel gzip channel on data spanning several blocks: the output must decompress to the exact input
+ * in both modes, and in BGZF mode every block must be a member that inflates on its own, whose BSIZE matches
+ * its size, with the file closed by the 28-byte empty block.
+ */
+class ParallelGzipChannelTest {
+    private static final byte[] BGZF_EOF = {
+            0x1f, (byte) 0x8b, 0x08, 0x04, 0, 0, 0, 0, 0, (byte) 0xff, 0x06, 0, 0x42, 0x43, 0x02, 0, 0x1b, 0, 0x03, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+    private static final int BGZF_BLOCK_SIZE = 0xff00;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void gzipDecompressesToTheInput() throws IOException {
+        // Più di tre blocchi da 1 MB
+        byte[] data = data(3 * (1 << 20) + 12_345);
+        Path file = compress(data, false);
+
+        assertArrayEquals(data, gunzip(file));
+        assertTrue(memberCount(Files.readAllBytes(file)) >= 4, "Ogni blocco deve essere un membro gzip");
+    }
+
+    @Test
+    void bgzfDecompressesToTheInput() throws IOException {
+        byte[] data = data(20 * BGZF_BLOCK_SIZE + 777);
+        assertArrayEquals(data, gunzip(compress(data, true)));
+    }
+
+    @Test
+    void bgzfBlocksInflateOnTheirOwn() throws IOException, DataFormatException {
+        byte[] data = data(20 * BGZF_BLOCK_SIZE + 777);
+        byte[] file = Files.readAllBytes(compress(data, true));
+
+        ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+        int offset = 0;
+        int blocks = 0;
+        while (offset < file.length - BGZF_EOF.length) {
+            assertEquals(0x1f, file[offset] & 0xff, "ID1 del blocco a " + offset);
+            assertEquals(0x8b, file[offset + 1] & 0xff, "ID2 del blocco a " + offset);
+            assertEquals(8, file[offset + 2], "CM del blocco a " + offset);
+            assertEquals(4, file[offset + 3], "FLG del blocco a " + offset);
+            assertEquals(6, readShort(file, offset + 10), "XLEN del blocco a " + offset);
+            assertEquals('B', file[offset + 12]);
+            assertEquals('C', file[offset + 13]);
+            assertEquals(2, readShort(file, offset + 14));
+            int memberSize = readShort(file, offset + 16) + 1;
+            assertTrue(offset + memberSize <= file.length - BGZF_EOF.length, "BSIZE oltre la fine del file a " + offset);
+
+            // Il blocco viene decompresso da solo, senza i byte dei blocchi vicini
+            byte[] member = Arrays.copyOfRange(file, offset, offset + memberSize);
+            byte[] block = inflate(member, 18, memberSize - 18 - 8);
+            assertTrue(block.length <= BGZF_BLOCK_SIZE, "Blocco di " + block.length + " byte");
+            CRC32 crc = new CRC32();
+            crc.update(block);
+            assertEquals((int) crc.getValue(), readInt(member, memberSize - 8), "CRC del blocco a " + offset);
+            assertEquals(block.length, readInt(member, memberSize - 4), "ISIZE del blocco a " + offset);
+
+            inflated.write(block);
+            offset += memberSize;
+            blocks++;
+        }
+        assertEquals(file.length - BGZF_EOF.length, offset, "I blocchi devono terminare dove inizia il blocco finale");
+        assertArrayEquals(BGZF_EOF, Arrays.copyOfRange(file, offset, file.length));
+        assertEquals(21, blocks);
+        assertArrayEquals(data, inflated.toByteArray());
+    }
+
+    @Test
+    void emptyBgzfFileIsTheEofBlock() throws IOException {
+        assertArrayEquals(BGZF_EOF, Files.readAllBytes(compress(new byte[0], true)));
+    }
+
+    // Testo comprimibile alternato a tratti casuali, che deflate non riesce a ridurre
+    private static byte[] data(int size) {
+        Random random = new Random(7);
+        byte[] data = new byte[size];
+        byte[] text = "Version,ClassPath,MethodName,LOC,\"method(int, String)\",12,3,0.50\n".getBytes(StandardCharsets.UTF_8);
+        int offset = 0;
+        while (offset < size) {
+            int length = Math.min(size - offset, 1 + random.nextInt(100_000));
+            if (random.nextBoolean()) {
+                byte[] noise = new byte[length];
+                random.nextBytes(noise);
+                System.arraycopy(noise, 0, data, offset, length);
+            } else {
+                for (int i = 0; i < length; i++) {
+                    data[offset + i] = text[(offset + i) % text.length];
+                }
+            }
+            offset += length;
+        }
+        return data;
+    }
+
+    // Scrive i dati in parti di dimensione variabile, come fa il CsvWriter a ogni svuotamento del buffer
+    private Path compress(byte[] data, boolean bgzf) throws IOException {
+        Path file = directory.resolve(bgzf ? "data.bgz" : "data.gz");
+        Random random = new Random(11);
+        try (ParallelGzipChannel channel = new ParallelGzipChannel(FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), bgzf, 4)) {
+            int offset = 0;
+            while (offset < data.length) {
+                int length = Math.min(data.length - offset, 1 + random.nextInt(200_000));
+                assertEquals(length, channel.write(ByteBuffer.wrap(data, offset, length)));
+                offset += length;
+            }
+        }
+        return file;
+    }
+
+    private static byte[] gunzip(Path file) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes, int offset, int length) throws DataFormatException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(bytes, offset, length);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1 << 16];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && inflater.needsInput()) throw new DataFormatException("Blocco deflate incompleto");
+                out.write(buffer, 0, inflated);
+            }
+            assertEquals(0, inflater.getRemaining(), "Byte oltre la fine dei dati deflate");
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // Conta i membri gzip decomprimendoli uno dopo l'altro
+    private static int memberCount(byte[] file) {
+        int members = 0;
+        int offset = 0;
+        while (offset < file.length) {
+            assertEquals(0x1f, file[offset] & 0xff);
+            assertEquals(0x8b, file[offset + 1] & 0xff);
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(file, offset + 10, file.length - offset - 10);
+                byte[] buffer = new byte[1 << 16];
+                while (!inflater.finished()) {
+                    inflater.inflate(buffer);
+                }
+                offset = file.length - inflater.getRemaining() + 8;
+            } catch (DataFormatException e) {
+                throw new AssertionError(e);
+            } finally {
+                inflater.end();
+            }
+            members++;
+        }
+        return members;
+    }
+
+    private static int readShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return readShort(bytes, offset) | readShort(bytes, offset + 2) << 16;
+    }
+}
@@ -0,0 +1,282 @@
+package it.isw2.flaviosimonelli.utils.dao;
+
+import it.isw2.flaviosimonelli.model.Project.ApproachProportion;
+import it.isw2.flaviosimonelli.model.Project.Project;
+import it.isw2.flaviosimonelli.model.Ticket;
+import it.isw2.flaviosimonelli.model.Version;
+import it.isw2.flaviosimonelli.model.method.Method;
+import it.isw2.flaviosimonelli.model.method.Metric;
+import it.isw2.flaviosimonelli.model.method.MetricStore;
+import it.isw2.flaviosimonelli.utils.bean.PipelineBean;
+import it.isw2.flaviosimonelli.utils.cache.SymbolTable;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the checkpoint store: versions, methods with their metrics and tickets round-trip, a unit truncated or with
+ * a flipped bit is ignored as if it were missing, and a different HEAD or configuration discards the checkpoints.
+ */
+class CheckpointStoreTest {
+    private static final String HEAD = "0123456789abcdef0123456789abcdef01234567";
+    private static final String CONFIGURATION = "release.assignment=timestamp";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void versionsRoundTrip() throws IOException {
+        CheckpointStore store = CheckpointStore.open(directory, HEAD, CONFIGURATION);
+        assertNull(store.loadVersions());
+        List<Version> versions = versions();
+        store.saveVersions(versions);
+
+        List<Version> loaded = CheckpointStore.open(directory, HEAD, CONFIGURATION).loadVersions();
+        assertEquals(versions.size(), loaded.size());
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(versions.get(i).getName(), loaded.get(i).getName());
+            assertEquals(versions.get(i).isReleased(), loaded.get(i).isReleased());
+            assertEquals(versions.get(i).getHashCommit(), loaded.get(i).getHashCommit());
+            assertEquals(versions.get(i).getReleaseDate(), loaded.get(i).getReleaseDate());
+        }
+    }
+
+    @Test
+    void methodsRoundTrip() throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        Version version = versions().get(0);
+        version.setMethods(methods(symbols));
+        CheckpointStore.open(directory, HEAD, CONFIGURATION).saveMethods(0, version, symbols);
+
+        // Tabella dei simboli nuova, come in un'esecuzione ripresa
+        SymbolTable loadedSymbols = new SymbolTable();
+        loadedSymbols.signatures().intern("altro()");
+        Version loaded = versions().get(0);
+        assertTrue(CheckpointStore.open(directory, HEAD, CONFIGURATION).loadMethods(0, loaded, loadedSymbols));
+
+        List<Method> expected = version.getMethods();
+        List<Method> actual = loaded.getMethods();
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(symbols.signatures().get(expected.get(i).getSignatureId()), loadedSymbols.signatures().get(actual.get(i).getSignatureId()));
+            assertEquals(symbols.classPaths().get(expected.get(i).getClassPathId()), loadedSymbols.classPaths().get(actual.get(i).getClassPathId()));
+            assertEquals(expected.get(i).getBlobId(), actual.get(i).getBlobId());
+            assertEquals(expected.get(i).getContentBegin(), actual.get(i).getContentBegin());
+            assertEquals(expected.get(i).getContentEnd(), actual.get(i).getContentEnd());
+        }
+        assertNull(actual.get(2).getBlobId(), "Il metodo senza blob deve restare senza blob");
+        for (int column = 0; column < MetricStore.INT_COLUMN_COUNT; column++) {
+            assertArrayEquals(version.getMetrics().intColumn(column), loaded.getMetrics().intColumn(column), "Colonna intera " + column);
+        }
+        for (int column = 0; column < MetricStore.DOUBLE_COLUMN_COUNT; column++) {
+            assertArrayEquals(version.getMetrics().doubleColumn(column), loaded.getMetrics().doubleColumn(column), "Colonna decimale " + column);
+        }
+
+        // Il checkpoint di una versione con un altro hash non viene usato
+        Version other = versions().get(0);
+        other.setHashCommit("ffffffffffffffffffffffffffffffffffffffff");
+        assertFalse(CheckpointStore.open(directory, HEAD, CONFIGURATION).loadMethods(0, other, new SymbolTable()));
+    }
+
+    @Test
+    void ticketsRoundTrip() throws IOException {
+        Project project = project();
+        List<Ticket> tickets = tickets(project);
+        CheckpointStore.open(directory, HEAD, CONFIGURATION).saveTickets(tickets, project.getSymbols());
+
+        Project resumed = project();
+        List<Ticket> loaded = CheckpointStore.open(directory, HEAD, CONFIGURATION).loadTickets(resumed);
+        assertNotNull(loaded);
+        assertEquals(tickets.size(), loaded.size());
+        for (int i = 0; i < tickets.size(); i++) {
+            Ticket expected = tickets.get(i);
+            Ticket actual = loaded.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getCommitHash(), actual.getCommitHash());
+            assertEquals(name(expected.getFixVersion()), name(actual.getFixVersion()));
+            assertEquals(name(expected.getInjectedVersion()), name(actual.getInjectedVersion()));
+            assertEquals(name(expected.getOpenVersion()), name(actual.getOpenVersion()));
+            assertEquals(expected.getOpenDate(), actual.getOpenDate());
+            assertEquals(signatures(expected.getNameMethodsBuggy(), project.getSymbols()), signatures(actual.getNameMethodsBuggy(), resumed.getSymbols()));
+        }
+        // Le versioni dei ticket sono quelle del progetto ripreso
+        assertTrue(loaded.get(0).getFixVersion() == resumed.getVersionFromName("1.1.0"));
+    }
+
+    @Test
+    void truncatedUnitsAreIgnored() throws IOException {
+        Project project = project();
+        SymbolTable symbols = new SymbolTable();
+        Version version = versions().get(0);
+        version.setMethods(methods(symbols));
+        CheckpointStore store = CheckpointStore.open(directory, HEAD, CONFIGURATION);
+        store.saveVersions(versions());
+        store.saveMethods(0, version, symbols);
+        store.saveTickets(tickets(project), project.getSymbols());
+
+        for (String unit : List.of("versions.bin", "methods_0.bin", "tickets.bin")) {
+            byte[] bytes = Files.readAllBytes(directory.resolve(unit));
+            for (int length : new int[]{0, 4, 8, bytes.length / 2, bytes.length - 1}) {
+                Files.write(directory.resolve(unit), Arrays.copyOf(bytes, length));
+                assertUnitIgnored(unit, length);
+            }
+            Files.write(directory.resolve(unit), bytes);
+        }
+    }
+
+    @Test
+    void unitsWithAFlippedBitAreIgnored() throws IOException {
+        Project project = project();
+        SymbolTable symbols = new SymbolTable();
+        Version version = versions().get(0);
+        version.setMethods(methods(symbols));
+        CheckpointStore store = CheckpointStore.open(directory, HEAD, CONFIGURATION);
+        store.saveVersions(versions());
+        store.saveMethods(0, version, symbols);
+        store.saveTickets(tickets(project), project.getSymbols());
+
+        // Ogni byte di ogni unità, uno alla volta, con un bit invertito
+        for (String unit : List.of("versions.bin", "methods_0.bin", "tickets.bin")) {
+            byte[] bytes = Files.readAllBytes(directory.resolve(unit));
+            for (int position = 0; position < bytes.length; position++) {
+                for (int bit : new int[]{0x01, 0x80}) {
+                    byte[] damaged = bytes.clone();
+                    damaged[position] ^= bit;
+                    Files.write(directory.resolve(unit), damaged);
+                    assertUnitIgnored(unit, position);
+                }
+            }
+            Files.write(directory.resolve(unit), bytes);
+        }
+        assertNotNull(CheckpointStore.open(directory, HEAD, CONFIGURATION).loadVersions(), "Le unità ripristinate devono essere di nuovo valide");
+    }
+
+    @Test
+    void differentHeadOrConfigurationClearsTheStore() throws IOException {
+        CheckpointStore.open(directory, HEAD, CONFIGURATION).saveVersions(versions());
+        assertNotNull(CheckpointStore.open(directory, HEAD, CONFIGURATION).loadVersions(), "Stessi HEAD e configurazione: il checkpoint resta valido");
+
+        assertNull(CheckpointStore.open(directory, "fedcba9876543210fedcba9876543210fedcba98", CONFIGURATION).loadVersions());
+        assertEquals(List.of("manifest.bin"), files(), "Con un altro HEAD restano solo il nuovo manifest");
+
+        CheckpointStore.open(directory, HEAD, CONFIGURATION).saveVersions(versions());
+        assertNull(CheckpointStore.open(directory, HEAD, "release.assignment=ancestry").loadVersions());
+        assertEquals(List.of("manifest.bin"), files(), "Con un'altra configurazione resta solo il nuovo manifest");
+    }
+
+    private void assertUnitIgnored(String unit, int position) {
+        CheckpointStore reopened;
+        try {
+            reopened = CheckpointStore.open(directory, HEAD, CONFIGURATION);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        switch (unit) {
+            case "versions.bin" -> assertNull(reopened.loadVersions(), unit + " danneggiato in " + position);
+            case "methods_0.bin" -> assertFalse(reopened.loadMethods(0, versions().get(0), new SymbolTable()), unit + " danneggiato in " + position);
+            default -> assertNull(reopened.loadTickets(project()), unit + " danneggiato in " + position);
+        }
+    }
+
+    private List<String> files() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private static List<Version> versions() {
+        List<Version> versions = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Version version = new Version();
+            version.setName("1." + i + ".0");
+            version.setReleased(i < 2);
+            version.setHashCommit(String.valueOf(i).repeat(40));
+            // L'ultima versione non ha data di rilascio
+            if (i < 2) version.setReleaseDate(new Date(1_600_000_000_000L + i * 86_400_000L));
+            versions.add(version);
+        }
+        return versions;
+    }
+
+    private static Project project() {
+        Project project = new Project("stub", "STUB", ApproachProportion.COMPLETE, "master", "stub", "{VERSION}", new PipelineBean());
+        project.setVersions(versions());
+        return project;
+    }
+
+    // Metodi con metriche intere e decimali, alcune nulle o negative, due metodi nello stesso blob e uno senza blob
+    private static List<Method> methods(SymbolTable symbols) {
+        MetricStore store = new MetricStore(4);
+        ObjectId blob = ObjectId.fromString("89abcdef0123456789abcdef0123456789abcdef");
+        ObjectId otherBlob = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+        ObjectId[] blobs = {blob, blob, null, otherBlob};
+        List<Method> methods = new ArrayList<>();
+        for (int i = 0; i < blobs.length; i++) {
+            Metric metric = store.addRow();
+            metric.setLoc(10 + i * 300);
+            metric.setCyclomaticComplexity(i);
+            metric.setMethodHistories(i == 1 ? 0 : 70_000);
+            metric.setChurn(i == 3 ? -5 : i);
+            metric.setHalsteadVolume(i * 12.5);
+            metric.setAvgChurn(i == 2 ? 0 : 1.0 / 3);
+            int signature = symbols.signatures().intern("method" + i + "(int, \"String\")");
+            int classPath = symbols.classPaths().intern("src/main/java/Class" + i / 2 + ".java/Class" + i / 2);
+            methods.add(new Method(signature, classPath, 0, blobs[i], i * 100, i * 100 + 40 + i, metric));
+        }
+        return methods;
+    }
+
+    private static List<Ticket> tickets(Project project) {
+        List<Ticket> tickets = new ArrayList<>();
+        Ticket complete = new Ticket();
+        complete.setId("STUB-1");
+        complete.setCommitHash("a".repeat(40));
+        complete.setFixVersion(project.getVersionFromName("1.1.0"));
+        complete.setInjectedVersion(project.getVersionFromName("1.0.0"));
+        complete.setOpenVersion(project.getVersionFromName("1.0.0"));
+        complete.setOpenDate(ZonedDateTime.of(2020, 1, 2, 10, 0, 0, 0, ZoneId.of("Europe/Rome")));
+        complete.setNameMethodsBuggy(new int[]{
+                project.getSymbols().signatures().intern("foo(int)"),
+                project.getSymbols().signatures().intern("bar()")});
+        tickets.add(complete);
+
+        Ticket partial = new Ticket();
+        partial.setId("STUB-2");
+        partial.setFixVersion(project.getVersionFromName("1.2.0"));
+        partial.setOpenVersion(project.getVersionFromName("1.1.0"));
+        tickets.add(partial);
+
+        Ticket noBuggyMethods = new Ticket();
+        noBuggyMethods.setId("STUB-3");
+        noBuggyMethods.setFixVersion(project.getVersionFromName("1.2.0"));
+        noBuggyMethods.setNameMethodsBuggy(new int[0]);
+        tickets.add(noBuggyMethods);
+        return tickets;
+    }
+
+    private static String name(Version version) {
+        return version != null ? version.getName() : null;
+    }
+
+    private static List<String> signatures(int[] ids, SymbolTable symbols) {
+        if (ids == null) return null;
+        return Arrays.stream(ids).mapToObj(id -> symbols.signatures().get(id)).toList();
+    }
+}
@@ -0,0 +1,81 @@
+package it.isw2.flaviosimonelli.utils.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the on-disk cache of the Jira responses: entries round-trip with their metadata, and an entry
+ * that cannot be read is a miss and is deleted, never an error.
+ */
+class JiraResponseCacheTest {
+    private static final String URL = "https://jira.example/rest/api/2/search/?jql=project%20%3D%20X&startAt=0";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void entryRoundTrips() throws IOException {
+        JiraResponseCache cache = new JiraResponseCache(directory, Duration.ofMinutes(5), false);
+        assertNull(cache.get(URL));
+
+        byte[] body = "{\"total\":0,\"issues\":[]}".getBytes(StandardCharsets.UTF_8);
+        cache.put(URL, body, "\"etag-1\"", null, JiraResponseCache.OWN_SNAPSHOT);
+        JiraResponseCache.Entry entry = cache.get(URL);
+        assertArrayEquals(body, entry.getBody());
+        assertEquals("\"etag-1\"", entry.getEtag());
+        assertNull(entry.getLastModified());
+        assertTrue(cache.isUsable(entry));
+        assertNull(cache.get(URL + "1"), "Un URL diverso non deve trovare la risposta");
+    }
+
+    @Test
+    void truncatedEntryIsAMissAndIsDeleted() throws IOException {
+        JiraResponseCache cache = new JiraResponseCache(directory, Duration.ofMinutes(5), false);
+        byte[] body = new byte[64 * 1024];
+        Arrays.fill(body, (byte) 'x');
+        cache.put(URL, body, "\"etag-1\"", "Mon, 01 Jan 2024 00:00:00 GMT", JiraResponseCache.OWN_SNAPSHOT);
+        Path file = entryFile();
+
+        // Un'esecuzione interrotta a metà della copia lascia un gzip troncato
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        assertNull(cache.get(URL));
+        assertTrue(Files.notExists(file), "La risposta danneggiata deve essere cancellata");
+
+        cache.put(URL, body, null, null, JiraResponseCache.OWN_SNAPSHOT);
+        assertArrayEquals(body, cache.get(URL).getBody());
+    }
+
+    @Test
+    void corruptEntryIsAMissAndIsDeleted() throws IOException {
+        JiraResponseCache cache = new JiraResponseCache(directory, Duration.ofMinutes(5), false);
+        cache.put(URL, "{}".getBytes(StandardCharsets.UTF_8), null, null, JiraResponseCache.OWN_SNAPSHOT);
+        Path file = entryFile();
+
+        Files.write(file, "non è un file gzip".getBytes(StandardCharsets.UTF_8));
+        assertNull(cache.get(URL));
+        assertTrue(Files.notExists(file));
+    }
+
+    private Path entryFile() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> entries = files.toList();
+            assertEquals(1, entries.size());
+            return entries.get(0);
+        }
+    }
+}
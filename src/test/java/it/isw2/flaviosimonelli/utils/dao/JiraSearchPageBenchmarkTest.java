@@ -0,0 +1,222 @@
+package it.isw2.flaviosimonelli.utils.dao;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark of the parsing of the Jira search pages: allocated bytes and time per 100-issue page of
+ * {@link JiraSearchPage} against the previous path, which read the body into a String, built the org.json DOM
+ * and walked it for key, created and versions. Both run on pages with Jira's default fields and on pages
+ * with only the fields the search now asks for; the parsed fields must match org.json on every issue.
+ * <p>
+ * Runs only with {@code mvn test -Pbenchmark}. The pages are synthetic but shaped like Jira's responses:
+ * users, avatars, statuses, custom fields and descriptions with escapes, surrogate pairs and non-ASCII text.
+ */
+@Tag("benchmark")
+class JiraSearchPageBenchmarkTest {
+    private static final int PAGES = 10;
+    private static final int ISSUES_PER_PAGE = 100;
+    private static final int WARMUP_ROUNDS = 30;
+    private static final int MEASURED_ROUNDS = 20;
+
+    private final Random random = new Random(24);
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void streamingAgainstDom() throws IOException {
+        // I campi letti in streaming devono coincidere con quelli di org.json
+        int checked = 0;
+        for (int i = 0; i < 200; i++) {
+            checked += assertSameIssues(page(i * ISSUES_PER_PAGE, i % 2 == 0), i % 2 == 0);
+        }
+
+        byte[][] defaultFields = new byte[PAGES][];
+        byte[][] selectedFields = new byte[PAGES][];
+        for (int i = 0; i < PAGES; i++) {
+            defaultFields[i] = page(i * ISSUES_PER_PAGE, true);
+            selectedFields[i] = page(i * ISSUES_PER_PAGE, false);
+        }
+
+        System.out.printf("Issue confrontate con org.json: %d; pagina con i campi predefiniti %d KB, con created,updated,versions %d KB%n",
+                checked, defaultFields[0].length / 1024, selectedFields[0].length / 1024);
+        measure("campi predefiniti, String + DOM (prima)", defaultFields, JiraSearchPageBenchmarkTest::parseWithDom);
+        measure("campi predefiniti, streaming", defaultFields, JiraSearchPageBenchmarkTest::parseStreaming);
+        measure("campi selezionati, String + DOM", selectedFields, JiraSearchPageBenchmarkTest::parseWithDom);
+        measure("campi selezionati, streaming (dopo)", selectedFields, JiraSearchPageBenchmarkTest::parseStreaming);
+    }
+
+    private static int assertSameIssues(byte[] body, boolean defaultFields) throws IOException {
+        JSONArray expected = new JSONObject(new String(body, StandardCharsets.UTF_8)).getJSONArray("issues");
+        List<JiraIssue> issues = JiraSearchPage.read(new ByteArrayInputStream(body), ISSUES_PER_PAGE).getIssues();
+        assertEquals(expected.length(), issues.size());
+        for (int i = 0; i < issues.size(); i++) {
+            JSONObject issue = expected.getJSONObject(i);
+            JSONObject fields = issue.getJSONObject("fields");
+            List<String> versionNames = new ArrayList<>();
+            JSONArray versions = fields.getJSONArray("versions");
+            for (int v = 0; v < versions.length(); v++) {
+                versionNames.add(versions.getJSONObject(v).getString("name"));
+            }
+            JiraIssue parsed = issues.get(i);
+            assertEquals(issue.getString("key"), parsed.getKey());
+            assertEquals(fields.getString("created"), parsed.getCreated());
+            assertEquals(fields.getString("updated"), parsed.getUpdated());
+            assertEquals(versionNames, parsed.getVersionNames());
+            if (defaultFields) assertTrue(parsed.isFixedBug(), parsed.getKey());
+        }
+        return issues.size();
+    }
+
+    // Percorso precedente: righe concatenate in una String, DOM org.json, poi key, created e versions
+    private static int parseWithDom(byte[] body) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+        StringBuilder response = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            response.append(line);
+        }
+        JSONObject page = new JSONObject(response.toString());
+        JSONArray issues = page.getJSONArray("issues");
+        int checksum = page.getInt("total");
+        for (int i = 0; i < issues.length(); i++) {
+            JSONObject issue = issues.getJSONObject(i);
+            JSONObject fields = issue.getJSONObject("fields");
+            checksum += issue.getString("key").length() + fields.getString("created").length();
+            JSONArray versions = fields.getJSONArray("versions");
+            for (int v = 0; v < versions.length(); v++) {
+                checksum += versions.getJSONObject(v).getString("name").length();
+            }
+        }
+        return checksum;
+    }
+
+    private static int parseStreaming(byte[] body) throws IOException {
+        JiraSearchPage page = JiraSearchPage.read(new ByteArrayInputStream(body), ISSUES_PER_PAGE);
+        int checksum = page.getTotal();
+        for (JiraIssue issue : page.getIssues()) {
+            checksum += issue.getKey().length() + issue.getCreated().length();
+            for (String versionName : issue.getVersionNames()) {
+                checksum += versionName.length();
+            }
+        }
+        return checksum;
+    }
+
+    private void measure(String label, byte[][] pages, PageParser parser) throws IOException {
+        int checksum = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (byte[] page : pages) checksum += parser.parse(page);
+        }
+        long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            for (byte[] page : pages) checksum += parser.parse(page);
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+        int parsed = MEASURED_ROUNDS * pages.length;
+        System.out.printf("%-42s %8.1f KB/pagina %7.2f ms/pagina (%d)%n", label,
+                allocated / 1024.0 / parsed, nanos / 1e6 / parsed, checksum & 1);
+    }
+
+    @FunctionalInterface
+    private interface PageParser {
+        int parse(byte[] body) throws IOException;
+    }
+
+    // --- Pagine sintetiche nel formato della ricerca di Jira ---
+
+    private byte[] page(int startAt, boolean defaultFields) {
+        StringBuilder json = new StringBuilder("{\"expand\":\"names,schema\",\"startAt\":").append(startAt)
+                .append(",\"maxResults\":").append(ISSUES_PER_PAGE).append(",\"total\":3000,\"issues\":[");
+        for (int i = 0; i < ISSUES_PER_PAGE; i++) {
+            if (i > 0) json.append(',');
+            issue(json, startAt + i, defaultFields);
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void issue(StringBuilder json, int number, boolean defaultFields) {
+        String self = "https://issues.apache.org/jira/rest/api/2/issue/" + (12_900_000 + number);
+        json.append("{\"expand\":\"operations,versionedRepresentations,editmeta,changelog,renderedFields\",\"id\":\"")
+                .append(12_900_000 + number).append("\",\"self\":\"").append(self)
+                .append("\",\"key\":\"BOOKKEEPER-").append(number).append("\",\"fields\":{");
+        if (defaultFields) {
+            json.append("\"issuetype\":{\"self\":\"https://issues.apache.org/jira/rest/api/2/issuetype/1\",\"id\":\"1\",\"description\":\"A problem which impairs or prevents the functions of the product.\",\"iconUrl\":\"https://issues.apache.org/jira/secure/viewavatar?size=xsmall&avatarId=21133&avatarType=issuetype\",\"name\":\"Bug\",\"subtask\":false,\"avatarId\":21133},");
+            json.append("\"timespent\":null,\"project\":{\"self\":\"https://issues.apache.org/jira/rest/api/2/project/12311293\",\"id\":\"12311293\",\"key\":\"BOOKKEEPER\",\"name\":\"Bookkeeper\",\"projectTypeKey\":\"software\",\"avatarUrls\":{\"48x48\":\"https://issues.apache.org/jira/secure/projectavatar?pid=12311293&avatarId=10011\"}},");
+            json.append("\"fixVersions\":[").append(version(random.nextInt(7))).append("],\"aggregatetimespent\":null,");
+            json.append("\"resolution\":{\"self\":\"https://issues.apache.org/jira/rest/api/2/resolution/1\",\"id\":\"1\",\"description\":\"A fix for this issue is checked into the tree and tested.\",\"name\":\"Fixed\"},");
+            for (int field = 10_000; field < 10_030; field++) {
+                json.append("\"customfield_").append(field).append("\":");
+                switch (field % 3) {
+                    case 0 -> json.append("null");
+                    case 1 -> json.append('"').append(text(20)).append('"');
+                    default -> json.append("12.5e3");
+                }
+                json.append(',');
+            }
+            json.append("\"resolutiondate\":\"2016-05-12T08:22:34.000+0000\",\"workratio\":-1,\"lastViewed\":null,\"watches\":{\"self\":\"")
+                    .append(self).append("/watchers\",\"watchCount\":3,\"isWatching\":false},");
+            json.append("\"priority\":{\"self\":\"https://issues.apache.org/jira/rest/api/2/priority/3\",\"iconUrl\":\"https://issues.apache.org/jira/images/icons/priorities/major.svg\",\"name\":\"Major\",\"id\":\"3\"},\"labels\":[\"client\",\"ledger\"],");
+            json.append("\"issuelinks\":[],\"assignee\":").append(user("alice")).append(',');
+            json.append("\"status\":{\"self\":\"https://issues.apache.org/jira/rest/api/2/status/6\",\"description\":\"The issue is considered finished.\",\"iconUrl\":\"https://issues.apache.org/jira/images/icons/statuses/closed.png\",\"name\":\"Closed\",\"id\":\"6\",\"statusCategory\":{\"self\":\"https://issues.apache.org/jira/rest/api/2/statuscategory/3\",\"id\":3,\"key\":\"done\",\"colorName\":\"green\",\"name\":\"Done\"}},");
+            json.append("\"components\":[],\"description\":\"").append(text(400 + random.nextInt(3000)))
+                    .append("\",\"summary\":\"").append(text(80)).append("\",");
+            json.append("\"creator\":").append(user("bob")).append(",\"reporter\":").append(user("bob"))
+                    .append(",\"environment\":null,\"duedate\":null,\"progress\":{\"progress\":0,\"total\":0},\"votes\":{\"self\":\"")
+                    .append(self).append("/votes\",\"votes\":0,\"hasVoted\":false},");
+        }
+        json.append("\"created\":\"2016-0").append(1 + number % 9).append("-1").append(number % 10)
+                .append("T10:0").append(number % 10).append(":00.000+0000\",")
+                .append("\"updated\":\"2016-06-01T10:00:00.000+0000\",\"versions\":[");
+        int versions = random.nextInt(3);
+        for (int v = 0; v < versions; v++) {
+            if (v > 0) json.append(',');
+            json.append(version(random.nextInt(7)));
+        }
+        json.append("]}}");
+    }
+
+    private static String version(int minor) {
+        return "{\"self\":\"https://issues.apache.org/jira/rest/api/2/version/1234" + minor + "\",\"id\":\"1234" + minor
+                + "\",\"description\":\"\",\"name\":\"4." + minor + ".0\",\"archived\":false,\"released\":true,\"releaseDate\":\"2016-0"
+                + (1 + minor % 9) + "-01\"}";
+    }
+
+    private static String user(String name) {
+        String avatar = "https://issues.apache.org/jira/secure/useravatar?";
+        return "{\"self\":\"https://issues.apache.org/jira/rest/api/2/user?username=" + name + "\",\"name\":\"" + name
+                + "\",\"key\":\"" + name + "\",\"avatarUrls\":{\"48x48\":\"" + avatar + "avatarId=10452\",\"24x24\":\""
+                + avatar + "size=small&avatarId=10452\",\"16x16\":\"" + avatar + "size=xsmall&avatarId=10452\",\"32x32\":\""
+                + avatar + "size=medium&avatarId=10452\"},\"displayName\":\"" + name
+                + " Surname\",\"active\":true,\"timeZone\":\"Etc/UTC\"}";
+    }
+
+    // Testo con escape JSON, coppie surrogate e caratteri non ASCII
+    private String text(int length) {
+        String[] words = {"the", "ledger", "bookie", "fails", "when", "entry", "NPE", "at",
+                "org.apache.bookkeeper.client.LedgerHandle", "\\n", "\\\"quoted\\\"", "caf\\u00e9", "\\t",
+                "\\ud83d\\ude00", "ž", "日本", "\\\\path\\\\", "\\/"};
+        StringBuilder text = new StringBuilder();
+        while (text.length() < length) {
+            text.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,256 @@
+package it.isw2.flaviosimonelli.utils.dao;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import it.isw2.flaviosimonelli.model.Project.ApproachProportion;
+import it.isw2.flaviosimonelli.model.Project.Project;
+import it.isw2.flaviosimonelli.model.Ticket;
+import it.isw2.flaviosimonelli.utils.bean.PipelineBean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the paging of the Jira search against a stub server: pages downloaded in parallel must yield the
+ * same tickets, in the same order, as the sequential download, also when the total number of issues grows
+ * while the pages are being downloaded. With the response cache, the pages of a search must all come from
+ * the same snapshot, so that a result set changed between two runs is never mixed with the old one.
+ * <p>
+ * Like Jira, the stub caps the page size below the requested one, and it answers later pages sooner,
+ * so the parallel download completes its pages out of order. With a fixed latency per request, the parallel
+ * download must take about two round trips, the first page and then all the others together, while the
+ * sequential one takes one round trip per page.
+ */
+class JiraServicePagingTest {
+    private static final int PAGE_SIZE = 40;
+    private static final long LATENCY_MS = 200;
+
+    @TempDir
+    Path cacheDirectory;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private String serverUrl;
+
+    // Chiavi delle issue restituite dalla ricerca; dopo la prima pagina diventano issuesAfterFirstPage
+    private volatile List<String> issues = List.of();
+    private volatile List<String> issuesAfterFirstPage;
+    // URL richiesti per ogni startAt, come li ha costruiti il client
+    private final Map<Integer, String> requestedUrls = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    // Latenza fissa di ogni richiesta in millisecondi; se negativa le pagine più avanti rispondono prima
+    private volatile long fixedLatencyMs = -1;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.createContext("/rest/api/2/search/", this::search);
+        server.start();
+        serverUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void parallelPagesKeepTheSequentialOrder() throws Exception {
+        serve(keys("STUB-", 430), null);
+        List<String> sequential = fetchTicketIds(1, false);
+        List<String> parallel = fetchTicketIds(8, false);
+
+        assertEquals(keys("STUB-", 430), sequential);
+        assertEquals(sequential, parallel);
+        assertTrue(maxInFlight.get() > 1, "Le pagine non sono state scaricate in parallelo");
+    }
+
+    @Test
+    void parallelPagesTakeAboutTwoRoundTrips() throws Exception {
+        int pages = 11;
+        serve(keys("STUB-", pages * PAGE_SIZE - 10), null);
+        fixedLatencyMs = LATENCY_MS;
+
+        long start = System.nanoTime();
+        List<String> sequential = fetchTicketIds(1, false);
+        long sequentialMs = (System.nanoTime() - start) / 1_000_000;
+        start = System.nanoTime();
+        List<String> parallel = fetchTicketIds(pages + 5, false);
+        long parallelMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(sequential, parallel);
+        assertTrue(sequentialMs >= pages * LATENCY_MS,
+                "Il download sequenziale deve fare una richiesta per pagina: " + sequentialMs + " ms");
+        // Prima pagina, poi tutte le altre insieme; il margine copre l'avvio delle connessioni
+        assertTrue(parallelMs < 4 * LATENCY_MS,
+                "Il download parallelo deve durare circa due richieste: " + parallelMs + " ms");
+    }
+
+    @Test
+    void totalGrowingDuringTheDownloadIsCaughtUp() throws Exception {
+        serve(keys("STUB-", 430), keys("STUB-", 515));
+        List<String> sequential = fetchTicketIds(1, false);
+        serve(keys("STUB-", 430), keys("STUB-", 515));
+        List<String> parallel = fetchTicketIds(8, false);
+
+        assertEquals(keys("STUB-", 515), sequential);
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    void singlePageIsNotPaged() throws Exception {
+        serve(keys("STUB-", 25), null);
+        assertEquals(keys("STUB-", 25), fetchTicketIds(8, false));
+    }
+
+    @Test
+    void cachedSearchIsServedWithoutRequests() throws Exception {
+        serve(keys("STUB-", 130), null);
+        assertEquals(keys("STUB-", 130), fetchTicketIds(8, true));
+
+        requests.set(0);
+        assertEquals(keys("STUB-", 130), fetchTicketIds(8, true));
+        assertEquals(0, requests.get(), "Una ricerca completa in cache non deve contattare il server");
+    }
+
+    @Test
+    void laterPagesOfAnOlderSnapshotAreNotMixedWithAFreshFirstPage() throws Exception {
+        serve(keys("STUB-", 130), null);
+        fetchTicketIds(8, true);
+
+        // La prima pagina è scaduta o mancante, le successive sono ancora in cache; intanto in testa ai
+        // risultati sono arrivate due issue, che spostano tutte le altre di due posizioni
+        Files.delete(cacheFile(requestedUrls.get(0)));
+        List<String> changed = new ArrayList<>(List.of("NEW-1", "NEW-2"));
+        changed.addAll(keys("STUB-", 130));
+        serve(changed, null);
+
+        assertEquals(changed, fetchTicketIds(8, true));
+    }
+
+    @Test
+    void firstPageOfAnInterruptedRunIsNotMixedWithFreshLaterPages() throws Exception {
+        serve(keys("STUB-", 130), null);
+        fetchTicketIds(8, true);
+
+        // Un'esecuzione interrotta ha lasciato in cache tutte le pagine tranne l'ultima
+        Files.delete(cacheFile(requestedUrls.get(120)));
+        List<String> changed = new ArrayList<>(List.of("NEW-1", "NEW-2"));
+        changed.addAll(keys("STUB-", 130));
+        serve(changed, null);
+
+        assertEquals(changed, fetchTicketIds(8, true));
+    }
+
+    private void serve(List<String> keys, List<String> keysAfterFirstPage) {
+        issues = keys;
+        issuesAfterFirstPage = keysAfterFirstPage;
+    }
+
+    private List<String> fetchTicketIds(int jiraThreads, boolean cache) throws Exception {
+        maxInFlight.set(0);
+
+        PipelineBean pipeline = new PipelineBean();
+        pipeline.setJiraThreads(jiraThreads);
+        pipeline.setJiraCache(cache);
+        pipeline.setJiraCacheTtlMinutes(60);
+        pipeline.setJiraIncremental(false);
+        Project project = new Project("stub", "STUB", ApproachProportion.COMPLETE, "master", "stub", "{VERSION}", pipeline);
+        project.setVersions(new ArrayList<>());
+
+        List<Ticket> tickets = new JiraService(serverUrl + "/rest/api/2", cacheDirectory).getFixedBugTickets(project);
+        return tickets.stream().map(Ticket::getId).toList();
+    }
+
+    private static List<String> keys(String prefix, int count) {
+        return IntStream.range(0, count).mapToObj(i -> prefix + i).toList();
+    }
+
+    // File della cache di un URL: SHA-256 dell'URL in esadecimale
+    private Path cacheFile(String url) throws NoSuchAlgorithmException {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+        StringBuilder name = new StringBuilder();
+        for (byte b : digest) {
+            name.append(String.format("%02x", b));
+        }
+        return cacheDirectory.resolve(name + ".entry.gz");
+    }
+
+    private void search(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            Map<String, String> query = new HashMap<>();
+            for (String parameter : exchange.getRequestURI().getRawQuery().split("&")) {
+                String[] pair = parameter.split("=", 2);
+                query.put(pair[0], pair.length > 1 ? pair[1] : "");
+            }
+            int startAt = Integer.parseInt(query.get("startAt"));
+            int maxResults = Math.min(PAGE_SIZE, Integer.parseInt(query.get("maxResults")));
+            requestedUrls.put(startAt, serverUrl + exchange.getRequestURI().getRawPath() + "?" + exchange.getRequestURI().getRawQuery());
+            List<String> pageIssues = issues;
+
+            // Le pagine più avanti rispondono prima, così quelle scaricate in parallelo arrivano fuori ordine
+            long latency = fixedLatencyMs;
+            Thread.sleep(latency >= 0 ? latency : Math.max(0, (pageIssues.size() - startAt) / PAGE_SIZE) * 5L);
+            byte[] body = page(startAt, maxResults, pageIssues).getBytes(StandardCharsets.UTF_8);
+            if (startAt == 0 && issuesAfterFirstPage != null) issues = issuesAfterFirstPage;
+
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    // Pagina nel formato della ricerca di Jira, con le issue nell'ordine della lista
+    private static String page(int startAt, int maxResults, List<String> keys) {
+        StringBuilder json = new StringBuilder("{\"expand\":\"schema,names\",\"startAt\":").append(startAt)
+                .append(",\"maxResults\":").append(maxResults)
+                .append(",\"total\":").append(keys.size())
+                .append(",\"issues\":[");
+        for (int i = startAt; i < Math.min(keys.size(), startAt + maxResults); i++) {
+            if (i > startAt) json.append(',');
+            json.append("{\"expand\":\"operations\",\"id\":\"").append(10_000 + i)
+                    .append("\",\"key\":\"").append(keys.get(i))
+                    .append("\",\"fields\":{\"created\":\"2020-01-0").append(1 + i % 9)
+                    .append("T10:00:00.000+0000\",\"updated\":\"2020-02-01T10:00:00.000+0000\",\"versions\":[{\"name\":\"1.")
+                    .append(i % 5).append(".0\"}]}}");
+        }
+        return json.append("]}").toString();
+    }
+}
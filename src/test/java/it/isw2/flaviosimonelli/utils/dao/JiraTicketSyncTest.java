@@ -0,0 +1,148 @@
+package it.isw2.flaviosimonelli.utils.dao;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import it.isw2.flaviosimonelli.model.Project.ApproachProportion;
+import it.isw2.flaviosimonelli.model.Project.Project;
+import it.isw2.flaviosimonelli.model.Ticket;
+import it.isw2.flaviosimonelli.utils.bean.PipelineBean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests the incremental synchronization of the fixed bugs against a stub server. The stub answers the search of the
+ * updated issues with every issue of the project, fixed or not, but never with the deleted ones, like Jira:
+ * a deleted or moved issue must still leave the store, through the count of the full search.
+ */
+class JiraTicketSyncTest {
+    @TempDir
+    Path cacheDirectory;
+
+    private HttpServer server;
+    private String serverUrl;
+
+    // Issue del progetto sul server, con l'indicazione se sono bug risolti
+    private volatile Map<String, Boolean> issues = Map.of();
+    private final AtomicInteger fullSearches = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/rest/api/2/search/", this::search);
+        server.start();
+        serverUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void unchangedProjectIsNotSearchedAgain() throws Exception {
+        serve("STUB-1", true, "STUB-2", true, "STUB-3", false);
+        assertEquals(List.of("STUB-1", "STUB-2"), fetchTicketIds());
+        assertEquals(List.of("STUB-1", "STUB-2"), fetchTicketIds());
+        assertEquals(1, fullSearches.get(), "Senza cambiamenti la ricerca completa non deve essere ripetuta");
+    }
+
+    @Test
+    void reopenedIssueLeavesTheStore() throws Exception {
+        serve("STUB-1", true, "STUB-2", true, "STUB-3", false);
+        fetchTicketIds();
+
+        serve("STUB-1", true, "STUB-2", false, "STUB-3", true);
+        assertEquals(List.of("STUB-1", "STUB-3"), fetchTicketIds());
+        assertEquals(1, fullSearches.get(), "Le issue aggiornate bastano a sincronizzare l'archivio");
+    }
+
+    @Test
+    void deletedIssueLeavesTheStore() throws Exception {
+        serve("STUB-1", true, "STUB-2", true, "STUB-3", true);
+        fetchTicketIds();
+
+        // STUB-2 viene cancellata o spostata in un altro progetto: non risulta fra le issue aggiornate
+        serve("STUB-1", true, "STUB-3", true, "STUB-4", false);
+        assertEquals(List.of("STUB-1", "STUB-3"), fetchTicketIds());
+        assertEquals(2, fullSearches.get(), "L'archivio con una issue cancellata deve essere ricostruito");
+
+        // L'archivio ricostruito è di nuovo allineato
+        assertEquals(List.of("STUB-1", "STUB-3"), fetchTicketIds());
+        assertEquals(2, fullSearches.get());
+    }
+
+    // Coppie chiave, bug risolto
+    private void serve(Object... keysAndFixed) {
+        Map<String, Boolean> served = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndFixed.length; i += 2) {
+            served.put((String) keysAndFixed[i], (Boolean) keysAndFixed[i + 1]);
+        }
+        issues = served;
+    }
+
+    private List<String> fetchTicketIds() throws Exception {
+        PipelineBean pipeline = new PipelineBean();
+        pipeline.setJiraThreads(1);
+        pipeline.setJiraCache(false);
+        pipeline.setJiraIncremental(true);
+        Project project = new Project("stub", "STUB", ApproachProportion.COMPLETE, "master", "stub", "{VERSION}", pipeline);
+        project.setVersions(new ArrayList<>());
+
+        List<Ticket> tickets = new JiraService(serverUrl + "/rest/api/2", cacheDirectory).getFixedBugTickets(project);
+        return tickets.stream().map(Ticket::getId).sorted().toList();
+    }
+
+    private void search(HttpExchange exchange) throws IOException {
+        Map<String, String> query = new HashMap<>();
+        for (String parameter : exchange.getRequestURI().getRawQuery().split("&")) {
+            String[] pair = parameter.split("=", 2);
+            query.put(pair[0], pair.length > 1 ? URLDecoder.decode(pair[1], StandardCharsets.UTF_8) : "");
+        }
+        boolean updatedSince = query.get("jql").contains("updated >=");
+        int maxResults = Integer.parseInt(query.get("maxResults"));
+        if (!updatedSince && maxResults > 0) fullSearches.incrementAndGet();
+
+        // La ricerca completa restituisce i bug risolti, quella incrementale tutte le issue del progetto
+        List<String> keys = new ArrayList<>();
+        issues.forEach((key, fixed) -> {
+            if (updatedSince || fixed) keys.add(key);
+        });
+        StringBuilder json = new StringBuilder("{\"startAt\":0,\"maxResults\":").append(maxResults)
+                .append(",\"total\":").append(keys.size()).append(",\"issues\":[");
+        for (int i = 0; i < Math.min(maxResults, keys.size()); i++) {
+            String key = keys.get(i);
+            boolean fixed = issues.get(key);
+            if (i > 0) json.append(',');
+            json.append("{\"key\":\"").append(key).append("\",\"fields\":{")
+                    .append("\"created\":\"2020-01-01T10:00:00.000+0000\",\"updated\":\"2020-02-01T10:00:00.000+0000\",")
+                    .append("\"versions\":[],\"issuetype\":{\"name\":\"Bug\"},")
+                    .append("\"status\":{\"name\":\"").append(fixed ? "Resolved" : "Open").append("\"},")
+                    .append("\"resolution\":").append(fixed ? "{\"name\":\"Fixed\"}" : "null").append("}}");
+        }
+        byte[] body = json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        exchange.close();
+    }
+}
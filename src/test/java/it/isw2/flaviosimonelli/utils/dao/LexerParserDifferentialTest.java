@@ -0,0 +1,208 @@
+package it.isw2.flaviosimonelli.utils.dao;
+
+import it.isw2.flaviosimonelli.model.method.Metric;
+import it.isw2.flaviosimonelli.utils.cache.MethodCache;
+import it.isw2.flaviosimonelli.utils.metric.LexerMethodExtractor;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Differential test of the lexer extractor against the full parser: for every source the lexer accepts,
+ * both must return the same methods, in the same order, with the same signatures, classes, line ranges
+ * and size metrics. Sources the lexer rejects are left to the parser, which must still accept them.
+ * <p>
+ * Besides the built-in sources, the test can run on a directory of Java files passed with
+ * {@code -Ddifferential.corpus=<dir>}, e.g. an exported release of the analyzed project.
+ */
+class LexerParserDifferentialTest {
+
+    private final GitService gitService = new GitService();
+
+    @Test
+    void plainClassesAndInterfaces() {
+        assertSameMethods("Plain.java", """
+                package p;
+                import java.util.*;
+                public class Plain<T extends Comparable<T>> implements Iterable<T> {
+                    private final List<T> items = new ArrayList<>();
+                    public Plain(List<T> items) { this.items.addAll(items); }
+                    public Iterator<T> iterator() { return items.iterator(); }
+                    @SafeVarargs
+                    public final int count(T... values) {
+                        int n = 0;
+                        for (T value : values) {
+                            if (value != null && items.contains(value) || n < 0) n++;
+                        }
+                        return n > 0 ? n : -1;
+                    }
+                    static <K, V> Map<K, List<V>> group(Collection<V> values, java.util.function.Function<V, K> key) {
+                        Map<K, List<V>> groups = new HashMap<>();
+                        values.forEach(v -> groups.computeIfAbsent(key.apply(v), k -> new ArrayList<>()).add(v));
+                        return groups;
+                    }
+                    class Inner {
+                        void run() throws Exception {
+                            try { Thread.sleep(1); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+                            do { continue; } while (false);
+                        }
+                    }
+                }
+                interface Shape {
+                    double area();
+                    default String describe() { return "area " + area(); }
+                }
+                """);
+    }
+
+    @Test
+    void switchExpressionsWithYield() {
+        assertSameMethods("Switches.java", """
+                class Switches {
+                    int days(int month, boolean leap) {
+                        return switch (month) {
+                            case 2 -> {
+                                int days = leap ? 29 : 28;
+                                yield days;
+                            }
+                            case 4, 6, 9, 11 -> 30;
+                            default -> 31;
+                        };
+                    }
+                    String name(Object value) {
+                        switch (value.hashCode() % 3) {
+                            case 0: return "zero";
+                            case 1: break;
+                            default: return "other";
+                        }
+                        return "one";
+                    }
+                }
+                """);
+    }
+
+    @Test
+    void instanceofPatterns() {
+        assertSameMethods("Patterns.java", """
+                class Patterns {
+                    int length(Object value) {
+                        if (value instanceof String s && !s.isEmpty()) {
+                            return s.length();
+                        }
+                        return value instanceof CharSequence sequence ? sequence.length() : 0;
+                    }
+                }
+                """);
+    }
+
+    @Test
+    void sealedClassesAndPermitsAsIdentifier() {
+        assertSameMethods("Sealed.java", """
+                sealed abstract class Node permits Leaf, Branch {
+                    abstract int size();
+                }
+                final class Leaf extends Node {
+                    int size() { return 1; }
+                }
+                non-sealed class Branch extends Node {
+                    int size() { return 2; }
+                }
+                class Semaphore {
+                    private int permits;
+                    void release(int permits) {
+                        if (permits < 0) throw new IllegalArgumentException();
+                        this.permits += permits;
+                    }
+                }
+                """);
+    }
+
+    @Test
+    void recordsAndTextBlocksAreParsed() {
+        // Il lexer non modella record e text block: questi file vanno al parser, che deve accettarli
+        String source = """
+                class Modern {
+                    record Point(int x, int y) {
+                        int sum() { return x + y; }
+                    }
+                    String text() {
+                        return \"""
+                            hello
+                            \""";
+                    }
+                }
+                """;
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        assertEquals(null, LexerMethodExtractor.extract(bytes));
+        List<MethodCache.CachedMethod> parsed = gitService.parseMethods(bytes, "Modern.java");
+        assertFalse(parsed.isEmpty(), "Il parser ha scartato un file con record e text block");
+    }
+
+    @Test
+    void corpusDirectory() throws IOException {
+        String corpus = System.getProperty("differential.corpus");
+        assumeTrue(corpus != null, "Nessun corpus indicato con -Ddifferential.corpus");
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(Path.of(corpus))) {
+            files = walk.filter(path -> path.toString().endsWith(".java")).sorted().toList();
+        }
+        List<String> divergent = new ArrayList<>();
+        int compared = 0;
+        for (Path file : files) {
+            byte[] bytes = Files.readAllBytes(file);
+            List<MethodCache.CachedMethod> lexed = LexerMethodExtractor.extract(bytes);
+            if (lexed == null) continue;
+            compared++;
+            String difference = difference(gitService.parseMethods(bytes, file.toString()), lexed);
+            if (difference != null) divergent.add(file + ": " + difference);
+        }
+        assertTrue(divergent.isEmpty(), divergent.size() + " file divergenti su " + compared + ":\n"
+                + String.join("\n", divergent.subList(0, Math.min(20, divergent.size()))));
+    }
+
+    private void assertSameMethods(String fileName, String source) {
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        List<MethodCache.CachedMethod> lexed = LexerMethodExtractor.extract(bytes);
+        assertTrue(lexed != null, "Il lexer non ha accettato " + fileName);
+        List<MethodCache.CachedMethod> parsed = gitService.parseMethods(bytes, fileName);
+        assertFalse(parsed.isEmpty(), "Il parser ha scartato " + fileName);
+        String difference = difference(parsed, lexed);
+        assertEquals(null, difference, fileName);
+    }
+
+    // Prima differenza fra le due estrazioni, o null se coincidono
+    private static String difference(List<MethodCache.CachedMethod> parsed, List<MethodCache.CachedMethod> lexed) {
+        if (parsed.size() != lexed.size()) {
+            return parsed.size() + " metodi dal parser, " + lexed.size() + " dal lexer";
+        }
+        for (int i = 0; i < parsed.size(); i++) {
+            String expected = describe(parsed.get(i));
+            String actual = describe(lexed.get(i));
+            if (!expected.equals(actual)) {
+                return "parser " + expected + ", lexer " + actual;
+            }
+        }
+        return null;
+    }
+
+    private static String describe(MethodCache.CachedMethod method) {
+        Metric metric = method.getMetric();
+        return method.getClassName() + "#" + method.getSignature()
+                + " righe " + method.getBeginLine() + "-" + method.getEndLine()
+                + " loc " + metric.getLoc()
+                + " statement " + metric.getStatementsCount()
+                + " cc " + metric.getCyclomaticComplexity()
+                + " parametri " + metric.getParameterCount();
+    }
+}
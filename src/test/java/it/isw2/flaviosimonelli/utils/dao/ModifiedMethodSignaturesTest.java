@@ -0,0 +1,162 @@
+package it.isw2.flaviosimonelli.utils.dao;
+
+import it.isw2.flaviosimonelli.model.Project.ApproachProportion;
+import it.isw2.flaviosimonelli.model.Project.Project;
+import it.isw2.flaviosimonelli.model.Version;
+import it.isw2.flaviosimonelli.model.method.Method;
+import it.isw2.flaviosimonelli.utils.bean.PipelineBean;
+import it.isw2.flaviosimonelli.utils.cache.SymbolTable;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the methods changed by a fix commit on a small synthetic repository: their signatures must be the ones
+ * extracted for the versions, otherwise the labeling never finds them, and the methods that are not changed,
+ * the test files and the deleted files must not be reported.
+ */
+class ModifiedMethodSignaturesTest {
+    private static final String SOURCE = "core/src/main/java/p/A.java";
+    private static final String REMOVED = "core/src/main/java/p/B.java";
+    private static final String TEST = "core/src/test/java/p/ATest.java";
+
+    @TempDir
+    Path directory;
+
+    private Git git;
+    private Project project;
+    private final GitService gitService = new GitService();
+
+    @BeforeEach
+    void initRepository() throws GitAPIException, IOException {
+        git = Git.init().setDirectory(directory.toFile()).setInitialBranch("master").call();
+        write(SOURCE, """
+                package p;
+
+                import java.util.List;
+
+                public class A {
+                    int f(int x) {
+                        return x;
+                    }
+
+                    void g(String s, List<String> values) {
+                        values.add(s);
+                    }
+
+                    void h() {
+                    }
+                }
+                """);
+        write(REMOVED, """
+                package p;
+
+                class B {
+                    void removed() {
+                    }
+                }
+                """);
+        write(TEST, """
+                package p;
+
+                class ATest {
+                    void testF() {
+                    }
+                }
+                """);
+        commit();
+    }
+
+    @AfterEach
+    void closeRepository() {
+        if (project != null) project.getRepositorySession().close();
+        git.close();
+    }
+
+    @Test
+    void changedMethodsHaveTheSignaturesOfTheVersions() throws Exception {
+        write(SOURCE, """
+                package p;
+
+                import java.util.List;
+
+                public class A {
+                    int f(int x) {
+                        return x + 1;
+                    }
+
+                    void g(String s, List<String> values) {
+                        values.add(s.trim());
+                    }
+
+                    void h() {
+                    }
+                }
+                """);
+        write(TEST, """
+                package p;
+
+                class ATest {
+                    void testF() {
+                        assert true;
+                    }
+                }
+                """);
+        Files.delete(directory.resolve(REMOVED));
+        String fixCommit = commit();
+
+        openProject();
+        List<String> signatures = gitService.getModifiedMethodSignaturesFromCommit(project, fixCommit);
+        assertEquals(List.of("int f(int)", "void g(String, List<String>)"), signatures);
+
+        // Le firme devono essere quelle dei metodi estratti per la versione del commit
+        Version version = new Version();
+        version.setName("1.0");
+        version.setHashCommit(fixCommit);
+        SymbolTable symbols = project.getSymbols();
+        Set<String> versionSignatures = gitService.getMethodsInVersion(project, version).stream()
+                .map(Method::getSignatureId).map(symbols.signatures()::get).collect(Collectors.toSet());
+        for (String signature : signatures) {
+            assertTrue(versionSignatures.contains(signature), "Firma assente dalla versione: " + signature);
+        }
+    }
+
+    @Test
+    void firstCommitReportsEveryMethod() throws Exception {
+        openProject();
+        String firstCommit = git.getRepository().resolve("HEAD").name();
+        assertEquals(Set.of("int f(int)", "void g(String, List<String>)", "void h()", "void removed()"),
+                Set.copyOf(gitService.getModifiedMethodSignaturesFromCommit(project, firstCommit)));
+    }
+
+    private void openProject() throws Exception {
+        project = new Project("stub", "STUB", ApproachProportion.COMPLETE, "master", directory.toString(), "{VERSION}", new PipelineBean());
+        project.setRepositorySession(RepositorySession.open(directory.toString()));
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = directory.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+    }
+
+    private String commit() throws GitAPIException {
+        git.add().addFilepattern(".").call();
+        git.add().addFilepattern(".").setUpdate(true).call();
+        return git.commit().setMessage("Modifica").call().name();
+    }
+}
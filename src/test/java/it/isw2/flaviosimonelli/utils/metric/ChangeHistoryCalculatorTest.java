@@ -0,0 +1,447 @@
+package it.isw2.flaviosimonelli.utils.metric;
+
+import it.isw2.flaviosimonelli.model.method.Method;
+import it.isw2.flaviosimonelli.model.method.Metric;
+import it.isw2.flaviosimonelli.utils.cache.MethodCache;
+import it.isw2.flaviosimonelli.utils.cache.SymbolTable;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests the change history on a small synthetic repository, whose commits are built so that each diff has a single
+ * possible alignment and the expected counters can be derived by hand. The methods come from a fixture extractor that,
+ * like the parser, reports the methods of anonymous classes under the enclosing class, so the two {@code run()}
+ * methods share their key and must be told apart by the duplicate chain. A second history edits the lines on the
+ * boundaries of two methods one commit at a time, to check the conversion between the 0-based lines of the edits
+ * and the 1-based lines of the methods.
+ */
+class ChangeHistoryCalculatorTest {
+    private static final String PATH = "src/main/java/p/A.java";
+    // Intestazione di un metodo: tipo di ritorno, nome e parametri, graffa aperta sulla stessa riga
+    private static final Pattern HEADER = Pattern.compile("^\\s*(?:public\\s+)?[\\w<>]+\\s+(\\w+\\([^)]*\\))\\s*\\{.*$");
+
+    private static final PersonIdent ALICE = new PersonIdent("Alice", "alice@example.org");
+    private static final PersonIdent BOB = new PersonIdent("Bob", "bob@example.org");
+    private static final PersonIdent CAROL = new PersonIdent("Carol", "carol@example.org");
+
+    @TempDir
+    Path directory;
+
+    private Git git;
+    private SymbolTable symbols;
+    private List<Method> methods;
+    private ChangeHistoryCalculator calculator;
+
+    @BeforeEach
+    void initRepository() throws GitAPIException {
+        git = Git.init().setDirectory(directory.toFile()).setInitialBranch("master").call();
+    }
+
+    @AfterEach
+    void closeRepository() {
+        git.close();
+    }
+
+    @Test
+    void everyCommitIsCounted() throws IOException, GitAPIException {
+        buildHistory();
+        assertEquals(5, calculator.getCommitCount());
+    }
+
+    @Test
+    void changesInsideAMethodAreCounted() throws IOException, GitAPIException {
+        buildHistory();
+        Metric foo = metric("foo(int x)", 0);
+        // Creazione (6 righe aggiunte), poi due sostituzioni di una riga
+        assertEquals(2, foo.getMethodHistories());
+        assertEquals(2, foo.getAuthors());
+        assertEquals(8, foo.getStmtAdded());
+        assertEquals(6, foo.getMaxStmtAdded());
+        assertEquals(2, foo.getStmtDeleted());
+        assertEquals(2, foo.getMaxStmtDeleted());
+        assertEquals(10, foo.getChurn());
+        assertEquals(6, foo.getMaxChurn());
+        assertEquals(5.0, foo.getAvgChurn());
+        assertEquals(1, foo.getCond());
+        assertEquals(1, foo.getElseAdded());
+        assertEquals(0, foo.getElseDeleted());
+    }
+
+    @Test
+    void deletionOfAMethodIsNotChargedToItsNeighbour() throws IOException, GitAPIException {
+        buildHistory();
+        // Le righe di bar sono state cancellate subito dopo la chiusura di foo: non sono righe di foo
+        Metric foo = metric("foo(int x)", 0);
+        assertEquals(2, foo.getStmtDeleted());
+        assertEquals(2, foo.getMethodHistories());
+    }
+
+    @Test
+    void deletionInsideNestedMethodsIsOwnedByTheOutermost() throws IOException, GitAPIException {
+        buildHistory();
+        Metric second = metric("second()", 0);
+        assertEquals(2, second.getMethodHistories());
+        assertEquals(2, second.getAuthors());
+        assertEquals(8, second.getStmtAdded());
+        assertEquals(1, second.getStmtDeleted());
+        assertEquals(9, second.getChurn());
+        assertEquals(8, second.getMaxChurn());
+
+        Metric secondRun = metric("run()", 1);
+        assertEquals(1, secondRun.getMethodHistories());
+        assertEquals(4, secondRun.getStmtAdded());
+        assertEquals(0, secondRun.getStmtDeleted());
+    }
+
+    @Test
+    void duplicateKeysKeepSeparateCounters() throws IOException, GitAPIException {
+        buildHistory();
+        // I due run() hanno la stessa chiave: l'occorrenza k-esima nel file è il k-esimo metodo della catena
+        Metric firstRun = metric("run()", 0);
+        Metric secondRun = metric("run()", 1);
+        assertEquals(3, firstRun.getStmtAdded());
+        assertEquals(1, firstRun.getMethodHistories());
+        assertEquals(1, firstRun.getAuthors());
+        assertEquals(4, secondRun.getStmtAdded());
+        assertEquals(1, secondRun.getMethodHistories());
+        assertEquals(1, secondRun.getAuthors());
+
+        Metric first = metric("first()", 0);
+        assertEquals(7, first.getStmtAdded());
+        assertEquals(0, first.getStmtDeleted());
+        assertEquals(1, first.getMethodHistories());
+    }
+
+    @Test
+    void editsOnTheBoundaryLinesOfAMethod() throws IOException, GitAPIException {
+        commit(ALICE, """
+                package p;
+
+                public class A {
+                    int foo(int x) {
+                        return x;
+                    }
+
+                    int bar() {
+                        return 0;
+                    } // bar
+                }
+                """);
+        assertChanges(3, 0, 3, 0);
+
+        // Riga che precede foo
+        commit(ALICE, """
+                package p;
+
+                public class A { // class
+                    int foo(int x) {
+                        return x;
+                    }
+
+                    int bar() {
+                        return 0;
+                    } // bar
+                }
+                """);
+        assertChanges(3, 0, 3, 0);
+
+        // Riga fra i due metodi
+        commit(ALICE, """
+                package p;
+
+                public class A { // class
+                    int foo(int x) {
+                        return x;
+                    }
+                    // between
+                    int bar() {
+                        return 0;
+                    } // bar
+                }
+                """);
+        assertChanges(3, 0, 3, 0);
+
+        // Ultima riga di foo e prima riga di bar, in due modifiche separate
+        commit(ALICE, """
+                package p;
+
+                public class A { // class
+                    int foo(int x) {
+                        return x;
+                    } // foo
+                    // between
+                    int bar() { // header
+                        return 0;
+                    } // bar
+                }
+                """);
+        assertChanges(4, 1, 4, 1);
+
+        // Inserimento subito dopo la chiusura di foo
+        commit(ALICE, """
+                package p;
+
+                public class A { // class
+                    int foo(int x) {
+                        return x;
+                    } // foo
+                    // after foo
+                    // between
+                    int bar() { // header
+                        return 0;
+                    } // bar
+                }
+                """);
+        assertChanges(4, 1, 4, 1);
+
+        // Cancellazione pura subito dopo la chiusura di foo: le righe che la circondano non sono entrambe di foo
+        commit(ALICE, """
+                package p;
+
+                public class A { // class
+                    int foo(int x) {
+                        return x;
+                    } // foo
+                    // between
+                    int bar() { // header
+                        return 0;
+                    } // bar
+                }
+                """);
+        assertChanges(4, 1, 4, 1);
+
+        // Cancellazione pura fra la prima e l'ultima riga di foo
+        commit(ALICE, """
+                package p;
+
+                public class A { // class
+                    int foo(int x) {
+                    } // foo
+                    // between
+                    int bar() { // header
+                        return 0;
+                    } // bar
+                }
+                """);
+        assertChanges(4, 2, 4, 1);
+    }
+
+    // Storia di cinque commit di tre autori, analizzata alla release dell'ultimo
+    private void buildHistory() throws IOException, GitAPIException {
+        // Due metodi; bar verrà rimosso e non esiste alla release
+        commit(ALICE, """
+                package p;
+
+                public class A {
+                    int foo(int x) {
+                        if (x > 0) {
+                            return 1;
+                        }
+                        return 0;
+                    }
+
+                    int bar() {
+                        return 2;
+                    } // bar
+                }
+                """);
+        // Due sostituzioni di una riga in foo, una in bar
+        commit(BOB, """
+                package p;
+
+                public class A {
+                    int foo(int x) {
+                        if (x > 0) {
+                            return x;
+                        }
+                        return -x; // else
+                    }
+
+                    int bar() {
+                        return 3;
+                    } // bar
+                }
+                """);
+        // Cancellazione pura di bar, fra la chiusura di foo e quella della classe
+        commit(ALICE, """
+                package p;
+
+                public class A {
+                    int foo(int x) {
+                        if (x > 0) {
+                            return x;
+                        }
+                        return -x; // else
+                    }
+                }
+                """);
+        // Inserimento di due metodi, ciascuno con un run() di una classe anonima
+        commit(CAROL, """
+                package p;
+
+                public class A {
+                    int foo(int x) {
+                        if (x > 0) {
+                            return x;
+                        }
+                        return -x; // else
+                    }
+
+                    Runnable first() {
+                        return new Runnable() {
+                            public void run() {
+                                System.out.println(1);
+                            }
+                        };
+                    } // first
+
+                    Runnable second() {
+                        return new Runnable() {
+                            public void run() {
+                                System.out.println(2);
+                                System.out.println(22);
+                            }
+                        };
+                    } // second
+                }
+                """);
+        // Cancellazione pura all'interno del secondo run(), quindi anche di second()
+        commit(ALICE, """
+                package p;
+
+                public class A {
+                    int foo(int x) {
+                        if (x > 0) {
+                            return x;
+                        }
+                        return -x; // else
+                    }
+
+                    Runnable first() {
+                        return new Runnable() {
+                            public void run() {
+                                System.out.println(1);
+                            }
+                        };
+                    } // first
+
+                    Runnable second() {
+                        return new Runnable() {
+                            public void run() {
+                                System.out.println(2);
+                            }
+                        };
+                    } // second
+                }
+                """);
+        analyze();
+    }
+
+    private void commit(PersonIdent author, String content) throws IOException, GitAPIException {
+        Path file = directory.resolve(PATH);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        git.add().addFilepattern(PATH).call();
+        git.commit().setMessage("Modifica").setAuthor(author).setCommitter(author).call();
+    }
+
+    private void assertChanges(int fooAdded, int fooDeleted, int barAdded, int barDeleted) throws IOException {
+        analyze();
+        assertEquals(fooAdded, metric("foo(int x)", 0).getStmtAdded(), "Righe aggiunte a foo");
+        assertEquals(fooDeleted, metric("foo(int x)", 0).getStmtDeleted(), "Righe eliminate da foo");
+        assertEquals(barAdded, metric("bar()", 0).getStmtAdded(), "Righe aggiunte a bar");
+        assertEquals(barDeleted, metric("bar()", 0).getStmtDeleted(), "Righe eliminate da bar");
+    }
+
+    // Metodi della release dall'ultimo commit, poi la storia come la calcola il GitService
+    private void analyze() throws IOException {
+        symbols = new SymbolTable();
+        try (RevWalk revWalk = new RevWalk(git.getRepository())) {
+            ObjectReader reader = revWalk.getObjectReader();
+            RevCommit head = revWalk.parseCommit(git.getRepository().resolve(Constants.HEAD));
+            ObjectId blobId;
+            try (TreeWalk treeWalk = TreeWalk.forPath(git.getRepository(), PATH, head.getTree())) {
+                blobId = treeWalk.getObjectId(0);
+            }
+            methods = new ArrayList<>();
+            for (MethodCache.CachedMethod method : methodsOf(reader, blobId)) {
+                methods.add(method.toMethod(blobId, PATH, 0, symbols));
+            }
+            calculator = new ChangeHistoryCalculator(methods, symbols);
+
+            revWalk.markStart(head);
+            revWalk.setRevFilter(RevFilter.NO_MERGES);
+            try (DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+                diffFormatter.setReader(reader, git.getRepository().getConfig());
+                diffFormatter.setPathFilter(PathSuffixFilter.create(".java"));
+                for (RevCommit commit : revWalk) {
+                    if (commit.getParentCount() > 0) {
+                        revWalk.parseHeaders(commit.getParent(0));
+                    }
+                    calculator.addCommit(commit, reader, diffFormatter, (id, path) -> methodsOf(reader, id));
+                }
+            }
+        }
+        calculator.fill();
+    }
+
+    // Metodi di un blob: intestazione riconosciuta da HEADER, fine alla graffa che la chiude; righe 1-based, inclusive
+    private static List<MethodCache.CachedMethod> methodsOf(ObjectReader reader, ObjectId blobId) {
+        String[] lines;
+        try {
+            lines = new String(reader.open(blobId, Constants.OBJ_BLOB).getCachedBytes(), StandardCharsets.UTF_8).split("\n");
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        List<MethodCache.CachedMethod> found = new ArrayList<>();
+        for (int begin = 0; begin < lines.length; begin++) {
+            Matcher header = HEADER.matcher(lines[begin]);
+            if (!header.matches()) continue;
+            int depth = 0;
+            int end = begin;
+            do {
+                depth += braces(lines[end], '{') - braces(lines[end], '}');
+                end++;
+            } while (depth > 0);
+            found.add(new MethodCache.CachedMethod("A", header.group(1), 0, 0, new Metric(), begin + 1, end));
+        }
+        return found;
+    }
+
+    private static int braces(String line, char brace) {
+        return (int) line.chars().filter(c -> c == brace).count();
+    }
+
+    // Metrica dell'occorrenza k-esima di una firma fra i metodi della release, in ordine di riga
+    private Metric metric(String signature, int occurrence) {
+        int signatureId = symbols.signatures().find(signature);
+        return methods.stream().filter(method -> method.getSignatureId() == signatureId)
+                .skip(occurrence).findFirst().orElseThrow().getMetric();
+    }
+}
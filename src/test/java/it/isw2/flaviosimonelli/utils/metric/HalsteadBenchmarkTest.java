@@ -0,0 +1,149 @@
+package it.isw2.flaviosimonelli.utils.metric;
+
+import com.github.javaparser.GeneratedJavaParserConstants;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.JavaToken;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import it.isw2.flaviosimonelli.model.method.Metric;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Benchmark of the per-method cost of the metrics, Halstead included, against the cost of parsing the methods.
+ * It also measures a Halstead count that keeps the token texts in a {@code HashSet<String>}, the approach the
+ * token-kind BitSet and the hashed operand set avoid, and checks that both give the same values.
+ * <p>
+ * Runs only with {@code mvn test -Pbenchmark}. The corpus is this project's sources, or the Java files of
+ * the directory passed with {@code -Dbenchmark.corpus=<dir>}, e.g. an exported release of the analyzed project.
+ */
+@Tag("benchmark")
+class HalsteadBenchmarkTest {
+    private static final long WARMUP_NANOS = 3_000_000_000L;
+    private static final int MEASURED_ROUNDS = 10;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void metricsAgainstParsing() throws IOException {
+        List<String> sources = readCorpus();
+        JavaParser parser = new JavaParser(new ParserConfiguration()
+                .setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_17));
+        List<MethodDeclaration> methods = new ArrayList<>();
+        for (String source : sources) {
+            parser.parse(source).getResult().ifPresent(cu -> methods.addAll(cu.findAll(MethodDeclaration.class)));
+        }
+        assertFalse(methods.isEmpty(), "Nessun metodo nel corpus");
+
+        // I valori del contatore con i testi dei token devono coincidere con quelli calcolati
+        for (MethodDeclaration method : methods) {
+            Metric metric = MetricCalculator.compute(method);
+            double[] expected = halsteadWithStrings(method);
+            assertEquals(expected[0], metric.getHalsteadVolume(), 1e-9, method.getNameAsString());
+            assertEquals(expected[1], metric.getHalsteadDifficulty(), 1e-9, method.getNameAsString());
+        }
+
+        Measure parse = measure(() -> {
+            for (String source : sources) {
+                parser.parse(source).getResult().map(CompilationUnit::getTypes);
+            }
+        });
+        Measure metrics = measure(() -> {
+            for (MethodDeclaration method : methods) {
+                MetricCalculator.compute(method);
+            }
+        });
+        Measure stringHalstead = measure(() -> {
+            for (MethodDeclaration method : methods) {
+                halsteadWithStrings(method);
+            }
+        });
+
+        System.out.printf("Corpus: %d file, %d metodi%n", sources.size(), methods.size());
+        print("parsing", parse, methods.size());
+        print("tutte le metriche (Halstead incluso)", metrics, methods.size());
+        print("solo Halstead con HashSet<String>", stringHalstead, methods.size());
+    }
+
+    // Halstead contando operatori e operandi distinti con insiemi di oggetti: volume e difficoltà
+    private static double[] halsteadWithStrings(MethodDeclaration method) {
+        Set<Integer> operators = new HashSet<>();
+        Set<String> operands = new HashSet<>();
+        int totalOperators = 0;
+        int totalOperands = 0;
+        for (JavaToken token : method.getTokenRange().orElseThrow()) {
+            JavaToken.Category category = token.getCategory();
+            if (category.isWhitespaceOrComment()) continue;
+            if (category.isIdentifier() || category.isLiteral()) {
+                totalOperands++;
+                operands.add(token.getText());
+                continue;
+            }
+            int kind = token.getKind();
+            if (kind == GeneratedJavaParserConstants.RPAREN
+                    || kind == GeneratedJavaParserConstants.RBRACKET
+                    || kind == GeneratedJavaParserConstants.RBRACE) {
+                continue;
+            }
+            totalOperators++;
+            operators.add(kind);
+        }
+        int vocabulary = operators.size() + operands.size();
+        int length = totalOperators + totalOperands;
+        double volume = vocabulary > 1 ? length * (Math.log(vocabulary) / Math.log(2)) : 0;
+        double difficulty = operands.isEmpty() ? 0 : (operators.size() / 2.0) * ((double) totalOperands / operands.size());
+        return new double[]{volume, difficulty};
+    }
+
+    private List<String> readCorpus() throws IOException {
+        Path corpus = Path.of(System.getProperty("benchmark.corpus", "src/main/java"));
+        List<String> sources = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(corpus)) {
+            for (Path file : walk.filter(path -> path.toString().endsWith(".java")).sorted().toList()) {
+                sources.add(Files.readString(file));
+            }
+        }
+        return sources;
+    }
+
+    // Tempo minimo e byte allocati di un giro, dopo alcuni secondi di riscaldamento
+    private Measure measure(Runnable round) {
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        do {
+            round.run();
+        } while (System.nanoTime() < warmupEnd);
+        long bestNanos = Long.MAX_VALUE;
+        long allocated = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            round.run();
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            allocated += threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+        }
+        return new Measure(bestNanos, allocated / MEASURED_ROUNDS);
+    }
+
+    private static void print(String label, Measure measure, int methods) {
+        System.out.printf("%-40s %10.2f us/metodo %10d byte/metodo%n", label,
+                measure.nanos / 1000.0 / methods, measure.bytes / methods);
+    }
+
+    private record Measure(long nanos, long bytes) {
+    }
+}